@@ -83,6 +83,118 @@ public class Constants {
      */
     public static final String BCRYPT_WORK_ENV = "DOCS_BCRYPT_WORK";
 
+    /**
+     * Interval between two refreshes of the search index readers (in milliseconds).
+     */
+    public static final String LUCENE_REFRESH_INTERVAL_ENV = "DOCS_LUCENE_REFRESH_INTERVAL";
+    public static final long DEFAULT_LUCENE_REFRESH_INTERVAL = 1000L;
+
+    /**
+     * Maximum time between two commits of the search index (in milliseconds).
+     */
+    public static final String LUCENE_COMMIT_INTERVAL_ENV = "DOCS_LUCENE_COMMIT_INTERVAL";
+    public static final long DEFAULT_LUCENE_COMMIT_INTERVAL = 5000L;
+
+    /**
+     * Number of pending index operations triggering an early commit.
+     */
+    public static final String LUCENE_COMMIT_BATCH_SIZE_ENV = "DOCS_LUCENE_COMMIT_BATCH_SIZE";
+    public static final long DEFAULT_LUCENE_COMMIT_BATCH_SIZE = 500L;
+
+    /**
+     * Minimum time between two builds of the search suggester (in milliseconds).
+     */
+    public static final String LUCENE_SUGGESTER_INTERVAL_ENV = "DOCS_LUCENE_SUGGESTER_INTERVAL";
+    public static final long DEFAULT_LUCENE_SUGGESTER_INTERVAL = 60000L;
+
+    /**
+     * Number of threads and queue capacity of an asynchronous event pool,
+     * %s being the pool name (PROCESSING, INDEXING, IO or MAIL).
+     */
+    public static final String EVENT_POOL_THREADS_ENV = "DOCS_%s_THREADS";
+    public static final String EVENT_POOL_QUEUE_SIZE_ENV = "DOCS_%s_QUEUE_SIZE";
+    public static final long DEFAULT_EVENT_POOL_QUEUE_SIZE = 1000L;
+
+    /**
+     * Number of threads building the documents during a full reindex.
+     */
+    public static final String INDEX_REBUILD_THREADS_ENV = "DOCS_INDEX_REBUILD_THREADS";
+
+    /**
+     * Number of threads decrypting and converting the files of a PDF export.
+     */
+    public static final String PDF_EXPORT_THREADS_ENV = "DOCS_PDF_EXPORT_THREADS";
+
+    /**
+     * Number of threads decrypting the files of a ZIP export ahead of the written file.
+     */
+    public static final String ZIP_EXPORT_THREADS_ENV = "DOCS_ZIP_EXPORT_THREADS";
+
+    /**
+     * Memory of the files of a ZIP export buffered ahead of the written file (in bytes).
+     */
+    public static final String ZIP_EXPORT_BUFFER_SIZE_ENV = "DOCS_ZIP_EXPORT_BUFFER_SIZE";
+
+    /**
+     * Number of pages recognized at the same time by the OCR, all files included.
+     */
+    public static final String OCR_THREADS_ENV = "DOCS_OCR_THREADS";
+
+    /**
+     * Time after which the recognition of a page is abandoned and its tesseract process killed (in seconds).
+     */
+    public static final String OCR_TIMEOUT_ENV = "DOCS_OCR_TIMEOUT";
+    public static final long DEFAULT_OCR_TIMEOUT = 300L;
+
+    /**
+     * Memory of the images being decoded at the same time for the thumbnails (in bytes).
+     */
+    public static final String THUMBNAIL_MEMORY_ENV = "DOCS_THUMBNAIL_MEMORY";
+
+    /**
+     * Number of stored files or rows cleaned in a transaction by the storage cleaning.
+     */
+    public static final String CLEAN_STORAGE_BATCH_SIZE_ENV = "DOCS_CLEAN_STORAGE_BATCH_SIZE";
+    public static final long DEFAULT_CLEAN_STORAGE_BATCH_SIZE = 1000L;
+
+    /**
+     * Pause between two batches of the storage cleaning (in milliseconds).
+     */
+    public static final String CLEAN_STORAGE_BATCH_DELAY_ENV = "DOCS_CLEAN_STORAGE_BATCH_DELAY";
+
+    /**
+     * Maximum size of the exported PDF cache (in bytes).
+     */
+    public static final String PDF_CACHE_SIZE_ENV = "DOCS_PDF_CACHE_SIZE";
+    public static final long DEFAULT_PDF_CACHE_SIZE = 1024L * 1024L * 1024L;
+
+    /**
+     * Time an exported PDF stays in the cache after its last export (in milliseconds).
+     */
+    public static final String PDF_CACHE_TTL_ENV = "DOCS_PDF_CACHE_TTL";
+    public static final long DEFAULT_PDF_CACHE_TTL = 24L * 60L * 60L * 1000L;
+
+    /**
+     * Time an authenticated principal is kept in cache (in seconds).
+     */
+    public static final String PRINCIPAL_CACHE_TTL_ENV = "DOCS_PRINCIPAL_CACHE_TTL";
+    public static final long DEFAULT_PRINCIPAL_CACHE_TTL = 60L;
+
+    /**
+     * Storage backend of the files (filesystem, dedup or s3).
+     */
+    public static final String STORAGE_BACKEND_ENV = "DOCS_STORAGE_BACKEND";
+
+    /**
+     * S3 compatible storage backend configuration.
+     */
+    public static final String S3_ENDPOINT_ENV = "DOCS_S3_ENDPOINT";
+    public static final String S3_REGION_ENV = "DOCS_S3_REGION";
+    public static final String DEFAULT_S3_REGION = "us-east-1";
+    public static final String S3_BUCKET_ENV = "DOCS_S3_BUCKET";
+    public static final String S3_ACCESS_KEY_ENV = "DOCS_S3_ACCESS_KEY";
+    public static final String S3_SECRET_KEY_ENV = "DOCS_S3_SECRET_KEY";
+
     /**
      * Expiration time of the password recovery in hours.
      */
@@ -13,8 +13,13 @@ import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -59,6 +64,50 @@ public class AclDao {
         return q.getResultList();
     }
 
+    /**
+     * Returns the targets allowed to read a list of documents, directly or through their tags, in one query.
+     *
+     * @param documentIds Documents IDs
+     * @return Targets IDs by document ID
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Set<String>> getReadTargetIdMap(Collection<String> documentIds) {
+        Map<String, Set<String>> targetIdMap = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return targetIdMap;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select a.ACL_SOURCEID_C, a.ACL_TARGETID_C from T_ACL a " +
+                " where a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null and a.ACL_SOURCEID_C in (:documentIds) " +
+                " union select dt.DOT_IDDOCUMENT_C, a.ACL_TARGETID_C from T_DOCUMENT_TAG dt " +
+                " join T_ACL a on a.ACL_SOURCEID_C = dt.DOT_IDTAG_C and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null " +
+                " where dt.DOT_DELETEDATE_D is null and dt.DOT_IDDOCUMENT_C in (:documentIds)");
+        q.setParameter("documentIds", documentIds);
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            targetIdMap.computeIfAbsent((String) o[0], documentId -> new HashSet<>()).add((String) o[1]);
+        }
+        return targetIdMap;
+    }
+
+    /**
+     * Returns the sources shared with a share among a list, in one query.
+     *
+     * @param sourceIds Sources IDs
+     * @return Shared sources IDs
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getSharedSourceIds(Collection<String> sourceIds) {
+        if (sourceIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select distinct a.ACL_SOURCEID_C from T_ACL a " +
+                " join T_SHARE s on s.SHA_ID_C = a.ACL_TARGETID_C " +
+                " where a.ACL_DELETEDATE_D is null and s.SHA_DELETEDATE_D is null and a.ACL_SOURCEID_C in (:sourceIds)");
+        q.setParameter("sourceIds", sourceIds);
+        return new HashSet<>(q.getResultList());
+    }
+
     /**
      * Search ACLs by source ID.
      *
@@ -13,6 +13,10 @@ import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -23,23 +27,93 @@ import java.util.*;
  */
 public class AuditLogDao {
     /**
-     * Creates a new audit log.
+     * Creates new audit logs, inserted in a JDBC batch.
+     * The IDs and the creation dates are set when the logs are captured.
      * 
-     * @param auditLog Audit log
-     * @return New ID
+     * @param auditLogList Audit logs
      */
-    public String create(AuditLog auditLog) {
-        // Create the UUID
-        auditLog.setId(UUID.randomUUID().toString());
-        
-        // Create the audit log
+    public void create(List<AuditLog> auditLogList) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        auditLog.setCreateDate(new Date());
-        em.persist(auditLog);
-        
-        return auditLog.getId();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("insert into T_AUDIT_LOG " +
+                    "(LOG_ID_C, LOG_IDUSER_C, LOG_IDENTITY_C, LOG_CLASSENTITY_C, LOG_TYPE_C, LOG_MESSAGE_C, LOG_CREATEDATE_D) " +
+                    "values (?, ?, ?, ?, ?, ?, ?)")) {
+                for (AuditLog auditLog : auditLogList) {
+                    statement.setString(1, auditLog.getId());
+                    statement.setString(2, auditLog.getUserId());
+                    statement.setString(3, auditLog.getEntityId());
+                    statement.setString(4, auditLog.getEntityClass());
+                    statement.setString(5, auditLog.getType().name());
+                    statement.setString(6, auditLog.getMessage());
+                    statement.setTimestamp(7, new Timestamp(auditLog.getCreateDate().getTime()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Returns the IDs of the audit logs already created among a list.
+     *
+     * @param idList Audit log IDs
+     * @return Existing IDs
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getExistingIds(Collection<String> idList) {
+        if (idList.isEmpty()) {
+            return new HashSet<>();
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select l.LOG_ID_C from T_AUDIT_LOG l where l.LOG_ID_C in (:idList)");
+        q.setParameter("idList", idList);
+        return new HashSet<>(q.getResultList());
+    }
+
+    /**
+     * Marks a journaled transaction as committed, from inside this transaction.
+     *
+     * @param journalId Journal ID of the transaction
+     */
+    public void createCommitMarker(String journalId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("insert into T_AUDIT_LOG_COMMIT (ALC_ID_C) values (:journalId)");
+        q.setParameter("journalId", journalId);
+        q.executeUpdate();
+    }
+
+    /**
+     * Returns the journal IDs of the committed transactions among a list.
+     *
+     * @param journalIdList Journal IDs
+     * @return Committed journal IDs
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getCommitMarkers(Collection<String> journalIdList) {
+        if (journalIdList.isEmpty()) {
+            return new HashSet<>();
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select c.ALC_ID_C from T_AUDIT_LOG_COMMIT c where c.ALC_ID_C in (:journalIdList)");
+        q.setParameter("journalIdList", journalIdList);
+        return new HashSet<>(q.getResultList());
     }
-    
+
+    /**
+     * Deletes the commit markers of transactions whose audit logs are written.
+     *
+     * @param journalIdList Journal IDs
+     */
+    public void deleteCommitMarkers(Collection<String> journalIdList) {
+        if (journalIdList.isEmpty()) {
+            return;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("delete from T_AUDIT_LOG_COMMIT where ALC_ID_C in (:journalIdList)");
+        q.setParameter("journalIdList", journalIdList);
+        q.executeUpdate();
+    }
+
     /**
      * Searches audit logs by criteria.
      * 
@@ -1,11 +1,13 @@
 package com.sismics.docs.core.dao;
 
+import com.sismics.docs.core.event.UserUpdatedAsyncEvent;
 import com.sismics.docs.core.model.jpa.AuthenticationToken;
 import com.sismics.util.context.ThreadLocalContext;
 import org.joda.time.DateTime;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
+import org.hibernate.query.NativeQuery;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -54,6 +56,9 @@ public class AuthenticationTokenDao {
         AuthenticationToken authenticationToken = em.find(AuthenticationToken.class, authenticationTokenId);
         if (authenticationToken != null) {
             em.remove(authenticationToken);
+
+            // Invalidate the cached principals of the user
+            ThreadLocalContext.get().addAsyncEvent(new UserUpdatedAsyncEvent().setUserId(authenticationToken.getUserId()));
         } else {
             throw new Exception("Token not found: " + authenticationTokenId);
         }
@@ -75,7 +80,11 @@ public class AuthenticationTokenDao {
         q.setParameter("userId", userId);
         q.setParameter("longLasted", false);
         q.setParameter("minDate", DateTime.now().minusDays(1).toDate());
+        q.unwrap(NativeQuery.class).addSynchronizedQuerySpace("T_AUTHENTICATION_TOKEN");
         q.executeUpdate();
+
+        // Invalidate the cached principals of the user
+        ThreadLocalContext.get().addAsyncEvent(new UserUpdatedAsyncEvent().setUserId(userId));
     }
 
     /**
@@ -93,6 +102,9 @@ public class AuthenticationTokenDao {
         Query q = em.createNativeQuery(sb.toString());
         q.setParameter("currentDate", new Date());
         q.setParameter("id", id);
+
+        // Without a synchronized table, the native update would evict the whole second level cache on each request
+        q.unwrap(NativeQuery.class).addSynchronizedQuerySpace("T_AUTHENTICATION_TOKEN");
         q.executeUpdate();
     }
     
@@ -121,5 +133,8 @@ public class AuthenticationTokenDao {
         q.setParameter("userId", userId);
         q.setParameter("id", id);
         q.executeUpdate();
+
+        // Invalidate the cached principals of the user
+        ThreadLocalContext.get().addAsyncEvent(new UserUpdatedAsyncEvent().setUserId(userId));
     }
 }
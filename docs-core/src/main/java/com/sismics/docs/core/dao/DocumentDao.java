@@ -11,6 +11,7 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.query.NativeQuery;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
@@ -45,16 +46,17 @@ public class DocumentDao {
     }
     
     /**
-     * Returns the list of all active documents.
+     * Returns a page of all active documents, ordered by ID.
+     * The next page starts after the last ID of the previous one.
      *
-     * @param offset Offset
+     * @param afterId Exclusive lower bound of the IDs, empty to start from the first document
      * @param limit Limit
      * @return List of documents
      */
-    public List<Document> findAll(int offset, int limit) {
+    public List<Document> findAll(String afterId, int limit) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<Document> q = em.createQuery("select d from Document d where d.deleteDate is null", Document.class);
-        q.setFirstResult(offset);
+        TypedQuery<Document> q = em.createQuery("select d from Document d where d.id > :afterId and d.deleteDate is null order by d.id", Document.class);
+        q.setParameter("afterId", afterId);
         q.setMaxResults(limit);
         return q.getResultList();
     }
@@ -72,6 +74,20 @@ public class DocumentDao {
         return q.getResultList();
     }
     
+    /**
+     * Returns the list of all active documents with a tag.
+     *
+     * @param tagId Tag ID
+     * @return List of documents
+     */
+    public List<Document> findByTagId(String tagId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Document> q = em.createQuery("select d from Document d where d.deleteDate is null " +
+                " and d.id in (select dt.documentId from DocumentTag dt where dt.tagId = :tagId and dt.deleteDate is null)", Document.class);
+        q.setParameter("tagId", tagId);
+        return q.getResultList();
+    }
+    
     /**
      * Returns an active document with permission checking.
      * 
@@ -236,7 +252,13 @@ public class DocumentDao {
         query.setParameter("updateDate", new Date());
         query.setParameter("fileId", document.getFileId());
         query.setParameter("id", document.getId());
+        query.unwrap(NativeQuery.class).addSynchronizedQuerySpace("T_DOCUMENT");
         query.executeUpdate();
+
+        // The update bypasses the persistence context
+        if (em.contains(document)) {
+            em.refresh(document);
+        }
     }
 
     /**
@@ -2,6 +2,7 @@ package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.constant.AuditLogType;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.FileContent;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
@@ -9,6 +10,7 @@ import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -18,6 +20,7 @@ import java.util.UUID;
 
 /**
  * File DAO.
+ * Files are read without their extracted content, which is read separately when needed.
  * 
  * @author bgamard
  */
@@ -45,16 +48,17 @@ public class FileDao {
     }
     
     /**
-     * Returns the list of all files.
+     * Returns a page of all active files, ordered by ID.
+     * The next page starts after the last ID of the previous one.
      *
-     * @param offset Offset
+     * @param afterId Exclusive lower bound of the IDs, empty to start from the first file
      * @param limit Limit
      * @return List of files
      */
-    public List<File> findAll(int offset, int limit) {
+    public List<File> findAll(String afterId, int limit) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<File> q = em.createQuery("select f from File f where f.deleteDate is null", File.class);
-        q.setFirstResult(offset);
+        TypedQuery<File> q = em.createQuery("select f from File f where f.id > :afterId and f.deleteDate is null order by f.id", File.class);
+        q.setParameter("afterId", afterId);
         q.setMaxResults(limit);
         return q.getResultList();
     }
@@ -85,6 +89,19 @@ public class FileDao {
         return q.getResultList();
     }
     
+    /**
+     * Returns the IDs of the active files among a list of IDs.
+     *
+     * @param ids Files IDs
+     * @return IDs of the active files
+     */
+    public List<String> getActiveIds(Collection<String> ids) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<String> q = em.createQuery("select f.id from File f where f.id in :ids and f.deleteDate is null", String.class);
+        q.setParameter("ids", ids);
+        return q.getResultList();
+    }
+
     /**
      * Returns an active file or null.
      * 
@@ -158,7 +175,6 @@ public class FileDao {
         // Update the file
         fileDb.setDocumentId(file.getDocumentId());
         fileDb.setName(file.getName());
-        fileDb.setContent(file.getContent());
         fileDb.setOrder(file.getOrder());
         fileDb.setMimeType(file.getMimeType());
         fileDb.setVersionId(file.getVersionId());
@@ -168,6 +184,57 @@ public class FileDao {
         return file;
     }
 
+    /**
+     * Returns the extracted content of a file.
+     *
+     * @param id File ID
+     * @return Content, null if no content has been extracted
+     */
+    public String getContent(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        FileContent fileContent = em.find(FileContent.class, id);
+        return fileContent == null ? null : fileContent.getContent();
+    }
+
+    /**
+     * Returns the extracted contents of some files.
+     *
+     * @param ids Files IDs
+     * @return Contents by file ID, files without content are absent
+     */
+    public Map<String, String> getContents(Collection<String> ids) {
+        Map<String, String> contentMap = new HashMap<>();
+        if (ids.isEmpty()) {
+            return contentMap;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select fc.fileId, fc.content from FileContent fc where fc.fileId in :ids");
+        q.setParameter("ids", ids);
+        for (Object o : q.getResultList()) {
+            Object[] resultLine = (Object[]) o;
+            contentMap.put((String) resultLine[0], (String) resultLine[1]);
+        }
+        return contentMap;
+    }
+
+    /**
+     * Updates the extracted content of a file.
+     *
+     * @param id File ID
+     * @param content Content
+     */
+    public void updateContent(String id, String content) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        FileContent fileContent = em.find(FileContent.class, id);
+        if (fileContent == null) {
+            em.persist(new FileContent()
+                    .setFileId(id)
+                    .setContent(content));
+        } else {
+            fileContent.setContent(content);
+        }
+    }
+
     /**
      * Gets a file by its ID.
      * 
@@ -254,4 +321,15 @@ public class FileDao {
         q.setMaxResults(limit);
         return q.getResultList();
     }
+
+    /**
+     * Returns the number of active files.
+     *
+     * @return Number of files
+     */
+    public long getFileCount() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query query = em.createNativeQuery("select count(f.FIL_ID_C) from T_FILE f where f.FIL_DELETEDATE_D is null");
+        return ((Number) query.getSingleResult()).longValue();
+    }
 }
@@ -4,6 +4,8 @@ import com.google.common.base.Joiner;
 import com.sismics.docs.core.constant.AuditLogType;
 import com.sismics.docs.core.dao.criteria.GroupCriteria;
 import com.sismics.docs.core.dao.dto.GroupDto;
+import com.sismics.docs.core.event.GroupUpdatedAsyncEvent;
+import com.sismics.docs.core.event.UserUpdatedAsyncEvent;
 import com.sismics.docs.core.model.jpa.Group;
 import com.sismics.docs.core.model.jpa.UserGroup;
 import com.sismics.docs.core.util.AuditLogUtil;
@@ -15,6 +17,7 @@ import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
 import java.util.*;
 
 /**
@@ -33,6 +36,7 @@ public class GroupDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.name = :name and g.deleteDate is null");
         q.setParameter("name", name);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         try {
             return (Group) q.getSingleResult();
         } catch (NoResultException e) {
@@ -50,6 +54,7 @@ public class GroupDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.id = :id and g.deleteDate is null");
         q.setParameter("id", id);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         try {
             return (Group) q.getSingleResult();
         } catch (NoResultException e) {
@@ -113,6 +118,9 @@ public class GroupDao {
 
         // Create audit log
         AuditLogUtil.create(groupDb, AuditLogType.DELETE, userId);
+
+        // Invalidate all the cached principals
+        ThreadLocalContext.get().addAsyncEvent(new GroupUpdatedAsyncEvent().setGroupId(groupId));
     }
     
     /**
@@ -128,7 +136,10 @@ public class GroupDao {
         // Create the user group
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         em.persist(userGroup);
-        
+
+        // Invalidate the cached principals of the user
+        ThreadLocalContext.get().addAsyncEvent(new UserUpdatedAsyncEvent().setUserId(userGroup.getUserId()));
+
         return userGroup.getId();
     }
     
@@ -150,6 +161,9 @@ public class GroupDao {
         // Delete the user group
         Date dateNow = new Date();
         userGroupDb.setDeleteDate(dateNow);
+
+        // Invalidate the cached principals of the user
+        ThreadLocalContext.get().addAsyncEvent(new UserUpdatedAsyncEvent().setUserId(userId));
     }
     
     /**
@@ -264,6 +278,9 @@ public class GroupDao {
         
         // Create audit log
         AuditLogUtil.create(groupDb, AuditLogType.UPDATE, userId);
+
+        // Invalidate all the cached principals
+        ThreadLocalContext.get().addAsyncEvent(new GroupUpdatedAsyncEvent().setGroupId(groupDb.getId()));
         
         return groupDb;
     }
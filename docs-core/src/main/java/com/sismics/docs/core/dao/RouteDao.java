@@ -12,6 +12,7 @@ import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.query.NativeQuery;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -98,12 +99,17 @@ public class RouteDao {
         Route route = em.find(Route.class, routeId);
         AuditLogUtil.create(route, AuditLogType.DELETE, userId);
 
+        // Synchronize the updated tables, the other second level cache regions are left untouched
         em.createNativeQuery("update T_ROUTE_STEP rs set RTP_DELETEDATE_D = :dateNow where rs.RTP_IDROUTE_C = :routeId and rs.RTP_DELETEDATE_D is null")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("T_ROUTE_STEP")
                 .setParameter("routeId", routeId)
                 .setParameter("dateNow", new Date())
                 .executeUpdate();
 
         em.createNativeQuery("update T_ROUTE r set RTE_DELETEDATE_D = :dateNow where r.RTE_ID_C = :routeId and r.RTE_DELETEDATE_D is null")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("T_ROUTE")
                 .setParameter("routeId", routeId)
                 .setParameter("dateNow", new Date())
                 .executeUpdate();
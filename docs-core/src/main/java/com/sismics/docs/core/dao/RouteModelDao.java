@@ -15,6 +15,7 @@ import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -82,6 +83,7 @@ public class RouteModelDao {
         try {
             Query q = em.createQuery("select r from RouteModel r where r.id = :id and r.deleteDate is null");
             q.setParameter("id", id);
+            q.setHint(HibernateHints.HINT_CACHEABLE, true);
             return (RouteModel) q.getSingleResult();
         } catch (NoResultException e) {
             return null;
@@ -97,6 +99,7 @@ public class RouteModelDao {
     public List<RouteModel> findAll() {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select r from RouteModel r where r.deleteDate is null");
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         return q.getResultList();
     }
 
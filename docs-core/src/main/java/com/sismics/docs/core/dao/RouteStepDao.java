@@ -14,6 +14,7 @@ import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
+import org.hibernate.query.NativeQuery;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -57,6 +58,31 @@ public class RouteStepDao {
         return routeStepDtoList.get(0);
     }
 
+    /**
+     * Returns the targets of the current route steps of a list of documents, in one query.
+     *
+     * @param documentIds Documents IDs
+     * @return Target ID of the current route step by document ID, documents without current step are absent
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getCurrentStepTargetIdMap(Collection<String> documentIds) {
+        Map<String, String> targetIdMap = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return targetIdMap;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select r.RTE_IDDOCUMENT_C, rs.RTP_IDTARGET_C from T_ROUTE_STEP rs " +
+                " join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C " +
+                " where r.RTE_IDDOCUMENT_C in (:documentIds) and rs.RTP_ENDDATE_D is null and rs.RTP_DELETEDATE_D is null " +
+                " order by rs.RTP_ORDER_N asc");
+        q.setParameter("documentIds", documentIds);
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            // The first step not ended is the current one
+            targetIdMap.putIfAbsent((String) o[0], (String) o[1]);
+        }
+        return targetIdMap;
+    }
+
     /**
      * Returns the list of all route steps.
      *
@@ -149,6 +175,7 @@ public class RouteStepDao {
         q.setParameter("comment", comment);
         q.setParameter("validatorUserId", validatorUserId);
         q.setParameter("id", id);
+        q.unwrap(NativeQuery.class).addSynchronizedQuerySpace("T_ROUTE_STEP");
         q.executeUpdate();
     }
 }
@@ -222,5 +222,50 @@ public class TagDao {
 
         return tagDtoList;
     }
-}
 
+    /**
+     * Returns the tags of a list of documents in one query.
+     *
+     * @param documentIds Documents IDs
+     * @param targetIdList List of targets the tags must be readable by
+     * @return Tags sorted by name, grouped by document ID
+     */
+    public Map<String, List<TagDto>> findByDocumentsIds(Collection<String> documentIds, List<String> targetIdList) {
+        Map<String, List<TagDto>> tagDtoMap = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return tagDtoMap;
+        }
+
+        Map<String, Object> parameterMap = new HashMap<>();
+        StringBuilder sb = new StringBuilder("select distinct dt.DOT_IDDOCUMENT_C as c0, t.TAG_ID_C as c1, t.TAG_NAME_C as c2, t.TAG_COLOR_C as c3, t.TAG_IDPARENT_C as c4, u.USE_USERNAME_C as c5 ");
+        sb.append(" from T_TAG t ");
+        sb.append(" join T_USER u on t.TAG_IDUSER_C = u.USE_ID_C ");
+        sb.append(" join T_DOCUMENT_TAG dt on dt.DOT_IDTAG_C = t.TAG_ID_C and dt.DOT_DELETEDATE_D is null and dt.DOT_IDDOCUMENT_C in (:documentIds) ");
+        parameterMap.put("documentIds", documentIds);
+        if (targetIdList != null && !SecurityUtil.skipAclCheck(targetIdList)) {
+            sb.append(" join T_ACL a on a.ACL_TARGETID_C in (:targetIdList) and a.ACL_SOURCEID_C = t.TAG_ID_C and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null ");
+            parameterMap.put("targetIdList", targetIdList);
+        }
+        sb.append(" where t.TAG_DELETEDATE_D is null ");
+        sb.append(" order by t.TAG_NAME_C asc ");
+
+        // Perform the search
+        @SuppressWarnings("unchecked")
+        List<Object[]> l = QueryUtil.getNativeQuery(new QueryParam(sb.toString(), parameterMap)).getResultList();
+
+        // Assemble results
+        for (Object[] o : l) {
+            int i = 0;
+            String documentId = (String) o[i++];
+            TagDto tagDto = new TagDto()
+                    .setId((String) o[i++])
+                    .setName((String) o[i++])
+                    .setColor((String) o[i++])
+                    .setParentId((String) o[i++])
+                    .setCreator((String) o[i]);
+            tagDtoMap.computeIfAbsent(documentId, k -> new ArrayList<>()).add(tagDto);
+        }
+
+        return tagDtoMap;
+    }
+}
@@ -11,6 +11,7 @@ import com.sismics.docs.core.constant.AuditLogType;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.criteria.UserCriteria;
 import com.sismics.docs.core.dao.dto.UserDto;
+import com.sismics.docs.core.event.UserUpdatedAsyncEvent;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
@@ -117,6 +118,9 @@ public class UserDao {
 
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.UPDATE, userId);
+
+        // Invalidate the cached principals of the user
+        ThreadLocalContext.get().addAsyncEvent(new UserUpdatedAsyncEvent().setUserId(userDb.getId()));
         
         return user;
     }
@@ -279,6 +283,9 @@ public class UserDao {
         
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.DELETE, userId);
+
+        // Invalidate the cached principals of the user
+        ThreadLocalContext.get().addAsyncEvent(new UserUpdatedAsyncEvent().setUserId(userDb.getId()));
     }
 
     /**
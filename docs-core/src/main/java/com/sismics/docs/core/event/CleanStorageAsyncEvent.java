@@ -0,0 +1,16 @@
+package com.sismics.docs.core.event;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Clean storage event.
+ *
+ * @author agent
+ */
+public class CleanStorageAsyncEvent {
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .toString();
+    }
+}
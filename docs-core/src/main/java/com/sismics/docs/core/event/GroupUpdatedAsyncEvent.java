@@ -0,0 +1,31 @@
+package com.sismics.docs.core.event;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Event fired when a group, its parent or its role are updated.
+ *
+ * @author agent
+ */
+public class GroupUpdatedAsyncEvent {
+    /**
+     * Updated group ID.
+     */
+    private String groupId;
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public GroupUpdatedAsyncEvent setGroupId(String groupId) {
+        this.groupId = groupId;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("groupId", groupId)
+                .toString();
+    }
+}
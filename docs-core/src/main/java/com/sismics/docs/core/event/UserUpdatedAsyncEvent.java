@@ -0,0 +1,31 @@
+package com.sismics.docs.core.event;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Event fired when a user, its groups membership or its authentication tokens are updated.
+ *
+ * @author agent
+ */
+public class UserUpdatedAsyncEvent {
+    /**
+     * Updated user ID.
+     */
+    private String userId;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public UserUpdatedAsyncEvent setUserId(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("userId", userId)
+                .toString();
+    }
+}
@@ -0,0 +1,321 @@
+package com.sismics.docs.core.listener.async;
+
+import com.google.common.collect.Iterables;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.event.CleanStorageAsyncEvent;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.docs.core.util.storage.CleanStorageProgress;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import com.sismics.docs.core.util.storage.StorageStat;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.query.NativeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Listener on clean storage.
+ * Stored files are checked by batches against the active files, then the orphan
+ * and soft deleted rows are deleted by batches in ID order. Each batch runs in its own transaction.
+ *
+ * @author agent
+ */
+public class CleanStorageAsyncListener {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(CleanStorageAsyncListener.class);
+
+    /**
+     * Stored files written recently are kept, their file may not be committed yet (in milliseconds).
+     */
+    private static final long ORPHAN_GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Database cleaning steps, in the order of the foreign keys.
+     * Each step selects the next IDs to clean after the last cleaned one, then cleans them.
+     */
+    private static final List<CleanStep> CLEAN_STEP_LIST = List.of(
+            new CleanStep("orphan audit logs", "T_AUDIT_LOG",
+                    "select al.LOG_ID_C from T_AUDIT_LOG al "
+                            + " left join T_DOCUMENT d on d.DOC_ID_C = al.LOG_IDENTITY_C and d.DOC_DELETEDATE_D is null "
+                            + " left join T_ACL a on a.ACL_ID_C = al.LOG_IDENTITY_C and a.ACL_DELETEDATE_D is null "
+                            + " left join T_COMMENT c on c.COM_ID_C = al.LOG_IDENTITY_C and c.COM_DELETEDATE_D is null "
+                            + " left join T_FILE f on f.FIL_ID_C = al.LOG_IDENTITY_C and f.FIL_DELETEDATE_D is null "
+                            + " left join T_TAG t on t.TAG_ID_C = al.LOG_IDENTITY_C and t.TAG_DELETEDATE_D is null "
+                            + " left join T_USER u on u.USE_ID_C = al.LOG_IDENTITY_C and u.USE_DELETEDATE_D is null "
+                            + " left join T_GROUP g on g.GRP_ID_C = al.LOG_IDENTITY_C and g.GRP_DELETEDATE_D is null "
+                            + " where d.DOC_ID_C is null and a.ACL_ID_C is null and c.COM_ID_C is null and f.FIL_ID_C is null and t.TAG_ID_C is null and u.USE_ID_C is null and g.GRP_ID_C is null "
+                            + " and al.LOG_ID_C > :lastId order by al.LOG_ID_C",
+                    "delete from T_AUDIT_LOG where LOG_ID_C in (:ids)"),
+            new CleanStep("orphan ACLs", "T_ACL",
+                    "select a.ACL_ID_C from T_ACL a "
+                            + " left join T_SHARE s on s.SHA_ID_C = a.ACL_TARGETID_C "
+                            + " left join T_USER u on u.USE_ID_C = a.ACL_TARGETID_C "
+                            + " left join T_GROUP g on g.GRP_ID_C = a.ACL_TARGETID_C "
+                            + " left join T_DOCUMENT d on d.DOC_ID_C = a.ACL_SOURCEID_C "
+                            + " left join T_TAG t on t.TAG_ID_C = a.ACL_SOURCEID_C "
+                            + " where (s.SHA_ID_C is null and u.USE_ID_C is null and g.GRP_ID_C is null or d.DOC_ID_C is null and t.TAG_ID_C is null) "
+                            + " and a.ACL_DELETEDATE_D is null and a.ACL_ID_C > :lastId order by a.ACL_ID_C",
+                    "update T_ACL set ACL_DELETEDATE_D = :dateNow where ACL_ID_C in (:ids)"),
+            new CleanStep("orphan comments", "T_COMMENT",
+                    "select c.COM_ID_C from T_COMMENT c left join T_DOCUMENT d on d.DOC_ID_C = c.COM_IDDOC_C and d.DOC_DELETEDATE_D is null "
+                            + " where d.DOC_ID_C is null and c.COM_DELETEDATE_D is null and c.COM_ID_C > :lastId order by c.COM_ID_C",
+                    "update T_COMMENT set COM_DELETEDATE_D = :dateNow where COM_ID_C in (:ids)"),
+            new CleanStep("orphan document tag links", "T_DOCUMENT_TAG",
+                    "select dt.DOT_ID_C from T_DOCUMENT_TAG dt "
+                            + " left join T_DOCUMENT d on dt.DOT_IDDOCUMENT_C = d.DOC_ID_C and d.DOC_DELETEDATE_D is null "
+                            + " left join T_TAG t on t.TAG_ID_C = dt.DOT_IDTAG_C and t.TAG_DELETEDATE_D is null "
+                            + " where (d.DOC_ID_C is null or t.TAG_ID_C is null) and dt.DOT_DELETEDATE_D is null and dt.DOT_ID_C > :lastId order by dt.DOT_ID_C",
+                    "update T_DOCUMENT_TAG set DOT_DELETEDATE_D = :dateNow where DOT_ID_C in (:ids)"),
+            new CleanStep("orphan shares", "T_SHARE",
+                    "select s.SHA_ID_C from T_SHARE s left join T_ACL a on a.ACL_TARGETID_C = s.SHA_ID_C and a.ACL_DELETEDATE_D is null "
+                            + " where a.ACL_ID_C is null and s.SHA_DELETEDATE_D is null and s.SHA_ID_C > :lastId order by s.SHA_ID_C",
+                    "update T_SHARE set SHA_DELETEDATE_D = :dateNow where SHA_ID_C in (:ids)"),
+            new CleanStep("orphan tags", "T_TAG",
+                    "select t.TAG_ID_C from T_TAG t left join T_USER u on u.USE_ID_C = t.TAG_IDUSER_C and u.USE_DELETEDATE_D is null "
+                            + " where u.USE_ID_C is null and t.TAG_DELETEDATE_D is null and t.TAG_ID_C > :lastId order by t.TAG_ID_C",
+                    "update T_TAG set TAG_DELETEDATE_D = :dateNow where TAG_ID_C in (:ids)"),
+            new CleanStep("orphan documents", "T_DOCUMENT",
+                    "select d.DOC_ID_C from T_DOCUMENT d left join T_USER u on u.USE_ID_C = d.DOC_IDUSER_C and u.USE_DELETEDATE_D is null "
+                            + " where u.USE_ID_C is null and d.DOC_DELETEDATE_D is null and d.DOC_ID_C > :lastId order by d.DOC_ID_C",
+                    "update T_DOCUMENT set DOC_DELETEDATE_D = :dateNow where DOC_ID_C in (:ids)"),
+            new CleanStep("orphan files", "T_FILE",
+                    "select f.FIL_ID_C from T_FILE f left join T_USER u on u.USE_ID_C = f.FIL_IDUSER_C and u.USE_DELETEDATE_D is null "
+                            + " where u.USE_ID_C is null and f.FIL_DELETEDATE_D is null and f.FIL_ID_C > :lastId order by f.FIL_ID_C",
+                    "update T_FILE set FIL_DELETEDATE_D = :dateNow where FIL_ID_C in (:ids)"),
+            softDeletedStep("document tag links", "T_DOCUMENT_TAG", "DOT"),
+            softDeletedStep("ACLs", "T_ACL", "ACL"),
+            softDeletedStep("shares", "T_SHARE", "SHA"),
+            softDeletedStep("tags", "T_TAG", "TAG"),
+            softDeletedStep("comments", "T_COMMENT", "COM"),
+            new CleanStep("contents of soft deleted files", "T_FILE_CONTENT",
+                    "select fc.FIC_IDFILE_C from T_FILE_CONTENT fc join T_FILE f on f.FIL_ID_C = fc.FIC_IDFILE_C "
+                            + " where f.FIL_DELETEDATE_D is not null and fc.FIC_IDFILE_C > :lastId order by fc.FIC_IDFILE_C",
+                    "delete from T_FILE_CONTENT where FIC_IDFILE_C in (:ids)"),
+            softDeletedStep("files", "T_FILE", "FIL"),
+            softDeletedStep("documents", "T_DOCUMENT", "DOC"),
+            softDeletedStep("users", "T_USER", "USE"),
+            softDeletedStep("groups", "T_GROUP", "GRP"));
+
+    /**
+     * Clean the storage.
+     *
+     * @param event Clean storage event
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void on(final CleanStorageAsyncEvent event) {
+        if (log.isInfoEnabled()) {
+            log.info("Clean storage event: " + event.toString());
+        }
+
+        CleanStorageProgress progress = AppContext.getInstance().startCleanStorage();
+        if (progress == null) {
+            log.info("A storage cleaning is already running");
+            return;
+        }
+
+        int batchSize = (int) EnvironmentUtil.getLongEnv(Constants.CLEAN_STORAGE_BATCH_SIZE_ENV, Constants.DEFAULT_CLEAN_STORAGE_BATCH_SIZE);
+        long batchDelay = EnvironmentUtil.getLongEnv(Constants.CLEAN_STORAGE_BATCH_DELAY_ENV, 0);
+        try {
+            cleanStoredFiles(progress, batchSize, batchDelay);
+            progress.setPhase(CleanStorageProgress.Phase.DATABASE);
+            for (CleanStep cleanStep : CLEAN_STEP_LIST) {
+                long count = clean(cleanStep, progress, batchSize, batchDelay);
+                log.info("Deleted {} {}", count, cleanStep.description);
+            }
+        } catch (Exception e) {
+            log.error("Error cleaning the storage", e);
+        } finally {
+            progress.setRunning(false);
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info("Cleaning storage done, {} stored files checked, {} orphan stored files and {} rows deleted",
+                    progress.getCheckedFileCount().get(), progress.getDeletedFileCount().get(), progress.getDeletedRowCount().get());
+        }
+    }
+
+    /**
+     * Delete the stored files without an active file.
+     *
+     * @param progress Progress
+     * @param batchSize Number of stored files checked in a transaction
+     * @param batchDelay Pause between two batches (in milliseconds)
+     * @throws Exception e
+     */
+    private void cleanStoredFiles(CleanStorageProgress progress, int batchSize, long batchDelay) throws Exception {
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        Date graceDate = new Date(System.currentTimeMillis() - ORPHAN_GRACE_PERIOD);
+        try (Stream<String> storedFileStream = storageBackend.list()) {
+            for (List<String> storedFileList : Iterables.partition((Iterable<String>) storedFileStream::iterator, batchSize)) {
+                // Stored files are named after their file ID, followed by the variant
+                Set<String> fileIdSet = storedFileList.stream()
+                        .map(storedFile -> storedFile.split("_")[0])
+                        .collect(Collectors.toSet());
+                Set<String> activeFileIdSet = new HashSet<>(inTransaction(() -> new FileDao().getActiveIds(fileIdSet)));
+
+                for (String storedFile : storedFileList) {
+                    progress.getCheckedFileCount().incrementAndGet();
+                    if (activeFileIdSet.contains(storedFile.split("_")[0])) {
+                        continue;
+                    }
+                    StorageStat stat = storageBackend.stat(storedFile);
+                    if (stat != null && stat.getLastModified().before(graceDate)) {
+                        log.info("Deleting orphan stored file: {}", storedFile);
+                        storageBackend.delete(storedFile);
+                        progress.getDeletedFileCount().incrementAndGet();
+                    }
+                }
+                throttle(batchDelay);
+            }
+        }
+    }
+
+    /**
+     * Run a database cleaning step, batch by batch.
+     *
+     * @param cleanStep Cleaning step
+     * @param progress Progress
+     * @param batchSize Number of rows cleaned in a transaction
+     * @param batchDelay Pause between two batches (in milliseconds)
+     * @return Number of rows cleaned
+     * @throws Exception e
+     */
+    private long clean(CleanStep cleanStep, CleanStorageProgress progress, int batchSize, long batchDelay) throws Exception {
+        long count = 0;
+        String lastId = "";
+        while (true) {
+            final String afterId = lastId;
+            List<String> idList = inTransaction(() -> {
+                EntityManager em = ThreadLocalContext.get().getEntityManager();
+                Query q = em.createNativeQuery(cleanStep.selectSql);
+                q.setParameter("lastId", afterId);
+                q.setMaxResults(batchSize);
+                @SuppressWarnings("unchecked")
+                List<String> ids = q.getResultList();
+                if (ids.isEmpty()) {
+                    return ids;
+                }
+
+                q = em.createNativeQuery(cleanStep.cleanSql);
+                q.unwrap(NativeQuery.class).addSynchronizedQuerySpace(cleanStep.table);
+                q.setParameter("ids", ids);
+                if (cleanStep.cleanSql.contains(":dateNow")) {
+                    q.setParameter("dateNow", new Date());
+                }
+                q.executeUpdate();
+                return ids;
+            });
+            if (idList.isEmpty()) {
+                return count;
+            }
+
+            count += idList.size();
+            progress.getDeletedRowCount().addAndGet(idList.size());
+            lastId = idList.get(idList.size() - 1);
+            throttle(batchDelay);
+        }
+    }
+
+    /**
+     * Run a batch in its own transaction.
+     *
+     * @param supplier Batch
+     * @param <T> Result type
+     * @return Result of the batch
+     */
+    private static <T> T inTransaction(Supplier<T> supplier) {
+        AtomicReference<T> result = new AtomicReference<>();
+        TransactionUtil.handle(() -> result.set(supplier.get()));
+        if (result.get() == null) {
+            // The transaction has been rolled back
+            throw new IllegalStateException("Error in a storage cleaning batch");
+        }
+        return result.get();
+    }
+
+    /**
+     * Pause between two batches, to leave the database and the storage to the users.
+     *
+     * @param batchDelay Pause (in milliseconds)
+     * @throws InterruptedException e
+     */
+    private static void throttle(long batchDelay) throws InterruptedException {
+        if (batchDelay > 0) {
+            Thread.sleep(batchDelay);
+        }
+    }
+
+    /**
+     * Returns the step hard deleting the soft deleted rows of a table.
+     *
+     * @param description Description of the rows
+     * @param table Table name
+     * @param prefix Prefix of the columns
+     * @return Cleaning step
+     */
+    private static CleanStep softDeletedStep(String description, String table, String prefix) {
+        return new CleanStep("soft deleted " + description, table,
+                "select " + prefix + "_ID_C from " + table + " where " + prefix + "_DELETEDATE_D is not null"
+                        + " and " + prefix + "_ID_C > :lastId order by " + prefix + "_ID_C",
+                "delete from " + table + " where " + prefix + "_ID_C in (:ids)");
+    }
+
+    /**
+     * Database cleaning step.
+     */
+    private static class CleanStep {
+        /**
+         * Description of the cleaned rows.
+         */
+        private final String description;
+
+        /**
+         * Cleaned table.
+         */
+        private final String table;
+
+        /**
+         * Query selecting the IDs to clean after the :lastId parameter, in ID order.
+         */
+        private final String selectSql;
+
+        /**
+         * Query cleaning the :ids parameter.
+         */
+        private final String cleanSql;
+
+        /**
+         * Create a cleaning step.
+         *
+         * @param description Description of the cleaned rows
+         * @param table Cleaned table
+         * @param selectSql Query selecting the IDs to clean
+         * @param cleanSql Query cleaning the IDs
+         */
+        private CleanStep(String description, String table, String selectSql, String cleanSql) {
+            this.description = description;
+            this.table = table;
+            this.selectSql = selectSql;
+            this.cleanSql = cleanSql;
+        }
+    }
+}
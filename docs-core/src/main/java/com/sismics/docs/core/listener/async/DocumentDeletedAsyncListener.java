@@ -4,6 +4,7 @@ import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.sismics.docs.core.event.DocumentDeletedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.PdfUtil;
 import com.sismics.docs.core.util.TransactionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,5 +36,8 @@ public class DocumentDeletedAsyncListener {
             // Update index
             AppContext.getInstance().getIndexingHandler().deleteDocument(event.getDocumentId());
         });
+
+        // Remove the cached PDF exports
+        PdfUtil.invalidateCache(event.getDocumentId());
     }
 }
@@ -10,23 +10,23 @@ import com.sismics.docs.core.event.FileUpdatedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
-import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.ThumbnailUtil;
 import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.format.FormatHandler;
 import com.sismics.docs.core.util.format.FormatHandlerUtil;
+import com.sismics.docs.core.util.storage.StorageBackend;
 import com.sismics.util.ImageUtil;
 import com.sismics.util.Scalr;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
+import javax.crypto.CipherInputStream;
 import java.awt.image.BufferedImage;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -113,8 +113,7 @@ public class FileProcessingAsyncListener {
                 return;
             }
 
-            freshFile.setContent(content);
-            fileDao.update(freshFile);
+            fileDao.updateContent(freshFile.getId(), content);
 
             // Update index with the updated file
             if (isFileCreated) {
@@ -129,6 +128,7 @@ public class FileProcessingAsyncListener {
 
     /**
      * Extract text content from a file.
+     * The file is parsed once by its format handler, for the thumbnails and the text content.
      * This is executed outside of a transaction.
      *
      * @param event File event
@@ -138,38 +138,64 @@ public class FileProcessingAsyncListener {
      */
     private String extractContent(FileEvent event, User user, File file) {
         // Find a format handler
-        FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType());
-        if (formatHandler == null) {
-            log.info("Format unhandled: " + file.getMimeType());
-            return null;
+        String content = null;
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType())) {
+            if (formatHandler == null) {
+                log.info("Format unhandled: " + file.getMimeType());
+                return null;
+            }
+
+            generateThumbnails(formatHandler, event, user, file);
+            content = extractText(formatHandler, event, file);
+        } catch (IOException e) {
+            log.error("Error releasing the parsed file: " + file, e);
         }
+        return content;
+    }
 
-        // Generate file variations
-        try {
-            Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-            BufferedImage image = formatHandler.generateThumbnail(event.getUnencryptedFile());
+    /**
+     * Generate the thumbnails of a file.
+     *
+     * @param formatHandler Format handler of the file
+     * @param event File event
+     * @param user User whom created the file
+     * @param file Fresh file
+     */
+    private void generateThumbnails(FormatHandler formatHandler, FileEvent event, User user, File file) {
+        // Generate file variations, the memory of the decoded image is held until both are written
+        try (ThumbnailUtil.DecodedImage image = formatHandler.generateThumbnail(event.getUnencryptedFile(), ThumbnailUtil.WEB_SIZE)) {
+            StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
             if (image != null) {
-                // Generate thumbnails from image
-                BufferedImage web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 1280);
-                BufferedImage thumbnail = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 256);
-                image.flush();
+                // Generate thumbnails from image, the small one from the web one
+                BufferedImage web = Scalr.resize(image.getImage(), Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, ThumbnailUtil.WEB_SIZE);
+                BufferedImage thumbnail = Scalr.resize(web, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, ThumbnailUtil.THUMBNAIL_SIZE);
 
                 // Write "web" encrypted image
-                Path outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_web");
-                try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
-                    ImageUtil.writeJpeg(web, outputStream);
-                }
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                ImageUtil.writeJpeg(web, outputStream);
+                storageBackend.put(file.getId() + "_web", new CipherInputStream(
+                        new ByteArrayInputStream(outputStream.toByteArray()), EncryptionUtil.getEncryptionCipher(user.getPrivateKey())));
 
                 // Write "thumb" encrypted image
-                outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_thumb");
-                try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
-                    ImageUtil.writeJpeg(thumbnail, outputStream);
-                }
+                outputStream = new ByteArrayOutputStream();
+                ImageUtil.writeJpeg(thumbnail, outputStream);
+                storageBackend.put(file.getId() + "_thumb", new CipherInputStream(
+                        new ByteArrayInputStream(outputStream.toByteArray()), EncryptionUtil.getEncryptionCipher(user.getPrivateKey())));
             }
         } catch (Throwable e) {
             log.error("Unable to generate thumbnails for: " + file, e);
         }
+    }
 
+    /**
+     * Extract the text content of a file.
+     *
+     * @param formatHandler Format handler of the file
+     * @param event File event
+     * @param file Fresh file
+     * @return Text content
+     */
+    private String extractText(FormatHandler formatHandler, FileEvent event, File file) {
         // Extract text content from the file
         long startTime = System.currentTimeMillis();
         String content = null;
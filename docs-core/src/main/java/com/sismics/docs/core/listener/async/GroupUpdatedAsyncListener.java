@@ -0,0 +1,35 @@
+package com.sismics.docs.core.listener.async;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.sismics.docs.core.event.GroupUpdatedAsyncEvent;
+import com.sismics.docs.core.model.context.AppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener on group updated.
+ *
+ * @author agent
+ */
+public class GroupUpdatedAsyncListener {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(GroupUpdatedAsyncListener.class);
+
+    /**
+     * Group updated.
+     *
+     * @param event Group updated event
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void on(final GroupUpdatedAsyncEvent event) {
+        if (log.isInfoEnabled()) {
+            log.info("Group updated event: " + event.toString());
+        }
+
+        AppContext.getInstance().getPrincipalCache().invalidateAll();
+    }
+}
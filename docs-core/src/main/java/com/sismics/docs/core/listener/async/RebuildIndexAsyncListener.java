@@ -2,6 +2,9 @@ package com.sismics.docs.core.listener.async;
 
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.DocumentDao;
 import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
@@ -9,14 +12,28 @@ import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.docs.core.util.indexing.IndexingHandler;
+import com.sismics.docs.core.util.indexing.RebuildProgress;
+import com.sismics.util.EnvironmentUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /**
  * Listener on rebuild index.
- * 
+ * The index is rebuilt in a shadow index, page by page in ID order, by a pool of workers.
+ *
  * @author bgamard
  */
 public class RebuildIndexAsyncListener {
@@ -25,9 +42,14 @@ public class RebuildIndexAsyncListener {
      */
     private static final Logger log = LoggerFactory.getLogger(RebuildIndexAsyncListener.class);
 
+    /**
+     * Number of documents or files in a page.
+     */
+    private static final int PAGE_SIZE = 100;
+
     /**
      * Rebuild Lucene index.
-     * 
+     *
      * @param event Index rebuild event
      */
     @Subscribe
@@ -37,35 +59,203 @@ public class RebuildIndexAsyncListener {
             log.info("Rebuild index event: " + event.toString());
         }
 
-        // Clear the index
-        AppContext.getInstance().getIndexingHandler().clearIndex();
+        rebuild(AppContext.getInstance().getIndexingHandler(), PAGE_SIZE);
+    }
 
-        // Index all documents
-        TransactionUtil.handle(() -> {
-            int offset = 0;
-            DocumentDao documentDao = new DocumentDao();
-            List<Document> documentList;
-            do {
-                documentList = documentDao.findAll(offset, 100);
-                AppContext.getInstance().getIndexingHandler().createDocuments(documentList);
-                offset += 100;
-            } while (documentList.size() > 0);
-        });
+    /**
+     * Rebuild the index, or resume the rebuild from its last checkpoint.
+     * The rebuild stops at the first page not indexed, without moving the checkpoint over it.
+     *
+     * @param indexingHandler Indexing handler
+     * @param pageSize Number of documents or files in a page
+     */
+    void rebuild(IndexingHandler indexingHandler, int pageSize) {
+        RebuildProgress progress;
+        try {
+            progress = indexingHandler.startRebuild();
+        } catch (Exception e) {
+            log.error("Error starting the index rebuild", e);
+            return;
+        }
+        if (progress == null) {
+            log.info("An index rebuild is already running");
+            return;
+        }
 
-        // Index all files
-        TransactionUtil.handle(() -> {
-            int offset = 0;
-            FileDao fileDao = new FileDao();
-            List<File> fileList;
-            do {
-                fileList = fileDao.findAll(offset, 100);
-                AppContext.getInstance().getIndexingHandler().createFiles(fileList);
-                offset += 100;
-            } while (fileList.size() > 0);
-        });
+        int threadCount = (int) EnvironmentUtil.getLongEnv(Constants.INDEX_REBUILD_THREADS_ENV,
+                Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+        ExecutorService executor = newWorkerExecutor(threadCount);
+        int maxPendingPageCount = 2 * threadCount;
+        try {
+            TransactionUtil.handle(() -> {
+                progress.setDocumentTotal(new DocumentDao().getDocumentCount());
+                progress.setFileTotal(new FileDao().getFileCount());
+            });
+
+            // Index all documents
+            if (progress.getPhase() == RebuildProgress.Phase.DOCUMENT) {
+                rebuildPhase(executor, maxPendingPageCount, indexingHandler, RebuildProgress.Phase.DOCUMENT, progress.getLastId(),
+                        lastId -> new DocumentDao().findAll(lastId, pageSize), Document::getId, indexingHandler::rebuildDocuments);
+                indexingHandler.checkpointRebuild(RebuildProgress.Phase.FILE, "");
+            }
+
+            // Index all files
+            rebuildPhase(executor, maxPendingPageCount, indexingHandler, RebuildProgress.Phase.FILE, progress.getLastId(),
+                    lastId -> new FileDao().findAll(lastId, pageSize), File::getId, indexingHandler::rebuildFiles);
+
+            indexingHandler.completeRebuild();
+        } catch (Exception e) {
+            log.error("Error rebuilding the index, it will resume from the last checkpoint", e);
+
+            // The pages still being indexed are finished before the checkpoint is committed
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            indexingHandler.abortRebuild();
+            return;
+        } finally {
+            executor.shutdown();
+        }
 
         if (log.isInfoEnabled()) {
             log.info("Rebuilding index done");
         }
     }
+
+    /**
+     * Create the executor of the workers building the index.
+     *
+     * @param threadCount Number of workers
+     * @return Executor
+     */
+    private ExecutorService newWorkerExecutor(int threadCount) {
+        if (EnvironmentUtil.isUnitTest()) {
+            return MoreExecutors.newDirectExecutorService();
+        }
+        return Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder()
+                .setNameFormat("index-rebuild-%d")
+                .build());
+    }
+
+    /**
+     * Index all documents or files, starting after an ID.
+     * Pages are read sequentially and indexed in parallel, the checkpoint moves forward
+     * when all the pages before it are indexed. A page not indexed stops the phase with an exception.
+     *
+     * @param executor Workers executor
+     * @param maxPendingPageCount Maximum number of pages loaded and not indexed yet
+     * @param indexingHandler Indexing handler
+     * @param phase Rebuild phase
+     * @param startId Last ID already indexed, empty to start from the beginning
+     * @param pageLoader Loads the page after an ID
+     * @param idGetter Returns the ID of an entity
+     * @param indexer Indexes a page
+     * @param <T> Entity type
+     * @throws Exception e
+     */
+    private <T> void rebuildPhase(ExecutorService executor, int maxPendingPageCount, IndexingHandler indexingHandler,
+                                  RebuildProgress.Phase phase, String startId, Function<String, List<T>> pageLoader,
+                                  Function<T, String> idGetter, PageIndexer<T> indexer) throws Exception {
+        Deque<PageTask> pendingPageDeque = new ArrayDeque<>();
+        String lastId = startId;
+        while (true) {
+            List<T> page = new ArrayList<>();
+            final String afterId = lastId;
+            TransactionUtil.handle(() -> page.addAll(pageLoader.apply(afterId)));
+            if (page.isEmpty()) {
+                break;
+            }
+
+            lastId = idGetter.apply(page.get(page.size() - 1));
+            final String pageLastId = lastId;
+            Future<?> future = executor.submit(() -> {
+                indexPage(page, pageLastId, indexer);
+                return null;
+            });
+            pendingPageDeque.add(new PageTask(future, lastId));
+
+            // Limit the pages in memory, and move the checkpoint over the indexed pages
+            while (!pendingPageDeque.isEmpty()
+                    && (pendingPageDeque.size() >= maxPendingPageCount || pendingPageDeque.peek().future.isDone())) {
+                PageTask pageTask = pendingPageDeque.poll();
+                pageTask.future.get();
+                indexingHandler.checkpointRebuild(phase, pageTask.lastId);
+            }
+        }
+
+        for (PageTask pageTask : pendingPageDeque) {
+            pageTask.future.get();
+            indexingHandler.checkpointRebuild(phase, pageTask.lastId);
+        }
+    }
+
+    /**
+     * Index a page in its own transaction.
+     *
+     * @param page Documents or files
+     * @param lastId Last ID of the page
+     * @param indexer Indexes the page
+     * @param <T> Entity type
+     * @throws IOException If the page is not indexed
+     */
+    private <T> void indexPage(List<T> page, String lastId, PageIndexer<T> indexer) throws IOException {
+        // TransactionUtil logs and swallows the errors, the page is indexed only if the indexer ran to its end
+        AtomicBoolean indexed = new AtomicBoolean();
+        TransactionUtil.handle(() -> {
+            try {
+                indexer.index(page);
+                indexed.set(true);
+            } catch (Exception e) {
+                log.error("Error indexing the page ending at " + lastId, e);
+            }
+        });
+        if (!indexed.get()) {
+            throw new IOException("The page ending at " + lastId + " is not indexed");
+        }
+    }
+
+    /**
+     * Indexes a page of documents or files.
+     *
+     * @param <T> Entity type
+     */
+    @FunctionalInterface
+    private interface PageIndexer<T> {
+        /**
+         * Index a page.
+         *
+         * @param page Documents or files
+         * @throws Exception e
+         */
+        void index(List<T> page) throws Exception;
+    }
+
+    /**
+     * Page being indexed by a worker.
+     */
+    private static class PageTask {
+        /**
+         * Indexing task.
+         */
+        private final Future<?> future;
+
+        /**
+         * Last ID of the page.
+         */
+        private final String lastId;
+
+        /**
+         * Create a page task.
+         *
+         * @param future Indexing task
+         * @param lastId Last ID of the page
+         */
+        private PageTask(Future<?> future, String lastId) {
+            this.future = future;
+            this.lastId = lastId;
+        }
+    }
 }
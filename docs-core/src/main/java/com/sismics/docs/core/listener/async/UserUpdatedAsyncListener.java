@@ -0,0 +1,35 @@
+package com.sismics.docs.core.listener.async;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.sismics.docs.core.event.UserUpdatedAsyncEvent;
+import com.sismics.docs.core.model.context.AppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener on user updated.
+ *
+ * @author agent
+ */
+public class UserUpdatedAsyncListener {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(UserUpdatedAsyncListener.class);
+
+    /**
+     * User updated.
+     *
+     * @param event User updated event
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void on(final UserUpdatedAsyncEvent event) {
+        if (log.isInfoEnabled()) {
+            log.info("User updated event: " + event.toString());
+        }
+
+        AppContext.getInstance().getPrincipalCache().invalidateUser(event.getUserId());
+    }
+}
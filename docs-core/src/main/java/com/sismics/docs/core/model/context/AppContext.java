@@ -8,11 +8,19 @@ import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.listener.async.*;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.service.AuditLogService;
 import com.sismics.docs.core.service.FileService;
 import com.sismics.docs.core.service.FileSizeService;
 import com.sismics.docs.core.service.InboxService;
+import com.sismics.docs.core.service.StorageMigrationService;
+import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.PdfUtil;
+import com.sismics.docs.core.util.ZipUtil;
+import com.sismics.docs.core.util.authentication.PrincipalCache;
 import com.sismics.docs.core.util.indexing.IndexingHandler;
+import com.sismics.docs.core.util.storage.CleanStorageProgress;
+import com.sismics.docs.core.util.storage.FilesystemStorageBackend;
+import com.sismics.docs.core.util.storage.StorageBackend;
 import com.sismics.util.ClasspathScanner;
 import com.sismics.util.EnvironmentUtil;
 import org.slf4j.Logger;
@@ -21,8 +29,6 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -42,9 +48,9 @@ public class AppContext {
     private static AppContext instance;
 
     /**
-     * Generic asynchronous event bus.
+     * Generic asynchronous event dispatcher.
      */
-    private EventBus asyncEventBus;
+    private EventDispatcher asyncEventDispatcher;
 
     /**
      * Asynchronous bus for email sending.
@@ -56,6 +62,16 @@ public class AppContext {
      */
     private IndexingHandler indexingHandler;
 
+    /**
+     * Storage backend.
+     */
+    private StorageBackend storageBackend;
+
+    /**
+     * Audit log writing service.
+     */
+    private AuditLogService auditLogService;
+
     /**
      * Inbox scanning service.
      */
@@ -71,10 +87,25 @@ public class AppContext {
      */
     private FileSizeService fileSizeService;
 
+    /**
+     * Storage migration service.
+     */
+    private StorageMigrationService storageMigrationService;
+
     /**
      * Asynchronous executors.
      */
-    private List<ThreadPoolExecutor> asyncExecutorList;
+    private List<AsyncEventExecutor> asyncExecutorList;
+
+    /**
+     * Cache of the authenticated principals.
+     */
+    private final PrincipalCache principalCache = new PrincipalCache();
+
+    /**
+     * Progress of the last storage cleaning.
+     */
+    private CleanStorageProgress cleanStorageProgress;
 
     /**
      * Start the application context.
@@ -98,6 +129,31 @@ public class AppContext {
             log.error("Error starting the indexing handler", e);
         }
 
+        // Start storage backend
+        try {
+            List<Class<StorageBackend>> storageBackendList = new ClasspathScanner<StorageBackend>()
+                    .findClasses(StorageBackend.class, "com.sismics.docs.core.util.storage");
+            for (Class<StorageBackend> backendClass : storageBackendList) {
+                StorageBackend backend = backendClass.getDeclaredConstructor().newInstance();
+                if (backend.accept()) {
+                    storageBackend = backend;
+                    break;
+                }
+            }
+            if (storageBackend == null) {
+                log.error("Unknown storage backend " + System.getenv(Constants.STORAGE_BACKEND_ENV) + ", using the filesystem");
+                storageBackend = new FilesystemStorageBackend();
+            }
+            storageBackend.startUp();
+        } catch (Exception e) {
+            log.error("Error starting the storage backend", e);
+        }
+
+        // Start audit log service
+        auditLogService = new AuditLogService(DirectoryUtil.getBaseDataDirectory().resolve("audit_log.journal"));
+        auditLogService.startAsync();
+        auditLogService.awaitRunning();
+
         // Start file service
         fileService = new FileService();
         fileService.startAsync();
@@ -113,6 +169,13 @@ public class AppContext {
         fileSizeService.startAsync();
         fileSizeService.awaitRunning();
 
+        // Start storage migration service, only the local storage backends use the storage directory.
+        // The service stops itself as soon as nothing is left to migrate, it may be terminated before running.
+        if (storageBackend instanceof FilesystemStorageBackend) {
+            storageMigrationService = new StorageMigrationService();
+            storageMigrationService.startAsync();
+        }
+
         // Register fonts
         PdfUtil.registerFonts();
 
@@ -144,19 +207,36 @@ public class AppContext {
      */
     private void resetEventBus() {
         asyncExecutorList = new ArrayList<>();
-
-        asyncEventBus = newAsyncEventBus();
-        asyncEventBus.register(new FileProcessingAsyncListener());
-        asyncEventBus.register(new FileDeletedAsyncListener());
-        asyncEventBus.register(new DocumentCreatedAsyncListener());
-        asyncEventBus.register(new DocumentUpdatedAsyncListener());
-        asyncEventBus.register(new DocumentDeletedAsyncListener());
-        asyncEventBus.register(new RebuildIndexAsyncListener());
-        asyncEventBus.register(new AclCreatedAsyncListener());
-        asyncEventBus.register(new AclDeletedAsyncListener());
-        asyncEventBus.register(new WebhookAsyncListener());
-
-        mailEventBus = newAsyncEventBus();
+        int processorCount = Runtime.getRuntime().availableProcessors();
+
+        // CPU bound file processing (content extraction, OCR, thumbnails)
+        EventBus processingEventBus = newAsyncEventBus("PROCESSING", Math.max(processorCount / 2, 2),
+                AsyncEventExecutor.SaturationPolicy.BLOCK);
+        processingEventBus.register(new FileProcessingAsyncListener());
+
+        // Index and ACL updates, which must not wait behind file processing, cheap enough to run in the producer when saturated
+        EventBus indexingEventBus = newAsyncEventBus("INDEXING", 2, AsyncEventExecutor.SaturationPolicy.CALLER_RUNS);
+        indexingEventBus.register(new DocumentCreatedAsyncListener());
+        indexingEventBus.register(new DocumentUpdatedAsyncListener());
+        indexingEventBus.register(new DocumentDeletedAsyncListener());
+        indexingEventBus.register(new AclCreatedAsyncListener());
+        indexingEventBus.register(new AclDeletedAsyncListener());
+
+        // IO bound webhooks, storage deletions and cleaning, and the long index rebuilds
+        EventBus ioEventBus = newAsyncEventBus("IO", 4, AsyncEventExecutor.SaturationPolicy.BLOCK);
+        ioEventBus.register(new FileDeletedAsyncListener());
+        ioEventBus.register(new RebuildIndexAsyncListener());
+        ioEventBus.register(new WebhookAsyncListener());
+        ioEventBus.register(new CleanStorageAsyncListener());
+
+        // Principal cache invalidation, run after commit by the committing thread
+        EventBus securityEventBus = new EventBus("SECURITY");
+        securityEventBus.register(new UserUpdatedAsyncListener());
+        securityEventBus.register(new GroupUpdatedAsyncListener());
+
+        asyncEventDispatcher = new EventDispatcher(processingEventBus, indexingEventBus, ioEventBus, securityEventBus);
+
+        mailEventBus = newAsyncEventBus("MAIL", 2, AsyncEventExecutor.SaturationPolicy.BLOCK);
         mailEventBus.register(new PasswordLostAsyncListener());
         mailEventBus.register(new RouteStepValidateAsyncListener());
     }
@@ -177,18 +257,21 @@ public class AppContext {
     /**
      * Creates a new asynchronous event bus.
      *
+     * @param name Pool name, used in the configuration environment variables
+     * @param defaultThreadCount Number of threads if not configured
+     * @param saturationPolicy Policy applied when the queue is full
      * @return Async event bus
      */
-    private EventBus newAsyncEventBus() {
+    private EventBus newAsyncEventBus(String name, int defaultThreadCount, AsyncEventExecutor.SaturationPolicy saturationPolicy) {
         if (EnvironmentUtil.isUnitTest()) {
-            return new EventBus();
+            return new EventBus(name);
         } else {
-            int threadCount = Math.max(Runtime.getRuntime().availableProcessors() / 2, 2);
-            ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
-                    1L, TimeUnit.MINUTES,
-                    new LinkedBlockingQueue<>());
+            int threadCount = (int) EnvironmentUtil.getLongEnv(String.format(Constants.EVENT_POOL_THREADS_ENV, name), defaultThreadCount);
+            int queueSize = (int) EnvironmentUtil.getLongEnv(String.format(Constants.EVENT_POOL_QUEUE_SIZE_ENV, name),
+                    Constants.DEFAULT_EVENT_POOL_QUEUE_SIZE);
+            AsyncEventExecutor executor = new AsyncEventExecutor(name, threadCount, queueSize, saturationPolicy);
             asyncExecutorList.add(executor);
-            return new AsyncEventBus(executor);
+            return new AsyncEventBus(name, executor);
         }
     }
 
@@ -199,14 +282,23 @@ public class AppContext {
      */
     public int getQueuedTaskCount() {
         int queueSize = 0;
-        for (ThreadPoolExecutor executor : asyncExecutorList) {
-            queueSize += executor.getTaskCount() - executor.getCompletedTaskCount();
+        for (AsyncEventExecutor executor : asyncExecutorList) {
+            queueSize += executor.getWaitingTaskCount();
         }
         return queueSize;
     }
 
-    public EventBus getAsyncEventBus() {
-        return asyncEventBus;
+    /**
+     * Returns the asynchronous executors, one per event pool.
+     *
+     * @return Asynchronous executors
+     */
+    public List<AsyncEventExecutor> getAsyncExecutorList() {
+        return asyncExecutorList;
+    }
+
+    public EventDispatcher getAsyncEventDispatcher() {
+        return asyncEventDispatcher;
     }
 
     public EventBus getMailEventBus() {
@@ -217,6 +309,14 @@ public class AppContext {
         return indexingHandler;
     }
 
+    public StorageBackend getStorageBackend() {
+        return storageBackend;
+    }
+
+    public AuditLogService getAuditLogService() {
+        return auditLogService;
+    }
+
     public InboxService getInboxService() {
         return inboxService;
     }
@@ -225,6 +325,32 @@ public class AppContext {
         return fileService;
     }
 
+    public PrincipalCache getPrincipalCache() {
+        return principalCache;
+    }
+
+    /**
+     * Start a storage cleaning.
+     *
+     * @return Progress of the new storage cleaning, null if one is already running
+     */
+    public synchronized CleanStorageProgress startCleanStorage() {
+        if (cleanStorageProgress != null && cleanStorageProgress.isRunning()) {
+            return null;
+        }
+        cleanStorageProgress = new CleanStorageProgress();
+        return cleanStorageProgress;
+    }
+
+    /**
+     * Returns the progress of the last storage cleaning.
+     *
+     * @return Progress, null if the storage has not been cleaned since the startup
+     */
+    public synchronized CleanStorageProgress getCleanStorageProgress() {
+        return cleanStorageProgress;
+    }
+
     public void shutDown() {
         for (ExecutorService executor : asyncExecutorList) {
             // Shutdown executor, don't accept any more tasks (can cause error with nested events)
@@ -236,6 +362,12 @@ public class AppContext {
             }
         }
 
+        // Stop the PDF export workers
+        PdfUtil.shutDown();
+
+        // Stop the ZIP export workers
+        ZipUtil.shutDown();
+
         if (indexingHandler != null) {
             indexingHandler.shutDown();
         }
@@ -245,6 +377,10 @@ public class AppContext {
             inboxService.awaitTerminated();
         }
 
+        if (storageBackend != null) {
+            storageBackend.shutDown();
+        }
+
         if (fileService != null) {
             fileService.stopAsync();
         }
@@ -253,6 +389,16 @@ public class AppContext {
             fileSizeService.stopAsync();
         }
 
+        if (storageMigrationService != null) {
+            storageMigrationService.stopAsync();
+        }
+
+        // Write the pending audit logs, including the ones of the stopped services
+        if (auditLogService != null) {
+            auditLogService.stopAsync();
+            auditLogService.awaitTerminated();
+        }
+
         instance = null;
     }
 }
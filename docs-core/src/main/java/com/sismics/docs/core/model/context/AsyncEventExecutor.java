@@ -0,0 +1,262 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor of a pool of asynchronous events.
+ * The queue is bounded, what happens when it is full depends on the saturation policy of the pool.
+ *
+ * @author agent
+ */
+public class AsyncEventExecutor extends ThreadPoolExecutor {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(AsyncEventExecutor.class);
+
+    /**
+     * Executor running the task of the current thread.
+     */
+    private static final ThreadLocal<AsyncEventExecutor> currentExecutor = new ThreadLocal<>();
+
+    /**
+     * Policy applied to the tasks posted when the queue is full.
+     */
+    public enum SaturationPolicy {
+        /**
+         * The posting thread runs the task itself, only for pools of cheap tasks.
+         */
+        CALLER_RUNS,
+
+        /**
+         * The posting thread waits for a free slot, without running the task itself.
+         * The threads of the pool can't wait, they would be waiting on themselves: their tasks are dropped.
+         */
+        BLOCK
+    }
+
+    /**
+     * Pool name.
+     */
+    private final String name;
+
+    /**
+     * Queue capacity.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Number of tasks run by the posting thread because the queue was full.
+     */
+    private final AtomicLong callerRunCount = new AtomicLong();
+
+    /**
+     * Number of tasks whose posting thread waited for a free slot because the queue was full.
+     */
+    private final AtomicLong blockedCount = new AtomicLong();
+
+    /**
+     * Number of tasks dropped because the queue was full.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Number of tasks executed.
+     */
+    private final AtomicLong executedCount = new AtomicLong();
+
+    /**
+     * Cumulated time spent by the tasks in the queue (in nanoseconds).
+     */
+    private final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * Cumulated time spent running the tasks (in nanoseconds).
+     */
+    private final AtomicLong runTime = new AtomicLong();
+
+    /**
+     * Create a new executor.
+     *
+     * @param name Pool name
+     * @param threadCount Number of threads
+     * @param queueCapacity Maximum number of queued tasks
+     * @param saturationPolicy Policy applied when the queue is full
+     */
+    public AsyncEventExecutor(String name, int threadCount, int queueCapacity, SaturationPolicy saturationPolicy) {
+        super(threadCount, threadCount, 1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("event-" + name.toLowerCase() + "-%d").build());
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        setRejectedExecutionHandler((runnable, executor) -> {
+            if (executor.isShutdown()) {
+                log.warn("Event pool " + name + " is shut down, discarding a task");
+                return;
+            }
+
+            if (saturationPolicy == SaturationPolicy.CALLER_RUNS) {
+                // Back-pressure: the producer runs the task itself
+                callerRunCount.incrementAndGet();
+                runnable.run();
+                return;
+            }
+
+            // Back-pressure: the producer waits for a free slot, without running the task itself
+            if (currentExecutor.get() != this) {
+                blockedCount.incrementAndGet();
+                try {
+                    executor.getQueue().put(runnable);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            // A thread of the pool or an interrupted producer, the task can't be queued
+            droppedCount.incrementAndGet();
+            log.error("Event pool " + name + " is full, dropping a task");
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedRunnable(command));
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        currentExecutor.set(this);
+        if (r instanceof TimedRunnable) {
+            ((TimedRunnable) r).startTime = System.nanoTime();
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        if (r instanceof TimedRunnable) {
+            TimedRunnable timedRunnable = (TimedRunnable) r;
+            waitTime.addAndGet(timedRunnable.startTime - timedRunnable.submitTime);
+            runTime.addAndGet(System.nanoTime() - timedRunnable.startTime);
+            executedCount.incrementAndGet();
+        }
+        currentExecutor.remove();
+    }
+
+    /**
+     * Getter of name.
+     *
+     * @return Pool name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter of queueCapacity.
+     *
+     * @return Maximum number of queued tasks
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the number of tasks run by the posting thread because the queue was full.
+     *
+     * @return Number of tasks
+     */
+    public long getCallerRunCount() {
+        return callerRunCount.get();
+    }
+
+    /**
+     * Returns the number of tasks whose posting thread waited for a free slot because the queue was full.
+     *
+     * @return Number of tasks
+     */
+    public long getBlockedCount() {
+        return blockedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks dropped because the queue was full.
+     *
+     * @return Number of tasks
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks waiting to be run.
+     *
+     * @return Number of tasks
+     */
+    public int getWaitingTaskCount() {
+        return getQueue().size();
+    }
+
+    /**
+     * Returns the average time spent by a task in the queue.
+     *
+     * @return Average wait time (in milliseconds)
+     */
+    public double getAverageWaitTime() {
+        long count = executedCount.get();
+        return count == 0 ? 0 : waitTime.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the average time spent running a task.
+     *
+     * @return Average run time (in milliseconds)
+     */
+    public double getAverageRunTime() {
+        long count = executedCount.get();
+        return count == 0 ? 0 : runTime.get() / 1e6 / count;
+    }
+
+    /**
+     * Task keeping track of its queueing and running times.
+     */
+    private static class TimedRunnable implements Runnable {
+        /**
+         * Wrapped task.
+         */
+        private final Runnable runnable;
+
+        /**
+         * Time of submission.
+         */
+        private final long submitTime = System.nanoTime();
+
+        /**
+         * Time of execution start.
+         */
+        private long startTime;
+
+        /**
+         * Wrap a task.
+         *
+         * @param runnable Task
+         */
+        private TimedRunnable(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.EventBus;
+
+import java.util.List;
+
+/**
+ * Dispatcher posting each event to several event buses.
+ * Each event bus has its own listeners and executor, so that a slow kind of listener
+ * can't starve the others.
+ *
+ * @author agent
+ */
+public class EventDispatcher {
+    /**
+     * Event buses receiving the events.
+     */
+    private final List<EventBus> eventBusList;
+
+    /**
+     * Create a new event dispatcher.
+     *
+     * @param eventBuses Event buses receiving the events
+     */
+    public EventDispatcher(EventBus... eventBuses) {
+        this.eventBusList = Lists.newArrayList(eventBuses);
+    }
+
+    /**
+     * Post an event to all the event buses, only the ones with listeners for this event run it.
+     *
+     * @param event Event
+     */
+    public void post(Object event) {
+        for (EventBus eventBus : eventBusList) {
+            eventBus.post(event);
+        }
+    }
+}
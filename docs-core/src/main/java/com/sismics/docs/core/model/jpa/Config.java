@@ -1,11 +1,14 @@
 package com.sismics.docs.core.model.jpa;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import com.google.common.base.MoreObjects;
 import com.sismics.docs.core.constant.ConfigType;
@@ -17,6 +20,8 @@ import com.sismics.docs.core.constant.ConfigType;
  */
 @Entity
 @Table(name = "T_CONFIG")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Config {
     /**
      * Configuration parameter ID.
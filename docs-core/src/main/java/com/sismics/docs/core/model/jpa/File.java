@@ -46,12 +46,6 @@ public class File implements Loggable {
     @Column(name = "FIL_MIMETYPE_C", length = 100)
     private String mimeType;
 
-    /**
-     * OCR-ized content.
-     */
-    @Column(name = "FIL_CONTENT_C")
-    private String content;
-    
     /**
      * Creation date.
      */
@@ -153,14 +147,6 @@ public class File implements Loggable {
         this.deleteDate = deleteDate;
     }
     
-    public String getContent() {
-        return content;
-    }
-
-    public void setContent(String content) {
-        this.content = content;
-    }
-
     public Integer getOrder() {
         return order;
     }
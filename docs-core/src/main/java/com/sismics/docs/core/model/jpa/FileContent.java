@@ -0,0 +1,56 @@
+package com.sismics.docs.core.model.jpa;
+
+import com.google.common.base.MoreObjects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Extracted text content of a file.
+ * Kept apart from the file, which is read far more often than its content.
+ *
+ * @author agent
+ */
+@Entity
+@Table(name = "T_FILE_CONTENT")
+public class FileContent {
+    /**
+     * File ID.
+     */
+    @Id
+    @Column(name = "FIC_IDFILE_C", length = 36)
+    private String fileId;
+
+    /**
+     * OCR-ized content.
+     */
+    @Column(name = "FIC_CONTENT_C")
+    private String content;
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public FileContent setFileId(String fileId) {
+        this.fileId = fileId;
+        return this;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public FileContent setContent(String content) {
+        this.content = content;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("fileId", fileId)
+                .toString();
+    }
+}
@@ -2,10 +2,13 @@ package com.sismics.docs.core.model.jpa;
 
 import com.google.common.base.MoreObjects;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.Date;
 
 /**
@@ -15,6 +18,8 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "T_ROUTE_MODEL")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class RouteModel implements Loggable {
     /**
      * Route model ID.
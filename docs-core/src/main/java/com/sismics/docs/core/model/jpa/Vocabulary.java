@@ -1,9 +1,12 @@
 package com.sismics.docs.core.model.jpa;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import com.google.common.base.MoreObjects;
 
@@ -14,6 +17,8 @@ import com.google.common.base.MoreObjects;
  */
 @Entity
 @Table(name = "T_VOCABULARY")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Vocabulary {
     /**
      * Vocabulary ID.
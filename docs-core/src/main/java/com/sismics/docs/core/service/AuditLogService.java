@@ -0,0 +1,817 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.sismics.docs.core.constant.AuditLogType;
+import com.sismics.docs.core.dao.AuditLogDao;
+import com.sismics.docs.core.model.jpa.AuditLog;
+import com.sismics.docs.core.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service writing the audit logs in batches, outside of the transactions which created them.
+ * The audit logs of a transaction are appended to a journal and synced to the disk before the commit,
+ * then a commit or an abort record is appended depending on the outcome. The syncs of the concurrent
+ * transactions are grouped by a flusher thread.
+ * The journal is emptied once all the audit logs are written to the database, and read again on startup:
+ * the audit logs of the committed transactions are written, the other ones are dropped.
+ * A transaction interrupted between its prepare and commit records is committed only if its commit marker,
+ * inserted by the transaction itself, is in the database. The marker is deleted with the audit logs write.
+ * Only the audit logs not in the database yet are inserted, so writing them again is harmless.
+ *
+ * @author agent
+ */
+public class AuditLogService extends AbstractExecutionThreadService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(AuditLogService.class);
+
+    /**
+     * Maximum number of audit logs inserted in a batch.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Pause after a failed batch (in milliseconds).
+     */
+    private static final long RETRY_DELAY = 1000L;
+
+    /**
+     * Default time waited for the pending audit logs to be written (in milliseconds).
+     */
+    private static final long AWAIT_TIMEOUT = 10000L;
+
+    /**
+     * Time waited by the flusher for the concurrent transactions to join a sync (in milliseconds).
+     */
+    private static final long FLUSH_WINDOW = 2L;
+
+    /**
+     * Journal record of the audit logs of a transaction about to be committed.
+     */
+    private static final byte RECORD_PREPARE = 1;
+
+    /**
+     * Journal record of a committed transaction.
+     */
+    private static final byte RECORD_COMMIT = 2;
+
+    /**
+     * Journal record of an aborted transaction.
+     */
+    private static final byte RECORD_ABORT = 3;
+
+    /**
+     * Journal of the audit logs.
+     */
+    private final Path journalFile;
+
+    /**
+     * Channel appending to the journal, open while the service is running.
+     */
+    private FileChannel journalChannel;
+
+    /**
+     * Lock of the journal channel, taken before the main lock.
+     */
+    private final Object channelLock = new Object();
+
+    /**
+     * Thread writing and syncing the journal records, null once the records are written by the calling threads.
+     */
+    private Thread flusherThread;
+
+    /**
+     * True once the flusher must stop, after writing the records left.
+     */
+    private boolean flusherStopped;
+
+    /**
+     * Journal records waiting to be written by the flusher.
+     */
+    private List<byte[]> bufferedRecordList = new ArrayList<>();
+
+    /**
+     * Sequence of the last record buffered.
+     */
+    private long bufferedSequence;
+
+    /**
+     * Sequence of the last record synced to the disk.
+     */
+    private long syncedSequence;
+
+    /**
+     * Sequence of the last record which could not be written.
+     */
+    private long failedSequence;
+
+    /**
+     * Error of the last failed write.
+     */
+    private IOException failure;
+
+    /**
+     * Number of transactions prepared and neither committed nor aborted yet.
+     */
+    private int openTransactionCount;
+
+    /**
+     * Audit logs waiting to be written.
+     */
+    private final BlockingQueue<PendingAuditLog> pendingQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * Lock of the journal records and the counters.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Number of audit logs queued since startup.
+     */
+    private long queuedCount;
+
+    /**
+     * Number of audit logs written since startup.
+     */
+    private long writtenCount;
+
+    /**
+     * Number of batches written since startup.
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+
+    /**
+     * Number of journal syncs since startup.
+     */
+    private final AtomicLong syncCount = new AtomicLong();
+
+    /**
+     * Create the service.
+     *
+     * @param journalFile Journal of the audit logs
+     */
+    public AuditLogService(Path journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+        log.info("Audit log service starting up");
+
+        // The audit logs of the previous run may not all be written, queue them before the new ones
+        if (Files.exists(journalFile)) {
+            List<PendingAuditLog> pendingAuditLogList = readJournal();
+            if (!pendingAuditLogList.isEmpty()) {
+                log.info("Writing " + pendingAuditLogList.size() + " audit logs from the journal");
+                pendingQueue.addAll(pendingAuditLogList);
+                queuedCount += pendingAuditLogList.size();
+            }
+        }
+
+        journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        Thread thread = new Thread(this::flush, "audit-log-journal");
+        thread.setDaemon(true);
+        synchronized (lock) {
+            flusherStopped = false;
+            flusherThread = thread;
+        }
+        thread.start();
+    }
+
+    @Override
+    protected void run() {
+        List<PendingAuditLog> batch = new ArrayList<>();
+        while (isRunning() || !pendingQueue.isEmpty()) {
+            try {
+                PendingAuditLog pendingAuditLog = pendingQueue.poll(1, TimeUnit.SECONDS);
+                if (pendingAuditLog == null) {
+                    continue;
+                }
+                batch.add(pendingAuditLog);
+                pendingQueue.drainTo(batch, BATCH_SIZE - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            while (!writeBatch(batch)) {
+                if (!isRunning()) {
+                    // Stopping, the remaining audit logs are kept in the journal for the next startup
+                    return;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        log.info("Audit log service shutting down");
+
+        // The flusher writes the records left before stopping
+        Thread thread;
+        synchronized (lock) {
+            thread = flusherThread;
+            flusherStopped = true;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            thread.join();
+        }
+
+        synchronized (channelLock) {
+            journalChannel.close();
+            journalChannel = null;
+        }
+    }
+
+    @Override
+    protected String serviceName() {
+        return "audit-log";
+    }
+
+    /**
+     * Journal the audit logs of a transaction about to be committed.
+     * Returns once the audit logs are synced to the disk, the transaction must not be committed otherwise.
+     *
+     * @param auditLogList Audit logs
+     * @return Journal ID of the transaction
+     * @throws IOException e
+     */
+    public String prepare(List<AuditLog> auditLogList) throws IOException {
+        String transactionId = UUID.randomUUID().toString();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(byteArrayOutputStream);
+        outputStream.writeByte(RECORD_PREPARE);
+        outputStream.writeUTF(transactionId);
+        outputStream.writeInt(auditLogList.size());
+        for (AuditLog auditLog : auditLogList) {
+            writeAuditLog(outputStream, auditLog);
+        }
+        outputStream.flush();
+
+        synchronized (lock) {
+            openTransactionCount++;
+        }
+        try {
+            awaitSynced(appendRecord(byteArrayOutputStream.toByteArray()));
+        } catch (IOException e) {
+            abort(transactionId);
+            throw e;
+        }
+        return transactionId;
+    }
+
+    /**
+     * Write the audit logs of a committed transaction.
+     * The commit record is appended to the journal, then the audit logs are queued to be written
+     * in the next batch. When the service is not running, they are only journaled.
+     *
+     * @param transactionId Journal ID of the transaction
+     * @param auditLogList Audit logs
+     */
+    public void commit(String transactionId, List<AuditLog> auditLogList) {
+        // Without the commit record, the audit logs are still written on startup, this record is not awaited
+        appendRecord(serializeOutcome(RECORD_COMMIT, transactionId));
+        synchronized (lock) {
+            openTransactionCount--;
+            if (flusherThread != null) {
+                queue(transactionId, auditLogList, pendingQueue);
+                queuedCount += auditLogList.size();
+            }
+        }
+    }
+
+    /**
+     * Drop the audit logs of a transaction which could not be committed.
+     *
+     * @param transactionId Journal ID of the transaction
+     */
+    public void abort(String transactionId) {
+        appendRecord(serializeOutcome(RECORD_ABORT, transactionId));
+        synchronized (lock) {
+            openTransactionCount--;
+        }
+    }
+
+    /**
+     * Wait for the audit logs queued before this call to be written, to read them from the database.
+     *
+     * @return True if the audit logs are written, false on timeout
+     */
+    public boolean awaitWritten() {
+        boolean written = awaitWritten(AWAIT_TIMEOUT);
+        if (!written) {
+            log.warn("Timeout waiting for the audit logs to be written");
+        }
+        return written;
+    }
+
+    /**
+     * Wait for the audit logs queued before this call to be written, to read them from the database.
+     *
+     * @param timeout Maximum time waited (in milliseconds)
+     * @return True if the audit logs are written, false on timeout, interruption or if the service is stopped
+     */
+    public boolean awaitWritten(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (lock) {
+            long targetCount = queuedCount;
+            while (writtenCount < targetCount) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !isRunning()) {
+                    return false;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Append a record to the journal.
+     * The record is buffered for the flusher, or written and synced by the calling thread
+     * when the service is not running.
+     *
+     * @param record Journal record
+     * @return Sequence of the record
+     */
+    private long appendRecord(byte[] record) {
+        synchronized (lock) {
+            if (flusherThread != null) {
+                bufferedRecordList.add(record);
+                lock.notifyAll();
+                return ++bufferedSequence;
+            }
+        }
+
+        synchronized (channelLock) {
+            long sequence;
+            synchronized (lock) {
+                sequence = ++bufferedSequence;
+            }
+            IOException error = null;
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeFully(channel, record);
+                channel.force(false);
+                syncCount.incrementAndGet();
+            } catch (IOException e) {
+                log.error("Error writing to the audit log journal", e);
+                error = e;
+            }
+            publishSync(sequence, error);
+            return sequence;
+        }
+    }
+
+    /**
+     * Publish the result of a journal sync to the waiting threads.
+     *
+     * @param sequence Sequence of the last record synced
+     * @param error Error, null if the records are synced
+     */
+    private void publishSync(long sequence, IOException error) {
+        synchronized (lock) {
+            if (error == null) {
+                syncedSequence = sequence;
+            } else {
+                failedSequence = sequence;
+                failure = error;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait for a journal record to be synced to the disk.
+     *
+     * @param sequence Sequence of the record
+     * @throws IOException e
+     */
+    private void awaitSynced(long sequence) throws IOException {
+        synchronized (lock) {
+            while (syncedSequence < sequence) {
+                if (failedSequence >= sequence) {
+                    throw new IOException("Error writing to the audit log journal", failure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while syncing the audit log journal", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write and sync the buffered journal records, until the service stops.
+     * The records buffered during a sync, or during a short window before it, are synced together.
+     */
+    private void flush() {
+        while (true) {
+            List<byte[]> recordList;
+            long sequence;
+            synchronized (lock) {
+                try {
+                    while (bufferedRecordList.isEmpty() && !flusherStopped) {
+                        lock.wait();
+                    }
+                    if (bufferedRecordList.isEmpty()) {
+                        // The next records are written by the calling threads
+                        flusherThread = null;
+                        return;
+                    }
+
+                    // Let the concurrent transactions join this sync
+                    long deadline = System.currentTimeMillis() + FLUSH_WINDOW;
+                    long remaining = FLUSH_WINDOW;
+                    while (remaining > 0 && !flusherStopped) {
+                        lock.wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                } catch (InterruptedException e) {
+                    // Fail the records left, the next ones are written by the calling threads
+                    Thread.currentThread().interrupt();
+                    bufferedRecordList = new ArrayList<>();
+                    failedSequence = bufferedSequence;
+                    failure = new IOException("Audit log journal flusher interrupted", e);
+                    flusherThread = null;
+                    lock.notifyAll();
+                    return;
+                }
+                recordList = bufferedRecordList;
+                bufferedRecordList = new ArrayList<>();
+                sequence = bufferedSequence;
+            }
+
+            synchronized (channelLock) {
+                IOException error = null;
+                long position = -1;
+                try {
+                    position = journalChannel.size();
+                    for (byte[] record : recordList) {
+                        writeFully(journalChannel, record);
+                    }
+                    journalChannel.force(false);
+                    syncCount.incrementAndGet();
+                } catch (IOException e) {
+                    log.error("Error writing " + recordList.size() + " records to the audit log journal", e);
+                    error = e;
+                    if (position >= 0) {
+                        // Do not leave a partial record in front of the next ones
+                        try {
+                            journalChannel.truncate(position);
+                        } catch (IOException te) {
+                            log.error("Error removing the partial audit log journal records", te);
+                        }
+                    }
+                }
+
+                publishSync(sequence, error);
+            }
+            emptyJournal();
+        }
+    }
+
+    /**
+     * Empty the journal if everything journaled is written.
+     */
+    private void emptyJournal() {
+        synchronized (channelLock) {
+            synchronized (lock) {
+                emptyJournalLocked();
+            }
+        }
+    }
+
+    /**
+     * Empty the journal if everything journaled is written.
+     * Must be called with the channel lock and the main lock held.
+     */
+    private void emptyJournalLocked() {
+        if (journalChannel == null || writtenCount != queuedCount || openTransactionCount > 0
+                || !bufferedRecordList.isEmpty() || syncedSequence != bufferedSequence) {
+            return;
+        }
+        try {
+            if (journalChannel.size() > 0) {
+                journalChannel.truncate(0);
+            }
+        } catch (IOException e) {
+            log.error("Error emptying the audit log journal", e);
+        }
+    }
+
+    /**
+     * Insert a batch of audit logs.
+     *
+     * The commit markers of the transactions completed by this batch are deleted in the same transaction.
+     *
+     * @param batch Audit logs
+     * @return True if the batch is written
+     */
+    private boolean writeBatch(List<PendingAuditLog> batch) {
+        // TransactionUtil logs and swallows the errors of the runnable
+        AtomicBoolean written = new AtomicBoolean();
+        try {
+            TransactionUtil.handle(() -> {
+                AuditLogDao auditLogDao = new AuditLogDao();
+                Set<String> existingIdSet = auditLogDao.getExistingIds(Lists.transform(batch, pending -> pending.auditLog.getId()));
+                List<AuditLog> missingList = new ArrayList<>();
+                List<String> completedJournalIdList = new ArrayList<>();
+                for (PendingAuditLog pendingAuditLog : batch) {
+                    if (!existingIdSet.contains(pendingAuditLog.auditLog.getId())) {
+                        missingList.add(pendingAuditLog.auditLog);
+                    }
+                    if (pendingAuditLog.completedJournalId != null) {
+                        completedJournalIdList.add(pendingAuditLog.completedJournalId);
+                    }
+                }
+                if (!missingList.isEmpty()) {
+                    auditLogDao.create(missingList);
+                }
+                auditLogDao.deleteCommitMarkers(completedJournalIdList);
+                written.set(true);
+            });
+        } catch (Exception e) {
+            log.error("Error writing " + batch.size() + " audit logs", e);
+            return false;
+        }
+        if (!written.get()) {
+            return false;
+        }
+        batchCount.incrementAndGet();
+
+        // The journal is emptied before the waiting threads read the audit logs
+        synchronized (channelLock) {
+            synchronized (lock) {
+                writtenCount += batch.size();
+                emptyJournalLocked();
+                lock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a journal record to a channel.
+     *
+     * @param channel Channel
+     * @param record Journal record
+     * @throws IOException e
+     */
+    private static void writeFully(FileChannel channel, byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Serialize the outcome of a transaction to a journal record.
+     *
+     * @param recordType Commit or abort record
+     * @param transactionId Journal ID of the transaction
+     * @return Record
+     */
+    private static byte[] serializeOutcome(byte recordType, String transactionId) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataOutputStream outputStream = new DataOutputStream(byteArrayOutputStream)) {
+            outputStream.writeByte(recordType);
+            outputStream.writeUTF(transactionId);
+        } catch (IOException e) {
+            // Not thrown by an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Serialize an audit log.
+     *
+     * @param outputStream Output stream
+     * @param auditLog Audit log
+     * @throws IOException e
+     */
+    private static void writeAuditLog(DataOutputStream outputStream, AuditLog auditLog) throws IOException {
+        outputStream.writeUTF(auditLog.getId());
+        outputStream.writeUTF(auditLog.getUserId());
+        outputStream.writeUTF(auditLog.getEntityId());
+        outputStream.writeUTF(auditLog.getEntityClass());
+        outputStream.writeUTF(auditLog.getType().name());
+        outputStream.writeBoolean(auditLog.getMessage() != null);
+        if (auditLog.getMessage() != null) {
+            outputStream.writeUTF(auditLog.getMessage());
+        }
+        outputStream.writeLong(auditLog.getCreateDate().getTime());
+    }
+
+    /**
+     * Deserialize an audit log.
+     *
+     * @param inputStream Input stream
+     * @return Audit log
+     * @throws IOException e
+     */
+    private static AuditLog readAuditLog(DataInputStream inputStream) throws IOException {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(inputStream.readUTF());
+        auditLog.setUserId(inputStream.readUTF());
+        auditLog.setEntityId(inputStream.readUTF());
+        auditLog.setEntityClass(inputStream.readUTF());
+        auditLog.setType(AuditLogType.valueOf(inputStream.readUTF()));
+        if (inputStream.readBoolean()) {
+            auditLog.setMessage(inputStream.readUTF());
+        }
+        auditLog.setCreateDate(new Date(inputStream.readLong()));
+        return auditLog;
+    }
+
+    /**
+     * Queue the audit logs of a committed transaction.
+     * The last audit log completes the transaction, its commit marker is deleted when it is written.
+     *
+     * @param transactionId Journal ID of the transaction
+     * @param auditLogList Audit logs
+     * @param queue Queue
+     */
+    private static void queue(String transactionId, List<AuditLog> auditLogList, Collection<PendingAuditLog> queue) {
+        for (int i = 0; i < auditLogList.size(); i++) {
+            queue.add(new PendingAuditLog(auditLogList.get(i), i == auditLogList.size() - 1 ? transactionId : null));
+        }
+    }
+
+    /**
+     * Read the audit logs to write from the journal, an incomplete last record is ignored.
+     * The audit logs of the aborted transactions are dropped. The transactions without outcome
+     * were interrupted around their commit: their audit logs are kept if the transaction
+     * inserted its commit marker in the database, and dropped otherwise.
+     *
+     * @return Audit logs
+     * @throws IOException e
+     */
+    private List<PendingAuditLog> readJournal() throws IOException {
+        Map<String, List<AuditLog>> preparedMap = new LinkedHashMap<>();
+        Set<String> committedSet = new HashSet<>();
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+            while (true) {
+                byte recordType = inputStream.readByte();
+                String transactionId = inputStream.readUTF();
+                switch (recordType) {
+                    case RECORD_PREPARE:
+                        int count = inputStream.readInt();
+                        List<AuditLog> auditLogList = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            auditLogList.add(readAuditLog(inputStream));
+                        }
+                        preparedMap.put(transactionId, auditLogList);
+                        break;
+                    case RECORD_COMMIT:
+                        committedSet.add(transactionId);
+                        break;
+                    case RECORD_ABORT:
+                        preparedMap.remove(transactionId);
+                        break;
+                    default:
+                        throw new IOException("Unknown audit log journal record: " + recordType);
+                }
+            }
+        } catch (EOFException e) {
+            // End of the journal
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Unreadable audit log journal record, ignoring the end of the journal", e);
+        }
+
+        // Resolve the transactions without outcome with their commit markers
+        Set<String> inDoubtSet = new HashSet<>(preparedMap.keySet());
+        inDoubtSet.removeAll(committedSet);
+        Set<String> markedSet = new HashSet<>();
+        if (!inDoubtSet.isEmpty()) {
+            // TransactionUtil logs and swallows the errors of the runnable, the transactions are then dropped
+            TransactionUtil.handle(() -> markedSet.addAll(new AuditLogDao().getCommitMarkers(inDoubtSet)));
+        }
+
+        List<PendingAuditLog> pendingAuditLogList = new ArrayList<>();
+        for (Map.Entry<String, List<AuditLog>> entry : preparedMap.entrySet()) {
+            if (inDoubtSet.contains(entry.getKey())) {
+                if (!markedSet.contains(entry.getKey())) {
+                    log.warn("Audit log journal transaction rolled back, dropping its " + entry.getValue().size() + " audit logs");
+                    continue;
+                }
+                log.info("Audit log journal transaction committed without outcome, writing its " + entry.getValue().size() + " audit logs");
+            }
+            queue(entry.getKey(), entry.getValue(), pendingAuditLogList);
+        }
+        return pendingAuditLogList;
+    }
+
+    /**
+     * Returns the number of audit logs waiting to be written.
+     *
+     * @return Number of pending audit logs
+     */
+    public long getPendingCount() {
+        synchronized (lock) {
+            return queuedCount - writtenCount;
+        }
+    }
+
+    /**
+     * Returns the number of audit logs written since startup.
+     *
+     * @return Number of written audit logs
+     */
+    public long getWrittenCount() {
+        synchronized (lock) {
+            return writtenCount;
+        }
+    }
+
+    /**
+     * Returns the number of batches written since startup.
+     *
+     * @return Number of batches
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the number of journal syncs since startup.
+     * Lower than the number of transactions when their syncs are grouped.
+     *
+     * @return Number of syncs
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    /**
+     * Audit log waiting to be written.
+     */
+    private static class PendingAuditLog {
+        /**
+         * Audit log.
+         */
+        private final AuditLog auditLog;
+
+        /**
+         * Journal ID of the transaction completed by this audit log, null if it is not the last one.
+         */
+        private final String completedJournalId;
+
+        /**
+         * Create a pending audit log.
+         *
+         * @param auditLog Audit log
+         * @param completedJournalId Journal ID of the transaction completed by this audit log, null if it is not the last one
+         */
+        private PendingAuditLog(AuditLog auditLog, String completedJournalId) {
+            this.auditLog = auditLog;
+            this.completedJournalId = completedJournalId;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.docs.core.util.StorageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service that moves the files stored flat by older versions to their shard.
+ *
+ * @author agent
+ */
+public class StorageMigrationService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(StorageMigrationService.class);
+
+    /**
+     * Number of files moved per iteration.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Number of files moved since startup.
+     */
+    private long migratedCount;
+
+    @Override
+    protected void startUp() {
+        log.info("Storage migration service starting up");
+    }
+
+    @Override
+    protected void shutDown() {
+        log.info("Storage migration service shutting down");
+    }
+
+    @Override
+    protected void runOneIteration() {
+        try {
+            int count = StorageUtil.migrateFlatFiles(BATCH_SIZE);
+            migratedCount += count;
+            if (count < BATCH_SIZE) {
+                if (migratedCount > 0) {
+                    log.info(migratedCount + " stored files moved to their shard");
+                }
+                log.info("No more stored file to migrate, stopping the service");
+                stopAsync();
+            }
+        } catch (Throwable e) {
+            log.error("Exception during storage migration service iteration", e);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(0, 1, TimeUnit.SECONDS);
+    }
+}
@@ -1,12 +1,14 @@
 package com.sismics.docs.core.util;
 
 import com.sismics.docs.core.constant.AuditLogType;
-import com.sismics.docs.core.dao.AuditLogDao;
 import com.sismics.docs.core.model.jpa.AuditLog;
 import com.sismics.docs.core.model.jpa.Loggable;
 import com.sismics.util.context.ThreadLocalContext;
+import org.apache.commons.lang3.StringUtils;
 
 import jakarta.persistence.EntityManager;
+import java.util.Date;
+import java.util.UUID;
 
 /**
  * Audit log utilities.
@@ -14,8 +16,14 @@ import jakarta.persistence.EntityManager;
  * @author bgamard
  */
 public class AuditLogUtil {
+    /**
+     * Maximum length of an audit log message.
+     */
+    private static final int MESSAGE_MAX_LENGTH = 1000;
+
     /**
      * Create an audit log.
+     * The audit log is written after the commit of the current transaction, and discarded on rollback.
      * 
      * @param loggable Loggable
      * @param type Audit log type
@@ -27,17 +35,19 @@ public class AuditLogUtil {
         }
 
         // Get the entity ID
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        ThreadLocalContext context = ThreadLocalContext.get();
+        EntityManager em = context.getEntityManager();
         String entityId = (String) em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(loggable);
         
         // Create the audit log
-        AuditLogDao auditLogDao = new AuditLogDao();
         AuditLog auditLog = new AuditLog();
+        auditLog.setId(UUID.randomUUID().toString());
         auditLog.setUserId(userId);
         auditLog.setEntityId(entityId);
         auditLog.setEntityClass(loggable.getClass().getSimpleName());
         auditLog.setType(type);
-        auditLog.setMessage(loggable.toMessage());
-        auditLogDao.create(auditLog);
+        auditLog.setMessage(StringUtils.truncate(loggable.toMessage(), MESSAGE_MAX_LENGTH));
+        auditLog.setCreateDate(new Date());
+        context.addAuditLog(auditLog);
     }
 }
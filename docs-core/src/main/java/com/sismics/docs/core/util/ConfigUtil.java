@@ -29,15 +29,18 @@ public class ConfigUtil {
             } else if (configType == ConfigType.YOUDAO_APP_SECRET) {
                 key = "youdao.app_secret";
             }
-            String value = bundle.getString(key);
-            if (value != null && !value.isEmpty()) {
-                return value;
+            // Most parameters are only in database, don't pay for a MissingResourceException on each call
+            if (bundle.containsKey(key)) {
+                String value = bundle.getString(key);
+                if (!value.isEmpty()) {
+                    return value;
+                }
             }
         } catch (Exception e) {
             // Ignore and try database
         }
 
-        // If not found in ResourceBundle, try database
+        // If not found in ResourceBundle, try database (served by the second level cache)
         ConfigDao configDao = new ConfigDao();
         Config config = configDao.getById(configType);
         if (config == null) {
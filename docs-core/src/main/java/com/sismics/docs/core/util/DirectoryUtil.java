@@ -67,6 +67,24 @@ public class DirectoryUtil {
     public static Path getLuceneDirectory() {
         return getDataSubDirectory("lucene");
     }
+
+    /**
+     * Returns the directory of the Lucene index being rebuilt.
+     *
+     * @return Lucene rebuild directory.
+     */
+    public static Path getLuceneRebuildDirectory() {
+        return getDataSubDirectory("lucene_rebuild");
+    }
+
+    /**
+     * Returns the cache directory of the exported PDF.
+     *
+     * @return PDF cache directory.
+     */
+    public static Path getPdfCacheDirectory() {
+        return getDataSubDirectory("pdf_cache");
+    }
     
     /**
      * Returns the storage directory.
@@ -1,22 +1,38 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.io.ByteStreams;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.jcajce.provider.symmetric.util.BCPBEKey;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Encryption utilities.
@@ -28,6 +44,31 @@ public class EncryptionUtil {
      * Salt.
      */
     private static final String SALT = "LEpxZmm2SMu2PeKzPNrar2rhVAS6LrrgvXKeL9uyXC4vgKHg";
+
+    /**
+     * Maximum number of derived keys kept in memory.
+     */
+    private static final int KEY_CACHE_SIZE = 1000;
+
+    /**
+     * AES block size (in bytes).
+     */
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * Derived secret keys, indexed by private key.
+     * Deriving a key is expensive (2000 iterations), and the same users keys are used over and over.
+     */
+    private static final LoadingCache<String, SecretKey> secretKeyCache = CacheBuilder.newBuilder()
+            .maximumSize(KEY_CACHE_SIZE)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .recordStats()
+            .build(new CacheLoader<>() {
+                @Override
+                public SecretKey load(String privateKey) throws Exception {
+                    return deriveSecretKey(privateKey);
+                }
+            });
     
     static {
         // Initialize Bouncy Castle provider
@@ -62,26 +103,99 @@ public class EncryptionUtil {
     }
 
     /**
-     * Decrypt a file to a temporary file using the specified private key.
+     * Decrypt a file from the specified offset using the specified private key.
+     * Files are encrypted in CTR mode, so the decryption can start at any position
+     * without reading the previous bytes.
      *
      * @param file Encrypted file
      * @param privateKey Private key
-     * @return Decrypted temporary file
+     * @param offset Offset of the first byte to decrypt
+     * @return Decrypted stream starting at the offset
      * @throws Exception e
      */
-    public static Path decryptFile(Path file, String privateKey) throws Exception {
-        if (privateKey == null) {
-            // For unit testing
-            return file;
+    public static InputStream decryptInputStream(Path file, String privateKey, long offset) throws Exception {
+        SeekableByteChannel channel = Files.newByteChannel(file);
+        try {
+            channel.position(getBlockStart(offset));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
         }
+        return decryptBlocks(Channels.newInputStream(channel), privateKey, offset);
+    }
+
+    /**
+     * Decrypt a stored file from the specified offset using the specified private key.
+     * Only the stored bytes from the block containing the offset are read.
+     *
+     * @param key Stored file name
+     * @param privateKey Private key
+     * @param offset Offset of the first byte to decrypt
+     * @return Decrypted stream starting at the offset
+     * @throws Exception e
+     */
+    public static InputStream decryptInputStream(String key, String privateKey, long offset) throws Exception {
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        return decryptBlocks(storageBackend.getRange(key, getBlockStart(offset)), privateKey, offset);
+    }
 
+    /**
+     * Decrypt a stored file to a temporary file using the specified private key.
+     *
+     * @param key Stored file name
+     * @param privateKey Private key
+     * @return Decrypted temporary file
+     * @throws Exception e
+     */
+    public static Path decryptFile(String key, String privateKey) throws Exception {
         Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
-        try (InputStream is = Files.newInputStream(file)) {
-            Files.copy(new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE)), tmpFile, StandardCopyOption.REPLACE_EXISTING);
+        try (InputStream is = AppContext.getInstance().getStorageBackend().get(key)) {
+            if (privateKey == null) {
+                // For unit testing
+                Files.copy(is, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.copy(new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE)), tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            }
         }
         return tmpFile;
     }
 
+    /**
+     * Returns the offset of the beginning of the block containing an offset.
+     *
+     * @param offset Offset
+     * @return Offset of the block
+     */
+    private static long getBlockStart(long offset) {
+        return offset / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    /**
+     * Decrypt an encrypted stream positioned at the beginning of the block containing the offset.
+     * Files are encrypted in CTR mode, so the decryption can start at any block
+     * without reading the previous bytes.
+     *
+     * @param is Encrypted stream, closed on error
+     * @param privateKey Private key
+     * @param offset Offset of the first byte to decrypt
+     * @return Decrypted stream starting at the offset
+     * @throws Exception e
+     */
+    private static InputStream decryptBlocks(InputStream is, String privateKey, long offset) throws Exception {
+        try {
+            InputStream decryptedInputStream = new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE, offset / BLOCK_SIZE));
+            ByteStreams.skipFully(decryptedInputStream, offset % BLOCK_SIZE);
+            return decryptedInputStream;
+        } catch (Exception e) {
+            try {
+                is.close();
+            } catch (IOException ex) {
+                // NOP
+            }
+            throw e;
+        }
+    }
+
     /**
      * Return an encryption cipher.
      * 
@@ -105,11 +219,83 @@ public class EncryptionUtil {
      * @throws Exception e
      */
     private static Cipher getCipher(String privateKey, int mode) throws Exception {
-        PBEKeySpec keySpec = new PBEKeySpec(privateKey.toCharArray(), SALT.getBytes(), 2000, 256);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBEWITHSHA256AND256BITAES-CBC-BC");
-        SecretKey desKey = skf.generateSecret(keySpec);
         Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
-        cipher.init(mode, desKey);
+        cipher.init(mode, getSecretKey(privateKey));
         return cipher;
     }
+
+    /**
+     * Initialize a Cipher positioned at the specified block of the stream.
+     *
+     * @param privateKey Private key
+     * @param mode Mode (encrypt or decrypt)
+     * @param block Index of the first block to process
+     * @return Cipher
+     * @throws Exception e
+     */
+    private static Cipher getCipher(String privateKey, int mode, long block) throws Exception {
+        if (block == 0) {
+            return getCipher(privateKey, mode);
+        }
+
+        // The counter of a block is the initial counter incremented by the block index
+        ParametersWithIV params = (ParametersWithIV) ((BCPBEKey) getSecretKey(privateKey)).getParam();
+        byte[] key = ((KeyParameter) params.getParameters()).getKey();
+        byte[] counter = new BigInteger(1, params.getIV())
+                .add(BigInteger.valueOf(block))
+                .toByteArray();
+        byte[] iv = new byte[BLOCK_SIZE];
+        int length = Math.min(counter.length, BLOCK_SIZE);
+        System.arraycopy(counter, counter.length - length, iv, BLOCK_SIZE - length, length);
+
+        Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        return cipher;
+    }
+
+    /**
+     * Returns the secret key derived from a private key.
+     *
+     * @param privateKey Private key
+     * @return Secret key
+     * @throws Exception e
+     */
+    private static SecretKey getSecretKey(String privateKey) throws Exception {
+        try {
+            return secretKeyCache.get(privateKey);
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Derive a secret key from a private key.
+     *
+     * @param privateKey Private key
+     * @return Secret key
+     * @throws Exception e
+     */
+    private static SecretKey deriveSecretKey(String privateKey) throws Exception {
+        PBEKeySpec keySpec = new PBEKeySpec(privateKey.toCharArray(), SALT.getBytes(), 2000, 256);
+        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBEWITHSHA256AND256BITAES-CBC-BC");
+        return skf.generateSecret(keySpec);
+    }
+
+    /**
+     * Returns the statistics of the derived keys cache.
+     *
+     * @return Cache statistics
+     */
+    public static CacheStats getKeyCacheStats() {
+        return secretKeyCache.stats();
+    }
+
+    /**
+     * Returns the number of derived keys currently cached.
+     *
+     * @return Number of cached keys
+     */
+    public static long getKeyCacheSize() {
+        return secretKeyCache.size();
+    }
 }
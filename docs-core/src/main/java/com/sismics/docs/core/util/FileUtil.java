@@ -1,8 +1,6 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
-import com.google.common.io.CharStreams;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.UserDao;
@@ -11,10 +9,8 @@ import com.sismics.docs.core.event.FileCreatedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
-import com.sismics.util.ImageDeskew;
-import com.sismics.util.Scalr;
+import com.sismics.docs.core.util.storage.StorageBackend;
 import com.sismics.util.context.ThreadLocalContext;
-import com.sismics.util.io.InputStreamReaderThread;
 import com.sismics.util.mime.MimeTypeUtil;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CountingInputStream;
@@ -25,12 +21,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -52,56 +44,15 @@ public class FileUtil {
     private static final Set<String> processingFileSet = Collections.synchronizedSet(new HashSet<>());
     
     /**
-     * Optical character recognition on an image.
-     *
-     * @param language Language to OCR
-     * @param image Buffered image
-     * @return Content extracted
-     * @throws Exception e
-     */
-    public static String ocrFile(String language, BufferedImage image) throws Exception {
-        // Upscale, grayscale and deskew the image
-        BufferedImage resizedImage = Scalr.resize(image, Scalr.Method.AUTOMATIC, Scalr.Mode.AUTOMATIC, 3500, Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
-        image.flush();
-        ImageDeskew imageDeskew = new ImageDeskew(resizedImage);
-        BufferedImage deskewedImage = Scalr.rotate(resizedImage, - imageDeskew.getSkewAngle(), Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
-        resizedImage.flush();
-        Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
-        ImageIO.write(deskewedImage, "tiff", tmpFile.toFile());
-
-        List<String> result = Lists.newLinkedList(Arrays.asList("tesseract", tmpFile.toAbsolutePath().toString(), "stdout", "-l", language));
-        ProcessBuilder pb = new ProcessBuilder(result);
-        Process process = pb.start();
-
-        // Consume the process error stream
-        final String commandName = pb.command().get(0);
-        new InputStreamReaderThread(process.getErrorStream(), commandName).start();
-
-        // Consume the data as text
-        try (InputStream is = process.getInputStream()) {
-            return CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
-        }
-    }
-
-    /**
-     * Remove a file from the storage filesystem.
+     * Remove a file from the storage.
      * 
      * @param fileId ID of file to delete
      */
     public static void delete(String fileId) throws IOException {
-        Path storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
-        Path webFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_web");
-        Path thumbnailFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_thumb");
-        
-        if (Files.exists(storedFile)) {
-            Files.delete(storedFile);
-        }
-        if (Files.exists(webFile)) {
-            Files.delete(webFile);
-        }
-        if (Files.exists(thumbnailFile)) {
-            Files.delete(thumbnailFile);
-        }
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        storageBackend.delete(fileId);
+        storageBackend.delete(fileId + "_web");
+        storageBackend.delete(fileId + "_thumb");
     }
 
     /**
@@ -187,10 +138,8 @@ public class FileUtil {
 
         // Save the file
         Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-        Path path = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-        try (InputStream inputStream = Files.newInputStream(unencryptedFile)) {
-            Files.copy(new CipherInputStream(inputStream, cipher), path);
-        }
+        AppContext.getInstance().getStorageBackend().put(file.getId(),
+                new CipherInputStream(Files.newInputStream(unencryptedFile), cipher));
 
         // Update the user quota
         user.setStorageCurrent(user.getStorageCurrent() + fileSize);
@@ -255,12 +204,17 @@ public class FileUtil {
     public static long getFileSize(String fileId, User user) {
         // To get the size we copy the decrypted content into a null output stream
         // and count the copied byte size.
-        Path storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
-        if (! Files.exists(storedFile)) {
-            log.debug("File does not exist " + fileId);
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        try {
+            if (!storageBackend.exists(fileId)) {
+                log.debug("File does not exist " + fileId);
+                return File.UNKNOWN_SIZE;
+            }
+        } catch (IOException e) {
+            log.debug("Can't find size of file " + fileId, e);
             return File.UNKNOWN_SIZE;
         }
-        try (InputStream fileInputStream = Files.newInputStream(storedFile);
+        try (InputStream fileInputStream = storageBackend.get(fileId);
              InputStream inputStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey());
              CountingInputStream countingInputStream = new CountingInputStream(inputStream);
         ) {
@@ -0,0 +1,421 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.ImageDeskew;
+import com.sismics.util.Scalr;
+import com.sismics.util.io.InputStreamReaderThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optical character recognition utilities.
+ * The pages are recognized by a pool of workers shared by all the files,
+ * each worker streaming its page to a tesseract process.
+ *
+ * @author agent
+ */
+public class OcrUtil {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(OcrUtil.class);
+
+    /**
+     * Number of pages recognized at the same time.
+     */
+    private static final int THREAD_COUNT = (int) EnvironmentUtil.getLongEnv(Constants.OCR_THREADS_ENV,
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Executor recognizing the pages.
+     */
+    private static final ExecutorService OCR_EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT,
+            new ThreadFactoryBuilder().setNameFormat("ocr-%d").setDaemon(true).build());
+
+    /**
+     * Pages rendered and not recognized yet, all files included.
+     * Each worker recognizes one page and at most one more page per worker waits in the queue,
+     * whatever the number of files recognized.
+     */
+    private static final Semaphore RENDERED_PAGE_PERMITS = new Semaphore(THREAD_COUNT * 2);
+
+    /**
+     * Time after which the recognition of a page is abandoned (in seconds).
+     */
+    private static final long TIMEOUT = EnvironmentUtil.getLongEnv(Constants.OCR_TIMEOUT_ENV, Constants.DEFAULT_OCR_TIMEOUT);
+
+    /**
+     * Number of pages recognized.
+     */
+    private static final AtomicLong pageCount = new AtomicLong();
+
+    /**
+     * Number of pages in error.
+     */
+    private static final AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * Cumulated time spent upscaling and deskewing the pages (in nanoseconds).
+     */
+    private static final AtomicLong preprocessTime = new AtomicLong();
+
+    /**
+     * Cumulated time spent by tesseract on the pages (in nanoseconds).
+     */
+    private static final AtomicLong recognitionTime = new AtomicLong();
+
+    /**
+     * Longest time spent on a page (in nanoseconds).
+     */
+    private static final AtomicLong maxPageTime = new AtomicLong();
+
+    /**
+     * Renderer of the pages of a document.
+     */
+    @FunctionalInterface
+    public interface PageRenderer {
+        /**
+         * Render a page.
+         *
+         * @param pageIndex Page index
+         * @return Page image
+         * @throws IOException e
+         */
+        BufferedImage render(int pageIndex) throws IOException;
+    }
+
+    /**
+     * Optical character recognition on an image.
+     *
+     * @param language Language to OCR
+     * @param image Buffered image
+     * @return Content extracted
+     * @throws Exception e
+     */
+    public static String ocrImage(String language, BufferedImage image) throws Exception {
+        return get(OCR_EXECUTOR.submit(() -> ocrPage(language, image, "image")));
+    }
+
+    /**
+     * Optical character recognition on the pages of a document.
+     * The pages are rendered one after another by the calling thread and recognized in parallel,
+     * the number of pages rendered ahead is bounded for all the files to bound the memory used.
+     *
+     * @param language Language to OCR
+     * @param pageCount Number of pages
+     * @param pageRenderer Renderer of the pages
+     * @return Content extracted, in the pages order
+     * @throws Exception e
+     */
+    public static String ocrPages(String language, int pageCount, PageRenderer pageRenderer) throws Exception {
+        long startTime = System.nanoTime();
+        StringBuilder sb = new StringBuilder();
+        Deque<PendingPage> pendingPageDeque = new ArrayDeque<>();
+        try {
+            int nextPageIndex = 0;
+            while (nextPageIndex < pageCount || !pendingPageDeque.isEmpty()) {
+                // Render ahead while permits are available, wait for one only when nothing is pending
+                while (nextPageIndex < pageCount && acquireRenderPermit(pendingPageDeque.isEmpty())) {
+                    PendingPage pendingPage = new PendingPage();
+                    pendingPageDeque.add(pendingPage);
+                    BufferedImage image;
+                    try {
+                        image = pageRenderer.render(nextPageIndex);
+                    } catch (Exception e) {
+                        pendingPageDeque.removeLast();
+                        pendingPage.release();
+                        throw e;
+                    }
+                    String pageName = "page " + (nextPageIndex + 1) + "/" + pageCount;
+                    pendingPage.future = OCR_EXECUTOR.submit(() -> {
+                        if (!pendingPage.start()) {
+                            return null;
+                        }
+                        try {
+                            return ocrPage(language, image, pageName);
+                        } finally {
+                            RENDERED_PAGE_PERMITS.release();
+                        }
+                    });
+                    nextPageIndex++;
+                }
+
+                sb.append(" ");
+                sb.append(get(pendingPageDeque.poll().future));
+            }
+        } finally {
+            for (PendingPage pendingPage : pendingPageDeque) {
+                if (pendingPage.future != null) {
+                    pendingPage.future.cancel(true);
+                }
+                pendingPage.release();
+            }
+        }
+
+        log.info("OCR of {} pages in {} ms", pageCount, (System.nanoTime() - startTime) / 1_000_000);
+        return sb.toString();
+    }
+
+    /**
+     * Acquire a permit to render a page ahead.
+     *
+     * @param wait True to wait for a permit, false to return immediately
+     * @return True if the permit has been acquired
+     * @throws InterruptedException e
+     */
+    private static boolean acquireRenderPermit(boolean wait) throws InterruptedException {
+        if (wait) {
+            RENDERED_PAGE_PERMITS.acquire();
+            return true;
+        }
+        return RENDERED_PAGE_PERMITS.tryAcquire();
+    }
+
+    /**
+     * Upscale, deskew and recognize a page.
+     *
+     * @param language Language to OCR
+     * @param image Page image
+     * @param pageName Page name, for the logs
+     * @return Content extracted
+     * @throws Exception e
+     */
+    private static String ocrPage(String language, BufferedImage image, String pageName) throws Exception {
+        long startTime = System.nanoTime();
+        try {
+            // Upscale, grayscale and deskew the image
+            BufferedImage resizedImage = Scalr.resize(image, Scalr.Method.AUTOMATIC, Scalr.Mode.AUTOMATIC, 3500, Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+            image.flush();
+            ImageDeskew imageDeskew = new ImageDeskew(resizedImage);
+            BufferedImage deskewedImage = Scalr.rotate(resizedImage, - imageDeskew.getSkewAngle(), Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+            resizedImage.flush();
+            long recognitionStartTime = System.nanoTime();
+
+            String content = recognize(language, deskewedImage);
+            long endTime = System.nanoTime();
+
+            pageCount.incrementAndGet();
+            preprocessTime.addAndGet(recognitionStartTime - startTime);
+            recognitionTime.addAndGet(endTime - recognitionStartTime);
+            maxPageTime.accumulateAndGet(endTime - startTime, Math::max);
+            log.info("OCR {} in {} ms (preprocessing {} ms, recognition {} ms)", pageName,
+                    (endTime - startTime) / 1_000_000,
+                    (recognitionStartTime - startTime) / 1_000_000,
+                    (endTime - recognitionStartTime) / 1_000_000);
+            return content;
+        } catch (Exception e) {
+            errorCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Recognize an image with tesseract.
+     * The image is written to the standard input of the process, no temporary file is needed.
+     * The process is killed if it does not exit within the timeout.
+     *
+     * @param language Language to OCR
+     * @param image Image
+     * @return Content extracted
+     * @throws Exception e
+     */
+    private static String recognize(String language, BufferedImage image) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder("tesseract", "stdin", "stdout", "-l", language);
+
+        // The pages are already recognized in parallel, a single thread per process avoids overloading the cores
+        pb.environment().put("OMP_THREAD_LIMIT", "1");
+        Process process = pb.start();
+        try {
+            // Consume the process error stream
+            new InputStreamReaderThread(process.getErrorStream(), "tesseract").start();
+
+            // Consume the data as text while the process runs, a hung process would block a read in this thread
+            FutureTask<String> output = new FutureTask<>(() -> {
+                try (InputStream is = process.getInputStream()) {
+                    return CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
+                }
+            });
+            new Thread(output, "tesseract output").start();
+
+            // Send the image, tesseract reads it entirely before writing anything
+            try (OutputStream os = new BufferedOutputStream(process.getOutputStream())) {
+                writePgm(image, os);
+            }
+            image.flush();
+
+            if (!process.waitFor(TIMEOUT, TimeUnit.SECONDS)) {
+                throw new IOException("tesseract did not recognize the page in " + TIMEOUT + " seconds");
+            }
+            return get(output);
+        } finally {
+            // Kill the process if it is still running, after a timeout or an interruption
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Write an image as a binary 8 bits grayscale PNM, which tesseract reads without decoding.
+     *
+     * @param image Image
+     * @param outputStream Output stream
+     * @throws IOException e
+     */
+    private static void writePgm(BufferedImage image, OutputStream outputStream) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage grayImage = image;
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            // Transparent areas, like the corners added by the rotation, become white
+            grayImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D graphics = grayImage.createGraphics();
+            graphics.drawImage(image, 0, 0, Color.WHITE, null);
+            graphics.dispose();
+        }
+
+        outputStream.write(("P5\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        Raster raster = grayImage.getRaster();
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            raster.getDataElements(0, y, width, 1, row);
+            outputStream.write(row);
+        }
+        if (grayImage != image) {
+            grayImage.flush();
+        }
+    }
+
+    /**
+     * Wait for a recognized page.
+     *
+     * @param future Recognition task
+     * @return Content extracted
+     * @throws Exception e
+     */
+    private static String get(Future<String> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of pages recognized.
+     *
+     * @return Number of pages
+     */
+    public static long getPageCount() {
+        return pageCount.get();
+    }
+
+    /**
+     * Returns the number of pages in error.
+     *
+     * @return Number of pages in error
+     */
+    public static long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Returns the average time spent upscaling and deskewing a page.
+     *
+     * @return Average preprocessing time (in milliseconds)
+     */
+    public static double getAveragePreprocessTime() {
+        long count = pageCount.get();
+        return count == 0 ? 0 : preprocessTime.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the average time spent by tesseract on a page.
+     *
+     * @return Average recognition time (in milliseconds)
+     */
+    public static double getAverageRecognitionTime() {
+        long count = pageCount.get();
+        return count == 0 ? 0 : recognitionTime.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the longest time spent on a page.
+     *
+     * @return Maximum page time (in milliseconds)
+     */
+    public static double getMaxPageTime() {
+        return maxPageTime.get() / 1e6;
+    }
+
+    /**
+     * Returns the number of pages recognized at the same time.
+     *
+     * @return Number of threads
+     */
+    public static int getThreadCount() {
+        return THREAD_COUNT;
+    }
+
+    /**
+     * Page rendered ahead, holding a render permit until recognized.
+     */
+    private static class PendingPage {
+        /**
+         * Recognition task, null while the page is rendered.
+         */
+        private Future<String> future;
+
+        /**
+         * True once the recognition has started or the permit has been released.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /**
+         * Mark the recognition as started, the task then releases the permit.
+         *
+         * @return False if the page has been abandoned
+         */
+        private boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        /**
+         * Release the permit of a page whose recognition has not started.
+         */
+        private void release() {
+            if (started.compareAndSet(false, true)) {
+                RENDERED_PAGE_PERMITS.release();
+            }
+        }
+    }
+}
@@ -1,32 +1,54 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lowagie.text.FontFactory;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.dto.DocumentDto;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.format.FormatHandler;
 import com.sismics.docs.core.util.format.FormatHandlerUtil;
 import com.sismics.docs.core.util.pdf.PdfPage;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.font.DocsPDType1Font;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.crypto.CipherOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * PDF utilities.
@@ -39,15 +61,32 @@ public class PdfUtil {
      */
     private static final Logger log = LoggerFactory.getLogger(PdfUtil.class);
 
+    /**
+     * Suffix of the cached PDF exports, encrypted with the private key of the document owner.
+     */
+    private static final String CACHE_SUFFIX = ".pdf.enc";
+
+    /**
+     * Executor decrypting and converting the files to PDF, created on first use.
+     */
+    private static ExecutorService conversionExecutor;
+
+    /**
+     * Locks preventing concurrent renderings of the same PDF export.
+     */
+    private static final Striped<Lock> RENDER_LOCKS = Striped.lazyWeakLock(64);
+
     /**
      * Convert a document and its files to a merged PDF file.
+     * The files are decrypted and converted by a pool of workers, and merged in order.
      * 
      * @param documentDto Document DTO
      * @param fileList List of files
      * @param fitImageToPage Fit images to the page
      * @param metadata Add a page with metadata
      * @param margin Margins in millimeters
-     * @param outputStream Output stream to write to, will be closed
+     * @param outputStream Output stream to write to
+     * @throws Exception e
      */
     public static void convertToPdf(DocumentDto documentDto, List<File> fileList,
             boolean fitImageToPage, boolean metadata, int margin, OutputStream outputStream) throws Exception {
@@ -55,6 +94,13 @@ public class PdfUtil {
         Closer closer = Closer.create();
         MemoryUsageSetting memUsageSettings = MemoryUsageSetting.setupMixed(1000000); // 1MB max memory usage
         memUsageSettings.setTempDir(new java.io.File(System.getProperty("java.io.tmpdir"))); // To OS temp
+        PDFMergerUtility pdfMergerUtility = new PDFMergerUtility();
+
+        // Decrypt and convert the files in parallel
+        List<Future<Path>> convertedFileList = new ArrayList<>();
+        for (File file : fileList) {
+            convertedFileList.add(getConversionExecutor().submit(() -> convertFileToPdf(file, fitImageToPage, margin, memUsageSettings)));
+        }
 
         // Create a blank PDF
         try (PDDocument doc = new PDDocument(memUsageSettings)) {
@@ -101,23 +147,245 @@ public class PdfUtil {
                 }
             }
             
-            // Add files
-            for (File file : fileList) {
-                Path storedFile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-
-                // Decrypt the file to a temporary file
-                Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, file.getPrivateKey());
-                FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType());
-                if (formatHandler != null) {
-                    formatHandler.appendToPdf(unencryptedFile, doc, fitImageToPage, margin, memUsageSettings, closer);
+            // Add the files in order, as soon as the workers have converted them
+            for (Future<Path> future : convertedFileList) {
+                Path convertedFile = future.get();
+                if (convertedFile != null) {
+                    PDDocument mergeDoc = PDDocument.load(convertedFile.toFile(), memUsageSettings);
+                    closer.register(mergeDoc);
+                    pdfMergerUtility.appendDocument(doc, mergeDoc);
                 }
             }
-            
+
             doc.save(outputStream); // Write to the output stream
+        } finally {
+            for (Future<Path> future : convertedFileList) {
+                future.cancel(true);
+            }
             closer.close(); // Close all remaining opened PDF
         }
     }
 
+    /**
+     * Decrypt a file and convert it to a standalone PDF.
+     *
+     * @param file File
+     * @param fitImageToPage Fit images to the page
+     * @param margin Margins in millimeters
+     * @param memUsageSettings Memory usage
+     * @return PDF file, null if the file format can't be converted
+     * @throws Exception e
+     */
+    private static Path convertFileToPdf(File file, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings) throws Exception {
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType())) {
+            if (formatHandler == null) {
+                return null;
+            }
+
+            // Decrypt the file to a temporary file
+            Path unencryptedFile = EncryptionUtil.decryptFile(file.getId(), file.getPrivateKey());
+            if (MimeType.APPLICATION_PDF.equals(file.getMimeType())) {
+                // Already a PDF
+                return unencryptedFile;
+            }
+
+            Path pdfFile = AppContext.getInstance().getFileService().createTemporaryFile();
+            try (Closer closer = Closer.create();
+                 PDDocument doc = new PDDocument(memUsageSettings)) {
+                formatHandler.appendToPdf(unencryptedFile, doc, fitImageToPage, margin, memUsageSettings, closer);
+                doc.save(pdfFile.toFile());
+            }
+            return pdfFile;
+        }
+    }
+
+    /**
+     * Write the PDF export of a document, from the cache if it was already rendered with the same files and options.
+     * The cached exports are encrypted like the stored files, and expire if they are not exported again.
+     *
+     * @param documentDto Document DTO
+     * @param fileList List of files
+     * @param fitImageToPage Fit images to the page
+     * @param metadata Add a page with metadata
+     * @param margin Margins in millimeters
+     * @param privateKey Private key of the document owner, encrypting the cached export, null to skip the cache
+     * @param outputStream Output stream to write to
+     * @throws Exception e
+     */
+    public static void exportPdf(DocumentDto documentDto, List<File> fileList,
+            boolean fitImageToPage, boolean metadata, int margin, String privateKey, OutputStream outputStream) throws Exception {
+        // Without a key to encrypt it, the export is not cached
+        if (Strings.isNullOrEmpty(privateKey)) {
+            convertToPdf(documentDto, fileList, fitImageToPage, metadata, margin, outputStream);
+            return;
+        }
+
+        Path cachedFile = DirectoryUtil.getPdfCacheDirectory().resolve(getCacheKey(documentDto, fileList, fitImageToPage, metadata, margin) + CACHE_SUFFIX);
+        if (!isCached(cachedFile)) {
+            Lock lock = RENDER_LOCKS.get(cachedFile.getFileName().toString());
+            lock.lock();
+            try {
+                // Render once, concurrent exports of the same document wait for it
+                if (!isCached(cachedFile)) {
+                    Path tmpFile = Files.createTempFile(cachedFile.getParent(), "render", ".tmp");
+                    try (OutputStream tmpOutputStream = new CipherOutputStream(Files.newOutputStream(tmpFile),
+                            EncryptionUtil.getEncryptionCipher(privateKey))) {
+                        convertToPdf(documentDto, fileList, fitImageToPage, metadata, margin, tmpOutputStream);
+                    } catch (Exception e) {
+                        Files.deleteIfExists(tmpFile);
+                        throw e;
+                    }
+                    Files.move(tmpFile, cachedFile, StandardCopyOption.ATOMIC_MOVE);
+                    evictCache();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Stream from the cache, and keep the recently exported documents in it
+        InputStream inputStream;
+        try {
+            Files.setLastModifiedTime(cachedFile, FileTime.fromMillis(System.currentTimeMillis()));
+            inputStream = Files.newInputStream(cachedFile);
+        } catch (NoSuchFileException e) {
+            // Invalidated meanwhile
+            convertToPdf(documentDto, fileList, fitImageToPage, metadata, margin, outputStream);
+            return;
+        }
+        try (InputStream decryptedInputStream = EncryptionUtil.decryptInputStream(inputStream, privateKey)) {
+            ByteStreams.copy(decryptedInputStream, outputStream);
+        }
+    }
+
+    /**
+     * Returns true if a PDF export is cached and not expired.
+     *
+     * @param cachedFile Cached PDF export
+     * @return True if the cached export can be used
+     * @throws IOException e
+     */
+    private static boolean isCached(Path cachedFile) throws IOException {
+        try {
+            return Files.getLastModifiedTime(cachedFile).toMillis() > System.currentTimeMillis() - getCacheTtl();
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the time an exported PDF stays in the cache after its last export.
+     *
+     * @return Time to live (in milliseconds)
+     */
+    private static long getCacheTtl() {
+        return EnvironmentUtil.getLongEnv(Constants.PDF_CACHE_TTL_ENV, Constants.DEFAULT_PDF_CACHE_TTL);
+    }
+
+    /**
+     * Returns the cache key of a PDF export.
+     * The document ID prefixes the key, so that all the exports of a document can be invalidated.
+     *
+     * @param documentDto Document DTO
+     * @param fileList List of files
+     * @param fitImageToPage Fit images to the page
+     * @param metadata Add a page with metadata
+     * @param margin Margins in millimeters
+     * @return Cache key
+     */
+    private static String getCacheKey(DocumentDto documentDto, List<File> fileList,
+            boolean fitImageToPage, boolean metadata, int margin) {
+        StringBuilder sb = new StringBuilder()
+                .append(documentDto.getUpdateTimestamp())
+                .append('|').append(fitImageToPage)
+                .append('|').append(metadata)
+                .append('|').append(margin);
+        for (File file : fileList) {
+            sb.append('|').append(file.getId()).append(':').append(file.getVersion());
+        }
+        return documentDto.getId() + "_" + Hashing.sha256().hashString(sb, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Remove the cached PDF exports of a document.
+     *
+     * @param documentId Document ID
+     */
+    public static void invalidateCache(String documentId) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(DirectoryUtil.getPdfCacheDirectory(), documentId + "_*")) {
+            for (Path cachedFile : stream) {
+                Files.deleteIfExists(cachedFile);
+            }
+        } catch (IOException e) {
+            log.error("Error invalidating the PDF cache of document " + documentId, e);
+        }
+    }
+
+    /**
+     * Remove the expired PDF exports, then the least recently exported ones until the cache fits in its maximum size.
+     * Unencrypted exports of the previous versions are removed too.
+     */
+    private static void evictCache() {
+        long maxSize = EnvironmentUtil.getLongEnv(Constants.PDF_CACHE_SIZE_ENV, Constants.DEFAULT_PDF_CACHE_SIZE);
+        long expiredTime = System.currentTimeMillis() - getCacheTtl();
+        try (Stream<Path> stream = Files.list(DirectoryUtil.getPdfCacheDirectory())) {
+            List<Path> cachedFileList = new ArrayList<>();
+            for (Path path : stream.collect(Collectors.toList())) {
+                String fileName = path.getFileName().toString();
+                boolean rendering = fileName.endsWith(".tmp");
+                if ((!rendering && !fileName.endsWith(CACHE_SUFFIX)) || path.toFile().lastModified() < expiredTime) {
+                    Files.deleteIfExists(path);
+                } else if (!rendering) {
+                    cachedFileList.add(path);
+                }
+            }
+            cachedFileList.sort(Comparator.comparing(path -> path.toFile().lastModified()));
+
+            long size = 0;
+            for (Path cachedFile : cachedFileList) {
+                size += cachedFile.toFile().length();
+            }
+            for (Path cachedFile : cachedFileList) {
+                if (size <= maxSize) {
+                    break;
+                }
+                size -= cachedFile.toFile().length();
+                Files.deleteIfExists(cachedFile);
+            }
+        } catch (IOException e) {
+            log.error("Error evicting from the PDF cache", e);
+        }
+    }
+
+    /**
+     * Returns the executor decrypting and converting the files to PDF.
+     *
+     * @return Executor
+     */
+    private static synchronized ExecutorService getConversionExecutor() {
+        if (conversionExecutor == null) {
+            conversionExecutor = Executors.newFixedThreadPool(
+                    (int) EnvironmentUtil.getLongEnv(Constants.PDF_EXPORT_THREADS_ENV, Math.max(Runtime.getRuntime().availableProcessors() / 2, 1)),
+                    new ThreadFactoryBuilder().setNameFormat("pdf-export-%d").setDaemon(true).build());
+        }
+        return conversionExecutor;
+    }
+
+    /**
+     * Stop the workers converting the files to PDF.
+     */
+    public static synchronized void shutDown() {
+        if (conversionExecutor != null) {
+            conversionExecutor.shutdown();
+            try {
+                conversionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            conversionExecutor = null;
+        }
+    }
+
     /**
      * Register fonts.
      */
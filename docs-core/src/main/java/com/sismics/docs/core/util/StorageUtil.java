@@ -0,0 +1,163 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Resolves the paths of the stored files.
+ * Files are sharded in two levels of directories named after a hash of the file ID
+ * (for example ab/cd/[fileId]_web), so that no directory grows too large.
+ * Files stored flat at the root of the storage directory by older versions are still readable,
+ * they are moved to their shard in background by the storage migration service.
+ *
+ * @author agent
+ */
+public class StorageUtil {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(StorageUtil.class);
+
+    /**
+     * Name of the directory of the deduplicated contents, in the storage directory.
+     */
+    private static final String BLOB_DIRECTORY = "blobs";
+
+    /**
+     * Returns the path of a stored file to read it.
+     *
+     * @param name Stored file name (file ID, optionally followed by a variant suffix)
+     * @return Path of the stored file, in its shard if it doesn't exist in any layout
+     */
+    public static Path getStoredFile(String name) {
+        Path shardedFile = getShardedFile(name);
+        if (Files.exists(shardedFile)) {
+            return shardedFile;
+        }
+
+        // Not migrated yet
+        Path flatFile = DirectoryUtil.getStorageDirectory().resolve(name);
+        if (Files.exists(flatFile)) {
+            return flatFile;
+        }
+        return shardedFile;
+    }
+
+    /**
+     * Returns the path of a stored file to write it.
+     * The shard directories are created if needed.
+     *
+     * @param name Stored file name (file ID, optionally followed by a variant suffix)
+     * @return Path of the stored file in its shard
+     * @throws IOException e
+     */
+    public static Path getNewStoredFile(String name) throws IOException {
+        Path shardedFile = getShardedFile(name);
+        Files.createDirectories(shardedFile.getParent());
+        return shardedFile;
+    }
+
+    /**
+     * Deletes a stored file from both layouts.
+     *
+     * @param name Stored file name
+     * @throws IOException e
+     */
+    public static void deleteStoredFile(String name) throws IOException {
+        Files.deleteIfExists(getShardedFile(name));
+        Files.deleteIfExists(DirectoryUtil.getStorageDirectory().resolve(name));
+    }
+
+    /**
+     * Returns all stored files, in both layouts.
+     * The stream must be closed.
+     *
+     * @return Stored files
+     * @throws IOException e
+     */
+    public static Stream<Path> listStoredFiles() throws IOException {
+        Path blobDirectory = DirectoryUtil.getStorageDirectory().resolve(BLOB_DIRECTORY);
+        return Files.walk(DirectoryUtil.getStorageDirectory(), 3)
+                .filter(path -> !path.startsWith(blobDirectory))
+                .filter(Files::isRegularFile);
+    }
+
+    /**
+     * Returns the directory of the deduplicated contents, shared by the stored files.
+     *
+     * @return Blob directory
+     */
+    public static Path getBlobDirectory() {
+        Path blobDirectory = DirectoryUtil.getStorageDirectory().resolve(BLOB_DIRECTORY);
+        if (!Files.isDirectory(blobDirectory)) {
+            try {
+                Files.createDirectories(blobDirectory);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return blobDirectory;
+    }
+
+    /**
+     * Moves a batch of flat stored files to their shard.
+     *
+     * @param batchSize Maximum number of files to move
+     * @return Number of files moved, lower than the batch size when the migration is over
+     * @throws IOException e
+     */
+    public static int migrateFlatFiles(int batchSize) throws IOException {
+        List<Path> flatFileList = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(DirectoryUtil.getStorageDirectory(), Files::isRegularFile)) {
+            for (Path flatFile : directoryStream) {
+                flatFileList.add(flatFile);
+                if (flatFileList.size() >= batchSize) {
+                    break;
+                }
+            }
+        }
+
+        for (Path flatFile : flatFileList) {
+            Path shardedFile = getNewStoredFile(flatFile.getFileName().toString());
+            try {
+                // A rename on the same file store, the file is always readable in one of the layouts
+                Files.move(flatFile, shardedFile);
+            } catch (FileAlreadyExistsException e) {
+                // Written again in its shard in the meantime, the flat file is outdated
+                Files.deleteIfExists(flatFile);
+            } catch (NoSuchFileException e) {
+                log.debug("Stored file deleted during migration: " + flatFile);
+            }
+        }
+        return flatFileList.size();
+    }
+
+    /**
+     * Returns the path of a stored file in its shard.
+     * All variants of a file share the same shard.
+     *
+     * @param name Stored file name
+     * @return Path of the stored file
+     */
+    private static Path getShardedFile(String name) {
+        int suffixIndex = name.indexOf('_');
+        String fileId = suffixIndex == -1 ? name : name.substring(0, suffixIndex);
+        String hash = Hashing.murmur3_32_fixed().hashString(fileId, StandardCharsets.UTF_8).toString();
+        return DirectoryUtil.getStorageDirectory()
+                .resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(name);
+    }
+}
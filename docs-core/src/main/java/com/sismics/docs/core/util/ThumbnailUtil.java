@@ -0,0 +1,182 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.util.EnvironmentUtil;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thumbnail utilities.
+ *
+ * @author agent
+ */
+public class ThumbnailUtil {
+    /**
+     * Size of the largest side of the web images.
+     */
+    public static final int WEB_SIZE = 1280;
+
+    /**
+     * Size of the largest side of the thumbnails.
+     */
+    public static final int THUMBNAIL_SIZE = 256;
+
+    /**
+     * Memory available to the images being decoded (in kilobytes).
+     */
+    private static final int MEMORY_KB = (int) Math.min(Integer.MAX_VALUE,
+            EnvironmentUtil.getLongEnv(Constants.THUMBNAIL_MEMORY_ENV, Runtime.getRuntime().maxMemory() / 4) / 1024);
+
+    /**
+     * Memory permits of the images being decoded, one per kilobyte.
+     */
+    private static final Semaphore memorySemaphore = new Semaphore(MEMORY_KB, true);
+
+    /**
+     * Decode an image which will be reduced to a given size.
+     * The pixels are skipped at decoding time while keeping twice the size requested,
+     * the final resize smoothing the result. The decodes wait until their memory is available,
+     * an image bigger than the whole memory available being decoded alone.
+     * The memory of the decoded image and of the reduced image is held until the returned image is closed.
+     *
+     * @param file File
+     * @param size Size of the largest side of the final image
+     * @return Decoded image, null if the format is not supported
+     * @throws IOException e
+     */
+    public static DecodedImage readImage(Path file, int size) throws IOException {
+        return decode(file, size);
+    }
+
+    /**
+     * Decode an image at full resolution.
+     * The decodes wait until their memory is available, like the reduced ones.
+     * The memory of the decoded image is held until the returned image is closed.
+     *
+     * @param file File
+     * @return Decoded image, null if the format is not supported
+     * @throws IOException e
+     */
+    public static DecodedImage readImage(Path file) throws IOException {
+        return decode(file, 0);
+    }
+
+    /**
+     * Decode an image within the memory available.
+     *
+     * @param file File
+     * @param size Size of the largest side of the final image, 0 to keep the full resolution
+     * @return Decoded image, null if the format is not supported
+     * @throws IOException e
+     */
+    private static DecodedImage decode(Path file, int size) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readerIterator = ImageIO.getImageReaders(imageInputStream);
+            if (!readerIterator.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readerIterator.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = size == 0 ? 1 : (int) Math.max(1, Math.max(width, height) / (2L * size));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                // 4 bytes per decoded pixel, plus the reduced image produced from it
+                long decodedKb = ((long) divideRoundUp(width, subsampling) * divideRoundUp(height, subsampling) * 4) / 1024;
+                long reducedKb = Math.min(decodedKb, (long) size * size * 4 / 1024);
+                int permits = (int) Math.max(1, Math.min(decodedKb + reducedKb, MEMORY_KB));
+                try {
+                    memorySemaphore.acquire(permits);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to decode: " + file);
+                }
+                try {
+                    return new DecodedImage(reader.read(0, param), permits);
+                } catch (Throwable e) {
+                    memorySemaphore.release(permits);
+                    throw e;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Integer division rounded up.
+     *
+     * @param dividend Dividend
+     * @param divisor Divisor
+     * @return Quotient rounded up
+     */
+    private static int divideRoundUp(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * Decoded image, holding its memory permits until closed.
+     */
+    public static class DecodedImage implements Closeable {
+        /**
+         * Image.
+         */
+        private final BufferedImage image;
+
+        /**
+         * Memory permits held.
+         */
+        private final int permits;
+
+        /**
+         * True once closed.
+         */
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        /**
+         * Create a decoded image.
+         *
+         * @param image Image
+         * @param permits Memory permits held
+         */
+        public DecodedImage(BufferedImage image, int permits) {
+            this.image = image;
+            this.permits = permits;
+        }
+
+        /**
+         * Returns the image.
+         *
+         * @return Image
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Flush the image and release its memory permits.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                image.flush();
+                memorySemaphore.release(permits);
+            }
+        }
+    }
+}
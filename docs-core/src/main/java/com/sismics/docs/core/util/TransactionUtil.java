@@ -68,7 +68,7 @@ public class TransactionUtil {
         // No error in the current request : commit the transaction
         if (em.isOpen()) {
             if (em.getTransaction() != null && em.getTransaction().isActive()) {
-                em.getTransaction().commit();
+                context.commit(em.getTransaction());
                 
                 try {
                     em.close();
@@ -89,8 +89,9 @@ public class TransactionUtil {
      * Commits the current transaction, and flushes the changes to the database.
      */
     public static void commit() {
-        EntityTransaction tx = ThreadLocalContext.get().getEntityManager().getTransaction();
-        tx.commit();
+        ThreadLocalContext context = ThreadLocalContext.get();
+        EntityTransaction tx = context.getEntityManager().getTransaction();
+        context.commit(tx);
         tx.begin();
     }
 }
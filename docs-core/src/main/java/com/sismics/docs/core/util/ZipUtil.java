@@ -0,0 +1,424 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.mime.MimeTypeUtil;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * ZIP utilities.
+ *
+ * @author agent
+ */
+public class ZipUtil {
+    /**
+     * Number of threads decrypting and compressing the files ahead of the written one.
+     */
+    private static final int THREAD_COUNT = (int) EnvironmentUtil.getLongEnv(Constants.ZIP_EXPORT_THREADS_ENV,
+            Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+
+    /**
+     * Memory of the compressed entries buffered ahead of the written one, per export (in bytes).
+     */
+    private static final long BUFFER_SIZE = EnvironmentUtil.getLongEnv(Constants.ZIP_EXPORT_BUFFER_SIZE_ENV,
+            32L * 1024 * 1024);
+
+    /**
+     * Maximum size of a file compressed ahead, so that every worker can buffer one.
+     */
+    private static final long MAX_BUFFERED_FILE_SIZE = BUFFER_SIZE / (THREAD_COUNT + 1);
+
+    /**
+     * Size of the chunks of the files decrypted ahead through a pipe (in bytes).
+     */
+    private static final int PIPE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Number of chunks of a pipe, a pipe uses the memory of a file compressed ahead.
+     */
+    private static final int PIPE_CHUNK_COUNT = (int) Math.max(1, MAX_BUFFERED_FILE_SIZE / PIPE_CHUNK_SIZE);
+
+    /**
+     * Executor compressing the files ahead.
+     */
+    private static ExecutorService compressionExecutor;
+
+    /**
+     * Write a list of files to a ZIP stream.
+     * The files are decrypted and compressed by a pool of workers ahead of the written one,
+     * into memory buffers within a byte budget, then copied as is to the ZIP stream.
+     * The files already compressed are stored instead of being deflated again.
+     * The files too large to be buffered are decrypted by a worker into a bounded pipe
+     * and compressed while written, the other workers keep compressing the next ones meanwhile.
+     * Nothing is written to the disk.
+     * The private key of each file must be set.
+     *
+     * @param fileList List of files
+     * @param outputStream Output stream to write to
+     * @throws IOException e
+     */
+    public static void zipFiles(List<File> fileList, OutputStream outputStream) throws IOException {
+        Deque<PendingFile> pendingFileDeque = new ArrayDeque<>();
+        try (ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream)) {
+            int nextIndex = 0;
+            long bufferedSize = 0;
+            for (int index = 0; index < fileList.size(); index++) {
+                // Compress ahead at most one file per worker, and at most the buffer size in memory
+                while (nextIndex < fileList.size() && pendingFileDeque.size() <= THREAD_COUNT) {
+                    File file = fileList.get(nextIndex);
+                    boolean compressed = MimeTypeUtil.isCompressed(file.getMimeType());
+                    long fileSize = file.getSize() == null ? File.UNKNOWN_SIZE : file.getSize();
+                    boolean buffered = fileSize >= 0 && fileSize <= MAX_BUFFERED_FILE_SIZE;
+                    long reservedSize = buffered ? fileSize : (long) PIPE_CHUNK_COUNT * PIPE_CHUNK_SIZE;
+                    if (!pendingFileDeque.isEmpty() && bufferedSize + reservedSize > BUFFER_SIZE) {
+                        break;
+                    }
+                    PendingFile pendingFile;
+                    if (buffered) {
+                        Future<CompressedFile> future = getCompressionExecutor().submit(() -> compressFile(file, compressed));
+                        pendingFile = new PendingFile(file, compressed, future, null, reservedSize);
+                    } else {
+                        DecryptedPipe pipe = new DecryptedPipe();
+                        pipe.future = getCompressionExecutor().submit(() -> pipe.fill(file));
+                        pendingFile = new PendingFile(file, compressed, null, pipe, reservedSize);
+                    }
+                    pendingFileDeque.add(pendingFile);
+                    bufferedSize += reservedSize;
+                    nextIndex++;
+                }
+
+                PendingFile pendingFile = pendingFileDeque.poll();
+                File file = pendingFile.file;
+                ZipArchiveEntry zipEntry = new ZipArchiveEntry(index + "-" + file.getFullName(Integer.toString(index)));
+                if (pendingFile.pipe != null) {
+                    // Deflating a compressed file again only costs CPU. It can't be stored:
+                    // the ZIP stream is not seekable and its CRC is only known once read
+                    zipOutputStream.setLevel(pendingFile.compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                    zipOutputStream.putArchiveEntry(zipEntry);
+                    try {
+                        ByteStreams.copy(pendingFile.pipe, zipOutputStream);
+                    } finally {
+                        // Release the worker if the copy failed
+                        pendingFile.pipe.future.cancel(true);
+                    }
+                    zipOutputStream.closeArchiveEntry();
+                } else {
+                    CompressedFile compressedFile = get(pendingFile.future);
+                    zipEntry.setMethod(compressedFile.method);
+                    zipEntry.setSize(compressedFile.size);
+                    zipEntry.setCompressedSize(compressedFile.content.length);
+                    zipEntry.setCrc(compressedFile.crc);
+                    zipOutputStream.addRawArchiveEntry(zipEntry, new ByteArrayInputStream(compressedFile.content));
+                }
+                bufferedSize -= pendingFile.reservedSize;
+            }
+        } finally {
+            for (PendingFile pendingFile : pendingFileDeque) {
+                if (pendingFile.future != null) {
+                    pendingFile.future.cancel(true);
+                }
+                if (pendingFile.pipe != null) {
+                    pendingFile.pipe.future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decrypt and compress a file in memory, computing its CRC on the way.
+     *
+     * @param file File
+     * @param compressed True if the file is already compressed, it is then stored
+     * @return Compressed file
+     * @throws IOException e
+     */
+    private static CompressedFile compressFile(File file, boolean compressed) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(file.getSize().intValue());
+        try (InputStream inputStream = new CheckedInputStream(decryptFile(file), crc)) {
+            if (compressed) {
+                long size = ByteStreams.copy(inputStream, outputStream);
+                return new CompressedFile(ZipEntry.STORED, size, crc.getValue(), outputStream.toByteArray());
+            }
+
+            // Raw deflate data, the ZIP entry headers are written by the ZIP stream
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                long size;
+                try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream, deflater)) {
+                    size = ByteStreams.copy(inputStream, deflaterOutputStream);
+                }
+                return new CompressedFile(ZipEntry.DEFLATED, size, crc.getValue(), outputStream.toByteArray());
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Open a decrypted stream on a file.
+     *
+     * @param file File
+     * @return Decrypted stream
+     * @throws IOException e
+     */
+    private static InputStream decryptFile(File file) throws IOException {
+        try {
+            return EncryptionUtil.decryptInputStream(file.getId(), file.getPrivateKey(), 0);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error decrypting the file " + file.getId(), e);
+        }
+    }
+
+    /**
+     * Wait for a file prepared by a worker.
+     *
+     * @param future Compression or decryption task
+     * @param <T> Result type
+     * @return Task result
+     * @throws IOException e
+     */
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error preparing a file", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the executor compressing the files ahead.
+     *
+     * @return Executor
+     */
+    private static synchronized ExecutorService getCompressionExecutor() {
+        if (compressionExecutor == null) {
+            compressionExecutor = Executors.newFixedThreadPool(THREAD_COUNT,
+                    new ThreadFactoryBuilder().setNameFormat("zip-export-%d").setDaemon(true).build());
+        }
+        return compressionExecutor;
+    }
+
+    /**
+     * Stop the workers compressing the files.
+     */
+    public static synchronized void shutDown() {
+        if (compressionExecutor != null) {
+            compressionExecutor.shutdown();
+            try {
+                compressionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            compressionExecutor = null;
+        }
+    }
+
+    /**
+     * File waiting to be written.
+     */
+    private static class PendingFile {
+        /**
+         * File.
+         */
+        private final File file;
+
+        /**
+         * True if the file is already compressed.
+         */
+        private final boolean compressed;
+
+        /**
+         * Compression task, null if the file is compressed while written.
+         */
+        private final Future<CompressedFile> future;
+
+        /**
+         * Pipe of the decrypted file, null if the file is compressed ahead.
+         */
+        private final DecryptedPipe pipe;
+
+        /**
+         * Memory reserved for the compressed entry or the pipe.
+         */
+        private final long reservedSize;
+
+        /**
+         * Create a pending file.
+         *
+         * @param file File
+         * @param compressed True if the file is already compressed
+         * @param future Compression task, null if the file is compressed while written
+         * @param pipe Pipe of the decrypted file, null if the file is compressed ahead
+         * @param reservedSize Memory reserved for the compressed entry or the pipe
+         */
+        private PendingFile(File file, boolean compressed, Future<CompressedFile> future, DecryptedPipe pipe, long reservedSize) {
+            this.file = file;
+            this.compressed = compressed;
+            this.future = future;
+            this.pipe = pipe;
+            this.reservedSize = reservedSize;
+        }
+    }
+
+    /**
+     * File compressed ahead.
+     */
+    private static class CompressedFile {
+        /**
+         * ZIP compression method of the entry.
+         */
+        private final int method;
+
+        /**
+         * Size of the decrypted file.
+         */
+        private final long size;
+
+        /**
+         * CRC-32 of the decrypted file.
+         */
+        private final long crc;
+
+        /**
+         * Compressed content of the entry.
+         */
+        private final byte[] content;
+
+        /**
+         * Create a compressed file.
+         *
+         * @param method ZIP compression method of the entry
+         * @param size Size of the decrypted file
+         * @param crc CRC-32 of the decrypted file
+         * @param content Compressed content of the entry
+         */
+        private CompressedFile(int method, long size, long crc, byte[] content) {
+            this.method = method;
+            this.size = size;
+            this.crc = crc;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Bounded pipe of the decrypted content of a file, filled by a worker and read by the writing thread.
+     */
+    private static class DecryptedPipe extends InputStream {
+        /**
+         * Chunk marking the end of the file.
+         */
+        private static final byte[] END = new byte[0];
+
+        /**
+         * Chunks decrypted and not read yet.
+         */
+        private final BlockingQueue<byte[]> chunkQueue = new ArrayBlockingQueue<>(PIPE_CHUNK_COUNT);
+
+        /**
+         * Decryption task.
+         */
+        private Future<Void> future;
+
+        /**
+         * Chunk being read.
+         */
+        private byte[] chunk = END;
+
+        /**
+         * Position in the chunk being read.
+         */
+        private int position;
+
+        /**
+         * True once the end of the file has been read.
+         */
+        private boolean ended;
+
+        /**
+         * Decrypt a file into the pipe, waiting for the reader when the pipe is full.
+         *
+         * @param file File
+         * @return Nothing
+         * @throws Exception e
+         */
+        private Void fill(File file) throws Exception {
+            try (InputStream inputStream = decryptFile(file)) {
+                byte[] buffer = new byte[PIPE_CHUNK_SIZE];
+                int length;
+                while ((length = ByteStreams.read(inputStream, buffer, 0, buffer.length)) > 0) {
+                    chunkQueue.put(Arrays.copyOf(buffer, length));
+                }
+            } finally {
+                // The reader then gets the error of the task, if any
+                chunkQueue.put(END);
+            }
+            return null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == chunk.length) {
+                if (ended) {
+                    return -1;
+                }
+                try {
+                    chunk = chunkQueue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                position = 0;
+                if (chunk == END) {
+                    ended = true;
+                    get(future);
+                    return -1;
+                }
+            }
+            int length = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, length);
+            position += length;
+            return length;
+        }
+    }
+}
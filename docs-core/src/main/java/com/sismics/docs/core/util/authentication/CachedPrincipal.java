@@ -0,0 +1,74 @@
+package com.sismics.docs.core.util.authentication;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+/**
+ * Authenticated user with its flattened groups and base functions, as kept in the principal cache.
+ *
+ * @author agent
+ */
+public class CachedPrincipal {
+    /**
+     * User ID.
+     */
+    private final String userId;
+
+    /**
+     * Username.
+     */
+    private final String username;
+
+    /**
+     * Email.
+     */
+    private final String email;
+
+    /**
+     * IDs of the groups of the user, including the parent groups.
+     */
+    private final Set<String> groupIdSet;
+
+    /**
+     * Base functions of the user and its groups.
+     */
+    private final Set<String> baseFunctionSet;
+
+    /**
+     * Create a cached principal.
+     *
+     * @param userId User ID
+     * @param username Username
+     * @param email Email
+     * @param groupIdSet IDs of the groups of the user, including the parent groups
+     * @param baseFunctionSet Base functions of the user and its groups
+     */
+    public CachedPrincipal(String userId, String username, String email, Set<String> groupIdSet, Set<String> baseFunctionSet) {
+        this.userId = userId;
+        this.username = username;
+        this.email = email;
+        this.groupIdSet = ImmutableSet.copyOf(groupIdSet);
+        this.baseFunctionSet = ImmutableSet.copyOf(baseFunctionSet);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Set<String> getGroupIdSet() {
+        return groupIdSet;
+    }
+
+    public Set<String> getBaseFunctionSet() {
+        return baseFunctionSet;
+    }
+}
@@ -0,0 +1,86 @@
+package com.sismics.docs.core.util.authentication;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.util.EnvironmentUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the authenticated principals, keyed by authentication token.
+ * The entries expire after a short time, and are invalidated when a user or a group is updated.
+ *
+ * @author agent
+ */
+public class PrincipalCache {
+    /**
+     * Maximum number of cached principals.
+     */
+    private static final long MAXIMUM_SIZE = 10000L;
+
+    /**
+     * Cached principals.
+     */
+    private final Cache<String, CachedPrincipal> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(EnvironmentUtil.getLongEnv(Constants.PRINCIPAL_CACHE_TTL_ENV, Constants.DEFAULT_PRINCIPAL_CACHE_TTL), TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * Incremented on each invalidation, so that a principal loaded before an invalidation is not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns a cached principal.
+     *
+     * @param key Authentication token
+     * @return Cached principal, null if not cached
+     */
+    public CachedPrincipal get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Returns the current generation, to read before loading a principal.
+     *
+     * @return Generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache a principal, unless the cache was invalidated since it was loaded.
+     *
+     * @param key Authentication token
+     * @param principal Principal
+     * @param generation Generation read before loading the principal
+     */
+    public void put(String key, CachedPrincipal principal, long generation) {
+        cache.put(key, principal);
+        if (this.generation.get() != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Invalidate the principals of a user.
+     *
+     * @param userId User ID
+     */
+    public void invalidateUser(String userId) {
+        generation.incrementAndGet();
+        cache.asMap().values().removeIf(principal -> principal.getUserId().equals(userId));
+    }
+
+    /**
+     * Invalidate all principals.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
@@ -1,18 +1,24 @@
 package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
+import com.sismics.docs.core.util.ThumbnailUtil;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 
 import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 
 /**
  * A format handler.
+ * A format handler instance processes a single file: the file is parsed once,
+ * then the thumbnail, the text content and the PDF pages are produced from the parsed file
+ * until the handler is closed.
  *
  * @author bgamard
  */
-public interface FormatHandler {
+public interface FormatHandler extends Closeable {
     /**
      * Returns true if this format handler can handle this MIME type.
      *
@@ -30,6 +36,21 @@ public interface FormatHandler {
      */
     BufferedImage generateThumbnail(Path file) throws Exception;
 
+    /**
+     * Generate a thumbnail which will be reduced to a given size.
+     * The thumbnail can be smaller than the full resolution, as long as its largest side stays above the size.
+     * It must be closed once reduced, to release the memory it holds.
+     *
+     * @param file File
+     * @param size Size of the largest side of the final image
+     * @return Thumbnail, null if none
+     * @throws Exception e
+     */
+    default ThumbnailUtil.DecodedImage generateThumbnail(Path file, int size) throws Exception {
+        BufferedImage image = generateThumbnail(file);
+        return image == null ? null : new ThumbnailUtil.DecodedImage(image, 0);
+    }
+
     /**
      * Extract text content.
      *
@@ -52,4 +73,14 @@ public interface FormatHandler {
      * @throws Exception e
      */
     void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception;
+
+    /**
+     * Release the parsed file.
+     *
+     * @throws IOException e
+     */
+    @Override
+    default void close() throws IOException {
+        // Nothing parsed by default
+    }
 }
@@ -2,7 +2,8 @@ package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
 import com.sismics.docs.core.constant.Constants;
-import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.OcrUtil;
+import com.sismics.docs.core.util.ThumbnailUtil;
 import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.util.mime.MimeType;
@@ -44,14 +45,23 @@ public class ImageFormatHandler implements FormatHandler {
         }
     }
 
+    @Override
+    public ThumbnailUtil.DecodedImage generateThumbnail(Path file, int size) throws Exception {
+        return ThumbnailUtil.readImage(file, size);
+    }
+
     @Override
     public String extractContent(String language, Path file) throws Exception {
         if (language == null || !ConfigUtil.getConfigBooleanValue(ConfigType.OCR_ENABLED, true)) {
             return null;
         }
 
-        try (InputStream inputStream = Files.newInputStream(file)) {
-            return FileUtil.ocrFile(language, ImageIO.read(inputStream));
+        // The full resolution image waits for its memory like the thumbnails
+        try (ThumbnailUtil.DecodedImage image = ThumbnailUtil.readImage(file)) {
+            if (image == null) {
+                return null;
+            }
+            return OcrUtil.ocrImage(language, image.getImage());
         }
     }
 
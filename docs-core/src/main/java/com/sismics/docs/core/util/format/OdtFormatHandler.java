@@ -10,6 +10,7 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.odftoolkit.odfdom.doc.OdfTextDocument;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
@@ -26,6 +27,16 @@ public class OdtFormatHandler implements FormatHandler {
      */
     private Path temporaryPdfFile;
 
+    /**
+     * File the temporary PDF file has been generated from.
+     */
+    private Path sourceFile;
+
+    /**
+     * Format handler of the generated PDF.
+     */
+    private final PdfFormatHandler pdfFormatHandler = new PdfFormatHandler();
+
     @Override
     public boolean accept(String mimeType) {
         return MimeType.OPEN_DOCUMENT_TEXT.equals(mimeType);
@@ -34,31 +45,37 @@ public class OdtFormatHandler implements FormatHandler {
     @Override
     public BufferedImage generateThumbnail(Path file) throws Exception {
         // Use the PDF format handler
-        return new PdfFormatHandler().generateThumbnail(getGeneratedPdf(file));
+        return pdfFormatHandler.generateThumbnail(getGeneratedPdf(file));
     }
 
     @Override
     public String extractContent(String language, Path file) throws Exception {
         // Use the PDF format handler
-        return new PdfFormatHandler().extractContent(language, getGeneratedPdf(file));
+        return pdfFormatHandler.extractContent(language, getGeneratedPdf(file));
     }
 
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception {
         // Use the PDF format handler
-        new PdfFormatHandler().appendToPdf(getGeneratedPdf(file), doc, fitImageToPage, margin, memUsageSettings, closer);
+        pdfFormatHandler.appendToPdf(getGeneratedPdf(file), doc, fitImageToPage, margin, memUsageSettings, closer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        pdfFormatHandler.close();
     }
 
     /**
-     * Generate a PDF from this ODT.
+     * Generate a PDF from this ODT, once per file.
      *
      * @param file File
      * @return PDF file
      * @throws Exception e
      */
     private Path getGeneratedPdf(Path file) throws Exception {
-        if (temporaryPdfFile == null) {
+        if (temporaryPdfFile == null || !file.equals(sourceFile)) {
             temporaryPdfFile = AppContext.getInstance().getFileService().createTemporaryFile();
+            sourceFile = file;
             try (InputStream inputStream = Files.newInputStream(file);
                  OutputStream outputStream = Files.newOutputStream(temporaryPdfFile)) {
                 OdfTextDocument document = OdfTextDocument.loadDocument(inputStream);
@@ -1,7 +1,7 @@
 package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
-import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.OcrUtil;
 import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.util.mime.MimeType;
@@ -15,8 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
-import java.io.InputStream;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
 
 /**
@@ -30,6 +29,26 @@ public class PdfFormatHandler implements FormatHandler {
      */
     private static final Logger log = LoggerFactory.getLogger(PdfFormatHandler.class);
 
+    /**
+     * Memory used to parse a PDF before using a scratch file (in bytes).
+     */
+    private static final long MAX_MAIN_MEMORY_BYTES = 10_000_000L;
+
+    /**
+     * Parsed PDF, kept between the thumbnail, the text extraction and the OCR.
+     */
+    private PDDocument pdfDocument;
+
+    /**
+     * File of the parsed PDF.
+     */
+    private Path parsedFile;
+
+    /**
+     * Renderer of the parsed PDF.
+     */
+    private PDFRenderer renderer;
+
     @Override
     public boolean accept(String mimeType) {
         return mimeType.equals(MimeType.APPLICATION_PDF);
@@ -37,35 +56,24 @@ public class PdfFormatHandler implements FormatHandler {
 
     @Override
     public BufferedImage generateThumbnail(Path file) throws Exception {
-        try (InputStream inputStream = Files.newInputStream(file);
-             PDDocument pdfDocument = PDDocument.load(inputStream)) {
-            PDFRenderer renderer = new PDFRenderer(pdfDocument);
-            return renderer.renderImage(0);
-        }
+        return getRenderer(file).renderImage(0);
     }
 
     @Override
     public String extractContent(String language, Path file) {
         String content = null;
-        try (InputStream inputStream = Files.newInputStream(file);
-             PDDocument pdfDocument = PDDocument.load(inputStream)) {
-            content = new PDFTextStripper().getText(pdfDocument);
+        try {
+            content = new PDFTextStripper().getText(getPdfDocument(file));
         } catch (Exception e) {
             log.error("Error while extracting text from the PDF", e);
         }
 
         // No text content, try to OCR it
         if (language != null && content != null && content.trim().isEmpty() && ConfigUtil.getConfigBooleanValue(ConfigType.OCR_ENABLED, true)) {
-            StringBuilder sb = new StringBuilder();
-            try (InputStream inputStream = Files.newInputStream(file);
-                 PDDocument pdfDocument = PDDocument.load(inputStream)) {
-                PDFRenderer renderer = new PDFRenderer(pdfDocument);
-                for (int pageIndex = 0; pageIndex < pdfDocument.getNumberOfPages(); pageIndex++) {
-                    log.info("OCR page " + (pageIndex + 1) + "/" + pdfDocument.getNumberOfPages() + " of PDF file containing only images");
-                    sb.append(" ");
-                    sb.append(FileUtil.ocrFile(language, renderer.renderImageWithDPI(pageIndex, 300, ImageType.GRAY)));
-                }
-                return sb.toString();
+            try {
+                int pageCount = getPdfDocument(file).getNumberOfPages();
+                log.info("OCR of " + pageCount + " pages of PDF file containing only images");
+                return OcrUtil.ocrPages(language, pageCount, pageIndex -> renderPageForOcr(file, pageIndex));
             } catch (Exception e) {
                 log.error("Error while OCR-izing the PDF", e);
             }
@@ -74,6 +82,18 @@ public class PdfFormatHandler implements FormatHandler {
         return content;
     }
 
+    /**
+     * Render a page of the PDF for the OCR.
+     *
+     * @param file File
+     * @param pageIndex Page index
+     * @return Grayscale page image
+     * @throws IOException e
+     */
+    public BufferedImage renderPageForOcr(Path file, int pageIndex) throws IOException {
+        return getRenderer(file).renderImageWithDPI(pageIndex, 300, ImageType.GRAY);
+    }
+
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception {
         PDDocument mergeDoc = PDDocument.load(file.toFile(), memUsageSettings);
@@ -81,4 +101,48 @@ public class PdfFormatHandler implements FormatHandler {
         PDFMergerUtility pdfMergerUtility = new PDFMergerUtility();
         pdfMergerUtility.appendDocument(doc, mergeDoc);
     }
+
+    @Override
+    public void close() throws IOException {
+        if (pdfDocument != null) {
+            pdfDocument.close();
+            pdfDocument = null;
+            renderer = null;
+            parsedFile = null;
+        }
+    }
+
+    /**
+     * Returns the parsed PDF, the file is parsed on the first call.
+     * Another file releases the parsed one and is parsed in turn.
+     *
+     * @param file File
+     * @return PDF document
+     * @throws IOException e
+     */
+    private PDDocument getPdfDocument(Path file) throws IOException {
+        if (pdfDocument != null && !file.equals(parsedFile)) {
+            close();
+        }
+        if (pdfDocument == null) {
+            pdfDocument = PDDocument.load(file.toFile(), MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES));
+            parsedFile = file;
+        }
+        return pdfDocument;
+    }
+
+    /**
+     * Returns the renderer of the parsed PDF.
+     *
+     * @param file File
+     * @return PDF renderer
+     * @throws IOException e
+     */
+    private PDFRenderer getRenderer(Path file) throws IOException {
+        PDDocument document = getPdfDocument(file);
+        if (renderer == null) {
+            renderer = new PDFRenderer(document);
+        }
+        return renderer;
+    }
 }
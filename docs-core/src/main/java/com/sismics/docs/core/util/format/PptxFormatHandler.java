@@ -16,6 +16,7 @@ import org.apache.poi.xslf.usermodel.XSLFSlide;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -32,6 +33,11 @@ public class PptxFormatHandler implements FormatHandler {
      */
     private XMLSlideShow slideShow;
 
+    /**
+     * File of the cached PPTX.
+     */
+    private Path loadedFile;
+
     @Override
     public boolean accept(String mimeType) {
         return MimeType.OFFICE_PRESENTATION.equals(mimeType);
@@ -70,11 +76,24 @@ public class PptxFormatHandler implements FormatHandler {
         }
     }
 
+    @Override
+    public void close() throws IOException {
+        if (slideShow != null) {
+            slideShow.close();
+            slideShow = null;
+            loadedFile = null;
+        }
+    }
+
     private XMLSlideShow loadPPtxFile(Path file) throws Exception {
+        if (slideShow != null && !file.equals(loadedFile)) {
+            close();
+        }
         if (slideShow == null) {
             try (InputStream inputStream = Files.newInputStream(file)) {
                 slideShow = new XMLSlideShow(inputStream);
             }
+            loadedFile = file;
         }
         return slideShow;
     }
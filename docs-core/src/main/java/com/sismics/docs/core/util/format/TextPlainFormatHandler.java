@@ -1,15 +1,20 @@
 package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
-import com.lowagie.text.*;
-import com.lowagie.text.pdf.PdfWriter;
-import com.sismics.docs.core.model.context.AppContext;
+import com.google.common.io.Resources;
 import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -20,6 +25,41 @@ import java.nio.file.Path;
  * @author bgamard
  */
 public class TextPlainFormatHandler implements FormatHandler {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TextPlainFormatHandler.class);
+
+    /**
+     * Width of the thumbnail page, A4 at 72 DPI.
+     */
+    private static final int PAGE_WIDTH = 595;
+
+    /**
+     * Height of the thumbnail page, A4 at 72 DPI.
+     */
+    private static final int PAGE_HEIGHT = 842;
+
+    /**
+     * Margins of the thumbnail page.
+     */
+    private static final int PAGE_MARGIN = 40;
+
+    /**
+     * Font of the thumbnail.
+     */
+    private static final Font FONT = loadFont();
+
+    /**
+     * Content of the file, read once.
+     */
+    private String content;
+
+    /**
+     * File of the content read.
+     */
+    private Path readFile;
+
     @Override
     public boolean accept(String mimeType) {
         return mimeType.equals(MimeType.TEXT_CSV) || mimeType.equals(MimeType.TEXT_PLAIN);
@@ -27,30 +67,75 @@ public class TextPlainFormatHandler implements FormatHandler {
 
     @Override
     public BufferedImage generateThumbnail(Path file) throws Exception {
-        Document output = new Document(PageSize.A4, 40, 40, 40, 40);
-        Path tempFile = AppContext.getInstance().getFileService().createTemporaryFile();
-        OutputStream pdfOutputStream = Files.newOutputStream(tempFile);
-        PdfWriter.getInstance(output, pdfOutputStream);
-
-        output.open();
-        String content = Files.readString(file, StandardCharsets.UTF_8);
-        Font font = FontFactory.getFont("LiberationMono-Regular");
-        Paragraph paragraph = new Paragraph(content, font);
-        paragraph.setAlignment(Element.ALIGN_LEFT);
-        output.add(paragraph);
-        output.close();
-
-        // Use the PDF format handler
-        return new PdfFormatHandler().generateThumbnail(tempFile);
+        // Draw the text fitting in the first page, the rest of the file would not be visible anyway
+        BufferedImage image = new BufferedImage(PAGE_WIDTH, PAGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setPaint(Color.WHITE);
+            graphics.fillRect(0, 0, PAGE_WIDTH, PAGE_HEIGHT);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setPaint(Color.BLACK);
+            graphics.setFont(FONT);
+
+            FontMetrics fontMetrics = graphics.getFontMetrics();
+            int charPerLine = Math.max((PAGE_WIDTH - 2 * PAGE_MARGIN) / Math.max(fontMetrics.charWidth('m'), 1), 1);
+            int y = PAGE_MARGIN + fontMetrics.getAscent();
+            for (String line : getContent(file).split("\\R", -1)) {
+                line = line.replace("\t", "    ");
+                int start = 0;
+                do {
+                    if (y > PAGE_HEIGHT - PAGE_MARGIN) {
+                        return image;
+                    }
+                    int end = Math.min(start + charPerLine, line.length());
+                    graphics.drawString(line.substring(start, end), PAGE_MARGIN, y);
+                    y += fontMetrics.getHeight();
+                    start = end;
+                } while (start < line.length());
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
     }
 
     @Override
     public String extractContent(String language, Path file) throws Exception {
-        return Files.readString(file, StandardCharsets.UTF_8);
+        return getContent(file);
     }
 
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) {
         // TODO Append the text file to the PDF
     }
+
+    /**
+     * Returns the content of the file, the file is read on the first call.
+     * Another file is read in turn.
+     *
+     * @param file File
+     * @return Content
+     * @throws Exception e
+     */
+    private String getContent(Path file) throws Exception {
+        if (content == null || !file.equals(readFile)) {
+            content = Files.readString(file, StandardCharsets.UTF_8);
+            readFile = file;
+        }
+        return content;
+    }
+
+    /**
+     * Load the monospaced font of the thumbnails.
+     *
+     * @return Font
+     */
+    private static Font loadFont() {
+        try (InputStream inputStream = Resources.getResource("fonts/LiberationMono-Regular.ttf").openStream()) {
+            return Font.createFont(Font.TRUETYPE_FONT, inputStream).deriveFont(12f);
+        } catch (Exception e) {
+            log.warn("Error loading the thumbnail font, using the default monospaced font", e);
+            return new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        }
+    }
 }
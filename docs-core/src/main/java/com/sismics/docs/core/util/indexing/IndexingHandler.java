@@ -36,23 +36,56 @@ public interface IndexingHandler {
     void shutDown();
 
     /**
-     * Clear the index.
+     * Start a full reindex in a shadow index, the current index keeps answering the searches meanwhile.
+     * A rebuild interrupted by a restart resumes from its last checkpoint.
+     *
+     * @return Rebuild progress holding the checkpoint to resume from, null if a rebuild is already running
+     * @throws Exception e
+     */
+    RebuildProgress startRebuild() throws Exception;
+
+    /**
+     * Index a list of documents in the shadow index.
+     *
+     * @param documentList Documents
+     * @throws Exception e
+     */
+    void rebuildDocuments(List<Document> documentList) throws Exception;
+
+    /**
+     * Index a list of files in the shadow index.
+     *
+     * @param fileList Files
+     * @throws Exception e
+     */
+    void rebuildFiles(List<File> fileList) throws Exception;
+
+    /**
+     * Record the progress of the rebuild, persisted with the next commit.
+     *
+     * @param phase Current phase
+     * @param lastId ID of the last document or file indexed in the current phase
      */
-    void clearIndex();
+    void checkpointRebuild(RebuildProgress.Phase phase, String lastId);
 
     /**
-     * Index a list of documents.
+     * Replace the current index by the shadow index.
      *
-     * @param documentList All documents
+     * @throws Exception e
+     */
+    void completeRebuild() throws Exception;
+
+    /**
+     * Stop a failed rebuild, keeping its checkpoint.
      */
-    void createDocuments(List<Document> documentList);
+    void abortRebuild();
 
     /**
-     * Index a list of files.
+     * Returns the progress of the running or last index rebuild.
      *
-     * @param fileList All files
+     * @return Rebuild progress, null if no rebuild was started
      */
-    void createFiles(List<File> fileList);
+    RebuildProgress getRebuildProgress();
 
     /**
      * Index a new document.
@@ -107,6 +140,12 @@ public interface IndexingHandler {
      */
     void deleteAcl(String sourceId, PermType perm, String targetId);
 
+    /**
+     * Make the changes written to the index by the current thread visible to the next searches.
+     * The index is otherwise refreshed periodically, this is only needed for read-your-writes.
+     */
+    void waitForWrites();
+
     /**
      * Searches documents by criteria.
      *
@@ -117,4 +156,53 @@ public interface IndexingHandler {
      * @throws Exception e
      */
     void findByCriteria(PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception;
+
+    /**
+     * Returns the total number of index operations since startup.
+     *
+     * @return Number of operations
+     */
+    long getOperationCount();
+
+    /**
+     * Returns the recent index operations throughput.
+     *
+     * @return Operations per second
+     */
+    double getOperationRate();
+
+    /**
+     * Returns the number of index operations not yet committed.
+     *
+     * @return Number of pending operations
+     */
+    long getPendingOperationCount();
+
+    /**
+     * Returns the number of index commits since startup.
+     *
+     * @return Number of commits
+     */
+    long getCommitCount();
+
+    /**
+     * Returns the index version used by the search terms suggester.
+     *
+     * @return Index version, -1 if not built yet
+     */
+    long getSuggesterGeneration();
+
+    /**
+     * Returns the duration of the last search terms suggester build.
+     *
+     * @return Duration (in milliseconds)
+     */
+    long getSuggesterBuildTime();
+
+    /**
+     * Returns the average search terms suggester lookup latency.
+     *
+     * @return Duration (in milliseconds)
+     */
+    double getSuggesterLookupTime();
 }
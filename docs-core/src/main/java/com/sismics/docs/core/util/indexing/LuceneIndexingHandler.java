@@ -4,11 +4,19 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.constant.PermType;
+import com.sismics.docs.core.dao.AclDao;
 import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.RouteStepDao;
+import com.sismics.docs.core.dao.TagDao;
 import com.sismics.docs.core.dao.criteria.DocumentCriteria;
 import com.sismics.docs.core.dao.dto.DocumentDto;
+import com.sismics.docs.core.dao.dto.TagDto;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Config;
@@ -16,57 +24,103 @@ import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.SecurityUtil;
+import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
 import com.sismics.docs.core.util.jpa.QueryParam;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.ClasspathScanner;
+import com.sismics.util.EnvironmentUtil;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.collation.CollationDocValuesField;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.CheckIndex;
 import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.simple.SimpleQueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.QueryScorer;
 import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
 import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
-import org.apache.lucene.search.spell.LuceneDictionary;
-import org.apache.lucene.search.suggest.Lookup;
-import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.NoLockFactory;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Timestamp;
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
 
 /**
  * Lucene indexing handler.
- * Documents and files are indexed in Lucene, but only used for fulltext search.
- * Other search criteria are still using the database.
+ * Documents and files are indexed in Lucene for fulltext search, along with the read permissions, tags, dates
+ * and other metadata needed to filter, sort and paginate the document list in the index.
+ * Only the returned page is fetched from the database, which is also used when the sort column is not indexed.
+ *
+ * Index operations are buffered by the index writer and made visible to searches by a near real-time reopen,
+ * either periodically or at the end of the request which made them.
+ * They are committed to the directory in groups, when enough operations are pending or periodically.
  *
  * @author bgamard
  */
@@ -78,20 +132,149 @@ public class LuceneIndexingHandler implements IndexingHandler {
     private static final Logger log = LoggerFactory.getLogger(LuceneIndexingHandler.class);
 
     /**
-     * Lucene directory.
+     * Version of the indexed fields, the index is rebuilt if it doesn't match.
      */
-    private Directory directory;
+    private static final String INDEX_VERSION = "3";
+
+    /**
+     * Commit user data key holding the index version.
+     */
+    private static final String INDEX_VERSION_KEY = "version";
+
+    /**
+     * Commit user data keys holding the checkpoint of a rebuild.
+     */
+    private static final String REBUILD_PHASE_KEY = "rebuild_phase";
+    private static final String REBUILD_LAST_ID_KEY = "rebuild_last_id";
+    private static final String REBUILD_DOCUMENT_COUNT_KEY = "rebuild_document_count";
+    private static final String REBUILD_FILE_COUNT_KEY = "rebuild_file_count";
+
+    /**
+     * File of the rebuild directory journaling the IDs changed during the rebuild, one per line.
+     * Not a Lucene file name, so the index writer leaves it alone.
+     */
+    private static final String REBUILD_DIRTY_IDS_FILE = "dirty_ids";
 
     /**
-     * Directory reader.
+     * Lucene storage (RAM or FILE).
+     */
+    private String luceneStorage;
+
+    /**
+     * Lucene directory.
      */
-    private DirectoryReader directoryReader;
+    private Directory directory;
 
     /**
      * Index writer.
      */
     private IndexWriter indexWriter;
 
+    /**
+     * Near real-time searcher manager, shared by all search requests.
+     */
+    private SearcherManager searcherManager;
+
+    /**
+     * Thread refreshing the searchers in the background.
+     */
+    private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+
+    /**
+     * Search terms suggester.
+     */
+    private LuceneSuggester suggester;
+
+    /**
+     * Last index generation written by the current thread, with its writer.
+     */
+    private final ThreadLocal<WrittenGeneration> writtenGeneration = new ThreadLocal<>();
+
+    /**
+     * False while the index is being rebuilt, searches use the database meanwhile.
+     */
+    private volatile boolean indexComplete = true;
+
+    /**
+     * Lock shared by the index operations, and held exclusively while a rebuilt index is swapped in.
+     */
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * Directory of the index being rebuilt.
+     */
+    private Directory shadowDirectory;
+
+    /**
+     * Writer of the index being rebuilt, null if no rebuild is in progress.
+     */
+    private volatile IndexWriter shadowWriter;
+
+    /**
+     * IDs of the documents and files changed during the rebuild, reindexed in the shadow index before the swap.
+     */
+    private volatile Set<String> dirtyIdSet;
+
+    /**
+     * Output of the journal of the dirty IDs, null with RAM storage.
+     */
+    private FileOutputStream dirtyIdOutputStream;
+
+    /**
+     * Writer of the journal of the dirty IDs, null with RAM storage.
+     */
+    private BufferedWriter dirtyIdWriter;
+
+    /**
+     * Lock of the journal of the dirty IDs.
+     */
+    private final Object dirtyIdLock = new Object();
+
+    /**
+     * Progress of the running or last rebuild.
+     */
+    private volatile RebuildProgress rebuildProgress;
+
+    /**
+     * Executor committing the index.
+     */
+    private ScheduledExecutorService commitExecutor;
+
+    /**
+     * Number of pending operations triggering a commit.
+     */
+    private long commitBatchSize;
+
+    /**
+     * Total number of index operations.
+     */
+    private final AtomicLong operationCount = new AtomicLong();
+
+    /**
+     * Number of index operations not yet committed.
+     */
+    private final AtomicLong pendingOperationCount = new AtomicLong();
+
+    /**
+     * Total number of commits.
+     */
+    private final AtomicLong commitCount = new AtomicLong();
+
+    /**
+     * Operations throughput measured between the last two periodic commits.
+     */
+    private volatile double operationRate;
+
+    /**
+     * Number of operations at the last throughput measure.
+     */
+    private long lastRateOperationCount;
+
+    /**
+     * Time of the last throughput measure.
+     */
+    private long lastRateTime = System.nanoTime();
+
     @Override
     public boolean accept() {
         // Embedded Lucene can always start
@@ -111,17 +294,15 @@ public class LuceneIndexingHandler implements IndexingHandler {
                     .map(Path::toFile)
                     .forEach(java.io.File::delete);
 
-            // Re-initialize and schedule a full reindex
+            // Re-initialize, a full reindex is scheduled if needed
             initLucene();
-            RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
-            AppContext.getInstance().getAsyncEventBus().post(rebuildIndexAsyncEvent);
         }
     }
 
     private void initLucene() throws Exception {
         ConfigDao configDao = new ConfigDao();
         Config luceneStorageConfig = configDao.getById(ConfigType.LUCENE_DIRECTORY_STORAGE);
-        String luceneStorage = luceneStorageConfig == null ? null : luceneStorageConfig.getValue();
+        luceneStorage = luceneStorageConfig == null ? null : luceneStorageConfig.getValue();
 
         // RAM directory storage by default
         if (luceneStorage == null || luceneStorage.equals("RAM")) {
@@ -148,25 +329,158 @@ public class LuceneIndexingHandler implements IndexingHandler {
                     throw new Exception("Index is dirty");
                 }
             }
+            String indexVersion = SegmentInfos.readLatestCommit(directory).getUserData().get(INDEX_VERSION_KEY);
+            if (!INDEX_VERSION.equals(indexVersion)) {
+                throw new Exception("Index version " + indexVersion + " is outdated");
+            }
+        } else if (new DocumentDao().getDocumentCount() > 0) {
+            // The index is empty, schedule a full reindex
+            log.info("Index is empty, scheduling a full reindex");
+            indexComplete = false;
+        }
+        indexWriter.setLiveCommitData(Collections.singletonMap(INDEX_VERSION_KEY, INDEX_VERSION).entrySet());
+
+        // Near real-time searchers, refreshed in the background
+        searcherManager = new SearcherManager(indexWriter, new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                IndexSearcher searcher = new IndexSearcher(reader);
+
+                // Warm up the new searcher before publishing it
+                searcher.search(new TermQuery(new Term("doctype", "document")), 1);
+                return searcher;
+            }
+        });
+        suggester = new LuceneSuggester(searcherManager, directory);
+        startReopenThread();
+
+        // Group commits, on size from the writing threads or periodically
+        commitBatchSize = EnvironmentUtil.getLongEnv(Constants.LUCENE_COMMIT_BATCH_SIZE_ENV,
+                Constants.DEFAULT_LUCENE_COMMIT_BATCH_SIZE);
+        long commitInterval = EnvironmentUtil.getLongEnv(Constants.LUCENE_COMMIT_INTERVAL_ENV,
+                Constants.DEFAULT_LUCENE_COMMIT_INTERVAL);
+        commitExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("Lucene commit")
+                .setDaemon(true)
+                .build());
+        commitExecutor.scheduleWithFixedDelay(() -> {
+            commit();
+            updateOperationRate();
+        }, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+
+        // Rebuild the empty index, or resume an interrupted rebuild, once the handler is fully started
+        if (!indexComplete || hasRebuildCheckpoint()) {
+            RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
+            AppContext.getInstance().getAsyncEventDispatcher().post(rebuildIndexAsyncEvent);
+        }
+    }
+
+    /**
+     * Start the thread refreshing the searchers in the background.
+     */
+    private void startReopenThread() {
+        double refreshInterval = EnvironmentUtil.getLongEnv(Constants.LUCENE_REFRESH_INTERVAL_ENV,
+                Constants.DEFAULT_LUCENE_REFRESH_INTERVAL) / 1000d;
+        reopenThread = new ControlledRealTimeReopenThread<>(indexWriter, searcherManager, refreshInterval, 0);
+        reopenThread.setName("Lucene searcher refresh");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+    }
+
+    /**
+     * Open the directory of the index being rebuilt.
+     * With RAM storage, an interrupted rebuild can't be resumed after a restart.
+     *
+     * @return Lucene directory
+     * @throws IOException e
+     */
+    private Directory openShadowDirectory() throws IOException {
+        if ("FILE".equals(luceneStorage)) {
+            return new NIOFSDirectory(DirectoryUtil.getLuceneRebuildDirectory(), NoLockFactory.INSTANCE);
+        }
+        return new RAMDirectory();
+    }
+
+    /**
+     * Returns the checkpoint of an interrupted rebuild.
+     *
+     * @param directory Directory of the index being rebuilt
+     * @return Commit user data holding the checkpoint, null if there is nothing to resume
+     * @throws IOException e
+     */
+    private Map<String, String> readRebuildCheckpoint(Directory directory) throws IOException {
+        if (!DirectoryReader.indexExists(directory)) {
+            return null;
+        }
+        Map<String, String> userData = SegmentInfos.readLatestCommit(directory).getUserData();
+        if (!INDEX_VERSION.equals(userData.get(INDEX_VERSION_KEY)) || userData.get(REBUILD_PHASE_KEY) == null) {
+            return null;
+        }
+        return userData;
+    }
+
+    /**
+     * Returns true if a rebuild was interrupted by the last shutdown.
+     *
+     * @return True if a rebuild must be resumed
+     * @throws IOException e
+     */
+    private boolean hasRebuildCheckpoint() throws IOException {
+        if (!"FILE".equals(luceneStorage)) {
+            return false;
+        }
+        try (Directory directory = openShadowDirectory()) {
+            return readRebuildCheckpoint(directory) != null;
         }
     }
 
     @Override
     public void shutDown() {
-        if (directoryReader != null) {
+        if (commitExecutor != null) {
+            commitExecutor.shutdown();
+            try {
+                commitExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                log.error("Interrupted while waiting for the last index commit", e);
+            }
+        }
+        if (reopenThread != null) {
+            reopenThread.close();
+        }
+        if (suggester != null) {
+            suggester.shutDown();
+        }
+        if (searcherManager != null) {
             try {
-                directoryReader.close();
+                searcherManager.close();
             } catch (IOException e) {
-                log.error("Error closing the index reader", e);
+                log.error("Error closing the searcher manager", e);
             }
         }
         if (indexWriter != null) {
+            // Flush the pending operations, and the checkpoint of a running rebuild
+            commit();
             try {
                 indexWriter.close();
             } catch (IOException e) {
                 log.error("Error closing the index writer, index may be corrupt", e);
             }
         }
+        closeDirtyIdJournal();
+        if (shadowWriter != null) {
+            try {
+                shadowWriter.close();
+            } catch (IOException e) {
+                log.error("Error closing the rebuild index writer", e);
+            }
+        }
+        if (shadowDirectory != null) {
+            try {
+                shadowDirectory.close();
+            } catch (IOException e) {
+                log.error("Error closing the rebuild Lucene index", e);
+            }
+        }
         if (directory != null) {
             try {
                 directory.close();
@@ -177,82 +491,388 @@ public class LuceneIndexingHandler implements IndexingHandler {
     }
 
     @Override
-    public void clearIndex() {
-        handle(IndexWriter::deleteAll);
+    public synchronized RebuildProgress startRebuild() throws IOException {
+        if (rebuildProgress != null && rebuildProgress.isRunning()) {
+            return null;
+        }
+        if (shadowWriter != null) {
+            // Resume an aborted rebuild, the changes made meanwhile were tracked
+            rebuildProgress.setRunning(true);
+            return rebuildProgress;
+        }
+
+        if (shadowDirectory == null) {
+            shadowDirectory = openShadowDirectory();
+        }
+        RebuildProgress progress = new RebuildProgress();
+        Set<String> dirtySet = ConcurrentHashMap.newKeySet();
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setMergeScheduler(new ConcurrentMergeScheduler());
+        Map<String, String> checkpoint = readRebuildCheckpoint(shadowDirectory);
+        if (checkpoint == null) {
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        } else {
+            progress.setCheckpoint(RebuildProgress.Phase.valueOf(checkpoint.get(REBUILD_PHASE_KEY)), checkpoint.get(REBUILD_LAST_ID_KEY));
+            progress.getDocumentCount().set(Long.parseLong(checkpoint.get(REBUILD_DOCUMENT_COUNT_KEY)));
+            progress.getFileCount().set(Long.parseLong(checkpoint.get(REBUILD_FILE_COUNT_KEY)));
+            log.info("Resuming the index rebuild at {} {}", progress.getPhase(), progress.getLastId());
+        }
+        shadowWriter = new IndexWriter(shadowDirectory, config);
+        dirtySet.addAll(openDirtyIdJournal(checkpoint != null));
+        dirtyIdSet = dirtySet;
+        rebuildProgress = progress;
+        return progress;
+    }
+
+    @Override
+    public void rebuildDocuments(List<Document> documentList) throws IOException {
+        IndexWriter writer = shadowWriter;
+        if (writer == null) {
+            return;
+        }
+        DocumentRelations relations = loadDocumentRelations(documentList);
+        for (Document document : documentList) {
+            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document, relations);
+            writer.updateDocument(new Term("id", document.getId()), luceneDocument);
+        }
+        rebuildProgress.getDocumentCount().addAndGet(documentList.size());
+    }
+
+    @Override
+    public void rebuildFiles(List<File> fileList) throws IOException {
+        IndexWriter writer = shadowWriter;
+        if (writer == null) {
+            return;
+        }
+        Map<String, String> contentMap = new FileDao().getContents(fileList.stream()
+                .map(File::getId)
+                .collect(Collectors.toList()));
+        for (File file : fileList) {
+            org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file, contentMap.get(file.getId()));
+            writer.updateDocument(new Term("id", file.getId()), luceneDocument);
+        }
+        rebuildProgress.getFileCount().addAndGet(fileList.size());
+    }
+
+    @Override
+    public void checkpointRebuild(RebuildProgress.Phase phase, String lastId) {
+        rebuildProgress.setCheckpoint(phase, lastId);
     }
 
     @Override
-    public void createDocuments(List<Document> documentList) {
-        handle(indexWriter -> {
-            for (Document document : documentList) {
-                org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
-                indexWriter.addDocument(luceneDocument);
+    public void completeRebuild() throws IOException {
+        IndexWriter writer = shadowWriter;
+        if (writer == null) {
+            return;
+        }
+
+        // Catch up with the changes made during the rebuild, without blocking the index operations
+        reindexDirty(writer);
+
+        swapLock.writeLock().lock();
+        try {
+            // Last changes, the index operations now wait for the swap
+            reindexDirty(writer);
+            synchronized (this) {
+                commitShadow();
+                writer.close();
+                shadowWriter = null;
+                dirtyIdSet = null;
+                closeDirtyIdJournal();
+
+                // Replace the content of the index in a single commit, the searchers are not refreshed meanwhile
+                reopenThread.close();
+                try {
+                    indexWriter.deleteAll();
+                    indexWriter.addIndexes(shadowDirectory);
+                    indexWriter.commit();
+                    pendingOperationCount.set(0);
+                    commitCount.incrementAndGet();
+                    indexComplete = true;
+                } catch (IOException e) {
+                    // Searches use the database until the next rebuild, resumed from the end of the shadow index
+                    indexComplete = false;
+                    throw e;
+                } finally {
+                    searcherManager.maybeRefreshBlocking();
+                    startReopenThread();
+                }
             }
-        });
+            rebuildProgress.setRunning(false);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        // Discard the shadow index
+        for (String fileName : shadowDirectory.listAll()) {
+            shadowDirectory.deleteFile(fileName);
+        }
+        shadowDirectory.close();
+        shadowDirectory = null;
+    }
+
+    @Override
+    public synchronized void abortRebuild() {
+        if (rebuildProgress != null) {
+            // The shadow writer stays open, to keep track of the changes until the rebuild is resumed
+            rebuildProgress.setRunning(false);
+            commitShadow();
+        }
     }
 
     @Override
-    public void createFiles(List<File> fileList) {
-        handle(indexWriter -> {
-            for (File file : fileList) {
-                org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
-                indexWriter.addDocument(luceneDocument);
+    public RebuildProgress getRebuildProgress() {
+        return rebuildProgress;
+    }
+
+    /**
+     * Open the journal of the IDs changed during the rebuild.
+     * With RAM storage, nothing is journaled since the rebuild can't be resumed after a restart.
+     *
+     * @param resume True to read the IDs of the rebuild being resumed, false to start an empty journal
+     * @return IDs journaled by the rebuild being resumed
+     * @throws IOException e
+     */
+    private Set<String> openDirtyIdJournal(boolean resume) throws IOException {
+        Set<String> idSet = new HashSet<>();
+        if (!"FILE".equals(luceneStorage)) {
+            return idSet;
+        }
+
+        Path journalFile = DirectoryUtil.getLuceneRebuildDirectory().resolve(REBUILD_DIRTY_IDS_FILE);
+        if (resume && Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                String id;
+                while ((id = reader.readLine()) != null) {
+                    // A line cut by a crash matches nothing, it is only deleted from the index
+                    if (!id.isEmpty()) {
+                        idSet.add(id);
+                    }
+                }
+            }
+        }
+
+        synchronized (dirtyIdLock) {
+            dirtyIdOutputStream = new FileOutputStream(journalFile.toFile(), resume);
+            dirtyIdWriter = new BufferedWriter(new OutputStreamWriter(dirtyIdOutputStream, StandardCharsets.UTF_8));
+        }
+        return idSet;
+    }
+
+    /**
+     * Append IDs changed during the rebuild to the journal, made durable by the next shadow index commit.
+     *
+     * @param idList IDs
+     */
+    private void journalDirtyIds(List<String> idList) {
+        if (idList.isEmpty()) {
+            return;
+        }
+        synchronized (dirtyIdLock) {
+            if (dirtyIdWriter == null) {
+                return;
+            }
+            try {
+                for (String id : idList) {
+                    dirtyIdWriter.write(id);
+                    dirtyIdWriter.newLine();
+                }
+            } catch (IOException e) {
+                log.error("Error journaling the IDs changed during the index rebuild", e);
+            }
+        }
+    }
+
+    /**
+     * Flush the journal of the dirty IDs to the disk.
+     *
+     * @throws IOException e
+     */
+    private void syncDirtyIdJournal() throws IOException {
+        synchronized (dirtyIdLock) {
+            if (dirtyIdWriter != null) {
+                dirtyIdWriter.flush();
+                dirtyIdOutputStream.getChannel().force(false);
+            }
+        }
+    }
+
+    /**
+     * Close the journal of the dirty IDs.
+     */
+    private void closeDirtyIdJournal() {
+        synchronized (dirtyIdLock) {
+            if (dirtyIdWriter != null) {
+                try {
+                    dirtyIdWriter.close();
+                } catch (IOException e) {
+                    log.error("Error closing the journal of the index rebuild", e);
+                }
+                dirtyIdWriter = null;
+                dirtyIdOutputStream = null;
+            }
+        }
+    }
+
+    /**
+     * Reindex in the shadow index the documents and files changed during the rebuild.
+     *
+     * @param writer Shadow index writer
+     */
+    private void reindexDirty(IndexWriter writer) {
+        List<String> idList = new ArrayList<>(dirtyIdSet);
+        if (idList.isEmpty()) {
+            return;
+        }
+        idList.forEach(dirtyIdSet::remove);
+
+        TransactionUtil.handle(() -> {
+            DocumentDao documentDao = new DocumentDao();
+            FileDao fileDao = new FileDao();
+            try {
+                List<Document> documentList = new ArrayList<>();
+                for (String id : idList) {
+                    Document document = documentDao.getById(id);
+                    File file = document == null ? fileDao.getActiveById(id) : null;
+                    if (document != null) {
+                        documentList.add(document);
+                    } else if (file != null) {
+                        writer.updateDocument(new Term("id", id), getDocumentFromFile(file, fileDao.getContent(id)));
+                    } else {
+                        writer.deleteDocuments(new Term("id", id));
+                    }
+                }
+                DocumentRelations relations = loadDocumentRelations(documentList);
+                for (Document document : documentList) {
+                    writer.updateDocument(new Term("id", document.getId()), getDocumentFromDocument(document, relations));
+                }
+            } catch (IOException e) {
+                log.error("Error in running index rebuild", e);
             }
         });
     }
 
     @Override
     public void createDocument(final Document document) {
-        handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
+        handle(Collections.singletonList(document.getId()), indexWriter -> {
+            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document,
+                    loadDocumentRelations(Collections.singletonList(document)));
             indexWriter.addDocument(luceneDocument);
         });
     }
 
     @Override
     public void createFile(final File file) {
-        handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
+        String content = new FileDao().getContent(file.getId());
+        handle(Collections.singletonList(file.getId()), indexWriter -> {
+            org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file, content);
             indexWriter.addDocument(luceneDocument);
         });
     }
 
     @Override
     public void updateFile(final File file) {
-        handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
+        String content = new FileDao().getContent(file.getId());
+        handle(Collections.singletonList(file.getId()), indexWriter -> {
+            org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file, content);
             indexWriter.updateDocument(new Term("id", file.getId()), luceneDocument);
         });
     }
 
     @Override
     public void updateDocument(final Document document) {
-        handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
+        handle(Collections.singletonList(document.getId()), indexWriter -> {
+            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document,
+                    loadDocumentRelations(Collections.singletonList(document)));
             indexWriter.updateDocument(new Term("id", document.getId()), luceneDocument);
         });
     }
 
     @Override
     public void deleteDocument(final String id) {
-        handle(indexWriter -> indexWriter.deleteDocuments(new Term("id", id)));
+        handle(Collections.singletonList(id), indexWriter -> indexWriter.deleteDocuments(new Term("id", id)));
     }
 
     @Override
     public void createAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateAcl(sourceId, perm);
     }
 
     @Override
     public void deleteAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateAcl(sourceId, perm);
+    }
+
+    /**
+     * Reindex the documents whose read permissions depend on an ACL source.
+     *
+     * @param sourceId ACL source ID (document or tag)
+     * @param perm Permission type
+     */
+    private void updateAcl(String sourceId, PermType perm) {
+        if (perm != PermType.READ) {
+            // Only read permissions are indexed
+            return;
+        }
+
+        DocumentDao documentDao = new DocumentDao();
+        Document document = documentDao.getById(sourceId);
+        List<Document> documentList = document == null ? documentDao.findByTagId(sourceId) : Lists.newArrayList(document);
+        List<String> idList = documentList.stream().map(Document::getId).collect(Collectors.toList());
+        handle(idList, indexWriter -> {
+            DocumentRelations relations = loadDocumentRelations(documentList);
+            for (Document updatedDocument : documentList) {
+                org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(updatedDocument, relations);
+                indexWriter.updateDocument(new Term("id", updatedDocument.getId()), luceneDocument);
+            }
+        });
     }
 
     @Override
     public void findByCriteria(PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        boolean fulltextSearch = !Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch());
+        if (indexComplete && isIndexPageable(sortCriteria)) {
+            // Filter, sort and paginate in the index, then fetch only this page from the database
+            try {
+                findPageInIndex(paginatedList, criteria, sortCriteria);
+                if (fulltextSearch) {
+                    suggestSearchTerms(criteria.getFullSearch(), suggestionList);
+                }
+                return;
+            } catch (IOException e) {
+                log.error("Error searching in the index, falling back to the database", e);
+            }
+        }
+
+        Map<String, String> documentSearchMap = Maps.newHashMap();
+        Collection<String> documentIdList = null;
+        if (fulltextSearch) {
+            documentSearchMap = search(criteria.getSimpleSearch(), criteria.getFullSearch());
+            if (documentSearchMap.isEmpty()) {
+                // If the search doesn't find any document, the request should return nothing
+                documentSearchMap.put(UUID.randomUUID().toString(), null);
+            }
+            documentIdList = documentSearchMap.keySet();
+
+            suggestSearchTerms(criteria.getFullSearch(), suggestionList);
+        }
+
+        // Perform the search
+        QueryParam queryParam = buildQueryParam(criteria, documentIdList);
+        List<Object[]> l = PaginatedLists.executePaginatedQuery(paginatedList, queryParam, sortCriteria);
+        paginatedList.setResultList(assembleResultList(l, documentSearchMap));
+    }
+
+    /**
+     * Build the database query returning the documents matching the criteria.
+     *
+     * @param criteria Search criteria
+     * @param documentIdList Restrict the results to these documents if not null
+     * @return Query
+     */
+    private QueryParam buildQueryParam(DocumentCriteria criteria, Collection<String> documentIdList) {
         Map<String, Object> parameterMap = new HashMap<>();
         List<String> criteriaList = new ArrayList<>();
-        Map<String, String> documentSearchMap = Maps.newHashMap();
 
         StringBuilder sb = new StringBuilder("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
         sb.append(" s.count c5, ");
@@ -276,16 +896,9 @@ public class LuceneIndexingHandler implements IndexingHandler {
             criteriaList.add("(a.ACL_ID_C is not null or a2.ACL_ID_C is not null)");
         }
         parameterMap.put("targetIdList", criteria.getTargetIdList());
-        if (!Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch())) {
-            documentSearchMap = search(criteria.getSimpleSearch(), criteria.getFullSearch());
-            if (documentSearchMap.isEmpty()) {
-                // If the search doesn't find any document, the request should return nothing
-                documentSearchMap.put(UUID.randomUUID().toString(), null);
-            }
+        if (documentIdList != null) {
             criteriaList.add("d.DOC_ID_C in :documentIdList");
-            parameterMap.put("documentIdList", documentSearchMap.keySet());
-
-            suggestSearchTerms(criteria.getFullSearch(), suggestionList);
+            parameterMap.put("documentIdList", documentIdList);
         }
         if (criteria.getCreateDateMin() != null) {
             criteriaList.add("d.DOC_CREATEDATE_D >= :createDateMin");
@@ -358,11 +971,82 @@ public class LuceneIndexingHandler implements IndexingHandler {
         sb.append(" where ");
         sb.append(Joiner.on(" and ").join(criteriaList));
 
-        // Perform the search
-        QueryParam queryParam = new QueryParam(sb.toString(), parameterMap);
-        List<Object[]> l = PaginatedLists.executePaginatedQuery(paginatedList, queryParam, sortCriteria);
+        return new QueryParam(sb.toString(), parameterMap);
+    }
 
-        // Assemble results
+    /**
+     * Build the lean database query fetching a page of documents found in the index.
+     * The index already applied the criteria, only the deletion and the read permission are checked again.
+     *
+     * @param criteria Search criteria
+     * @param documentIdList Documents of the page
+     * @return Query
+     */
+    private QueryParam buildPageQueryParam(DocumentCriteria criteria, Collection<String> documentIdList) {
+        Map<String, Object> parameterMap = new HashMap<>();
+        StringBuilder sb = new StringBuilder("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
+        sb.append(" s.count c5, ");
+        sb.append(" rs2.RTP_ID_C c7, rs2.RTP_NAME_C, d.DOC_UPDATEDATE_D c8 ");
+        sb.append(" from T_DOCUMENT d ");
+        sb.append(" left join (SELECT count(s.SHA_ID_C) count, ac.ACL_SOURCEID_C " +
+                "   FROM T_SHARE s, T_ACL ac " +
+                "   WHERE ac.ACL_TARGETID_C = s.SHA_ID_C AND ac.ACL_DELETEDATE_D IS NULL AND " +
+                "         s.SHA_DELETEDATE_D IS NULL AND ac.ACL_SOURCEID_C in (:documentIdList) group by ac.ACL_SOURCEID_C) s on s.ACL_SOURCEID_C = d.DOC_ID_C ");
+        sb.append(" left join (select rs.*, rs3.idDocument " +
+                "from T_ROUTE_STEP rs " +
+                "join (select r.RTE_IDDOCUMENT_C idDocument, rs.RTP_IDROUTE_C idRoute, min(rs.RTP_ORDER_N) minOrder from T_ROUTE_STEP rs join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C and r.RTE_DELETEDATE_D is null and r.RTE_IDDOCUMENT_C in (:documentIdList) where rs.RTP_DELETEDATE_D is null and rs.RTP_ENDDATE_D is null group by rs.RTP_IDROUTE_C, r.RTE_IDDOCUMENT_C) rs3 on rs.RTP_IDROUTE_C = rs3.idRoute and rs.RTP_ORDER_N = rs3.minOrder " +
+                "where rs.RTP_IDTARGET_C in (:targetIdList)) rs2 on rs2.idDocument = d.DOC_ID_C ");
+        parameterMap.put("targetIdList", criteria.getTargetIdList());
+        appendReadableCriteria(sb, criteria, documentIdList, parameterMap);
+        return new QueryParam(sb.toString(), parameterMap);
+    }
+
+    /**
+     * Count the documents among a list which are still readable.
+     *
+     * @param criteria Search criteria
+     * @param documentIdList Documents
+     * @return Number of readable documents
+     */
+    private int countReadableDocuments(DocumentCriteria criteria, List<String> documentIdList) {
+        int count = 0;
+        for (List<String> documentIdPartition : Lists.partition(documentIdList, 1000)) {
+            Map<String, Object> parameterMap = new HashMap<>();
+            StringBuilder sb = new StringBuilder("select count(d.DOC_ID_C) from T_DOCUMENT d ");
+            appendReadableCriteria(sb, criteria, documentIdPartition, parameterMap);
+            count += ((Number) QueryUtil.getNativeQuery(new QueryParam(sb.toString(), parameterMap)).getSingleResult()).intValue();
+        }
+        return count;
+    }
+
+    /**
+     * Append the criteria of the documents among a list which are not deleted and readable by the targets.
+     *
+     * @param sb Query
+     * @param criteria Search criteria
+     * @param documentIdList Documents
+     * @param parameterMap Query parameters
+     */
+    private void appendReadableCriteria(StringBuilder sb, DocumentCriteria criteria, Collection<String> documentIdList, Map<String, Object> parameterMap) {
+        sb.append(" where d.DOC_ID_C in (:documentIdList) and d.DOC_DELETEDATE_D is null ");
+        parameterMap.put("documentIdList", documentIdList);
+        if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
+            // Read permission is enough for searching
+            sb.append(" and (exists (select a.ACL_ID_C from T_ACL a where a.ACL_SOURCEID_C = d.DOC_ID_C and a.ACL_TARGETID_C in (:targetIdList) and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null) ");
+            sb.append(" or exists (select a.ACL_ID_C from T_DOCUMENT_TAG dt join T_ACL a on a.ACL_SOURCEID_C = dt.DOT_IDTAG_C and a.ACL_TARGETID_C in (:targetIdList) and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null ");
+            sb.append(" where dt.DOT_IDDOCUMENT_C = d.DOC_ID_C and dt.DOT_DELETEDATE_D is null)) ");
+            parameterMap.put("targetIdList", criteria.getTargetIdList());
+        }
+    }
+
+    /**
+     * Assemble the documents returned by the database query.
+     *
+     * @param l Query results
+     * @param highlightMap Highlights by document ID
+     * @return List of documents
+     */
+    private List<DocumentDto> assembleResultList(List<Object[]> l, Map<String, String> highlightMap) {
         List<DocumentDto> documentDtoList = new ArrayList<>();
         for (Object[] o : l) {
             int i = 0;
@@ -378,13 +1062,271 @@ public class LuceneIndexingHandler implements IndexingHandler {
             documentDto.setActiveRoute(o[i++] != null);
             documentDto.setCurrentStepName((String) o[i++]);
             documentDto.setUpdateTimestamp(((Timestamp) o[i]).getTime());
-            documentDto.setHighlight(documentSearchMap.get(documentDto.getId()));
+            documentDto.setHighlight(highlightMap.get(documentDto.getId()));
             documentDtoList.add(documentDto);
         }
 
+        return documentDtoList;
+    }
+
+    /**
+     * Returns true if the search can be sorted in the index.
+     *
+     * @param sortCriteria Sort criteria
+     * @return True if the index can paginate the search
+     */
+    private boolean isIndexPageable(SortCriteria sortCriteria) {
+        return getSortField(sortCriteria) != null;
+    }
+
+    /**
+     * Returns the index sort field matching a sort criteria.
+     *
+     * @param sortCriteria Sort criteria
+     * @return Sort field, null if the column is not sortable in the index
+     */
+    private SortField getSortField(SortCriteria sortCriteria) {
+        if (sortCriteria == null) {
+            return null;
+        }
+        boolean reverse = !sortCriteria.isAsc();
+        switch (sortCriteria.getColumn()) {
+            case 0:
+                return new SortField("id_sort", SortField.Type.STRING, reverse);
+            case 1:
+                return new SortField("title_sort", SortField.Type.STRING, reverse);
+            case 3:
+                return new SortField("create_date", SortField.Type.LONG, reverse);
+            case 4:
+                return new SortField("language_sort", SortField.Type.STRING, reverse);
+            case 8:
+                return new SortField("update_date", SortField.Type.LONG, reverse);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Searches a page of documents in the index.
+     * Only the documents of this page are highlighted and fetched from the database, by ID.
+     * The database still checks the deletion and the read permission, the hits it drops (index not refreshed yet)
+     * are replaced by the next ones of the index, and are not counted in the total.
+     *
+     * @param paginatedList List of documents (updated by side effects)
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @throws Exception e
+     */
+    @SuppressWarnings("unchecked")
+    private void findPageInIndex(PaginatedList<DocumentDto> paginatedList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        Analyzer analyzer = new StandardAnalyzer();
+        Query fulltextQuery = null;
+        if (!Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch())) {
+            fulltextQuery = buildFulltextQuery(analyzer, criteria.getSimpleSearch(), criteria.getFullSearch());
+        }
+        List<DocumentDto> documentDtoList = new ArrayList<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            // Filter, sort and paginate the matching documents
+            BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term("doctype", "document")), BooleanClause.Occur.FILTER);
+            if (fulltextQuery != null) {
+                // Documents matching directly or through one of their files
+                Set<BytesRef> documentIdSet = collectDocumentIds(searcher, fulltextQuery);
+                queryBuilder.add(new TermInSetQuery("id", documentIdSet), BooleanClause.Occur.FILTER);
+            }
+            if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
+                queryBuilder.add(buildTermsQuery("acl_read", criteria.getTargetIdList()), BooleanClause.Occur.FILTER);
+            }
+            if (criteria.getCreateDateMin() != null || criteria.getCreateDateMax() != null) {
+                queryBuilder.add(buildDateRangeQuery("create_date", criteria.getCreateDateMin(), criteria.getCreateDateMax()), BooleanClause.Occur.FILTER);
+            }
+            if (criteria.getUpdateDateMin() != null || criteria.getUpdateDateMax() != null) {
+                queryBuilder.add(buildDateRangeQuery("update_date", criteria.getUpdateDateMin(), criteria.getUpdateDateMax()), BooleanClause.Occur.FILTER);
+            }
+            if (!criteria.getTitleList().isEmpty()) {
+                queryBuilder.add(buildTermsQuery("title_exact", criteria.getTitleList()), BooleanClause.Occur.FILTER);
+            }
+            for (List<String> tagIdList : criteria.getTagIdList()) {
+                queryBuilder.add(buildTermsQuery("tag", tagIdList), BooleanClause.Occur.FILTER);
+            }
+            for (List<String> tagIdList : criteria.getExcludedTagIdList()) {
+                queryBuilder.add(buildTermsQuery("tag", tagIdList), BooleanClause.Occur.MUST_NOT);
+            }
+            if (criteria.getShared() != null && criteria.getShared()) {
+                queryBuilder.add(new TermQuery(new Term("shared", "true")), BooleanClause.Occur.FILTER);
+            }
+            if (criteria.getMimeType() != null) {
+                queryBuilder.add(new TermQuery(new Term("mime", criteria.getMimeType())), BooleanClause.Occur.FILTER);
+            }
+            if (criteria.getLanguage() != null) {
+                queryBuilder.add(new TermQuery(new Term("language", criteria.getLanguage())), BooleanClause.Occur.FILTER);
+            }
+            if (criteria.getCreatorId() != null) {
+                queryBuilder.add(new TermQuery(new Term("creator", criteria.getCreatorId())), BooleanClause.Occur.FILTER);
+            }
+            if (criteria.getActiveRoute() != null && criteria.getActiveRoute()) {
+                queryBuilder.add(buildTermsQuery("route_target", criteria.getTargetIdList()), BooleanClause.Occur.FILTER);
+            }
+            Query query = queryBuilder.build();
+            // The IDs break the ties, so that the pages stay stable across the reopens and merges
+            Sort sort = new Sort(getSortField(sortCriteria), new SortField("id_sort", SortField.Type.STRING));
+
+            // Fetch the next window of hits until the page is full or the hits run out
+            int start = paginatedList.getOffset();
+            int totalHits;
+            Set<String> fetchedIdSet = new HashSet<>();
+            while (true) {
+                int end = start + paginatedList.getLimit() - documentDtoList.size();
+                TopFieldCollector collector = TopFieldCollector.create(sort, end, Integer.MAX_VALUE);
+                searcher.search(query, collector);
+                totalHits = collector.getTotalHits();
+                List<String> windowIdList = new ArrayList<>();
+                for (ScoreDoc scoreDoc : collector.topDocs(start, end - start).scoreDocs) {
+                    windowIdList.add(searcher.doc(scoreDoc.doc).get("id"));
+                }
+                if (windowIdList.isEmpty()) {
+                    break;
+                }
+
+                // Fetch this window from the database, still checking the deletion and the read permission
+                QueryParam queryParam = buildPageQueryParam(criteria, windowIdList);
+                List<DocumentDto> windowDtoList = assembleResultList(QueryUtil.getNativeQuery(queryParam).getResultList(), Maps.newHashMap());
+                windowDtoList.sort(Comparator.comparingInt(documentDto -> windowIdList.indexOf(documentDto.getId())));
+                fetchedIdSet.addAll(windowIdList);
+                documentDtoList.addAll(windowDtoList);
+
+                start = end;
+                if (documentDtoList.size() >= paginatedList.getLimit() || start >= totalHits) {
+                    break;
+                }
+            }
+
+            // The hits out of the fetched windows may be stale too, they are checked to count exactly
+            int resultCount = documentDtoList.size();
+            if (fetchedIdSet.size() < totalHits) {
+                List<String> otherIdList = new ArrayList<>();
+                for (BytesRef documentId : collectDocumentIds(searcher, query)) {
+                    String id = documentId.utf8ToString();
+                    if (!fetchedIdSet.contains(id)) {
+                        otherIdList.add(id);
+                    }
+                }
+                resultCount += countReadableDocuments(criteria, otherIdList);
+            }
+            paginatedList.setResultCount(resultCount);
+
+            // Highlight the files of this page
+            if (fulltextQuery != null && !documentDtoList.isEmpty()) {
+                Map<String, String> highlightMap = highlight(searcher, analyzer, fulltextQuery,
+                        Lists.transform(documentDtoList, DocumentDto::getId));
+                for (DocumentDto documentDto : documentDtoList) {
+                    documentDto.setHighlight(highlightMap.get(documentDto.getId()));
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+
         paginatedList.setResultList(documentDtoList);
     }
 
+    /**
+     * Collect the IDs of the documents matching a query, directly or through one of their files.
+     *
+     * @param searcher Index searcher
+     * @param query Query
+     * @return Document IDs
+     * @throws IOException e
+     */
+    private Set<BytesRef> collectDocumentIds(IndexSearcher searcher, Query query) throws IOException {
+        Set<BytesRef> documentIdSet = new HashSet<>();
+        searcher.search(query, new SimpleCollector() {
+            private SortedDocValues documentIdValues;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                documentIdValues = DocValues.getSorted(context.reader(), "document_ref");
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                if (documentIdValues.advanceExact(doc)) {
+                    documentIdSet.add(BytesRef.deepCopyOf(documentIdValues.binaryValue()));
+                }
+            }
+
+            @Override
+            public ScoreMode scoreMode() {
+                return ScoreMode.COMPLETE_NO_SCORES;
+            }
+        });
+        return documentIdSet;
+    }
+
+    /**
+     * Highlight the best matching file of each document.
+     *
+     * @param searcher Index searcher
+     * @param analyzer Analyzer
+     * @param fulltextQuery Fulltext query
+     * @param documentIdList Documents to highlight
+     * @return Highlights by document ID
+     * @throws Exception e
+     */
+    private Map<String, String> highlight(IndexSearcher searcher, Analyzer analyzer, Query fulltextQuery, List<String> documentIdList) throws Exception {
+        Query query = new BooleanQuery.Builder()
+                .add(fulltextQuery, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term("doctype", "file")), BooleanClause.Occur.FILTER)
+                .add(buildTermsQuery("document_id", documentIdList), BooleanClause.Occur.FILTER)
+                .build();
+        Highlighter highlighter = new Highlighter(new SimpleHTMLFormatter("<strong>", "</strong>"),
+                new SimpleHTMLEncoder(), new QueryScorer(fulltextQuery));
+
+        Map<String, String> highlightMap = Maps.newHashMap();
+        for (ScoreDoc scoreDoc : searcher.search(query, Integer.MAX_VALUE).scoreDocs) {
+            org.apache.lucene.document.Document document = searcher.doc(scoreDoc.doc);
+            String documentId = document.get("document_id");
+            String content = document.get("content");
+            if (content != null && !highlightMap.containsKey(documentId)) {
+                String highlight = highlighter.getBestFragment(analyzer, "content", content);
+                if (highlight != null) {
+                    highlightMap.put(documentId, highlight);
+                }
+            }
+        }
+        return highlightMap;
+    }
+
+    /**
+     * Build a query matching any of the values of a field.
+     *
+     * @param field Field
+     * @param valueList Values
+     * @return Query
+     */
+    private Query buildTermsQuery(String field, Collection<String> valueList) {
+        List<BytesRef> termList = new ArrayList<>();
+        for (String value : valueList) {
+            termList.add(new BytesRef(value));
+        }
+        return new TermInSetQuery(field, termList);
+    }
+
+    /**
+     * Build a query on a date range, bounds included.
+     *
+     * @param field Field
+     * @param min Minimum date, or null
+     * @param max Maximum date, or null
+     * @return Query
+     */
+    private Query buildDateRangeQuery(String field, Date min, Date max) {
+        return LongPoint.newRangeQuery(field,
+                min == null ? Long.MIN_VALUE : min.getTime(),
+                max == null ? Long.MAX_VALUE : max.getTime());
+    }
+
     /**
      * Suggest search terms according to the user query.
      *
@@ -393,20 +1335,9 @@ public class LuceneIndexingHandler implements IndexingHandler {
      * @throws Exception e
      */
     private void suggestSearchTerms(String search, List<String> suggestionList) throws Exception {
-        DirectoryReader directoryReader = getDirectoryReader();
-        if (directoryReader == null) {
-            return;
-        }
-
-        FuzzySuggester suggester = new FuzzySuggester(directory, "", new StandardAnalyzer());
-        LuceneDictionary dictionary = new LuceneDictionary(directoryReader, "title");
-        suggester.build(dictionary);
         int lastIndex = search.lastIndexOf(' ');
         String suggestQuery = search.substring(Math.max(lastIndex, 0));
-        List<Lookup.LookupResult> lookupResultList = suggester.lookup(suggestQuery, false, 10);
-        for (Lookup.LookupResult lookupResult : lookupResultList) {
-            suggestionList.add(lookupResult.key.toString());
-        }
+        suggestionList.addAll(suggester.lookup(suggestQuery, 10));
     }
 
     /**
@@ -418,14 +1349,62 @@ public class LuceneIndexingHandler implements IndexingHandler {
      * @throws Exception e
      */
     private Map<String, String> search(String simpleSearchQuery, String fullSearchQuery) throws Exception {
+        Analyzer analyzer = new StandardAnalyzer();
+        Query query = buildFulltextQuery(analyzer, simpleSearchQuery, fullSearchQuery);
+
+        // Search
+        Map<String, String> documentMap = Maps.newHashMap();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(query, Integer.MAX_VALUE);
+            ScoreDoc[] docs = topDocs.scoreDocs;
+
+            SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<strong>", "</strong>");
+            SimpleHTMLEncoder simpleHTMLEncoder = new SimpleHTMLEncoder();
+            Highlighter highlighter = new Highlighter(simpleHTMLFormatter, simpleHTMLEncoder, new QueryScorer(query));
+
+            // Extract document IDs and highlights
+            for (ScoreDoc doc : docs) {
+                org.apache.lucene.document.Document document = searcher.doc(doc.doc);
+                String type = document.get("doctype");
+                String documentId = null;
+                String highlight = null;
+                if (type.equals("document")) {
+                    documentId = document.get("id");
+                } else if (type.equals("file")) {
+                    documentId = document.get("document_id");
+                    String content = document.get("content");
+                    if (content != null) {
+                        highlight = highlighter.getBestFragment(analyzer, "content", content);
+                    }
+                }
+
+                if (documentId != null) {
+                    documentMap.put(documentId, highlight);
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        return documentMap;
+    }
+
+    /**
+     * Build the fulltext query.
+     *
+     * @param analyzer Analyzer
+     * @param simpleSearchQuery Search query on metadatas
+     * @param fullSearchQuery Search query on all fields
+     * @return Query
+     * @throws Exception e
+     */
+    private Query buildFulltextQuery(Analyzer analyzer, String simpleSearchQuery, String fullSearchQuery) throws Exception {
         // The fulltext query searches in all fields
         String searchQuery = simpleSearchQuery + " " + fullSearchQuery;
 
-        // Build search query
-        Analyzer analyzer = new StandardAnalyzer();
-
         // Search on documents and files
-        BooleanQuery query = new BooleanQuery.Builder()
+        return new BooleanQuery.Builder()
                 .add(buildQueryParser(analyzer, "title").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "description").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "subject").parse(searchQuery), BooleanClause.Occur.SHOULD)
@@ -439,44 +1418,6 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 .add(buildQueryParser(analyzer, "filename").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "content").parse(fullSearchQuery), BooleanClause.Occur.SHOULD)
                 .build();
-
-        // Search
-        DirectoryReader directoryReader = getDirectoryReader();
-        Map<String, String> documentMap = Maps.newHashMap();
-        if (directoryReader == null) {
-            // The directory reader is not yet initialized (probably because there is nothing indexed)
-            return documentMap;
-        }
-        IndexSearcher searcher = new IndexSearcher(directoryReader);
-        TopDocs topDocs = searcher.search(query, Integer.MAX_VALUE);
-        ScoreDoc[] docs = topDocs.scoreDocs;
-
-        SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<strong>", "</strong>");
-        SimpleHTMLEncoder simpleHTMLEncoder = new SimpleHTMLEncoder();
-        Highlighter highlighter = new Highlighter(simpleHTMLFormatter, simpleHTMLEncoder, new QueryScorer(query));
-
-        // Extract document IDs and highlights
-        for (ScoreDoc doc : docs) {
-            org.apache.lucene.document.Document document = searcher.doc(doc.doc);
-            String type = document.get("doctype");
-            String documentId = null;
-            String highlight = null;
-            if (type.equals("document")) {
-                documentId = document.get("id");
-            } else if (type.equals("file")) {
-                documentId = document.get("document_id");
-                String content = document.get("content");
-                if (content != null) {
-                    highlight = highlighter.getBestFragment(analyzer, "content", content);
-                }
-            }
-
-            if (documentId != null) {
-                documentMap.put(documentId, highlight);
-            }
-        }
-
-        return documentMap;
     }
 
     /**
@@ -492,17 +1433,81 @@ public class LuceneIndexingHandler implements IndexingHandler {
         return simpleQueryParser;
     }
 
+    /**
+     * Load the relations of a list of documents indexed with them, in one query per relation.
+     *
+     * @param documentList Documents
+     * @return Relations of the documents
+     */
+    private DocumentRelations loadDocumentRelations(List<Document> documentList) {
+        List<String> documentIdList = documentList.stream().map(Document::getId).collect(Collectors.toList());
+        DocumentRelations relations = new DocumentRelations();
+        AclDao aclDao = new AclDao();
+        relations.readTargetIdMap = aclDao.getReadTargetIdMap(documentIdList);
+        relations.sharedIdSet = aclDao.getSharedSourceIds(documentIdList);
+        relations.tagMap = new TagDao().findByDocumentsIds(documentIdList, null);
+        relations.mimeTypeMap = new HashMap<>();
+        if (!documentIdList.isEmpty()) {
+            for (File file : new FileDao().getByDocumentsIds(documentIdList)) {
+                if (file.getMimeType() != null) {
+                    relations.mimeTypeMap.computeIfAbsent(file.getDocumentId(), documentId -> new HashSet<>()).add(file.getMimeType());
+                }
+            }
+        }
+        relations.routeTargetIdMap = new RouteStepDao().getCurrentStepTargetIdMap(documentIdList);
+        return relations;
+    }
+
     /**
      * Build Lucene document from database document.
      *
      * @param document Document
+     * @param relations Relations of the document, loaded with the other documents indexed with it
      * @return Document
      */
-    private org.apache.lucene.document.Document getDocumentFromDocument(Document document) {
+    private org.apache.lucene.document.Document getDocumentFromDocument(Document document, DocumentRelations relations) {
         org.apache.lucene.document.Document luceneDocument = new org.apache.lucene.document.Document();
         luceneDocument.add(new StringField("id", document.getId(), Field.Store.YES));
+        luceneDocument.add(new SortedDocValuesField("id_sort", new BytesRef(document.getId())));
+        luceneDocument.add(new SortedDocValuesField("document_ref", new BytesRef(document.getId())));
         luceneDocument.add(new StringField("doctype", "document", Field.Store.YES));
         luceneDocument.add(new TextField("title", document.getTitle(), Field.Store.NO));
+        luceneDocument.add(new StringField("title_exact", document.getTitle(), Field.Store.NO));
+        // Titles sorted by their collation key, the case and accents only break ties like a natural ordering
+        CollationDocValuesField titleSortField = new CollationDocValuesField("title_sort", Collator.getInstance(Locale.ROOT));
+        titleSortField.setStringValue(document.getTitle());
+        luceneDocument.add(titleSortField);
+        addDateField(luceneDocument, "create_date", document.getCreateDate());
+        addDateField(luceneDocument, "update_date", document.getUpdateDate());
+        if (document.getLanguage() != null) {
+            luceneDocument.add(new StringField("language", document.getLanguage(), Field.Store.NO));
+            luceneDocument.add(new SortedDocValuesField("language_sort", new BytesRef(document.getLanguage())));
+        }
+        luceneDocument.add(new StringField("creator", document.getUserId(), Field.Store.NO));
+
+        // Targets allowed to read the document
+        for (String targetId : relations.readTargetIdMap.getOrDefault(document.getId(), Collections.emptySet())) {
+            luceneDocument.add(new StringField("acl_read", targetId, Field.Store.NO));
+        }
+        if (relations.sharedIdSet.contains(document.getId())) {
+            luceneDocument.add(new StringField("shared", "true", Field.Store.NO));
+        }
+
+        // Tags
+        for (TagDto tagDto : relations.tagMap.getOrDefault(document.getId(), Collections.emptyList())) {
+            luceneDocument.add(new StringField("tag", tagDto.getId(), Field.Store.NO));
+        }
+
+        // Files mime types
+        for (String mimeType : relations.mimeTypeMap.getOrDefault(document.getId(), Collections.emptySet())) {
+            luceneDocument.add(new StringField("mime", mimeType, Field.Store.NO));
+        }
+
+        // Target of the current route step
+        String routeTargetId = relations.routeTargetIdMap.get(document.getId());
+        if (routeTargetId != null) {
+            luceneDocument.add(new StringField("route_target", routeTargetId, Field.Store.NO));
+        }
         if (document.getDescription() != null) {
             luceneDocument.add(new TextField("description", document.getDescription(), Field.Store.NO));
         }
@@ -534,13 +1539,28 @@ public class LuceneIndexingHandler implements IndexingHandler {
         return luceneDocument;
     }
 
+    /**
+     * Add a searchable and sortable date field.
+     *
+     * @param luceneDocument Lucene document
+     * @param field Field
+     * @param date Date, ignored if null
+     */
+    private void addDateField(org.apache.lucene.document.Document luceneDocument, String field, Date date) {
+        if (date != null) {
+            luceneDocument.add(new LongPoint(field, date.getTime()));
+            luceneDocument.add(new NumericDocValuesField(field, date.getTime()));
+        }
+    }
+
     /**
      * Build Lucene document from file.
      *
      * @param file File
+     * @param content Extracted content of the file, null if none
      * @return Document
      */
-    private org.apache.lucene.document.Document getDocumentFromFile(File file) {
+    private org.apache.lucene.document.Document getDocumentFromFile(File file, String content) {
         org.apache.lucene.document.Document luceneDocument = new org.apache.lucene.document.Document();
         luceneDocument.add(new StringField("id", file.getId(), Field.Store.YES));
         luceneDocument.add(new StringField("doctype", "file", Field.Store.YES));
@@ -549,64 +1569,197 @@ public class LuceneIndexingHandler implements IndexingHandler {
         }
         if (file.getDocumentId() != null) {
             luceneDocument.add(new StringField("document_id", file.getDocumentId(), Field.Store.YES));
+            luceneDocument.add(new SortedDocValuesField("document_ref", new BytesRef(file.getDocumentId())));
         }
-        if (file.getContent() != null) {
-            luceneDocument.add(new TextField("content", file.getContent(), Field.Store.YES));
+        if (content != null) {
+            luceneDocument.add(new TextField("content", content, Field.Store.YES));
         }
 
         return luceneDocument;
     }
 
     /**
-     * Returns a valid directory reader.
-     * Take care of reopening the reader if the index has changed
-     * and closing the previous one.
+     * Encapsulate a process into a Lucene context.
      *
-     * @return the directoryReader
+     * @param idList IDs of the documents and files updated by the process
+     * @param runnable Runnable
      */
-    private DirectoryReader getDirectoryReader() {
-        if (directoryReader == null) {
-            try {
-                if (!DirectoryReader.indexExists(directory)) {
-                    return null;
-                }
-                directoryReader = DirectoryReader.open(directory);
-            } catch (IOException e) {
-                log.error("Error creating the directory reader", e);
+    private void handle(Collection<String> idList, LuceneRunnable runnable) {
+        swapLock.readLock().lock();
+        try {
+            Set<String> dirtySet = dirtyIdSet;
+            if (dirtySet != null) {
+                // A rebuild is in progress, it will reindex these IDs before being swapped in
+                List<String> addedIdList = idList.stream().filter(dirtySet::add).collect(Collectors.toList());
+                journalDirtyIds(addedIdList);
             }
-        } else {
+
             try {
-                DirectoryReader newReader = DirectoryReader.openIfChanged(directoryReader);
-                if (newReader != null) {
-                    directoryReader.close();
-                    directoryReader = newReader;
+                runnable.run(indexWriter);
+            } catch (Exception e) {
+                log.error("Error in running index writing", e);
+            }
+            operationCount.incrementAndGet();
+
+            // Commit asynchronously when enough operations are waiting
+            if (pendingOperationCount.incrementAndGet() >= commitBatchSize) {
+                try {
+                    commitExecutor.execute(this::commit);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down, the pending operations will be committed on close
                 }
-            } catch (IOException e) {
-                log.error("Error while reopening the directory reader", e);
             }
+
+            // The changes are visible after the next periodic refresh, or once waited for by this thread
+            writtenGeneration.set(new WrittenGeneration(indexWriter, indexWriter.getMaxCompletedSequenceNumber()));
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void waitForWrites() {
+        WrittenGeneration generation = writtenGeneration.get();
+        if (generation == null) {
+            return;
+        }
+        writtenGeneration.remove();
+
+        swapLock.readLock().lock();
+        try {
+            // A swapped index already contains the changes written to the previous one
+            if (generation.indexWriter == indexWriter) {
+                reopenThread.waitForGeneration(generation.generation);
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted while refreshing the index searchers", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            swapLock.readLock().unlock();
         }
-        return directoryReader;
     }
 
     /**
-     * Encapsulate a process into a Lucene context.
-     *
-     * @param runnable Runnable
+     * Commit the pending index operations.
      */
-    private void handle(LuceneRunnable runnable) {
-        try {
-            runnable.run(indexWriter);
-        } catch (Exception e) {
-            log.error("Error in running index writing", e);
+    private synchronized void commit() {
+        commitShadow();
+
+        long pendingCount = pendingOperationCount.getAndSet(0);
+        if (pendingCount == 0 || !indexWriter.isOpen()) {
+            return;
         }
 
         try {
             indexWriter.commit();
+            commitCount.incrementAndGet();
         } catch (IOException e) {
             log.error("Cannot commit index writer", e);
         }
     }
 
+    /**
+     * Commit the index being rebuilt with its checkpoint.
+     */
+    private synchronized void commitShadow() {
+        IndexWriter writer = shadowWriter;
+        if (writer == null || !writer.isOpen()) {
+            return;
+        }
+
+        RebuildProgress progress = rebuildProgress;
+        Map<String, String> userData = new HashMap<>();
+        userData.put(INDEX_VERSION_KEY, INDEX_VERSION);
+        userData.put(REBUILD_PHASE_KEY, progress.getPhase().name());
+        userData.put(REBUILD_LAST_ID_KEY, progress.getLastId());
+        userData.put(REBUILD_DOCUMENT_COUNT_KEY, Long.toString(progress.getDocumentCount().get()));
+        userData.put(REBUILD_FILE_COUNT_KEY, Long.toString(progress.getFileCount().get()));
+        writer.setLiveCommitData(userData.entrySet());
+        try {
+            // The checkpoint is committed only with the IDs changed before it
+            syncDirtyIdJournal();
+            writer.commit();
+        } catch (IOException e) {
+            log.error("Cannot commit the rebuild index writer", e);
+        }
+    }
+
+    /**
+     * Measure the operations throughput since the last call.
+     */
+    private void updateOperationRate() {
+        long now = System.nanoTime();
+        long count = operationCount.get();
+        operationRate = (count - lastRateOperationCount) * 1e9 / (now - lastRateTime);
+        lastRateOperationCount = count;
+        lastRateTime = now;
+    }
+
+    @Override
+    public long getOperationCount() {
+        return operationCount.get();
+    }
+
+    @Override
+    public double getOperationRate() {
+        return operationRate;
+    }
+
+    @Override
+    public long getPendingOperationCount() {
+        return pendingOperationCount.get();
+    }
+
+    @Override
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    @Override
+    public long getSuggesterGeneration() {
+        return suggester.getGeneration();
+    }
+
+    @Override
+    public long getSuggesterBuildTime() {
+        return suggester.getLastBuildTime();
+    }
+
+    @Override
+    public double getSuggesterLookupTime() {
+        return suggester.getAverageLookupTime();
+    }
+
+    /**
+     * Relations of documents indexed with them, loaded for a list of documents.
+     */
+    private static class DocumentRelations {
+        /**
+         * Targets allowed to read each document.
+         */
+        private Map<String, Set<String>> readTargetIdMap;
+
+        /**
+         * Documents shared with a share.
+         */
+        private Set<String> sharedIdSet;
+
+        /**
+         * Tags of each document.
+         */
+        private Map<String, List<TagDto>> tagMap;
+
+        /**
+         * Mime types of the files of each document.
+         */
+        private Map<String, Set<String>> mimeTypeMap;
+
+        /**
+         * Target of the current route step of each document.
+         */
+        private Map<String, String> routeTargetIdMap;
+    }
+
     /**
      * Lucene runnable.
      *
@@ -621,4 +1774,30 @@ public class LuceneIndexingHandler implements IndexingHandler {
          */
         void run(IndexWriter indexWriter) throws Exception;
     }
+
+    /**
+     * Index generation written by a thread.
+     */
+    private static class WrittenGeneration {
+        /**
+         * Index writer.
+         */
+        private final IndexWriter indexWriter;
+
+        /**
+         * Generation of the last operation.
+         */
+        private final long generation;
+
+        /**
+         * Create a written generation.
+         *
+         * @param indexWriter Index writer
+         * @param generation Generation of the last operation
+         */
+        private WrittenGeneration(IndexWriter indexWriter, long generation) {
+            this.indexWriter = indexWriter;
+            this.generation = generation;
+        }
+    }
 }
@@ -0,0 +1,263 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.util.EnvironmentUtil;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.spell.LuceneDictionary;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Search terms suggester.
+ * The suggester is built from the documents titles in the background after the index refreshes,
+ * and swapped atomically so that searches only do a lookup.
+ * The builds are rate limited, the changes refreshed in the meantime are built at once.
+ *
+ * @author agent
+ */
+public class LuceneSuggester implements ReferenceManager.RefreshListener {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(LuceneSuggester.class);
+
+    /**
+     * Indexed field used to build the suggestions.
+     */
+    private static final String FIELD = "title";
+
+    /**
+     * Searcher manager providing the index readers.
+     */
+    private final SearcherManager searcherManager;
+
+    /**
+     * Directory used for the temporary files of the build.
+     */
+    private final Directory tempDirectory;
+
+    /**
+     * Executor building the suggester.
+     */
+    private final ExecutorService buildExecutor;
+
+    /**
+     * Minimum time between two builds (in milliseconds).
+     */
+    private final long minBuildInterval;
+
+    /**
+     * True if the index has been refreshed since the last build was scheduled.
+     */
+    private final AtomicBoolean refreshed = new AtomicBoolean();
+
+    /**
+     * True if a build is waiting to be run.
+     */
+    private final AtomicBoolean buildPending = new AtomicBoolean();
+
+    /**
+     * Current suggester, null until the first build.
+     */
+    private volatile FuzzySuggester suggester;
+
+    /**
+     * Index reader version used by the current suggester.
+     */
+    private volatile long generation = -1;
+
+    /**
+     * Start time of the last build (in milliseconds since the epoch).
+     */
+    private volatile long lastBuildStartTime;
+
+    /**
+     * Duration of the last build (in milliseconds).
+     */
+    private volatile long lastBuildTime;
+
+    /**
+     * Number of lookups.
+     */
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    /**
+     * Cumulated duration of the lookups (in nanoseconds).
+     */
+    private final AtomicLong lookupTime = new AtomicLong();
+
+    /**
+     * Create a suggester maintained from a searcher manager.
+     *
+     * @param searcherManager Searcher manager
+     * @param tempDirectory Directory used for the temporary files of the build
+     */
+    public LuceneSuggester(SearcherManager searcherManager, Directory tempDirectory) {
+        this.searcherManager = searcherManager;
+        this.tempDirectory = tempDirectory;
+        if (EnvironmentUtil.isUnitTest()) {
+            minBuildInterval = 0;
+            buildExecutor = MoreExecutors.newDirectExecutorService();
+        } else {
+            minBuildInterval = EnvironmentUtil.getLongEnv(Constants.LUCENE_SUGGESTER_INTERVAL_ENV,
+                    Constants.DEFAULT_LUCENE_SUGGESTER_INTERVAL);
+            buildExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("Lucene suggester build")
+                    .setDaemon(true)
+                    .build());
+        }
+        searcherManager.addListener(this);
+        scheduleBuild();
+    }
+
+    @Override
+    public void beforeRefresh() {
+        // NOP
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+        if (didRefresh) {
+            refreshed.set(true);
+        }
+
+        // The periodic refreshes run the deferred build once the minimum interval has elapsed
+        if (refreshed.get() && System.currentTimeMillis() - lastBuildStartTime >= minBuildInterval
+                && refreshed.compareAndSet(true, false)) {
+            scheduleBuild();
+        }
+    }
+
+    /**
+     * Schedule a build of the suggester, unless one is already waiting.
+     */
+    private void scheduleBuild() {
+        if (!buildPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buildExecutor.execute(this::build);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            buildPending.set(false);
+        }
+    }
+
+    /**
+     * Build a new suggester from the latest searcher and swap it in.
+     */
+    private void build() {
+        buildPending.set(false);
+        long startTime = System.currentTimeMillis();
+        lastBuildStartTime = startTime;
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            long version = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+            if (version == generation) {
+                return;
+            }
+
+            FuzzySuggester newSuggester = new FuzzySuggester(tempDirectory, "", new StandardAnalyzer());
+            newSuggester.build(new LuceneDictionary(searcher.getIndexReader(), FIELD));
+            suggester = newSuggester;
+            generation = version;
+            lastBuildTime = System.currentTimeMillis() - startTime;
+        } catch (Exception e) {
+            log.error("Error building the search suggester", e);
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException e) {
+                    log.error("Error releasing the index searcher", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the suggestions for a search term.
+     *
+     * @param term Search term
+     * @param count Maximum number of suggestions
+     * @return Suggestions
+     * @throws IOException e
+     */
+    public List<String> lookup(String term, int count) throws IOException {
+        List<String> suggestionList = Lists.newArrayList();
+        FuzzySuggester currentSuggester = suggester;
+        if (currentSuggester == null) {
+            // Not built yet
+            return suggestionList;
+        }
+
+        long startTime = System.nanoTime();
+        for (Lookup.LookupResult lookupResult : currentSuggester.lookup(term, false, count)) {
+            suggestionList.add(lookupResult.key.toString());
+        }
+        lookupTime.addAndGet(System.nanoTime() - startTime);
+        lookupCount.incrementAndGet();
+        return suggestionList;
+    }
+
+    /**
+     * Stop building the suggester.
+     */
+    public void shutDown() {
+        searcherManager.removeListener(this);
+        buildExecutor.shutdown();
+        try {
+            buildExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting for the suggester build", e);
+        }
+    }
+
+    /**
+     * Getter of generation.
+     *
+     * @return Index reader version used by the current suggester, -1 if not built yet
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Getter of lastBuildTime.
+     *
+     * @return Duration of the last build (in milliseconds)
+     */
+    public long getLastBuildTime() {
+        return lastBuildTime;
+    }
+
+    /**
+     * Returns the average lookup latency.
+     *
+     * @return Average lookup duration (in milliseconds)
+     */
+    public double getAverageLookupTime() {
+        long count = lookupCount.get();
+        return count == 0 ? 0 : lookupTime.get() / 1e6 / count;
+    }
+}
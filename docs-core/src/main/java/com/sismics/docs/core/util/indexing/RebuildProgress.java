@@ -0,0 +1,177 @@
+package com.sismics.docs.core.util.indexing;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a full index rebuild.
+ * The phase and the last indexed ID are the checkpoint a rebuild resumes from.
+ *
+ * @author agent
+ */
+public class RebuildProgress {
+    /**
+     * Rebuild phase.
+     */
+    public enum Phase {
+        /**
+         * Indexing the documents.
+         */
+        DOCUMENT,
+
+        /**
+         * Indexing the files.
+         */
+        FILE
+    }
+
+    /**
+     * Current phase.
+     */
+    private volatile Phase phase = Phase.DOCUMENT;
+
+    /**
+     * ID of the last document or file indexed in the current phase, empty at the start of a phase.
+     */
+    private volatile String lastId = "";
+
+    /**
+     * True while the rebuild is running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Start date.
+     */
+    private final Date startDate = new Date();
+
+    /**
+     * Number of documents indexed.
+     */
+    private final AtomicLong documentCount = new AtomicLong();
+
+    /**
+     * Number of files indexed.
+     */
+    private final AtomicLong fileCount = new AtomicLong();
+
+    /**
+     * Number of documents to index.
+     */
+    private volatile long documentTotal;
+
+    /**
+     * Number of files to index.
+     */
+    private volatile long fileTotal;
+
+    /**
+     * Getter of phase.
+     *
+     * @return Current phase
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Getter of lastId.
+     *
+     * @return ID of the last document or file indexed in the current phase
+     */
+    public String getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Move the checkpoint.
+     *
+     * @param phase Current phase
+     * @param lastId ID of the last document or file indexed in the current phase
+     */
+    public void setCheckpoint(Phase phase, String lastId) {
+        this.phase = phase;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Getter of running.
+     *
+     * @return True while the rebuild is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Setter of running.
+     *
+     * @param running True while the rebuild is running
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * Getter of startDate.
+     *
+     * @return Start date
+     */
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Getter of documentCount.
+     *
+     * @return Number of documents indexed
+     */
+    public AtomicLong getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Getter of fileCount.
+     *
+     * @return Number of files indexed
+     */
+    public AtomicLong getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Getter of documentTotal.
+     *
+     * @return Number of documents to index
+     */
+    public long getDocumentTotal() {
+        return documentTotal;
+    }
+
+    /**
+     * Setter of documentTotal.
+     *
+     * @param documentTotal Number of documents to index
+     */
+    public void setDocumentTotal(long documentTotal) {
+        this.documentTotal = documentTotal;
+    }
+
+    /**
+     * Getter of fileTotal.
+     *
+     * @return Number of files to index
+     */
+    public long getFileTotal() {
+        return fileTotal;
+    }
+
+    /**
+     * Setter of fileTotal.
+     *
+     * @param fileTotal Number of files to index
+     */
+    public void setFileTotal(long fileTotal) {
+        this.fileTotal = fileTotal;
+    }
+}
@@ -0,0 +1,128 @@
+package com.sismics.docs.core.util.storage;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a storage cleaning.
+ *
+ * @author agent
+ */
+public class CleanStorageProgress {
+    /**
+     * Cleaning phase.
+     */
+    public enum Phase {
+        /**
+         * Deleting the stored files without an active file.
+         */
+        STORAGE,
+
+        /**
+         * Deleting the orphan and soft deleted rows.
+         */
+        DATABASE
+    }
+
+    /**
+     * Current phase.
+     */
+    private volatile Phase phase = Phase.STORAGE;
+
+    /**
+     * True while the cleaning is running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Start date.
+     */
+    private final Date startDate = new Date();
+
+    /**
+     * Number of stored files checked.
+     */
+    private final AtomicLong checkedFileCount = new AtomicLong();
+
+    /**
+     * Number of orphan stored files deleted.
+     */
+    private final AtomicLong deletedFileCount = new AtomicLong();
+
+    /**
+     * Number of database rows deleted.
+     */
+    private final AtomicLong deletedRowCount = new AtomicLong();
+
+    /**
+     * Getter of phase.
+     *
+     * @return Current phase
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Setter of phase.
+     *
+     * @param phase Current phase
+     */
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Getter of running.
+     *
+     * @return True while the cleaning is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Setter of running.
+     *
+     * @param running True while the cleaning is running
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * Getter of startDate.
+     *
+     * @return Start date
+     */
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Getter of checkedFileCount.
+     *
+     * @return Number of stored files checked
+     */
+    public AtomicLong getCheckedFileCount() {
+        return checkedFileCount;
+    }
+
+    /**
+     * Getter of deletedFileCount.
+     *
+     * @return Number of orphan stored files deleted
+     */
+    public AtomicLong getDeletedFileCount() {
+        return deletedFileCount;
+    }
+
+    /**
+     * Getter of deletedRowCount.
+     *
+     * @return Number of database rows deleted
+     */
+    public AtomicLong getDeletedRowCount() {
+        return deletedRowCount;
+    }
+}
@@ -0,0 +1,185 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Striped;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.util.StorageUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Content-addressed storage backend, identical contents are stored once.
+ * Each content is stored once as a blob named after its SHA-256 hash, the stored files are hard links to it:
+ * the number of links of a blob is its reference count, kept by the filesystem.
+ * Files are encrypted with the key of their owner before being stored, so identical plaintexts
+ * are only deduplicated between the files of the same user.
+ * The deletions of the references to a same blob are serialized, otherwise concurrent deletions
+ * could all see other references left and none would delete the blob.
+ *
+ * @author agent
+ */
+public class DeduplicatingStorageBackend extends FilesystemStorageBackend {
+    /**
+     * Locks of the deletions, by inode of the blob shared by all its stored files.
+     */
+    private final Striped<Lock> deleteLocks = Striped.lock(64);
+
+    @Override
+    public boolean accept() {
+        return "dedup".equals(System.getenv(Constants.STORAGE_BACKEND_ENV));
+    }
+
+    @Override
+    public void startUp() throws Exception {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+            throw new IllegalStateException("The deduplicating storage needs hard links reference counts");
+        }
+    }
+
+    @Override
+    public void put(String key, InputStream inputStream) throws IOException {
+        // Write the content in a temporary file while hashing it
+        Path tmpFile = StorageUtil.getBlobDirectory().resolve(UUID.randomUUID() + ".tmp");
+        try {
+            HashCode hash;
+            try (HashingInputStream hashingInputStream = new HashingInputStream(Hashing.sha256(), inputStream)) {
+                Files.copy(hashingInputStream, tmpFile);
+                hash = hashingInputStream.hash();
+            }
+
+            // Replace the previous content
+            delete(key);
+
+            Path blobFile = getBlobFile(hash.toString());
+            Files.createDirectories(blobFile.getParent());
+            Path storedFile = StorageUtil.getNewStoredFile(key);
+            while (true) {
+                try {
+                    Files.createLink(blobFile, tmpFile);
+                } catch (FileAlreadyExistsException e) {
+                    // Same content already stored
+                }
+                try {
+                    Files.createLink(storedFile, blobFile);
+                    break;
+                } catch (NoSuchFileException e) {
+                    // The last reference to the blob has been deleted in the meantime, store it again
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path storedFile = StorageUtil.getStoredFile(key);
+        Object inode;
+        try {
+            inode = Files.getAttribute(storedFile, "unix:ino");
+        } catch (NoSuchFileException e) {
+            return;
+        }
+
+        Lock lock = deleteLocks.get(inode);
+        lock.lock();
+        try {
+            deleteLocked(key, storedFile);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete a stored file, and its blob if it is the last reference.
+     * Must be called with the delete lock of the blob held.
+     *
+     * @param key Stored file name
+     * @param storedFile Stored file
+     * @throws IOException e
+     */
+    private void deleteLocked(String key, Path storedFile) throws IOException {
+        int linkCount;
+        try {
+            linkCount = getLinkCount(storedFile);
+        } catch (NoSuchFileException e) {
+            // Deleted in the meantime
+            return;
+        }
+
+        // Not deduplicated (stored before) or still referenced by other stored files
+        if (linkCount != 2) {
+            StorageUtil.deleteStoredFile(key);
+            return;
+        }
+
+        // Last reference to the blob, only this case pays for hashing the content to find the blob
+        String hash;
+        try (InputStream inputStream = Files.newInputStream(storedFile);
+             HashingInputStream hashingInputStream = new HashingInputStream(Hashing.sha256(), inputStream)) {
+            ByteStreams.exhaust(hashingInputStream);
+            hash = hashingInputStream.hash().toString();
+        }
+        StorageUtil.deleteStoredFile(key);
+        Path blobFile = getBlobFile(hash);
+        try {
+            if (getLinkCount(blobFile) == 1) {
+                Files.delete(blobFile);
+            }
+        } catch (NoSuchFileException e) {
+            // Already deleted
+        }
+    }
+
+    /**
+     * Returns the number of references to a stored content.
+     *
+     * @param key Stored file name
+     * @return Number of stored files sharing the content of this one, 0 if the file is not stored
+     * @throws IOException e
+     */
+    public int getReferenceCount(String key) throws IOException {
+        Path storedFile = StorageUtil.getStoredFile(key);
+        if (!Files.exists(storedFile)) {
+            return 0;
+        }
+
+        // All the links minus the blob itself
+        return Math.max(1, getLinkCount(storedFile) - 1);
+    }
+
+    /**
+     * Returns the path of a blob.
+     *
+     * @param hash Content hash
+     * @return Path of the blob
+     */
+    private static Path getBlobFile(String hash) {
+        return StorageUtil.getBlobDirectory()
+                .resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash);
+    }
+
+    /**
+     * Returns the number of hard links of a file.
+     *
+     * @param file File
+     * @return Number of links
+     * @throws IOException e
+     */
+    private static int getLinkCount(Path file) throws IOException {
+        return (Integer) Files.getAttribute(file, "unix:nlink");
+    }
+}
@@ -0,0 +1,90 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.base.Strings;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.util.StorageUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * Storage backend keeping the stored files in the sharded storage directory.
+ * This is the default storage backend.
+ *
+ * @author agent
+ */
+public class FilesystemStorageBackend implements StorageBackend {
+    @Override
+    public boolean accept() {
+        String backend = System.getenv(Constants.STORAGE_BACKEND_ENV);
+        return Strings.isNullOrEmpty(backend) || backend.equals("filesystem");
+    }
+
+    @Override
+    public void startUp() throws Exception {
+        // NOP
+    }
+
+    @Override
+    public void shutDown() {
+        // NOP
+    }
+
+    @Override
+    public void put(String key, InputStream inputStream) throws IOException {
+        try (InputStream is = inputStream) {
+            Files.copy(is, StorageUtil.getNewStoredFile(key), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(StorageUtil.getStoredFile(key));
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(StorageUtil.getStoredFile(key));
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(StorageUtil.getStoredFile(key));
+    }
+
+    @Override
+    public StorageStat stat(String key) throws IOException {
+        Path storedFile = StorageUtil.getStoredFile(key);
+        if (!Files.exists(storedFile)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(storedFile, BasicFileAttributes.class);
+        return new StorageStat(attributes.size(), new Date(attributes.lastModifiedTime().toMillis()));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        StorageUtil.deleteStoredFile(key);
+    }
+
+    @Override
+    public Stream<String> list() throws IOException {
+        return StorageUtil.listStoredFiles()
+                .map(storedFile -> storedFile.getFileName().toString());
+    }
+}
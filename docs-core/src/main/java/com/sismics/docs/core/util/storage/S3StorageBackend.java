@@ -0,0 +1,389 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Streams;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.net.UrlEscapers;
+import com.sismics.docs.core.constant.Constants;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Storage backend keeping the stored files in an S3 compatible object storage.
+ * Requests are signed with AWS signature version 4, objects are addressed in path style
+ * (endpoint/bucket/key) to work with any S3 compatible server.
+ *
+ * @author agent
+ */
+public class S3StorageBackend implements StorageBackend {
+    /**
+     * Payload hash of the signed requests, the payload itself is not signed.
+     */
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    /**
+     * Format of the request date.
+     */
+    private static final DateTimeFormatter AMZ_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    /**
+     * Server endpoint.
+     */
+    private final URI endpoint;
+
+    /**
+     * Region.
+     */
+    private final String region;
+
+    /**
+     * Bucket.
+     */
+    private final String bucket;
+
+    /**
+     * Access key.
+     */
+    private final String accessKey;
+
+    /**
+     * Secret key.
+     */
+    private final String secretKey;
+
+    /**
+     * HTTP client.
+     */
+    private HttpClient httpClient;
+
+    /**
+     * Configure the backend from the environment.
+     */
+    public S3StorageBackend() {
+        String envEndpoint = System.getenv(Constants.S3_ENDPOINT_ENV);
+        String envRegion = System.getenv(Constants.S3_REGION_ENV);
+        this.endpoint = envEndpoint == null ? null : URI.create(envEndpoint);
+        this.region = Strings.isNullOrEmpty(envRegion) ? Constants.DEFAULT_S3_REGION : envRegion;
+        this.bucket = System.getenv(Constants.S3_BUCKET_ENV);
+        this.accessKey = System.getenv(Constants.S3_ACCESS_KEY_ENV);
+        this.secretKey = System.getenv(Constants.S3_SECRET_KEY_ENV);
+    }
+
+    /**
+     * Configure the backend.
+     *
+     * @param endpoint Server endpoint
+     * @param region Region
+     * @param bucket Bucket
+     * @param accessKey Access key
+     * @param secretKey Secret key
+     */
+    public S3StorageBackend(URI endpoint, String region, String bucket, String accessKey, String secretKey) {
+        this.endpoint = endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public boolean accept() {
+        return "s3".equals(System.getenv(Constants.STORAGE_BACKEND_ENV));
+    }
+
+    @Override
+    public void startUp() throws Exception {
+        if (endpoint == null || Strings.isNullOrEmpty(bucket)
+                || Strings.isNullOrEmpty(accessKey) || Strings.isNullOrEmpty(secretKey)) {
+            throw new IllegalStateException("The S3 storage needs an endpoint, a bucket and credentials");
+        }
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @Override
+    public void shutDown() {
+        httpClient = null;
+    }
+
+    @Override
+    public void put(String key, InputStream inputStream) throws IOException {
+        // Objects are uploaded in one request, which needs the content length
+        Path tmpFile = Files.createTempFile("sismics_docs_s3", null);
+        try {
+            try (InputStream is = inputStream) {
+                Files.copy(is, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            HttpResponse<Void> response = send(newRequest("PUT", key, null)
+                    .PUT(HttpRequest.BodyPublishers.ofFile(tmpFile)), HttpResponse.BodyHandlers.discarding());
+            checkStatus(response, key);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return getRange(key, 0);
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset) throws IOException {
+        HttpRequest.Builder request = newRequest("GET", key, null).GET();
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+        }
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 416) {
+            // Offset past the end of the object
+            response.body().close();
+            return InputStream.nullInputStream();
+        }
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+        }
+        checkStatus(response, key);
+        return response.body();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return stat(key) != null;
+    }
+
+    @Override
+    public StorageStat stat(String key) throws IOException {
+        HttpResponse<Void> response = send(newRequest("HEAD", key, null)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        checkStatus(response, key);
+
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        Date lastModified = response.headers().firstValue("Last-Modified")
+                .map(value -> Date.from(ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()))
+                .orElse(new Date());
+        return new StorageStat(size, lastModified);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<Void> response = send(newRequest("DELETE", key, null).DELETE(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 404) {
+            checkStatus(response, key);
+        }
+    }
+
+    @Override
+    public Stream<String> list() {
+        // Pages of keys are fetched while the stream is consumed
+        Iterator<String> iterator = new AbstractIterator<>() {
+            private Iterator<String> page = null;
+            private String continuationToken = null;
+            private boolean lastPage = false;
+
+            @Override
+            protected String computeNext() {
+                while (page == null || !page.hasNext()) {
+                    if (lastPage) {
+                        return endOfData();
+                    }
+                    fetchPage();
+                }
+                return page.next();
+            }
+
+            private void fetchPage() {
+                Map<String, String> query = new TreeMap<>();
+                query.put("list-type", "2");
+                if (continuationToken != null) {
+                    query.put("continuation-token", continuationToken);
+                }
+                try {
+                    HttpResponse<InputStream> response = send(newRequest("GET", null, query).GET(), HttpResponse.BodyHandlers.ofInputStream());
+                    checkStatus(response, bucket);
+                    Document document;
+                    try (InputStream is = response.body()) {
+                        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+                        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+                        document = factory.newDocumentBuilder().parse(is);
+                    }
+
+                    List<String> keyList = new ArrayList<>();
+                    NodeList keyNodeList = document.getElementsByTagName("Key");
+                    for (int i = 0; i < keyNodeList.getLength(); i++) {
+                        keyList.add(keyNodeList.item(i).getTextContent());
+                    }
+                    page = keyList.iterator();
+
+                    NodeList tokenNodeList = document.getElementsByTagName("NextContinuationToken");
+                    NodeList truncatedNodeList = document.getElementsByTagName("IsTruncated");
+                    lastPage = tokenNodeList.getLength() == 0 || truncatedNodeList.getLength() == 0
+                            || !Boolean.parseBoolean(truncatedNodeList.item(0).getTextContent());
+                    continuationToken = lastPage ? null : tokenNodeList.item(0).getTextContent();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (Exception e) {
+                    throw new UncheckedIOException(new IOException("Error listing the bucket " + bucket, e));
+                }
+            }
+        };
+        return Streams.stream(iterator);
+    }
+
+    /**
+     * Create a signed request.
+     *
+     * @param method HTTP method
+     * @param key Object key, null to address the bucket
+     * @param query Query parameters, sorted by name
+     * @return Request builder, the HTTP method must still be set
+     */
+    private HttpRequest.Builder newRequest(String method, String key, Map<String, String> query) {
+        String canonicalUri = "/" + encode(bucket) + (key == null ? "" : "/" + encode(key));
+        String canonicalQuery = query == null ? "" : query.entrySet().stream()
+                .map(entry -> encode(entry.getKey()) + "=" + encode(entry.getValue()))
+                .collect(Collectors.joining("&"));
+        String basePath = endpoint.getRawPath() == null ? "" : endpoint.getRawPath().replaceAll("/$", "");
+        URI uri = URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + basePath + canonicalUri
+                + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = now.format(AMZ_DATE_FORMAT);
+        String dateStamp = amzDate.substring(0, 8);
+        String scope = Joiner.on('/').join(dateStamp, region, "s3", "aws4_request");
+
+        // The host header is set by the HTTP client from the URI, only the signed headers are needed here
+        Map<String, String> headers = new TreeMap<>();
+        headers.put("host", getHostHeader(uri));
+        headers.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        headers.put("x-amz-date", amzDate);
+        String canonicalHeaders = headers.entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue() + "\n")
+                .collect(Collectors.joining());
+        String signedHeaders = String.join(";", headers.keySet());
+
+        String canonicalRequest = Joiner.on('\n').join(method, basePath + canonicalUri, canonicalQuery,
+                canonicalHeaders, signedHeaders, UNSIGNED_PAYLOAD);
+        String stringToSign = Joiner.on('\n').join("AWS4-HMAC-SHA256", amzDate, scope,
+                Hashing.sha256().hashString(canonicalRequest, StandardCharsets.UTF_8).toString());
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), dateStamp);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = BaseEncoding.base16().lowerCase().encode(hmac(signingKey, stringToSign));
+
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+    }
+
+    /**
+     * Send a request.
+     *
+     * @param request Request builder
+     * @param bodyHandler Response body handler
+     * @return Response
+     * @throws IOException e
+     */
+    private <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        try {
+            return httpClient.send(request.build(), bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling the S3 storage", e);
+        }
+    }
+
+    /**
+     * Check the status of a response.
+     *
+     * @param response Response
+     * @param key Object key
+     * @throws IOException If the request failed
+     */
+    private static void checkStatus(HttpResponse<?> response, String key) throws IOException {
+        int status = response.statusCode();
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        if (status / 100 != 2) {
+            throw new IOException("S3 storage error " + status + " on " + response.request().method() + " " + key);
+        }
+    }
+
+    /**
+     * Returns the host header sent by the HTTP client for an URI.
+     *
+     * @param uri URI
+     * @return Host header
+     */
+    private static String getHostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || ("http".equals(uri.getScheme()) && port == 80)
+                || ("https".equals(uri.getScheme()) && port == 443);
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    /**
+     * URI encode a path segment or a query parameter as expected by the signature.
+     *
+     * @param value Value
+     * @return Encoded value
+     */
+    private static String encode(String value) {
+        return UrlEscapers.urlFormParameterEscaper().escape(value)
+                .replace("+", "%20")
+                .replace("*", "%2A")
+                .replace("%7E", "~");
+    }
+
+    /**
+     * Compute a HMAC-SHA256.
+     *
+     * @param key Key
+     * @param data Data
+     * @return HMAC
+     */
+    private static byte[] hmac(byte[] key, String data) {
+        return Hashing.hmacSha256(key).hashString(data, StandardCharsets.UTF_8).asBytes();
+    }
+}
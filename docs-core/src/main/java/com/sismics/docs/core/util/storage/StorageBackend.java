@@ -0,0 +1,98 @@
+package com.sismics.docs.core.util.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.stream.Stream;
+
+/**
+ * Storage backend of the stored files.
+ * Stored files are named by the file ID, optionally followed by a variant suffix (_web, _thumb),
+ * their content is already encrypted and never changes once stored.
+ *
+ * @author agent
+ */
+public interface StorageBackend {
+    /**
+     * Return true if this storage backend is the one configured.
+     *
+     * @return True if able to start
+     */
+    boolean accept();
+
+    /**
+     * Start the storage backend.
+     *
+     * @throws Exception e
+     */
+    void startUp() throws Exception;
+
+    /**
+     * Shutdown the storage backend.
+     */
+    void shutDown();
+
+    /**
+     * Store a file, replacing the previous content if any.
+     *
+     * @param key Stored file name
+     * @param inputStream Content, consumed and closed
+     * @throws IOException e
+     */
+    void put(String key, InputStream inputStream) throws IOException;
+
+    /**
+     * Read a stored file.
+     *
+     * @param key Stored file name
+     * @return Content
+     * @throws java.nio.file.NoSuchFileException If the file is not stored
+     * @throws IOException e
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Read a stored file from an offset to its end.
+     *
+     * @param key Stored file name
+     * @param offset Offset of the first byte to read
+     * @return Content
+     * @throws java.nio.file.NoSuchFileException If the file is not stored
+     * @throws IOException e
+     */
+    InputStream getRange(String key, long offset) throws IOException;
+
+    /**
+     * Returns true if a file is stored.
+     *
+     * @param key Stored file name
+     * @return True if the file is stored
+     * @throws IOException e
+     */
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Returns the metadata of a stored file.
+     *
+     * @param key Stored file name
+     * @return Metadata, null if the file is not stored
+     * @throws IOException e
+     */
+    StorageStat stat(String key) throws IOException;
+
+    /**
+     * Delete a stored file, if it exists.
+     *
+     * @param key Stored file name
+     * @throws IOException e
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Returns the names of all stored files.
+     * The stream must be closed.
+     *
+     * @return Stored file names
+     * @throws IOException e
+     */
+    Stream<String> list() throws IOException;
+}
@@ -0,0 +1,43 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Date;
+
+/**
+ * Metadata of a stored file.
+ *
+ * @author agent
+ */
+public class StorageStat {
+    /**
+     * Size of the stored content.
+     */
+    private final long size;
+
+    /**
+     * Date of the last write.
+     */
+    private final Date lastModified;
+
+    public StorageStat(long size, Date lastModified) {
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", size)
+                .add("lastModified", lastModified)
+                .toString();
+    }
+}
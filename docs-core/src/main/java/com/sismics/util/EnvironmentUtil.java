@@ -1,11 +1,19 @@
 package com.sismics.util;
 
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Environment properties utilities.
  *
  * @author jtremeaux
  */
 public class EnvironmentUtil {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(EnvironmentUtil.class);
 
     private static String OS = System.getProperty("os.name").toLowerCase();
 
@@ -94,6 +102,30 @@ public class EnvironmentUtil {
         return TEEDY_HOME;
     }
 
+    /**
+     * Returns a positive numeric environment variable.
+     *
+     * @param name Name of the environment variable
+     * @param defaultValue Value used if the variable is not set or invalid
+     * @return Value
+     */
+    public static long getLongEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            long longValue = Long.parseLong(value.trim());
+            if (longValue > 0) {
+                return longValue;
+            }
+        } catch (NumberFormatException e) {
+            // NOP
+        }
+        log.warn(name + " needs to be a positive number. Falling back to " + defaultValue + ".");
+        return defaultValue;
+    }
+
     /**
      * Getter of webappContext.
      *
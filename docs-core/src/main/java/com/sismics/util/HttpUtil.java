@@ -1,7 +1,11 @@
 package com.sismics.util;
 
+import com.google.common.collect.Range;
+
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -15,6 +19,11 @@ public class HttpUtil {
      */
     private static final SimpleDateFormat EXPIRES_FORMAT = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
 
+    /**
+     * Maximum number of ranges accepted in a Range header.
+     */
+    private static final int MAX_RANGE_COUNT = 16;
+
     /**
      * Build an Expires HTTP header.
      *
@@ -24,4 +33,62 @@ public class HttpUtil {
     public static String buildExpiresHeader(long futureTime) {
         return EXPIRES_FORMAT.format(new Date().getTime() + futureTime);
     }
+
+    /**
+     * Parse a Range HTTP header, in bytes unit.
+     *
+     * @param rangeHeader Range header value
+     * @param length Total length of the resource (in bytes)
+     * @return Satisfiable closed ranges, empty if none is satisfiable, null if the header must be ignored
+     */
+    public static List<Range<Long>> parseRangeHeader(String rangeHeader, long length) {
+        if (rangeHeader == null || !rangeHeader.startsWith("bytes=")) {
+            return null;
+        }
+
+        String[] specList = rangeHeader.substring("bytes=".length()).split(",");
+        if (specList.length > MAX_RANGE_COUNT) {
+            return null;
+        }
+
+        List<Range<Long>> rangeList = new ArrayList<>();
+        try {
+            for (String spec : specList) {
+                spec = spec.trim();
+                int dashIndex = spec.indexOf('-');
+                if (dashIndex < 0) {
+                    return null;
+                }
+                String startStr = spec.substring(0, dashIndex).trim();
+                String endStr = spec.substring(dashIndex + 1).trim();
+
+                long start;
+                long end;
+                if (startStr.isEmpty()) {
+                    // Suffix range: the last N bytes
+                    long suffixLength = Long.parseLong(endStr);
+                    if (suffixLength <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffixLength);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(startStr);
+                    end = endStr.isEmpty() ? Long.MAX_VALUE : Long.parseLong(endStr);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+
+                if (start < length) {
+                    rangeList.add(Range.closed(start, end));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return rangeList;
+    }
 }
@@ -1,6 +1,8 @@
 package com.sismics.util;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Arrays;
 
 /**
  * <a url=http://www.jdeskew.com/>JDeskew</a>
@@ -21,15 +23,20 @@ public class ImageDeskew {
         public double d;
     }
 
+    // luminance under which a pixel is black
+    private static final int LUMINANCE_CUT_OFF = 140;
+    // precision of the fixed point sin and cos
+    private static final int FIXED_POINT_SHIFT = 20;
+
     // the source image
     private BufferedImage cImage;
     // the range of angles to search for lines
     private double cAlphaStart = -20;
     private double cAlphaStep = 0.2;
     private int cSteps = 40 * 5;
-    // pre-calculation of sin and cos
-    private double[] cSinA;
-    private double[] cCosA;
+    // pre-calculation of sin and cos, in fixed point
+    private int[] cSinA;
+    private int[] cCosA;
     // range of d
     private double cDMin;
     private double cDStep = 1.0;
@@ -109,34 +116,95 @@ public class ImageDeskew {
         int hMax = (int) ((this.cImage.getHeight()) * 3.0 / 4.0);
         init();
 
+        // only lower edges are considered, the pixels are read once for the whole middle of the image
+        // the pages are already deskewed in parallel by the OCR workers, a page is computed by its own thread
+        int[] edges = findLowerEdges(hMin, hMax);
+        calc(edges, edges.length / 2);
+    }
+
+    // calculate all the lines through the points (x,y)
+    private void calc(int[] edges, int edgeCount) {
+        long dOffset = (long) -this.cDMin << FIXED_POINT_SHIFT;
+        int angleCount = this.cSteps - 1;
+        for (int i = 0; i < edgeCount; i++) {
+            long x = edges[2 * i];
+            long y = edges[2 * i + 1];
+            for (int alpha = 0; alpha < angleCount; alpha++) {
+                // the offset is added before the shift, which then truncates a positive d like the cast of the floating point version
+                int dIndex = (int) ((y * this.cCosA[alpha] - x * this.cSinA[alpha] + dOffset) >> FIXED_POINT_SHIFT);
+                this.cHMatrix[dIndex * this.cSteps + alpha]++;
+            }
+        }
+    }
+
+    // find the black pixels above a white one, returned as packed (x, y) pairs
+    private int[] findLowerEdges(int hMin, int hMax) {
+        int width = this.cImage.getWidth();
+        if (hMin >= hMax || width < 4) {
+            return new int[0];
+        }
+
+        boolean[] black = new boolean[width];
+        boolean[] blackBelow = new boolean[width];
+        int[] rowBuffer = new int[width];
+        readBlackRow(hMin, black, rowBuffer);
+
+        int[] edges = new int[1024];
+        int size = 0;
         for (int y = hMin; y < hMax; y++) {
-            for (int x = 1; x < (this.cImage.getWidth() - 2); x++) {
-                // only lower edges are considered
-                if (ImageUtil.isBlack(this.cImage, x, y)) {
-                    if (!ImageUtil.isBlack(this.cImage, x, y + 1)) {
-                        calc(x, y);
+            readBlackRow(y + 1, blackBelow, rowBuffer);
+            for (int x = 1; x < width - 2; x++) {
+                if (black[x] && !blackBelow[x]) {
+                    if (size == edges.length) {
+                        edges = Arrays.copyOf(edges, size * 2);
                     }
+                    edges[size++] = x;
+                    edges[size++] = y;
                 }
             }
+
+            boolean[] tmp = black;
+            black = blackBelow;
+            blackBelow = tmp;
+        }
+        return Arrays.copyOf(edges, size);
+    }
+
+    // read which pixels of a row are black, with the same luminance formula as ImageUtil.isBlack
+    private void readBlackRow(int y, boolean[] black, int[] rowBuffer) {
+        int width = this.cImage.getWidth();
+        if (y >= this.cImage.getHeight()) {
+            Arrays.fill(black, false);
+            return;
         }
 
+        Raster raster = this.cImage.getRaster();
+        switch (this.cImage.getType()) {
+            case BufferedImage.TYPE_BYTE_BINARY:
+                raster.getSamples(0, y, width, 1, 0, rowBuffer);
+                for (int x = 0; x < width; x++) {
+                    black[x] = rowBuffer[x] == 0;
+                }
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+                // the pixels are already packed as in getRGB
+                raster.getDataElements(0, y, width, 1, rowBuffer);
+                fillBlackRow(black, rowBuffer, width);
+                break;
+            default:
+                this.cImage.getRGB(0, y, width, 1, rowBuffer, 0, width);
+                fillBlackRow(black, rowBuffer, width);
+                break;
+        }
     }
 
-    // calculate all lines through the point (x,y)
-    private void calc(int x, int y) {
-        double d;
-        int dIndex;
-        int index;
-
-        for (int alpha = 0; alpha < (this.cSteps - 1); alpha++) {
-            d = y * this.cCosA[alpha] - x * this.cSinA[alpha];
-            dIndex = (int) (d - this.cDMin);
-            index = dIndex * this.cSteps + alpha;
-            try {
-                this.cHMatrix[index] += 1;
-            } catch (Exception ex) {
-                System.out.println(ex.toString());
-            }
+    // compare the luminance of packed RGB pixels to the cut off, in integer
+    private static void fillBlackRow(boolean[] black, int[] rgbRow, int width) {
+        for (int x = 0; x < width; x++) {
+            int rgb = rgbRow[x];
+            int luminance = ((rgb >> 16) & 0xff) * 299 + ((rgb >> 8) & 0xff) * 587 + (rgb & 0xff) * 114;
+            black[x] = luminance < LUMINANCE_CUT_OFF * 1000;
         }
     }
 
@@ -145,13 +213,13 @@ public class ImageDeskew {
         double angle;
 
         // pre-calculation of sin and cos
-        this.cSinA = new double[this.cSteps - 1];
-        this.cCosA = new double[this.cSteps - 1];
+        this.cSinA = new int[this.cSteps - 1];
+        this.cCosA = new int[this.cSteps - 1];
 
         for (int i = 0; i < (this.cSteps - 1); i++) {
             angle = getAlpha(i) * Math.PI / 180.0;
-            this.cSinA[i] = Math.sin(angle);
-            this.cCosA[i] = Math.cos(angle);
+            this.cSinA[i] = (int) Math.round(Math.sin(angle) * (1 << FIXED_POINT_SHIFT));
+            this.cCosA[i] = (int) Math.round(Math.cos(angle) * (1 << FIXED_POINT_SHIFT));
         }
 
         // range of d
@@ -1,9 +1,15 @@
 package com.sismics.util.context;
 
 import com.google.common.collect.Lists;
+import com.sismics.docs.core.dao.AuditLogDao;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.AuditLog;
+import com.sismics.docs.core.service.AuditLogService;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.List;
 
@@ -28,6 +34,11 @@ public class ThreadLocalContext {
      */
     private List<Object> asyncEventList = Lists.newArrayList();
 
+    /**
+     * List of audit logs created during this request.
+     */
+    private List<AuditLog> auditLogList = Lists.newArrayList();
+
     /**
      * Private constructor.
      */
@@ -58,15 +69,12 @@ public class ThreadLocalContext {
     
     /**
      * Getter of entityManager.
+     * The entity manager is the unit of work of the request: loaded entities stay in its cache,
+     * and the pending changes are flushed by Hibernate before the queries reading them and at commit.
      *
      * @return entityManager
      */
     public EntityManager getEntityManager() {
-        if (entityManager != null && entityManager.isOpen()) {
-            // This disables the L1 cache
-            entityManager.flush();
-            entityManager.clear();
-        }
         return entityManager;
     }
 
@@ -96,7 +104,58 @@ public class ThreadLocalContext {
         while (iterator.hasNext()) {
             Object asyncEvent = iterator.next();
             iterator.remove();
-            AppContext.getInstance().getAsyncEventBus().post(asyncEvent);
+            AppContext.getInstance().getAsyncEventDispatcher().post(asyncEvent);
+        }
+    }
+
+    /**
+     * Add an audit log to be written after the current request transaction commit.
+     *
+     * @param auditLog Audit log
+     */
+    public void addAuditLog(AuditLog auditLog) {
+        auditLogList.add(auditLog);
+    }
+
+    /**
+     * Commit a transaction of this request with its audit logs.
+     * The audit logs are journaled before the commit, which is rolled back if they cannot be,
+     * then queued to be written once the transaction is committed.
+     * A commit marker is inserted in the transaction, so that the audit logs of a transaction
+     * interrupted around its commit are written on the next startup only if it was committed.
+     *
+     * @param transaction Transaction
+     */
+    public void commit(EntityTransaction transaction) {
+        if (auditLogList.isEmpty()) {
+            transaction.commit();
+            return;
+        }
+        List<AuditLog> committedAuditLogList = auditLogList;
+        auditLogList = Lists.newArrayList();
+        AuditLogService auditLogService = AppContext.getInstance().getAuditLogService();
+        String journalId;
+        try {
+            journalId = auditLogService.prepare(committedAuditLogList);
+        } catch (IOException e) {
+            transaction.rollback();
+            throw new UncheckedIOException("Error journaling the audit logs, rolling back the transaction", e);
+        }
+
+        try {
+            new AuditLogDao().createCommitMarker(journalId);
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            auditLogService.abort(journalId);
+            throw e;
+        }
+
+        try {
+            transaction.commit();
+        } catch (RuntimeException e) {
+            auditLogService.abort(journalId);
+            throw e;
         }
+        auditLogService.commit(journalId, committedAuditLogList);
     }
 }
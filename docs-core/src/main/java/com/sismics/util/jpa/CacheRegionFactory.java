@@ -0,0 +1,57 @@
+package com.sismics.util.jpa;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+
+import javax.cache.Cache;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second level cache region factory.
+ * Regions are local Caffeine caches, bounded in size and time to live.
+ *
+ * @author agent
+ */
+public class CacheRegionFactory extends JCacheRegionFactory {
+    @Override
+    protected Cache<Object, Object> createCache(String regionName) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStatisticsEnabled(true);
+
+        // The update timestamps must outlive the cached query results, never evict them
+        if (!RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME.equals(regionName)) {
+            configuration.setMaximumSize(OptionalLong.of(getCacheSize()));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(getCacheTtl())));
+        }
+
+        return getCacheManager().createCache(regionName, configuration);
+    }
+
+    /**
+     * Returns the maximum number of entries per region.
+     *
+     * @return Maximum number of entries
+     */
+    private static long getCacheSize() {
+        String databaseCacheSize = System.getenv("DATABASE_CACHE_SIZE");
+        if (databaseCacheSize == null) {
+            databaseCacheSize = "10000";
+        }
+        return Long.parseLong(databaseCacheSize);
+    }
+
+    /**
+     * Returns the time to live of the cached entries.
+     *
+     * @return Time to live (in seconds)
+     */
+    private static long getCacheTtl() {
+        String databaseCacheTtl = System.getenv("DATABASE_CACHE_TTL");
+        if (databaseCacheTtl == null) {
+            databaseCacheTtl = "3600";
+        }
+        return Long.parseLong(databaseCacheTtl);
+    }
+}
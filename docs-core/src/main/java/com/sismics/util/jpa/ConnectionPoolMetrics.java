@@ -0,0 +1,89 @@
+package com.sismics.util.jpa;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool metrics, recorded by HikariCP.
+ * Configured with the hibernate.hikari.metricsTrackerFactory property.
+ *
+ * @author agent
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+    /**
+     * Number of connections acquired.
+     */
+    private static final AtomicLong acquireCount = new AtomicLong();
+
+    /**
+     * Cumulated time spent acquiring connections (in nanoseconds).
+     */
+    private static final AtomicLong acquireTime = new AtomicLong();
+
+    /**
+     * Longest time spent acquiring a connection (in nanoseconds).
+     */
+    private static final AtomicLong maxAcquireTime = new AtomicLong();
+
+    /**
+     * Number of connection requests which timed out.
+     */
+    private static final AtomicLong timeoutCount = new AtomicLong();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireCount.incrementAndGet();
+                acquireTime.addAndGet(elapsedAcquiredNanos);
+                maxAcquireTime.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeoutCount.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of connections acquired.
+     *
+     * @return Number of connections acquired
+     */
+    public static long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * Returns the average time spent acquiring a connection.
+     *
+     * @return Average acquire time (in milliseconds)
+     */
+    public static double getAverageAcquireTime() {
+        long count = acquireCount.get();
+        return count == 0 ? 0 : acquireTime.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the longest time spent acquiring a connection.
+     *
+     * @return Maximum acquire time (in milliseconds)
+     */
+    public static double getMaxAcquireTime() {
+        return maxAcquireTime.get() / 1e6;
+    }
+
+    /**
+     * Returns the number of connection requests which timed out.
+     *
+     * @return Number of timeouts
+     */
+    public static long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+}
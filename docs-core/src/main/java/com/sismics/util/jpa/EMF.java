@@ -1,8 +1,13 @@
 package com.sismics.util.jpa;
 
 import com.google.common.base.Strings;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
 import com.sismics.docs.core.util.DirectoryUtil;
+import com.zaxxer.hikari.HikariDataSource;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
 import org.hibernate.internal.util.config.ConfigurationHelper;
 import org.hibernate.service.ServiceRegistry;
 import org.slf4j.Logger;
@@ -53,7 +58,9 @@ public final class EMF {
             openHelper.open();
             
             emfInstance = Persistence.createEntityManagerFactory("transactions-optional", getEntityManagerProperties());
-            
+
+            // Close the connections used by the schema update
+            StandardServiceRegistryBuilder.destroy(reg);
         } catch (Throwable t) {
             log.error("Error creating EMF", t);
         }
@@ -83,6 +90,18 @@ public final class EMF {
         if(databasePoolSize == null) {
             databasePoolSize = "10";
         }
+        String databasePoolTimeout = System.getenv("DATABASE_POOL_TIMEOUT");
+        if (databasePoolTimeout == null) {
+            databasePoolTimeout = "30000";
+        }
+        String databaseLeakDetectionThreshold = System.getenv("DATABASE_LEAK_DETECTION_THRESHOLD");
+        if (databaseLeakDetectionThreshold == null) {
+            databaseLeakDetectionThreshold = "0";
+        }
+        String databaseStatementCacheSize = System.getenv("DATABASE_STATEMENT_CACHE_SIZE");
+        if (databaseStatementCacheSize == null) {
+            databaseStatementCacheSize = "256";
+        }
 
         log.info("Configuring EntityManager from environment parameters");
         Properties props = new Properties();
@@ -100,15 +119,27 @@ public final class EMF {
             props.put("hibernate.connection.url", databaseUrl);
             props.put("hibernate.connection.username", databaseUsername);
             props.put("hibernate.connection.password", databasePassword);
+
+            // Server side prepared statements, cached by the driver for each pooled connection
+            props.put("hibernate.hikari.dataSource.prepareThreshold", "3");
+            props.put("hibernate.hikari.dataSource.preparedStatementCacheQueries", databaseStatementCacheSize);
         }
         props.put("hibernate.hbm2ddl.auto", "");
         props.put("hibernate.show_sql", "false");
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.max_fetch_depth", "5");
-        props.put("hibernate.cache.use_second_level_cache", "false");
-        props.put("hibernate.connection.initial_pool_size", "1");
-        props.put("hibernate.connection.pool_size", databasePoolSize);
-        props.put("hibernate.connection.pool_validation_interval", "5");
+        props.put("hibernate.cache.use_second_level_cache", "true");
+        props.put("hibernate.cache.use_query_cache", "true");
+        props.put("hibernate.cache.region.factory_class", CacheRegionFactory.class.getName());
+        props.put("hibernate.javax.cache.provider", CaffeineCachingProvider.class.getName());
+        props.put("hibernate.generate_statistics", "true");
+        props.put("hibernate.session.events.log", "false");
+        props.put("hibernate.connection.provider_class", HikariCPConnectionProvider.class.getName());
+        props.put("hibernate.hikari.poolName", "docs");
+        props.put("hibernate.hikari.maximumPoolSize", databasePoolSize);
+        props.put("hibernate.hikari.connectionTimeout", databasePoolTimeout);
+        props.put("hibernate.hikari.leakDetectionThreshold", databaseLeakDetectionThreshold);
+        props.put("hibernate.hikari.metricsTrackerFactory", ConnectionPoolMetrics.class.getName());
         return props;
     }
     
@@ -127,6 +158,20 @@ public final class EMF {
         return emfInstance;
     }
 
+    /**
+     * Returns the connection pool.
+     *
+     * @return Connection pool, null if the connections are not pooled by HikariCP
+     */
+    public static HikariDataSource getDataSource() {
+        ConnectionProvider connectionProvider = emfInstance.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (connectionProvider == null || !connectionProvider.isUnwrappableAs(HikariDataSource.class)) {
+            return null;
+        }
+        return connectionProvider.unwrap(HikariDataSource.class);
+    }
+
     public static boolean isDriverH2() {
         String driver = getDriver();
         return driver.contains("h2");
@@ -33,6 +33,33 @@ public class MimeTypeUtil {
         return mimeType;
     }
     
+    /**
+     * Returns true if the files of a MIME type are already compressed,
+     * compressing them again would only waste CPU.
+     *
+     * @param mimeType MIME type
+     * @return True if already compressed
+     */
+    public static boolean isCompressed(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        switch (mimeType) {
+            case MimeType.APPLICATION_ZIP:
+            case MimeType.IMAGE_GIF:
+            case MimeType.IMAGE_JPEG:
+            case MimeType.IMAGE_PNG:
+            case MimeType.APPLICATION_PDF:
+            case MimeType.OPEN_DOCUMENT_TEXT:
+            case MimeType.OFFICE_DOCUMENT:
+            case MimeType.OFFICE_PRESENTATION:
+            case MimeType.OFFICE_SHEET:
+                return true;
+            default:
+                return mimeType.startsWith("video/") || mimeType.startsWith("audio/");
+        }
+    }
+
     /**
      * Get a file extension linked to a MIME type.
      * 
@@ -0,0 +1,10 @@
+-- DBUPDATE-032-0.SQL
+
+-- Move the extracted text content out of the files
+create cached table T_FILE_CONTENT ( FIC_IDFILE_C varchar(36) not null, FIC_CONTENT_C longvarchar, primary key (FIC_IDFILE_C) );
+alter table T_FILE_CONTENT add constraint FK_FIC_IDFILE_C foreign key (FIC_IDFILE_C) references T_FILE (FIL_ID_C) on delete restrict on update restrict;
+insert into T_FILE_CONTENT (FIC_IDFILE_C, FIC_CONTENT_C) select FIL_ID_C, FIL_CONTENT_C from T_FILE where FIL_CONTENT_C is not null;
+alter table T_FILE drop column FIL_CONTENT_C;
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '32' where CFG_ID_C = 'DB_VERSION';
@@ -0,0 +1,7 @@
+-- DBUPDATE-033-0.SQL
+
+-- Mark the transactions whose journaled audit logs are committed
+create cached table T_AUDIT_LOG_COMMIT ( ALC_ID_C varchar(36) not null, primary key (ALC_ID_C) );
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '33' where CFG_ID_C = 'DB_VERSION';
@@ -42,6 +42,7 @@ public abstract class BaseTransactionalTest extends BaseTest {
     @After
     public void tearDown() {
         ThreadLocalContext.get().getEntityManager().getTransaction().rollback();
+        ThreadLocalContext.cleanup();
     }
 
     protected User createUser(String userName) throws Exception {
@@ -0,0 +1,92 @@
+package com.sismics.docs.core.dao.jpa;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.constant.AclType;
+import com.sismics.docs.core.constant.PermType;
+import com.sismics.docs.core.dao.AclDao;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.RouteStepDao;
+import com.sismics.docs.core.dao.ShareDao;
+import com.sismics.docs.core.dao.TagDao;
+import com.sismics.docs.core.model.jpa.Acl;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.Share;
+import com.sismics.docs.core.model.jpa.Tag;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.util.context.ThreadLocalContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests the relations of documents loaded in one query for a list of documents.
+ *
+ * @author agent
+ */
+public class TestDocumentRelationsDao extends BaseTransactionalTest {
+    @Test
+    public void testDocumentRelations() throws Exception {
+        User user = createUser("testDocumentRelations");
+        String documentId1 = createDocument(user);
+        String documentId2 = createDocument(user);
+
+        // The first document is readable by its owner, and through its tag by another target
+        createAcl(documentId1, user.getId(), user.getId());
+        Tag tag = new Tag();
+        tag.setName("relations");
+        tag.setColor("#3a87ad");
+        tag.setUserId(user.getId());
+        String tagId = new TagDao().create(tag, user.getId());
+        new TagDao().updateTagList(documentId1, Sets.newHashSet(tagId));
+        createAcl(tagId, "tag_reader", user.getId());
+
+        // The second document is shared
+        Share share = new Share();
+        share.setName("relations");
+        String shareId = new ShareDao().create(share);
+        createAcl(documentId2, shareId, user.getId());
+
+        // The first document is shared with a share deleted without its ACL
+        Share deletedShare = new Share();
+        deletedShare.setName("deleted");
+        String deletedShareId = new ShareDao().create(deletedShare);
+        createAcl(documentId1, deletedShareId, user.getId());
+        ThreadLocalContext.get().getEntityManager()
+                .createNativeQuery("update T_SHARE set SHA_DELETEDATE_D = current_timestamp where SHA_ID_C = :id")
+                .setParameter("id", deletedShareId)
+                .executeUpdate();
+
+        List<String> documentIdList = Lists.newArrayList(documentId1, documentId2);
+        AclDao aclDao = new AclDao();
+        Map<String, Set<String>> readTargetIdMap = aclDao.getReadTargetIdMap(documentIdList);
+        Assert.assertEquals(Sets.newHashSet(user.getId(), "tag_reader", deletedShareId), readTargetIdMap.get(documentId1));
+        Assert.assertEquals(Sets.newHashSet(shareId), readTargetIdMap.get(documentId2));
+        Assert.assertEquals(Sets.newHashSet(documentId2), aclDao.getSharedSourceIds(documentIdList));
+        Assert.assertEquals(1, new TagDao().findByDocumentsIds(documentIdList, null).get(documentId1).size());
+        Assert.assertTrue(new RouteStepDao().getCurrentStepTargetIdMap(documentIdList).isEmpty());
+    }
+
+    private String createDocument(User user) {
+        Document document = new Document();
+        document.setUserId(user.getId());
+        document.setTitle("Relations");
+        document.setLanguage("eng");
+        document.setCreateDate(new Date());
+        return new DocumentDao().create(document, user.getId());
+    }
+
+    private void createAcl(String sourceId, String targetId, String userId) {
+        Acl acl = new Acl();
+        acl.setPerm(PermType.READ);
+        acl.setType(AclType.USER);
+        acl.setSourceId(sourceId);
+        acl.setTargetId(targetId);
+        new AclDao().create(acl, userId);
+    }
+}
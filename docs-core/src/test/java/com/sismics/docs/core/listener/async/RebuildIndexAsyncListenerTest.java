@@ -0,0 +1,80 @@
+package com.sismics.docs.core.listener.async;
+
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.indexing.IndexingHandler;
+import com.sismics.docs.core.util.indexing.RebuildProgress;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RebuildIndexAsyncListenerTest extends BaseTransactionalTest {
+
+    @Test
+    public void failedPageKeepsCheckpoint() throws Exception {
+        User user = createUser("failedPageKeepsCheckpoint");
+        createDocument(user, "Document 1");
+        createDocument(user, "Document 2");
+
+        // Indexing handler failing on the second page
+        AtomicInteger pageCount = new AtomicInteger();
+        AtomicReference<String> firstPageLastId = new AtomicReference<>();
+        List<String> checkpointList = new ArrayList<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicBoolean completed = new AtomicBoolean();
+        IndexingHandler indexingHandler = (IndexingHandler) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { IndexingHandler.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "startRebuild":
+                            return new RebuildProgress();
+                        case "rebuildDocuments":
+                            @SuppressWarnings("unchecked")
+                            List<Document> page = (List<Document>) args[0];
+                            if (pageCount.incrementAndGet() > 1) {
+                                throw new IOException("Index failure");
+                            }
+                            firstPageLastId.set(page.get(page.size() - 1).getId());
+                            return null;
+                        case "checkpointRebuild":
+                            checkpointList.add(args[0] + ":" + args[1]);
+                            return null;
+                        case "completeRebuild":
+                            completed.set(true);
+                            return null;
+                        case "abortRebuild":
+                            aborted.set(true);
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+
+        new RebuildIndexAsyncListener().rebuild(indexingHandler, 1);
+
+        // The rebuild stops on the failed page, the checkpoint stays after the first page
+        Assert.assertEquals(2, pageCount.get());
+        Assert.assertEquals(1, checkpointList.size());
+        Assert.assertEquals(RebuildProgress.Phase.DOCUMENT + ":" + firstPageLastId.get(), checkpointList.get(0));
+        Assert.assertTrue(aborted.get());
+        Assert.assertFalse(completed.get());
+    }
+
+    private void createDocument(User user, String title) {
+        Document document = new Document();
+        document.setUserId(user.getId());
+        document.setTitle(title);
+        document.setLanguage("eng");
+        document.setCreateDate(new Date());
+        new DocumentDao().create(document, user.getId());
+    }
+}
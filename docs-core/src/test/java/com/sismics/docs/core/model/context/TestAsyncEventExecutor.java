@@ -0,0 +1,96 @@
+package com.sismics.docs.core.model.context;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test of the asynchronous event executor.
+ *
+ * @author agent
+ */
+public class TestAsyncEventExecutor {
+    @Test
+    public void backPressureTest() throws Exception {
+        AsyncEventExecutor executor = new AsyncEventExecutor("TEST", 1, 1, AsyncEventExecutor.SaturationPolicy.CALLER_RUNS);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Occupy the only thread, then fill the queue
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // NOP
+                }
+            });
+            executor.execute(() -> {});
+            Assert.assertEquals(1, executor.getQueue().size());
+
+            // The queue is full, the caller runs the task
+            AtomicReference<Thread> runner = new AtomicReference<>();
+            executor.execute(() -> runner.set(Thread.currentThread()));
+            Assert.assertEquals(Thread.currentThread(), runner.get());
+            Assert.assertEquals(1, executor.getCallerRunCount());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+
+        Assert.assertEquals(2, executor.getCompletedTaskCount());
+        Assert.assertTrue(executor.getAverageWaitTime() >= 0);
+        Assert.assertTrue(executor.getAverageRunTime() > 0);
+    }
+
+    @Test
+    public void blockTest() throws Exception {
+        AsyncEventExecutor executor = new AsyncEventExecutor("TEST", 1, 1, AsyncEventExecutor.SaturationPolicy.BLOCK);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runCount = new AtomicInteger();
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        try {
+            // Occupy the only thread, then fill the queue
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // NOP
+                }
+
+                // The queue is full, a thread of the pool can't wait on itself: the task is dropped
+                executor.execute(runCount::incrementAndGet);
+            });
+            executor.execute(runCount::incrementAndGet);
+
+            // The queue is full, the producer waits for a free slot, without running the task itself
+            Thread producer = new Thread(() -> executor.execute(() -> {
+                runner.set(Thread.currentThread());
+                runCount.incrementAndGet();
+            }));
+            producer.start();
+            producer.join(500);
+            Assert.assertTrue(producer.isAlive());
+            Assert.assertEquals(1, executor.getBlockedCount());
+            Assert.assertEquals(1, executor.getWaitingTaskCount());
+
+            // The producer queues its task once a slot is free
+            release.countDown();
+            producer.join(60000);
+            Assert.assertFalse(producer.isAlive());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+
+        Assert.assertEquals(2, runCount.get());
+        Assert.assertNotNull(runner.get());
+        Assert.assertEquals(0, executor.getCallerRunCount());
+        Assert.assertEquals(1, executor.getDroppedCount());
+        Assert.assertEquals(0, executor.getWaitingTaskCount());
+    }
+}
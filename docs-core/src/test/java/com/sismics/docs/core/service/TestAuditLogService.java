@@ -0,0 +1,183 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.collect.Lists;
+import com.sismics.BaseTest;
+import com.sismics.docs.core.constant.AuditLogType;
+import com.sismics.docs.core.dao.AuditLogDao;
+import com.sismics.docs.core.model.jpa.AuditLog;
+import com.sismics.docs.core.util.TransactionUtil;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test of the audit log service.
+ *
+ * @author agent
+ */
+public class TestAuditLogService extends BaseTest {
+    /**
+     * Time waited for the audit logs to be written (in milliseconds).
+     */
+    private static final long AWAIT_TIMEOUT = 30000L;
+
+    @Before
+    public void setUp() {
+        // Start the database before the services, the tests do not time its startup
+        TransactionUtil.handle(() -> {});
+    }
+
+    @Test
+    public void journalTest() throws Exception {
+        Path journalFile = Files.createTempFile("sismics_docs_audit_log", ".journal");
+        try {
+            // Audit logs written while the service is stopped are only journaled
+            AuditLog auditLog1 = createAuditLog("Created document 1");
+            AuditLog auditLog2 = createAuditLog("Created document 2");
+            AuditLogService stoppedService = new AuditLogService(journalFile);
+            String journalId = stoppedService.prepare(Lists.newArrayList(auditLog1, auditLog2));
+            Assert.assertTrue(Files.size(journalFile) > 0);
+            stoppedService.commit(journalId, Lists.newArrayList(auditLog1, auditLog2));
+            Assert.assertEquals(0, countExisting(auditLog1, auditLog2));
+
+            // The audit logs of an aborted transaction are dropped
+            AuditLog abortedAuditLog = createAuditLog("Created document 4");
+            stoppedService.abort(stoppedService.prepare(Lists.newArrayList(abortedAuditLog)));
+
+            // The ones of a transaction interrupted around its commit are kept only if it was committed
+            AuditLog inDoubtAuditLog = createAuditLog("Created document 5");
+            String inDoubtJournalId = stoppedService.prepare(Lists.newArrayList(inDoubtAuditLog));
+            TransactionUtil.handle(() -> new AuditLogDao().createCommitMarker(inDoubtJournalId));
+            AuditLog rolledBackAuditLog = createAuditLog("Created document 6");
+            stoppedService.prepare(Lists.newArrayList(rolledBackAuditLog));
+
+            // They are written on the next startup, with the new ones
+            AuditLogService auditLogService = new AuditLogService(journalFile);
+            auditLogService.startAsync().awaitRunning();
+            AuditLog auditLog3 = createAuditLog("Created document 3");
+            auditLogService.commit(auditLogService.prepare(Lists.newArrayList(auditLog3)), Lists.newArrayList(auditLog3));
+            Assert.assertTrue(auditLogService.awaitWritten(AWAIT_TIMEOUT));
+            Assert.assertEquals(4, countExisting(auditLog1, auditLog2, auditLog3, inDoubtAuditLog));
+            Assert.assertEquals(0, countExisting(abortedAuditLog, rolledBackAuditLog));
+            Assert.assertEquals(0, countCommitMarkers(inDoubtJournalId));
+            Assert.assertEquals(4, auditLogService.getWrittenCount());
+            Assert.assertEquals(0, auditLogService.getPendingCount());
+            auditLogService.stopAsync().awaitTerminated();
+            Assert.assertEquals(0, Files.size(journalFile));
+
+            // An audit log journaled again is not duplicated
+            stoppedService.commit(stoppedService.prepare(Lists.newArrayList(auditLog3)), Lists.newArrayList(auditLog3));
+            auditLogService = new AuditLogService(journalFile);
+            auditLogService.startAsync().awaitRunning();
+            Assert.assertTrue(auditLogService.awaitWritten(AWAIT_TIMEOUT));
+            Assert.assertEquals(1, auditLogService.getWrittenCount());
+            Assert.assertEquals(0, Files.size(journalFile));
+            auditLogService.stopAsync().awaitTerminated();
+        } finally {
+            Files.delete(journalFile);
+        }
+    }
+
+    @Test
+    public void groupSyncTest() throws Exception {
+        Path journalFile = Files.createTempFile("sismics_docs_audit_log", ".journal");
+        AuditLogService auditLogService = new AuditLogService(journalFile);
+        auditLogService.startAsync().awaitRunning();
+        try {
+            // Concurrent transactions share the journal syncs
+            int threadCount = 8;
+            int transactionCount = 20;
+            ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+            List<Future<?>> futureList = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futureList.add(executorService.submit(() -> {
+                    for (int j = 0; j < transactionCount; j++) {
+                        List<AuditLog> auditLogList = Lists.newArrayList(createAuditLog("Created document"));
+                        auditLogService.commit(auditLogService.prepare(auditLogList), auditLogList);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+            executorService.shutdown();
+
+            Assert.assertTrue(auditLogService.awaitWritten(AWAIT_TIMEOUT));
+            Assert.assertEquals(threadCount * transactionCount, auditLogService.getWrittenCount());
+            Assert.assertTrue(auditLogService.getSyncCount() < threadCount * transactionCount);
+        } finally {
+            auditLogService.stopAsync().awaitTerminated();
+            Files.delete(journalFile);
+        }
+    }
+
+    @Test
+    public void journalErrorTest() throws Exception {
+        // A journal which cannot be written fails the transaction
+        Path journalDirectory = Files.createTempDirectory("sismics_docs_audit_log");
+        try {
+            new AuditLogService(journalDirectory).prepare(Lists.newArrayList(createAuditLog("Created document")));
+            Assert.fail();
+        } catch (IOException e) {
+            // OK
+        } finally {
+            Files.delete(journalDirectory);
+        }
+    }
+
+    /**
+     * Create an audit log, not written yet.
+     *
+     * @param message Message
+     * @return Audit log
+     */
+    private AuditLog createAuditLog(String message) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(UUID.randomUUID().toString());
+        auditLog.setUserId("admin");
+        auditLog.setEntityId(UUID.randomUUID().toString());
+        auditLog.setEntityClass("Document");
+        auditLog.setType(AuditLogType.CREATE);
+        auditLog.setMessage(message);
+        auditLog.setCreateDate(new Date());
+        return auditLog;
+    }
+
+    /**
+     * Count the audit logs written to the database.
+     *
+     * @param auditLogs Audit logs
+     * @return Number of audit logs in the database
+     */
+    private int countExisting(AuditLog... auditLogs) {
+        List<String> idList = Lists.transform(Lists.newArrayList(auditLogs), AuditLog::getId);
+        AtomicInteger count = new AtomicInteger();
+        TransactionUtil.handle(() -> count.set(new AuditLogDao().getExistingIds(idList).size()));
+        return count.get();
+    }
+
+    /**
+     * Count the commit markers in the database.
+     *
+     * @param journalIds Journal IDs
+     * @return Number of commit markers in the database
+     */
+    private int countCommitMarkers(String... journalIds) {
+        AtomicInteger count = new AtomicInteger();
+        TransactionUtil.handle(() -> count.set(new AuditLogDao().getCommitMarkers(Lists.newArrayList(journalIds)).size()));
+        return count.get();
+    }
+}
@@ -1,6 +1,7 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import com.google.common.io.ByteStreams;
 import com.sismics.BaseTest;
 import org.junit.Assert;
@@ -8,7 +9,11 @@ import org.junit.Test;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * Test of the encryption utilities.
@@ -48,4 +53,46 @@ public class TestEncryptUtil extends BaseTest {
         
         Assert.assertEquals(encryptedData.length, assertData.length);
     }
+
+    @Test
+    public void keyCacheTest() throws Exception {
+        String privateKey = EncryptionUtil.generatePrivateKey();
+        CacheStats before = EncryptionUtil.getKeyCacheStats();
+
+        // The key is derived only once, each call gets its own cipher
+        Cipher cipher1 = EncryptionUtil.getEncryptionCipher(privateKey);
+        Cipher cipher2 = EncryptionUtil.getEncryptionCipher(privateKey);
+        Assert.assertNotSame(cipher1, cipher2);
+
+        CacheStats stats = EncryptionUtil.getKeyCacheStats().minus(before);
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(1, stats.hitCount());
+
+        // Data encrypted with a cached key can still be decrypted
+        InputStream inputStream = new CipherInputStream(getSystemResourceAsStream(FILE_PDF), cipher1);
+        byte[] encryptedData = ByteStreams.toByteArray(inputStream);
+        byte[] decryptedData = ByteStreams.toByteArray(EncryptionUtil.decryptInputStream(
+                new ByteArrayInputStream(encryptedData), privateKey));
+        Assert.assertArrayEquals(ByteStreams.toByteArray(getSystemResourceAsStream(FILE_PDF)), decryptedData);
+    }
+
+    @Test
+    public void decryptFromOffsetTest() throws Exception {
+        byte[] data = ByteStreams.toByteArray(getSystemResourceAsStream(FILE_PDF));
+        Path encryptedFile = Files.createTempFile("encrypted", null);
+        try {
+            Files.write(encryptedFile, ByteStreams.toByteArray(
+                    new CipherInputStream(getSystemResourceAsStream(FILE_PDF), EncryptionUtil.getEncryptionCipher("OnceUponATime"))));
+
+            // Decrypt starting in the middle of blocks, on block boundaries and at the very end
+            for (long offset : new long[] { 0, 1, 15, 16, 17, 4095, 4096, 12345, data.length - 1 }) {
+                try (InputStream inputStream = EncryptionUtil.decryptInputStream(encryptedFile, "OnceUponATime", offset)) {
+                    byte[] decryptedData = ByteStreams.toByteArray(inputStream);
+                    Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) offset, data.length), decryptedData);
+                }
+            }
+        } finally {
+            Files.delete(encryptedFile);
+        }
+    }
 }
@@ -28,51 +28,56 @@ public class TestFileUtil extends BaseTest {
     @Test
     public void extractContentOpenDocumentTextTest() throws Exception {
         Path path = Paths.get(getResource(FILE_ODT).toURI());
-        FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_ODT));
-        Assert.assertNotNull(formatHandler);
-        Assert.assertTrue(formatHandler instanceof OdtFormatHandler);
-        String content = formatHandler.extractContent("eng", path);
-        Assert.assertTrue(content.contains("Lorem ipsum dolor sit amen."));
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_ODT))) {
+            Assert.assertNotNull(formatHandler);
+            Assert.assertTrue(formatHandler instanceof OdtFormatHandler);
+            String content = formatHandler.extractContent("eng", path);
+            Assert.assertTrue(content.contains("Lorem ipsum dolor sit amen."));
+        }
     }
     
     @Test
     public void extractContentOfficeDocumentTest() throws Exception {
         Path path = Paths.get(getResource(FILE_DOCX).toURI());
-        FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_DOCX));
-        Assert.assertNotNull(formatHandler);
-        Assert.assertTrue(formatHandler instanceof DocxFormatHandler);
-        String content = formatHandler.extractContent("eng", path);
-        Assert.assertTrue(content.contains("Lorem ipsum dolor sit amen."));
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_DOCX))) {
+            Assert.assertNotNull(formatHandler);
+            Assert.assertTrue(formatHandler instanceof DocxFormatHandler);
+            String content = formatHandler.extractContent("eng", path);
+            Assert.assertTrue(content.contains("Lorem ipsum dolor sit amen."));
+        }
     }
 
     @Test
     public void extractContentPowerpointTest() throws Exception {
         Path path = Paths.get(getResource(FILE_PPTX).toURI());
-        FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_PPTX));
-        Assert.assertNotNull(formatHandler);
-        Assert.assertTrue(formatHandler instanceof PptxFormatHandler);
-        String content = formatHandler.extractContent("eng", path);
-        Assert.assertTrue(content.contains("Scaling"));
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_PPTX))) {
+            Assert.assertNotNull(formatHandler);
+            Assert.assertTrue(formatHandler instanceof PptxFormatHandler);
+            String content = formatHandler.extractContent("eng", path);
+            Assert.assertTrue(content.contains("Scaling"));
+        }
     }
 
     @Test
     public void extractContentPdf() throws Exception {
         Path path = Paths.get(getResource(FILE_PDF).toURI());
-        FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_PDF));
-        Assert.assertNotNull(formatHandler);
-        Assert.assertTrue(formatHandler instanceof PdfFormatHandler);
-        String content = formatHandler.extractContent("eng", path);
-        Assert.assertTrue(content.contains("All human beings are born free and equal in dignity and rights."));
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_PDF))) {
+            Assert.assertNotNull(formatHandler);
+            Assert.assertTrue(formatHandler instanceof PdfFormatHandler);
+            String content = formatHandler.extractContent("eng", path);
+            Assert.assertTrue(content.contains("All human beings are born free and equal in dignity and rights."));
+        }
     }
 
     @Test
     public void extractContentScannedPdf() throws Exception {
         Path path = Paths.get(getResource("scanned.pdf").toURI());
-        FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_PDF_SCANNED));
-        Assert.assertNotNull(formatHandler);
-        Assert.assertTrue(formatHandler instanceof PdfFormatHandler);
-        String content = formatHandler.extractContent("eng", path);
-        Assert.assertTrue(content.contains("All human beings are born free and equal in dignity and rights."));
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_PDF_SCANNED))) {
+            Assert.assertNotNull(formatHandler);
+            Assert.assertTrue(formatHandler instanceof PdfFormatHandler);
+            String content = formatHandler.extractContent("eng", path);
+            Assert.assertTrue(content.contains("All human beings are born free and equal in dignity and rights."));
+        }
     }
 
     @Test
@@ -0,0 +1,66 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Test of the storage path utilities.
+ *
+ * @author agent
+ */
+public class TestStorageUtil extends BaseTest {
+    @Test
+    public void shardedLayoutTest() throws Exception {
+        String fileId = UUID.randomUUID().toString();
+        Path storageDirectory = DirectoryUtil.getStorageDirectory();
+
+        // New files are written in 2 levels of shards, all variants in the same shard
+        Path storedFile = StorageUtil.getNewStoredFile(fileId);
+        Path webFile = StorageUtil.getNewStoredFile(fileId + "_web");
+        Assert.assertEquals(storageDirectory, storedFile.getParent().getParent().getParent());
+        Assert.assertEquals(storedFile.getParent(), webFile.getParent());
+        Files.write(storedFile, "original".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(storedFile, StorageUtil.getStoredFile(fileId));
+
+        // Delete the file
+        StorageUtil.deleteStoredFile(fileId);
+        Assert.assertFalse(Files.exists(storedFile));
+    }
+
+    @Test
+    public void flatLayoutMigrationTest() throws Exception {
+        String fileId = UUID.randomUUID().toString();
+        Path storageDirectory = DirectoryUtil.getStorageDirectory();
+
+        // A file stored by an older version is still readable
+        Path flatFile = storageDirectory.resolve(fileId + "_thumb");
+        Files.write(flatFile, "thumbnail".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(flatFile, StorageUtil.getStoredFile(fileId + "_thumb"));
+        try (Stream<Path> storedFileStream = StorageUtil.listStoredFiles()) {
+            Assert.assertTrue(storedFileStream.anyMatch(flatFile::equals));
+        }
+
+        // Move it to its shard
+        while (StorageUtil.migrateFlatFiles(100) == 100) {
+            // Migrate all flat files
+        }
+        Assert.assertFalse(Files.exists(flatFile));
+        Path shardedFile = StorageUtil.getStoredFile(fileId + "_thumb");
+        Assert.assertNotEquals(flatFile, shardedFile);
+        Assert.assertEquals("thumbnail", new String(Files.readAllBytes(shardedFile), StandardCharsets.UTF_8));
+        try (Stream<Path> storedFileStream = StorageUtil.listStoredFiles()) {
+            Assert.assertTrue(storedFileStream.anyMatch(shardedFile::equals));
+        }
+
+        // Delete the file
+        StorageUtil.deleteStoredFile(fileId + "_thumb");
+        Assert.assertFalse(Files.exists(shardedFile));
+    }
+}
@@ -0,0 +1,52 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Test of the thumbnail utilities.
+ *
+ * @author agent
+ */
+public class TestThumbnailUtil extends BaseTest {
+    @Test
+    public void readImageTest() throws Exception {
+        // A large image is decoded at twice the size requested at least
+        Path largeFile = Files.createTempFile("sismics_docs", ".jpg");
+        try {
+            ImageIO.write(new BufferedImage(6000, 4000, BufferedImage.TYPE_INT_RGB), "jpg", largeFile.toFile());
+            try (ThumbnailUtil.DecodedImage image = ThumbnailUtil.readImage(largeFile, ThumbnailUtil.WEB_SIZE)) {
+                Assert.assertEquals(3000, image.getImage().getWidth());
+                Assert.assertEquals(2000, image.getImage().getHeight());
+            }
+            try (ThumbnailUtil.DecodedImage image = ThumbnailUtil.readImage(largeFile, ThumbnailUtil.THUMBNAIL_SIZE)) {
+                Assert.assertTrue(image.getImage().getWidth() >= 2 * ThumbnailUtil.THUMBNAIL_SIZE);
+                Assert.assertTrue(image.getImage().getWidth() < 4 * ThumbnailUtil.THUMBNAIL_SIZE);
+            }
+        } finally {
+            Files.delete(largeFile);
+        }
+
+        // A small image is decoded at full resolution
+        Path smallFile = Paths.get(getResource(FILE_JPG).toURI());
+        BufferedImage fullImage = ImageIO.read(smallFile.toFile());
+        try (ThumbnailUtil.DecodedImage image = ThumbnailUtil.readImage(smallFile, ThumbnailUtil.WEB_SIZE)) {
+            Assert.assertEquals(fullImage.getWidth(), image.getImage().getWidth());
+            Assert.assertEquals(fullImage.getHeight(), image.getImage().getHeight());
+        }
+        try (ThumbnailUtil.DecodedImage image = ThumbnailUtil.readImage(smallFile)) {
+            Assert.assertEquals(fullImage.getWidth(), image.getImage().getWidth());
+            Assert.assertEquals(fullImage.getHeight(), image.getImage().getHeight());
+        }
+
+        // Not an image
+        Assert.assertNull(ThumbnailUtil.readImage(Paths.get(getResource(FILE_TXT).toURI()), ThumbnailUtil.WEB_SIZE));
+    }
+}
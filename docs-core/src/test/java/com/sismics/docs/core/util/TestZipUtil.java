@@ -0,0 +1,95 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sismics.BaseTest;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.util.mime.MimeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.CipherInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Test of the ZIP utilities.
+ *
+ * @author agent
+ */
+public class TestZipUtil extends BaseTest {
+    @Test
+    public void zipFilesTest() throws Exception {
+        String privateKey = EncryptionUtil.generatePrivateKey();
+        byte[] text = "All human beings are born free and equal in dignity and rights. ".repeat(100).getBytes(StandardCharsets.UTF_8);
+        byte[] image;
+        try (InputStream inputStream = getSystemResourceAsStream(FILE_JPG)) {
+            image = ByteStreams.toByteArray(inputStream);
+        }
+        byte[] largeText = "All human beings are born free and equal in dignity and rights. ".repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+        // A text file deflated ahead, an image stored ahead, and a file of unknown size decrypted through a pipe and compressed while written
+        List<File> fileList = Lists.newArrayList(
+                storeFile("document.txt", MimeType.TEXT_PLAIN, text, (long) text.length, privateKey),
+                storeFile("apollo_portrait.jpg", MimeType.IMAGE_JPEG, image, (long) image.length, privateKey),
+                storeFile("unknown.txt", MimeType.TEXT_PLAIN, largeText, File.UNKNOWN_SIZE, privateKey));
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            ZipUtil.zipFiles(fileList, outputStream);
+            Assert.assertTrue(outputStream.size() < text.length + largeText.length / 2 + image.length);
+
+            // The ZIP stream checks the sizes and CRC of each entry
+            try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+                ZipEntry zipEntry = zipInputStream.getNextEntry();
+                Assert.assertEquals("0-document.txt", zipEntry.getName());
+                Assert.assertEquals(ZipEntry.DEFLATED, zipEntry.getMethod());
+                Assert.assertArrayEquals(text, ByteStreams.toByteArray(zipInputStream));
+                zipEntry = zipInputStream.getNextEntry();
+                Assert.assertEquals("1-apollo_portrait.jpg", zipEntry.getName());
+                Assert.assertEquals(ZipEntry.STORED, zipEntry.getMethod());
+                Assert.assertArrayEquals(image, ByteStreams.toByteArray(zipInputStream));
+                zipEntry = zipInputStream.getNextEntry();
+                Assert.assertEquals("2-unknown.txt", zipEntry.getName());
+                Assert.assertArrayEquals(largeText, ByteStreams.toByteArray(zipInputStream));
+                Assert.assertNull(zipInputStream.getNextEntry());
+            }
+        } finally {
+            for (File file : fileList) {
+                AppContext.getInstance().getStorageBackend().delete(file.getId());
+            }
+            ZipUtil.shutDown();
+        }
+    }
+
+    /**
+     * Store an encrypted file.
+     *
+     * @param name File name
+     * @param mimeType MIME type
+     * @param content Content
+     * @param size Size known in the database
+     * @param privateKey Private key
+     * @return File
+     * @throws Exception e
+     */
+    private static File storeFile(String name, String mimeType, byte[] content, Long size, String privateKey) throws Exception {
+        File file = new File();
+        file.setId(UUID.randomUUID().toString());
+        file.setName(name);
+        file.setMimeType(mimeType);
+        file.setSize(size);
+        file.setPrivateKey(privateKey);
+        try (InputStream inputStream = new CipherInputStream(new ByteArrayInputStream(content),
+                EncryptionUtil.getEncryptionCipher(privateKey))) {
+            AppContext.getInstance().getStorageBackend().put(file.getId(), inputStream);
+        }
+        return file;
+    }
+}
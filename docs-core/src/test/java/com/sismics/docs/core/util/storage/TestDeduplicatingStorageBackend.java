@@ -0,0 +1,146 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sismics.BaseTest;
+import com.sismics.docs.core.util.StorageUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Test of the deduplicating storage backend.
+ *
+ * @author agent
+ */
+public class TestDeduplicatingStorageBackend extends BaseTest {
+    @Test
+    public void deduplicationTest() throws Exception {
+        DeduplicatingStorageBackend storageBackend = new DeduplicatingStorageBackend();
+        storageBackend.startUp();
+        String content = "Scanned attachment " + UUID.randomUUID();
+        String fileId1 = UUID.randomUUID().toString();
+        String fileId2 = UUID.randomUUID().toString();
+        String fileId3 = UUID.randomUUID().toString();
+
+        // The same content is stored once
+        storageBackend.put(fileId1, toInputStream(content));
+        storageBackend.put(fileId2, toInputStream(content));
+        storageBackend.put(fileId3, toInputStream("Other content"));
+        Assert.assertTrue(Files.isSameFile(StorageUtil.getStoredFile(fileId1), StorageUtil.getStoredFile(fileId2)));
+        Assert.assertFalse(Files.isSameFile(StorageUtil.getStoredFile(fileId1), StorageUtil.getStoredFile(fileId3)));
+        Assert.assertEquals(2, storageBackend.getReferenceCount(fileId1));
+        Assert.assertEquals(1, storageBackend.getReferenceCount(fileId3));
+
+        // Stored files are read as usual
+        try (InputStream inputStream = storageBackend.get(fileId2)) {
+            Assert.assertEquals(content, new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+        try (InputStream inputStream = storageBackend.getRange(fileId2, 9)) {
+            Assert.assertEquals(content.substring(9), new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(content.length(), storageBackend.stat(fileId1).getSize());
+
+        // Blobs are not listed as stored files
+        try (Stream<String> storedFileStream = storageBackend.list()) {
+            Assert.assertTrue(storedFileStream.noneMatch(storedFile -> storedFile.length() == 64));
+        }
+
+        // Deleting a reference keeps the content
+        storageBackend.delete(fileId1);
+        Assert.assertFalse(storageBackend.exists(fileId1));
+        Assert.assertEquals(1, storageBackend.getReferenceCount(fileId2));
+        try (InputStream inputStream = storageBackend.get(fileId2)) {
+            Assert.assertEquals(content, new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+
+        // Deleting the last reference deletes the content
+        long blobCount = countBlobs();
+        storageBackend.delete(fileId2);
+        Assert.assertFalse(storageBackend.exists(fileId2));
+        Assert.assertEquals(blobCount - 1, countBlobs());
+
+        // Storing the content again
+        storageBackend.put(fileId1, toInputStream(content));
+        Assert.assertEquals(1, storageBackend.getReferenceCount(fileId1));
+        Assert.assertEquals(blobCount, countBlobs());
+
+        storageBackend.delete(fileId1);
+        storageBackend.delete(fileId3);
+        Assert.assertEquals(blobCount - 2, countBlobs());
+        storageBackend.shutDown();
+    }
+
+    @Test
+    public void concurrentDeleteTest() throws Exception {
+        DeduplicatingStorageBackend storageBackend = new DeduplicatingStorageBackend();
+        storageBackend.startUp();
+        long blobCount = countBlobs();
+
+        // Pairs of stored files sharing a content
+        int contentCount = 200;
+        List<String> fileIdList1 = new ArrayList<>();
+        List<String> fileIdList2 = new ArrayList<>();
+        for (int i = 0; i < contentCount; i++) {
+            String content = "Shared attachment " + UUID.randomUUID();
+            String fileId1 = UUID.randomUUID().toString();
+            String fileId2 = UUID.randomUUID().toString();
+            storageBackend.put(fileId1, toInputStream(content));
+            storageBackend.put(fileId2, toInputStream(content));
+            fileIdList1.add(fileId1);
+            fileIdList2.add(fileId2);
+        }
+        Assert.assertEquals(blobCount + contentCount, countBlobs());
+
+        // Both references of each content are deleted at the same time, the last one deletes the blob
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            List<Future<?>> futureList = new ArrayList<>();
+            for (List<String> fileIdList : Lists.newArrayList(fileIdList1, fileIdList2)) {
+                futureList.add(executorService.submit(() -> {
+                    for (String fileId : fileIdList) {
+                        barrier.await();
+                        storageBackend.delete(fileId);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        Assert.assertEquals(blobCount, countBlobs());
+        storageBackend.shutDown();
+    }
+
+    /**
+     * Returns the number of stored blobs.
+     *
+     * @return Number of blobs
+     * @throws Exception e
+     */
+    private static long countBlobs() throws Exception {
+        try (Stream<java.nio.file.Path> blobStream = Files.walk(StorageUtil.getBlobDirectory())) {
+            return blobStream.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static InputStream toInputStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
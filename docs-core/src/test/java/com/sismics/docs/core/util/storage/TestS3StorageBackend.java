@@ -0,0 +1,227 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.io.ByteStreams;
+import com.sismics.BaseTest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test of the S3 storage backend against a local stand-in of an S3 server.
+ *
+ * @author agent
+ */
+public class TestS3StorageBackend extends BaseTest {
+    /**
+     * Number of keys per listing page of the stand-in server.
+     */
+    private static final int PAGE_SIZE = 2;
+
+    /**
+     * Stand-in S3 server.
+     */
+    private HttpServer server;
+
+    /**
+     * Objects stored in the stand-in server.
+     */
+    private final Map<String, byte[]> objectMap = new ConcurrentSkipListMap<>();
+
+    /**
+     * Storage backend.
+     */
+    private S3StorageBackend storageBackend;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/bucket", this::handle);
+        server.start();
+
+        storageBackend = new S3StorageBackend(URI.create("http://localhost:" + server.getAddress().getPort()),
+                "us-east-1", "bucket", "access", "secret");
+        storageBackend.startUp();
+    }
+
+    @After
+    public void tearDown() {
+        storageBackend.shutDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void s3Test() throws Exception {
+        // Store files
+        storageBackend.put("file1", toInputStream("content of file 1"));
+        storageBackend.put("file1_web", toInputStream("web"));
+        storageBackend.put("file2", toInputStream("content of file 2"));
+        Assert.assertEquals("content of file 1", new String(objectMap.get("file1"), StandardCharsets.UTF_8));
+
+        // Read them
+        try (InputStream inputStream = storageBackend.get("file1")) {
+            Assert.assertEquals("content of file 1", new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+        try (InputStream inputStream = storageBackend.getRange("file2", 8)) {
+            Assert.assertEquals("of file 2", new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+        try (InputStream inputStream = storageBackend.getRange("file2", 100)) {
+            Assert.assertEquals(-1, inputStream.read());
+        }
+        try {
+            storageBackend.get("file3").close();
+            Assert.fail();
+        } catch (NoSuchFileException e) {
+            // Not stored
+        }
+
+        // Metadata
+        Assert.assertTrue(storageBackend.exists("file1_web"));
+        Assert.assertFalse(storageBackend.exists("file3"));
+        Assert.assertEquals(17, storageBackend.stat("file2").getSize());
+        Assert.assertNotNull(storageBackend.stat("file2").getLastModified());
+        Assert.assertNull(storageBackend.stat("file3"));
+
+        // List them, in multiple pages
+        try (Stream<String> storedFileStream = storageBackend.list()) {
+            Assert.assertEquals(Arrays.asList("file1", "file1_web", "file2"), storedFileStream.collect(Collectors.toList()));
+        }
+
+        // Delete them
+        storageBackend.delete("file1");
+        storageBackend.delete("file3");
+        Assert.assertFalse(storageBackend.exists("file1"));
+        Assert.assertEquals(2, objectMap.size());
+    }
+
+    /**
+     * Handle a request to the stand-in server.
+     *
+     * @param exchange Exchange
+     * @throws IOException e
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !authorization.startsWith("AWS4-HMAC-SHA256 Credential=access/")
+                    || exchange.getRequestHeaders().getFirst("x-amz-date") == null) {
+                exchange.sendResponseHeaders(403, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String key = path.length() > "/bucket/".length() ? path.substring("/bucket/".length()) : null;
+            byte[] object = key == null ? null : objectMap.get(key);
+            switch (exchange.getRequestMethod()) {
+                case "PUT":
+                    try (InputStream inputStream = exchange.getRequestBody()) {
+                        objectMap.put(key, ByteStreams.toByteArray(inputStream));
+                    }
+                    exchange.sendResponseHeaders(200, -1);
+                    break;
+                case "HEAD":
+                    if (object == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        exchange.getResponseHeaders().set("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+                        exchange.getResponseHeaders().set("Content-Length", Integer.toString(object.length));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                    break;
+                case "DELETE":
+                    objectMap.remove(key);
+                    exchange.sendResponseHeaders(204, -1);
+                    break;
+                case "GET":
+                    if (key == null) {
+                        sendList(exchange);
+                    } else if (object == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        String range = exchange.getRequestHeaders().getFirst("Range");
+                        int offset = range == null ? 0 : Integer.parseInt(range.replaceAll("bytes=(\\d+)-", "$1"));
+                        if (offset >= object.length) {
+                            exchange.sendResponseHeaders(416, -1);
+                            break;
+                        }
+                        exchange.sendResponseHeaders(range == null ? 200 : 206, object.length - offset);
+                        try (OutputStream outputStream = exchange.getResponseBody()) {
+                            outputStream.write(object, offset, object.length - offset);
+                        }
+                    }
+                    break;
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Send a page of the object keys, in the ListObjectsV2 format.
+     *
+     * @param exchange Exchange
+     * @throws IOException e
+     */
+    private void sendList(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        String token = null;
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("continuation-token=")) {
+                token = URLDecoder.decode(parameter.substring("continuation-token=".length()), StandardCharsets.UTF_8);
+            }
+        }
+
+        List<String> keyList = new ArrayList<>();
+        for (String key : objectMap.keySet()) {
+            if (token == null || key.compareTo(token) > 0) {
+                keyList.add(key);
+            }
+        }
+        boolean truncated = keyList.size() > PAGE_SIZE;
+        keyList = keyList.subList(0, Math.min(PAGE_SIZE, keyList.size()));
+
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>bucket</Name>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        for (String key : keyList) {
+            sb.append("<Contents><Key>").append(key).append("</Key></Contents>");
+        }
+        if (truncated) {
+            sb.append("<NextContinuationToken>").append(keyList.get(keyList.size() - 1)).append("</NextContinuationToken>");
+        }
+        sb.append("</ListBucketResult>");
+
+        byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static InputStream toInputStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
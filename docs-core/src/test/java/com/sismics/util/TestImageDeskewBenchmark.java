@@ -0,0 +1,136 @@
+package com.sismics.util;
+
+import com.sismics.BaseTest;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+
+/**
+ * Benchmark of the deskew on a sample scan, against the previous per-pixel implementation.
+ *
+ * @author agent
+ */
+public class TestImageDeskewBenchmark extends BaseTest {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TestImageDeskewBenchmark.class);
+
+    /**
+     * Number of measured runs per implementation.
+     */
+    private static final int ITERATION_COUNT = 3;
+
+    /**
+     * Benchmark the deskew of a scanned page, prepared like the OCR does.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testImageDeskewBenchmark() throws Exception {
+        BufferedImage page;
+        try (InputStream inputStream = getSystemResourceAsStream(FILE_PDF_SCANNED);
+             PDDocument pdfDocument = PDDocument.load(inputStream)) {
+            page = new PDFRenderer(pdfDocument).renderImageWithDPI(0, 300, ImageType.GRAY);
+        }
+        BufferedImage resizedImage = Scalr.resize(page, Scalr.Method.AUTOMATIC, Scalr.Mode.AUTOMATIC, 3500, Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+
+        for (double skewAngle : new double[] { 0, 3, -1.5 }) {
+            BufferedImage image = skewAngle == 0 ? resizedImage : Scalr.rotate(resizedImage, skewAngle, Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+
+            // Warm up
+            double angle = new ImageDeskew(image).getSkewAngle();
+            double legacyAngle = new LegacyImageDeskew(image).getSkewAngle();
+
+            long startTime = System.nanoTime();
+            for (int i = 0; i < ITERATION_COUNT; i++) {
+                new ImageDeskew(image).getSkewAngle();
+            }
+            double time = (System.nanoTime() - startTime) / ITERATION_COUNT / 1_000_000.0;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < ITERATION_COUNT; i++) {
+                new LegacyImageDeskew(image).getSkewAngle();
+            }
+            double legacyTime = (System.nanoTime() - startTime) / ITERATION_COUNT / 1_000_000.0;
+
+            log.info("Skew of {} degrees: {} ms (angle {}), previous implementation {} ms (angle {})",
+                    skewAngle, time, angle, legacyTime, legacyAngle);
+            Assert.assertEquals(legacyAngle, angle, 0.05);
+            Assert.assertEquals(skewAngle, angle, 0.5);
+        }
+    }
+
+    /**
+     * Previous implementation of the Hough transformation, reading each pixel with ImageUtil.isBlack.
+     */
+    private static class LegacyImageDeskew {
+        private final BufferedImage image;
+        private final int steps = 40 * 5;
+        private double[] sinA;
+        private double[] cosA;
+        private double dMin;
+        private int[] hMatrix;
+
+        private LegacyImageDeskew(BufferedImage image) {
+            this.image = image;
+        }
+
+        private double getSkewAngle() {
+            int hMin = (int) (image.getHeight() / 4.0);
+            int hMax = (int) (image.getHeight() * 3.0 / 4.0);
+            sinA = new double[steps - 1];
+            cosA = new double[steps - 1];
+            for (int i = 0; i < steps - 1; i++) {
+                double angle = getAlpha(i) * Math.PI / 180.0;
+                sinA[i] = Math.sin(angle);
+                cosA[i] = Math.cos(angle);
+            }
+            dMin = -image.getWidth();
+            hMatrix = new int[2 * (image.getWidth() + image.getHeight()) * steps];
+
+            for (int y = hMin; y < hMax; y++) {
+                for (int x = 1; x < image.getWidth() - 2; x++) {
+                    if (ImageUtil.isBlack(image, x, y) && !ImageUtil.isBlack(image, x, y + 1)) {
+                        for (int alpha = 0; alpha < steps - 1; alpha++) {
+                            double d = y * cosA[alpha] - x * sinA[alpha];
+                            hMatrix[(int) (d - dMin) * steps + alpha]++;
+                        }
+                    }
+                }
+            }
+
+            // Average angle of the top 19 of the 20 lines with the most points
+            int[] topCount = new int[20];
+            int[] topIndex = new int[20];
+            for (int i = 0; i < hMatrix.length - 1; i++) {
+                if (hMatrix[i] > topCount[19]) {
+                    int j = 19;
+                    while (j > 0 && hMatrix[i] > topCount[j - 1]) {
+                        topCount[j] = topCount[j - 1];
+                        topIndex[j] = topIndex[j - 1];
+                        j--;
+                    }
+                    topCount[j] = hMatrix[i];
+                    topIndex[j] = i;
+                }
+            }
+            double sum = 0;
+            for (int i = 0; i < 19; i++) {
+                sum += getAlpha(topIndex[i] % steps);
+            }
+            return sum / 19;
+        }
+
+        private double getAlpha(int index) {
+            return -20 + index * 0.2;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.sismics.util.format;
+
+import com.sismics.BaseTest;
+import com.sismics.docs.core.util.format.FormatHandler;
+import com.sismics.docs.core.util.format.FormatHandlerUtil;
+import com.sismics.util.mime.MimeTypeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Benchmark of the file processing on a mixed corpus.
+ * Each file is processed as by the file processing listener: thumbnail then text content,
+ * with a single format handler parsing the file once.
+ *
+ * @author agent
+ */
+public class TestFormatHandlerBenchmark extends BaseTest {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TestFormatHandlerBenchmark.class);
+
+    /**
+     * Number of measured runs per file.
+     */
+    private static final int ITERATION_COUNT = 3;
+
+    /**
+     * Benchmark the processing of each file of the corpus.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testFormatHandlerBenchmark() throws Exception {
+        for (String fileName : List.of(FILE_PDF, FILE_DOCX, FILE_ODT, FILE_PPTX, FILE_TXT, FILE_CSV, FILE_PNG, FILE_JPG)) {
+            Path path = Paths.get(getResource(fileName).toURI());
+            String mimeType = MimeTypeUtil.guessMimeType(path, fileName);
+
+            // Warm up
+            process(path, mimeType);
+
+            long startTime = System.nanoTime();
+            for (int i = 0; i < ITERATION_COUNT; i++) {
+                process(path, mimeType);
+            }
+            log.info("{}: {} ms per file", fileName, (System.nanoTime() - startTime) / ITERATION_COUNT / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Generate the thumbnail and extract the content of a file, without OCR.
+     *
+     * @param path File
+     * @param mimeType MIME type
+     * @throws Exception e
+     */
+    private void process(Path path, String mimeType) throws Exception {
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(mimeType)) {
+            Assert.assertNotNull(mimeType, formatHandler);
+            BufferedImage thumbnail = formatHandler.generateThumbnail(path);
+            Assert.assertNotNull(mimeType, thumbnail);
+            thumbnail.flush();
+            formatHandler.extractContent(null, path);
+        }
+    }
+}
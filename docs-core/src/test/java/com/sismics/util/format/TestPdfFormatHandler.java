@@ -25,4 +25,17 @@ public class TestPdfFormatHandler extends BaseTest {
         Assert.assertTrue(content.contains("Grundumsatzmessungen"));
         Assert.assertTrue(content.contains("ermitteln"));
     }
+
+    /**
+     * A handler used for another file parses it instead of the first one.
+     */
+    @Test
+    public void testOtherFile() throws Exception {
+        try (PdfFormatHandler formatHandler = new PdfFormatHandler()) {
+            String content = formatHandler.extractContent(null, Paths.get(getResource(FILE_PDF).toURI()));
+            Assert.assertTrue(content.contains("All human beings are born free and equal in dignity and rights."));
+            content = formatHandler.extractContent(null, Paths.get(getResource("issue373.pdf").toURI()));
+            Assert.assertFalse(content.contains("All human beings are born free and equal in dignity and rights."));
+        }
+    }
 }
@@ -1,8 +1,9 @@
 package com.sismics.rest.util;
 
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
-import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.storage.StorageStat;
 import com.sismics.rest.exception.ServerException;
 import com.sismics.util.JsonUtil;
 
@@ -10,7 +11,7 @@ import jakarta.json.Json;
 import jakarta.json.JsonObjectBuilder;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 
 /**
  * Rest utilities.
@@ -27,7 +28,7 @@ public class RestUtil {
      */
     public static JsonObjectBuilder fileToJsonObjectBuilder(File fileDb) {
         try {
-            long fileSize = fileDb.getSize().equals(File.UNKNOWN_SIZE) ? Files.size(DirectoryUtil.getStorageDirectory().resolve(fileDb.getId())) : fileDb.getSize();
+            long fileSize = fileDb.getSize().equals(File.UNKNOWN_SIZE) ? getStoredSize(fileDb.getId()) : fileDb.getSize();
             return Json.createObjectBuilder()
                     .add("id", fileDb.getId())
                     .add("processing", FileUtil.isProcessingFile(fileDb.getId()))
@@ -41,4 +42,19 @@ public class RestUtil {
             throw new ServerException("FileError", "Unable to get the size of " + fileDb.getId(), e);
         }
     }
+
+    /**
+     * Returns the size of a stored file.
+     *
+     * @param fileId File ID
+     * @return Stored size
+     * @throws IOException e
+     */
+    private static long getStoredSize(String fileId) throws IOException {
+        StorageStat stat = AppContext.getInstance().getStorageBackend().stat(fileId);
+        if (stat == null) {
+            throw new NoSuchFileException(fileId);
+        }
+        return stat.getSize();
+    }
 }
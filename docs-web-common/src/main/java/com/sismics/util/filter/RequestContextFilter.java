@@ -117,7 +117,7 @@ public class RequestContextFilter implements Filter {
                 int statusClass = r.getStatus() / 100;
                 if (statusClass == 2 || statusClass == 3) {
                     try {
-                        em.getTransaction().commit();
+                        context.commit(em.getTransaction());
                     } catch (Exception e) {
                         log.error("Error during commit", e);
                         r.sendError(500);
@@ -138,6 +138,9 @@ public class RequestContextFilter implements Filter {
         // This way, all modifications done during this request are available in the listeners.
         context.fireAllAsyncEvents();
 
+        // The index changes written by this request, if any, are visible to its next requests
+        AppContext.getInstance().getIndexingHandler().waitForWrites();
+
         ThreadLocalContext.cleanup();
     }
 
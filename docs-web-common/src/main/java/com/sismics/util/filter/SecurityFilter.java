@@ -6,7 +6,10 @@ import com.sismics.docs.core.dao.GroupDao;
 import com.sismics.docs.core.dao.RoleBaseFunctionDao;
 import com.sismics.docs.core.dao.criteria.GroupCriteria;
 import com.sismics.docs.core.dao.dto.GroupDto;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.authentication.CachedPrincipal;
+import com.sismics.docs.core.util.authentication.PrincipalCache;
 import com.sismics.security.AnonymousPrincipal;
 import com.sismics.security.UserPrincipal;
 import org.joda.time.DateTimeZone;
@@ -24,6 +27,7 @@ import java.util.Set;
  * An abstract security filter for user authentication, that injects corresponding users into the request.
  * Successfully authenticated users are injected as UserPrincipal, or as AnonymousPrincipal otherwise.
  * If an user has already been authenticated for the request, no further authentication attempt is made.
+ * Filters providing a cache key keep the authenticated users in the principal cache.
  *
  * @author pacien
  * @author jtremeaux
@@ -54,25 +58,29 @@ public abstract class SecurityFilter implements Filter {
      *
      * @param request HTTP request
      * @param user nullable User to inject
+     * @param cacheKey Principal cache key, null to not cache the user
+     * @param generation Principal cache generation read before authenticating the user
      */
-    private void injectUser(HttpServletRequest request, User user) {
+    private void injectUser(HttpServletRequest request, User user, String cacheKey, long generation) {
         // Check if the user is still valid
         if (user != null && user.getDeleteDate() == null && user.getDisableDate() == null) {
-            injectAuthenticatedUser(request, user);
+            CachedPrincipal principal = loadPrincipal(user);
+            if (cacheKey != null) {
+                AppContext.getInstance().getPrincipalCache().put(cacheKey, principal, generation);
+            }
+            injectAuthenticatedUser(request, principal);
         } else {
             injectAnonymousUser(request);
         }
     }
 
     /**
-     * Inject an authenticated user into the request attributes.
+     * Load the groups and base functions of a user.
      *
-     * @param request HTTP request
-     * @param user User to inject
+     * @param user User
+     * @return Principal
      */
-    private void injectAuthenticatedUser(HttpServletRequest request, User user) {
-        UserPrincipal userPrincipal = new UserPrincipal(user.getId(), user.getUsername());
-
+    private CachedPrincipal loadPrincipal(User user) {
         // Add groups
         GroupDao groupDao = new GroupDao();
         Set<String> groupRoleIdSet = new HashSet<>();
@@ -86,16 +94,26 @@ public abstract class SecurityFilter implements Filter {
                 groupRoleIdSet.add(groupDto.getRoleId());
             }
         }
-        userPrincipal.setGroupIdSet(groupIdSet);
 
         // Add base functions
         groupRoleIdSet.add(user.getRoleId());
         RoleBaseFunctionDao userBaseFunction = new RoleBaseFunctionDao();
         Set<String> baseFunctionSet = userBaseFunction.findByRoleId(groupRoleIdSet);
-        userPrincipal.setBaseFunctionSet(baseFunctionSet);
 
-        // Add email
-        userPrincipal.setEmail(user.getEmail());
+        return new CachedPrincipal(user.getId(), user.getUsername(), user.getEmail(), groupIdSet, baseFunctionSet);
+    }
+
+    /**
+     * Inject an authenticated user into the request attributes.
+     *
+     * @param request HTTP request
+     * @param principal Principal to inject
+     */
+    private void injectAuthenticatedUser(HttpServletRequest request, CachedPrincipal principal) {
+        UserPrincipal userPrincipal = new UserPrincipal(principal.getUserId(), principal.getUsername());
+        userPrincipal.setGroupIdSet(principal.getGroupIdSet());
+        userPrincipal.setBaseFunctionSet(principal.getBaseFunctionSet());
+        userPrincipal.setEmail(principal.getEmail());
 
         request.setAttribute(PRINCIPAL_ATTRIBUTE, userPrincipal);
     }
@@ -127,8 +145,16 @@ public abstract class SecurityFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) req;
 
         if (!hasIdentifiedUser(request)) {
-            User user = authenticate(request);
-            injectUser(request, user);
+            PrincipalCache principalCache = AppContext.getInstance().getPrincipalCache();
+            String cacheKey = getPrincipalCacheKey(request);
+            CachedPrincipal cachedPrincipal = cacheKey == null ? null : principalCache.get(cacheKey);
+            if (cachedPrincipal != null) {
+                injectAuthenticatedUser(request, cachedPrincipal);
+            } else {
+                long generation = principalCache.getGeneration();
+                User user = authenticate(request);
+                injectUser(request, user, cacheKey, generation);
+            }
         }
 
         filterChain.doFilter(request, response);
@@ -142,4 +168,14 @@ public abstract class SecurityFilter implements Filter {
      */
     protected abstract User authenticate(HttpServletRequest request);
 
+    /**
+     * Returns the key of the authenticated user in the principal cache.
+     *
+     * @param request HTTP request
+     * @return Cache key, null to authenticate the user on each request
+     */
+    protected String getPrincipalCacheKey(HttpServletRequest request) {
+        return null;
+    }
+
 }
\ No newline at end of file
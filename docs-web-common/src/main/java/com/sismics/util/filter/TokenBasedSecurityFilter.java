@@ -15,6 +15,8 @@ import java.util.Date;
  * The filter extracts the authentication token stored in a cookie.
  * If the cookie exists and the token is valid, the filter injects a UserPrincipal into a request attribute.
  * If not, the user is anonymous, and the filter injects a AnonymousPrincipal into the request attribute.
+ * The authenticated users are kept in the principal cache by token, so an expired token
+ * can still be accepted until its cache entry expires.
  *
  * @author jtremeaux
  */
@@ -106,4 +108,9 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
 
         return new UserDao().getById(authToken.getUserId());
     }
+
+    @Override
+    protected String getPrincipalCacheKey(HttpServletRequest request) {
+        return extractAuthToken(request.getCookies());
+    }
 }
@@ -1,21 +1,27 @@
 package com.sismics.docs.rest.resource;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.ConfigDao;
 import com.sismics.docs.core.dao.DocumentDao;
-import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.event.CleanStorageAsyncEvent;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.context.AsyncEventExecutor;
 import com.sismics.docs.core.model.jpa.Config;
-import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.service.AuditLogService;
 import com.sismics.docs.core.service.InboxService;
 import com.sismics.docs.core.util.ConfigUtil;
-import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.EncryptionUtil;
+import com.sismics.docs.core.util.OcrUtil;
+import com.sismics.docs.core.util.indexing.IndexingHandler;
+import com.sismics.docs.core.util.indexing.RebuildProgress;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.storage.CleanStorageProgress;
 import com.sismics.docs.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
@@ -23,25 +29,27 @@ import com.sismics.rest.exception.ServerException;
 import com.sismics.rest.util.ValidationUtil;
 import com.sismics.util.JsonUtil;
 import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.ConnectionPoolMetrics;
+import com.sismics.util.jpa.EMF;
 import com.sismics.util.log4j.LogCriteria;
 import com.sismics.util.log4j.LogEntry;
 import com.sismics.util.log4j.MemoryAppender;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObjectBuilder;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.Query;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Appender;
 import org.apache.log4j.Level;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.text.MessageFormat;
 import java.util.*;
 
@@ -114,6 +122,190 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response.build()).build();
     }
 
+    /**
+     * Returns internal performance metrics.
+     *
+     * @api {get} /app/metrics Get internal performance metrics
+     * @apiName GetAppMetrics
+     * @apiGroup App
+     * @apiSuccess {Object} encryption_key_cache Derived encryption keys cache
+     * @apiSuccess {Number} encryption_key_cache.size Number of cached keys
+     * @apiSuccess {Number} encryption_key_cache.hit_count Number of cache hits
+     * @apiSuccess {Number} encryption_key_cache.miss_count Number of cache misses
+     * @apiSuccess {Number} encryption_key_cache.eviction_count Number of evicted keys
+     * @apiSuccess {Object} indexing Search index writes
+     * @apiSuccess {Number} indexing.operation_count Number of index operations since startup
+     * @apiSuccess {Number} indexing.operation_rate Recent index operations per second
+     * @apiSuccess {Number} indexing.pending_count Number of index operations not yet committed
+     * @apiSuccess {Number} indexing.commit_count Number of index commits since startup
+     * @apiSuccess {Object} suggester Search terms suggester
+     * @apiSuccess {Number} suggester.generation Index version used by the suggester, -1 if not built yet
+     * @apiSuccess {Number} suggester.build_time Duration of the last build (in milliseconds)
+     * @apiSuccess {Number} suggester.lookup_time Average lookup duration (in milliseconds)
+     * @apiSuccess {Object} ocr Optical character recognition
+     * @apiSuccess {Number} ocr.thread_count Number of pages recognized at the same time
+     * @apiSuccess {Number} ocr.page_count Number of pages recognized since startup
+     * @apiSuccess {Number} ocr.error_count Number of pages in error since startup
+     * @apiSuccess {Number} ocr.preprocess_time Average time spent upscaling and deskewing a page (in milliseconds)
+     * @apiSuccess {Number} ocr.recognition_time Average time spent by tesseract on a page (in milliseconds)
+     * @apiSuccess {Number} ocr.max_page_time Longest time spent on a page (in milliseconds)
+     * @apiSuccess {Object} audit_log Audit logs writing
+     * @apiSuccess {Number} audit_log.pending_count Number of audit logs waiting to be written
+     * @apiSuccess {Number} audit_log.written_count Number of audit logs written since startup
+     * @apiSuccess {Number} audit_log.batch_count Number of batches written since startup
+     * @apiSuccess {Number} audit_log.sync_count Number of journal syncs since startup
+     * @apiSuccess {Object[]} event_pools Asynchronous event pools
+     * @apiSuccess {String} event_pools.name Pool name
+     * @apiSuccess {Number} event_pools.thread_count Number of threads
+     * @apiSuccess {Number} event_pools.active_count Number of events being processed
+     * @apiSuccess {Number} event_pools.queue_size Number of events waiting to be processed
+     * @apiSuccess {Number} event_pools.queue_capacity Maximum number of waiting events
+     * @apiSuccess {Number} event_pools.completed_count Number of events processed
+     * @apiSuccess {Number} event_pools.caller_run_count Number of events processed by the producer because the queue was full
+     * @apiSuccess {Number} event_pools.blocked_count Number of events whose producer waited for a free slot because the queue was full
+     * @apiSuccess {Number} event_pools.dropped_count Number of events dropped because the queue was full
+     * @apiSuccess {Number} event_pools.wait_time Average time spent waiting in the queue (in milliseconds)
+     * @apiSuccess {Number} event_pools.run_time Average processing time (in milliseconds)
+     * @apiSuccess {Object} connection_pool Database connection pool, absent if the connections are not pooled by HikariCP
+     * @apiSuccess {Number} connection_pool.max_size Maximum number of connections
+     * @apiSuccess {Number} connection_pool.active_count Number of connections in use
+     * @apiSuccess {Number} connection_pool.idle_count Number of idle connections
+     * @apiSuccess {Number} connection_pool.pending_count Number of threads waiting for a connection
+     * @apiSuccess {Number} connection_pool.acquire_count Number of connections acquired
+     * @apiSuccess {Number} connection_pool.acquire_time Average time spent acquiring a connection (in milliseconds)
+     * @apiSuccess {Number} connection_pool.max_acquire_time Longest time spent acquiring a connection (in milliseconds)
+     * @apiSuccess {Number} connection_pool.timeout_count Number of connection requests which timed out
+     * @apiSuccess {Object} second_level_cache Second level cache, absent if the Hibernate statistics are disabled
+     * @apiSuccess {Number} second_level_cache.hit_count Number of entities found in cache
+     * @apiSuccess {Number} second_level_cache.miss_count Number of entities not found in cache
+     * @apiSuccess {Number} second_level_cache.put_count Number of entities put in cache
+     * @apiSuccess {Number} second_level_cache.hit_ratio Ratio of entities found in cache (between 0 and 1)
+     * @apiSuccess {Number} second_level_cache.query_hit_count Number of query results found in cache
+     * @apiSuccess {Number} second_level_cache.query_miss_count Number of query results not found in cache
+     * @apiSuccess {Number} second_level_cache.query_hit_ratio Ratio of query results found in cache (between 0 and 1)
+     * @apiSuccess {Object[]} second_level_cache.regions Cache regions, one per cached entity plus the query results
+     * @apiSuccess {String} second_level_cache.regions.name Region name
+     * @apiSuccess {Number} second_level_cache.regions.hit_count Number of cache hits
+     * @apiSuccess {Number} second_level_cache.regions.miss_count Number of cache misses
+     * @apiSuccess {Number} second_level_cache.regions.put_count Number of cache puts
+     * @apiSuccess {Number} second_level_cache.regions.hit_ratio Ratio of cache hits (between 0 and 1)
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @return Response
+     */
+    @GET
+    @Path("metrics")
+    public Response metrics() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        CacheStats keyCacheStats = EncryptionUtil.getKeyCacheStats();
+        IndexingHandler indexingHandler = AppContext.getInstance().getIndexingHandler();
+        AuditLogService auditLogService = AppContext.getInstance().getAuditLogService();
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("encryption_key_cache", Json.createObjectBuilder()
+                        .add("size", EncryptionUtil.getKeyCacheSize())
+                        .add("hit_count", keyCacheStats.hitCount())
+                        .add("miss_count", keyCacheStats.missCount())
+                        .add("eviction_count", keyCacheStats.evictionCount()))
+                .add("indexing", Json.createObjectBuilder()
+                        .add("operation_count", indexingHandler.getOperationCount())
+                        .add("operation_rate", indexingHandler.getOperationRate())
+                        .add("pending_count", indexingHandler.getPendingOperationCount())
+                        .add("commit_count", indexingHandler.getCommitCount()))
+                .add("suggester", Json.createObjectBuilder()
+                        .add("generation", indexingHandler.getSuggesterGeneration())
+                        .add("build_time", indexingHandler.getSuggesterBuildTime())
+                        .add("lookup_time", indexingHandler.getSuggesterLookupTime()))
+                .add("ocr", Json.createObjectBuilder()
+                        .add("thread_count", OcrUtil.getThreadCount())
+                        .add("page_count", OcrUtil.getPageCount())
+                        .add("error_count", OcrUtil.getErrorCount())
+                        .add("preprocess_time", OcrUtil.getAveragePreprocessTime())
+                        .add("recognition_time", OcrUtil.getAverageRecognitionTime())
+                        .add("max_page_time", OcrUtil.getMaxPageTime()))
+                .add("audit_log", Json.createObjectBuilder()
+                        .add("pending_count", auditLogService.getPendingCount())
+                        .add("written_count", auditLogService.getWrittenCount())
+                        .add("batch_count", auditLogService.getBatchCount())
+                        .add("sync_count", auditLogService.getSyncCount()));
+
+        JsonArrayBuilder eventPools = Json.createArrayBuilder();
+        for (AsyncEventExecutor executor : AppContext.getInstance().getAsyncExecutorList()) {
+            eventPools.add(Json.createObjectBuilder()
+                    .add("name", executor.getName())
+                    .add("thread_count", executor.getPoolSize())
+                    .add("active_count", executor.getActiveCount())
+                    .add("queue_size", executor.getWaitingTaskCount())
+                    .add("queue_capacity", executor.getQueueCapacity())
+                    .add("completed_count", executor.getCompletedTaskCount())
+                    .add("caller_run_count", executor.getCallerRunCount())
+                    .add("blocked_count", executor.getBlockedCount())
+                    .add("dropped_count", executor.getDroppedCount())
+                    .add("wait_time", executor.getAverageWaitTime())
+                    .add("run_time", executor.getAverageRunTime()));
+        }
+        response.add("event_pools", eventPools);
+
+        HikariDataSource dataSource = EMF.getDataSource();
+        if (dataSource != null && dataSource.getHikariPoolMXBean() != null) {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            response.add("connection_pool", Json.createObjectBuilder()
+                    .add("max_size", dataSource.getMaximumPoolSize())
+                    .add("active_count", pool.getActiveConnections())
+                    .add("idle_count", pool.getIdleConnections())
+                    .add("pending_count", pool.getThreadsAwaitingConnection())
+                    .add("acquire_count", ConnectionPoolMetrics.getAcquireCount())
+                    .add("acquire_time", ConnectionPoolMetrics.getAverageAcquireTime())
+                    .add("max_acquire_time", ConnectionPoolMetrics.getMaxAcquireTime())
+                    .add("timeout_count", ConnectionPoolMetrics.getTimeoutCount()));
+        }
+
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        if (statistics.isStatisticsEnabled()) {
+            JsonArrayBuilder regions = Json.createArrayBuilder();
+            for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+                CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(regionName);
+                if (regionStatistics == null) {
+                    continue;
+                }
+                regions.add(Json.createObjectBuilder()
+                        .add("name", regionName)
+                        .add("hit_count", regionStatistics.getHitCount())
+                        .add("miss_count", regionStatistics.getMissCount())
+                        .add("put_count", regionStatistics.getPutCount())
+                        .add("hit_ratio", getHitRatio(regionStatistics.getHitCount(), regionStatistics.getMissCount())));
+            }
+            response.add("second_level_cache", Json.createObjectBuilder()
+                    .add("hit_count", statistics.getSecondLevelCacheHitCount())
+                    .add("miss_count", statistics.getSecondLevelCacheMissCount())
+                    .add("put_count", statistics.getSecondLevelCachePutCount())
+                    .add("hit_ratio", getHitRatio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount()))
+                    .add("query_hit_count", statistics.getQueryCacheHitCount())
+                    .add("query_miss_count", statistics.getQueryCacheMissCount())
+                    .add("query_hit_ratio", getHitRatio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()))
+                    .add("regions", regions));
+        }
+
+        return Response.ok().entity(response.build()).build();
+    }
+
+    /**
+     * Returns a cache hit ratio.
+     *
+     * @param hitCount Number of hits
+     * @param missCount Number of misses
+     * @return Hit ratio, 0 if the cache has not been accessed
+     */
+    private static double getHitRatio(long hitCount, long missCount) {
+        long accessCount = hitCount + missCount;
+        return accessCount == 0 ? 0 : (double) hitCount / accessCount;
+    }
+
     /**
      * Enable/disable guest login.
      *
@@ -632,15 +824,58 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response.build()).build();
     }
 
+    /**
+     * Returns the progress of the search index rebuild.
+     *
+     * @api {get} /app/batch/reindex Get the progress of the search index rebuild
+     * @apiName GetAppBatchReindex
+     * @apiGroup App
+     * @apiSuccess {Boolean} running True while the index is being rebuilt
+     * @apiSuccess {String="DOCUMENT","FILE"} phase Current phase
+     * @apiSuccess {Number} start_date Start date (timestamp)
+     * @apiSuccess {Number} document_count Number of documents indexed
+     * @apiSuccess {Number} document_total Number of documents to index
+     * @apiSuccess {Number} file_count Number of files indexed
+     * @apiSuccess {Number} file_total Number of files to index
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @return Response
+     */
+    @GET
+    @Path("batch/reindex")
+    public Response batchReindexProgress() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        RebuildProgress progress = AppContext.getInstance().getIndexingHandler().getRebuildProgress();
+        JsonObjectBuilder response = Json.createObjectBuilder();
+        if (progress == null) {
+            response.add("running", false);
+        } else {
+            response.add("running", progress.isRunning())
+                    .add("phase", progress.getPhase().name())
+                    .add("start_date", progress.getStartDate().getTime())
+                    .add("document_count", progress.getDocumentCount().get())
+                    .add("document_total", progress.getDocumentTotal())
+                    .add("file_count", progress.getFileCount().get())
+                    .add("file_total", progress.getFileTotal());
+        }
+        return Response.ok().entity(response.build()).build();
+    }
+
     /**
      * Clean storage.
      *
      * @api {post} /app/batch/clean_storage Clean the file and DB storage
+     * @apiDescription The storage is cleaned in the background, by batches.
      * @apiName PostAppBatchCleanStorage
      * @apiGroup App
      * @apiSuccess {String} status Status OK
      * @apiError (client) ForbiddenError Access denied
-     * @apiError (server) FileError Error deleting orphan files
      * @apiPermission admin
      * @apiVersion 1.5.0
      *
@@ -654,95 +889,8 @@ public class AppResource extends BaseResource {
         }
         checkBaseFunction(BaseFunction.ADMIN);
 
-        // Get all files
-        FileDao fileDao = new FileDao();
-        List<File> fileList = fileDao.findAll(0, Integer.MAX_VALUE);
-        Map<String, File> fileMap = new HashMap<>();
-        for (File file : fileList) {
-            fileMap.put(file.getId(), file);
-        }
-        log.info("Checking {} files", fileMap.size());
-
-        // Check if each stored file is valid
-        try (DirectoryStream<java.nio.file.Path> storedFileList = Files.newDirectoryStream(DirectoryUtil.getStorageDirectory())) {
-            for (java.nio.file.Path storedFile : storedFileList) {
-                String fileName = storedFile.getFileName().toString();
-                String[] fileNameArray = fileName.split("_");
-                if (!fileMap.containsKey(fileNameArray[0])) {
-                    log.info("Deleting orphan files at this location: {}", storedFile);
-                    Files.delete(storedFile);
-                }
-            }
-        } catch (IOException e) {
-            throw new ServerException("FileError", "Error deleting orphan files", e);
-        }
-
-        // Hard delete orphan audit logs
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
-        StringBuilder sb = new StringBuilder("delete from T_AUDIT_LOG al where al.LOG_ID_C in (select al.LOG_ID_C from T_AUDIT_LOG al ");
-        sb.append(" left join T_DOCUMENT d on d.DOC_ID_C = al.LOG_IDENTITY_C and d.DOC_DELETEDATE_D is null ");
-        sb.append(" left join T_ACL a on a.ACL_ID_C = al.LOG_IDENTITY_C and a.ACL_DELETEDATE_D is null ");
-        sb.append(" left join T_COMMENT c on c.COM_ID_C = al.LOG_IDENTITY_C and c.COM_DELETEDATE_D is null ");
-        sb.append(" left join T_FILE f on f.FIL_ID_C = al.LOG_IDENTITY_C and f.FIL_DELETEDATE_D is null ");
-        sb.append(" left join T_TAG t on t.TAG_ID_C = al.LOG_IDENTITY_C and t.TAG_DELETEDATE_D is null ");
-        sb.append(" left join T_USER u on u.USE_ID_C = al.LOG_IDENTITY_C and u.USE_DELETEDATE_D is null ");
-        sb.append(" left join T_GROUP g on g.GRP_ID_C = al.LOG_IDENTITY_C and g.GRP_DELETEDATE_D is null ");
-        sb.append(" where d.DOC_ID_C is null and a.ACL_ID_C is null and c.COM_ID_C is null and f.FIL_ID_C is null and t.TAG_ID_C is null and u.USE_ID_C is null and g.GRP_ID_C is null)");
-        Query q = em.createNativeQuery(sb.toString());
-        log.info("Deleting {} orphan audit logs", q.executeUpdate());
-
-        // Soft delete orphan ACLs
-        sb = new StringBuilder("update T_ACL a set ACL_DELETEDATE_D = :dateNow where a.ACL_ID_C in (select a.ACL_ID_C from T_ACL a ");
-        sb.append(" left join T_SHARE s on s.SHA_ID_C = a.ACL_TARGETID_C ");
-        sb.append(" left join T_USER u on u.USE_ID_C = a.ACL_TARGETID_C ");
-        sb.append(" left join T_GROUP g on g.GRP_ID_C = a.ACL_TARGETID_C ");
-        sb.append(" left join T_DOCUMENT d on d.DOC_ID_C = a.ACL_SOURCEID_C ");
-        sb.append(" left join T_TAG t on t.TAG_ID_C = a.ACL_SOURCEID_C ");
-        sb.append(" where s.SHA_ID_C is null and u.USE_ID_C is null and g.GRP_ID_C is null or d.DOC_ID_C is null and t.TAG_ID_C is null)");
-        q = em.createNativeQuery(sb.toString());
-        q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan ACLs", q.executeUpdate());
-
-        // Soft delete orphan comments
-        q = em.createNativeQuery("update T_COMMENT set COM_DELETEDATE_D = :dateNow where COM_ID_C in (select c.COM_ID_C from T_COMMENT c left join T_DOCUMENT d on d.DOC_ID_C = c.COM_IDDOC_C and d.DOC_DELETEDATE_D is null where d.DOC_ID_C is null)");
-        q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan comments", q.executeUpdate());
-
-        // Soft delete orphan document tag links
-        q = em.createNativeQuery("update T_DOCUMENT_TAG set DOT_DELETEDATE_D = :dateNow where DOT_ID_C in (select dt.DOT_ID_C from T_DOCUMENT_TAG dt left join T_DOCUMENT d on dt.DOT_IDDOCUMENT_C = d.DOC_ID_C and d.DOC_DELETEDATE_D is null left join T_TAG t on t.TAG_ID_C = dt.DOT_IDTAG_C and t.TAG_DELETEDATE_D is null where d.DOC_ID_C is null or t.TAG_ID_C is null)");
-        q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan document tag links", q.executeUpdate());
-
-        // Soft delete orphan shares
-        q = em.createNativeQuery("update T_SHARE set SHA_DELETEDATE_D = :dateNow where SHA_ID_C in (select s.SHA_ID_C from T_SHARE s left join T_ACL a on a.ACL_TARGETID_C = s.SHA_ID_C and a.ACL_DELETEDATE_D is null where a.ACL_ID_C is null)");
-        q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan shares", q.executeUpdate());
-
-        // Soft delete orphan tags
-        q = em.createNativeQuery("update T_TAG set TAG_DELETEDATE_D = :dateNow where TAG_ID_C in (select t.TAG_ID_C from T_TAG t left join T_USER u on u.USE_ID_C = t.TAG_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)");
-        q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan tags", q.executeUpdate());
-
-        // Soft delete orphan documents
-        q = em.createNativeQuery("update T_DOCUMENT set DOC_DELETEDATE_D = :dateNow where DOC_ID_C in (select d.DOC_ID_C from T_DOCUMENT d left join T_USER u on u.USE_ID_C = d.DOC_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)");
-        q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan documents", q.executeUpdate());
-
-        // Soft delete orphan files
-        q = em.createNativeQuery("update T_FILE set FIL_DELETEDATE_D = :dateNow where FIL_ID_C in (select f.FIL_ID_C from T_FILE f left join T_USER u on u.USE_ID_C = f.FIL_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)");
-        q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan files", q.executeUpdate());
-
-        // Hard delete softly deleted data
-        log.info("Deleting {} soft deleted document tag links", em.createQuery("delete DocumentTag where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted ACLs", em.createQuery("delete Acl where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted shares", em.createQuery("delete Share where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted tags", em.createQuery("delete Tag where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted comments", em.createQuery("delete Comment where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted files", em.createQuery("delete File where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted documents", em.createQuery("delete Document where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted users", em.createQuery("delete User where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted groups", em.createQuery("delete Group where deleteDate is not null").executeUpdate());
+        CleanStorageAsyncEvent cleanStorageAsyncEvent = new CleanStorageAsyncEvent();
+        ThreadLocalContext.get().addAsyncEvent(cleanStorageAsyncEvent);
 
         // Always return OK
         JsonObjectBuilder response = Json.createObjectBuilder()
@@ -750,6 +898,47 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response.build()).build();
     }
 
+    /**
+     * Returns the progress of the storage cleaning.
+     *
+     * @api {get} /app/batch/clean_storage Get the progress of the storage cleaning
+     * @apiName GetAppBatchCleanStorage
+     * @apiGroup App
+     * @apiSuccess {Boolean} running True while the storage is being cleaned
+     * @apiSuccess {String="STORAGE","DATABASE"} phase Current phase
+     * @apiSuccess {Number} start_date Start date (timestamp)
+     * @apiSuccess {Number} checked_file_count Number of stored files checked
+     * @apiSuccess {Number} deleted_file_count Number of orphan stored files deleted
+     * @apiSuccess {Number} deleted_row_count Number of database rows deleted
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @return Response
+     */
+    @GET
+    @Path("batch/clean_storage")
+    public Response batchCleanStorageProgress() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        CleanStorageProgress progress = AppContext.getInstance().getCleanStorageProgress();
+        JsonObjectBuilder response = Json.createObjectBuilder();
+        if (progress == null) {
+            response.add("running", false);
+        } else {
+            response.add("running", progress.isRunning())
+                    .add("phase", progress.getPhase().name())
+                    .add("start_date", progress.getStartDate().getTime())
+                    .add("checked_file_count", progress.getCheckedFileCount().get())
+                    .add("deleted_file_count", progress.getDeletedFileCount().get())
+                    .add("deleted_row_count", progress.getDeletedRowCount().get());
+        }
+        return Response.ok().entity(response.build()).build();
+    }
+
     /**
      * Get the LDAP authentication configuration.
      *
@@ -6,6 +6,7 @@ import com.sismics.docs.core.dao.AclDao;
 import com.sismics.docs.core.dao.AuditLogDao;
 import com.sismics.docs.core.dao.criteria.AuditLogCriteria;
 import com.sismics.docs.core.dao.dto.AuditLogDto;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.util.SecurityUtil;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
@@ -76,7 +77,8 @@ public class AuditLogResource extends BaseResource {
             criteria.setDocumentId(documentId);
         }
         
-        // Search the logs
+        // Search the logs, once the logs of the previous requests are written
+        AppContext.getInstance().getAuditLogService().awaitWritten();
         AuditLogDao auditLogDao = new AuditLogDao();
         auditLogDao.findByCriteria(paginatedList, criteria, sortCriteria);
         
@@ -64,7 +64,6 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
 import org.glassfish.jersey.media.multipart.FormDataParam;
@@ -79,7 +78,6 @@ import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -88,6 +86,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Document REST resources.
@@ -341,10 +340,15 @@ public class DocumentResource extends BaseResource {
             file.setPrivateKey(user.getPrivateKey());
         }
 
-        // Convert to PDF
+        // The cached export is encrypted by the document owner
+        User owner = userDao.getActiveByUsername(documentDto.getCreator());
+        final String privateKey = owner == null ? null : owner.getPrivateKey();
+
+        // Convert to PDF, the missing options are false to share the same cached export
         StreamingOutput stream = outputStream -> {
             try {
-                PdfUtil.convertToPdf(documentDto, fileList, fitImageToPage, metadata, margin, outputStream);
+                PdfUtil.exportPdf(documentDto, fileList, Boolean.TRUE.equals(fitImageToPage), Boolean.TRUE.equals(metadata),
+                        margin, privateKey, outputStream);
             } catch (Exception e) {
                 throw new IOException(e);
             }
@@ -490,27 +494,29 @@ public class DocumentResource extends BaseResource {
         }
 
         // Find the files of the documents
-        Iterable<String> documentsIds = CollectionUtils.collect(paginatedList.getResultList(), DocumentDto::getId);
+        List<String> documentsIds = paginatedList.getResultList().stream()
+                .map(DocumentDto::getId)
+                .collect(Collectors.toList());
         FileDao fileDao = new FileDao();
-        List<File> filesList = null;
+        Map<String, List<File>> filesByDocument = null;
         Map<String, Long> filesCountByDocument = null;
         if (Boolean.TRUE == files) {
-            filesList = fileDao.getByDocumentsIds(documentsIds);
+            filesByDocument = fileDao.getByDocumentsIds(documentsIds).stream()
+                    .collect(Collectors.groupingBy(File::getDocumentId));
         } else {
             filesCountByDocument = fileDao.countByDocumentsIds(documentsIds);
         }
 
+        // Find the tags accessible by the current user on the documents
+        Map<String, List<TagDto>> tagsByDocument = tagDao.findByDocumentsIds(documentsIds, getTargetIdList(null));
+
         for (DocumentDto documentDto : paginatedList.getResultList()) {
-            // Get tags accessible by the current user on this document
-            List<TagDto> tagDtoList = tagDao.findByCriteria(new TagCriteria()
-                    .setTargetIdList(getTargetIdList(null))
-                    .setDocumentId(documentDto.getId()), new SortCriteria(1, true));
+            List<TagDto> tagDtoList = tagsByDocument.getOrDefault(documentDto.getId(), Collections.emptyList());
 
             Long filesCount;
-            Collection<File> filesOfDocument = null;
+            List<File> filesOfDocument = null;
             if (Boolean.TRUE == files) {
-                // Find files matching the document
-                filesOfDocument = CollectionUtils.select(filesList, file -> file.getDocumentId().equals(documentDto.getId()));
+                filesOfDocument = filesByDocument.getOrDefault(documentDto.getId(), Collections.emptyList());
                 filesCount = (long) filesOfDocument.size();
             } else {
                 filesCount = filesCountByDocument.getOrDefault(documentDto.getId(), 0L);
@@ -2,6 +2,7 @@ package com.sismics.docs.rest.resource;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
 import com.google.common.io.ByteStreams;
 import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.AclDao;
@@ -16,9 +17,11 @@ import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.service.TranslationService;
-import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.ZipUtil;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import com.sismics.docs.core.util.storage.StorageStat;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
@@ -35,8 +38,11 @@ import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObjectBuilder;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import jakarta.ws.rs.core.StreamingOutput;
@@ -49,9 +55,11 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * File REST resources.
@@ -216,8 +224,7 @@ public class FileResource extends BaseResource {
         // Raise a new file updated event and document updated event (it wasn't sent
         // during file creation)
         try {
-            java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
-            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
+            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(id, user.getPrivateKey());
             FileUtil.startProcessingFile(id);
             FileUpdatedAsyncEvent fileUpdatedAsyncEvent = new FileUpdatedAsyncEvent();
             fileUpdatedAsyncEvent.setUserId(principal.getId());
@@ -324,8 +331,7 @@ public class FileResource extends BaseResource {
 
         // Start the processing asynchronously
         try {
-            java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
-            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
+            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(id, user.getPrivateKey());
             FileUtil.startProcessingFile(id);
             FileUpdatedAsyncEvent event = new FileUpdatedAsyncEvent();
             event.setUserId(principal.getId());
@@ -570,15 +576,26 @@ public class FileResource extends BaseResource {
      * @apiParam {String} id File ID
      * @apiParam {String} share Share ID
      * @apiParam {String="web","thumb","content"} [size] Size variation
+     * @apiHeader {String} [Range] Byte ranges to return, single or multiple
+     * @apiHeader {String} [If-Range] Only honor the Range header if the file matches this ETag
+     * @apiHeader {String} [If-None-Match] Return a 304 if the file matches this ETag
+     * @apiHeader {String} [If-Modified-Since] Return a 304 if the file has not been modified since
      * @apiSuccess {Object} file The file data is the whole response
+     * @apiSuccess (206) {Object} file The requested ranges of the file data
      * @apiError (client) SizeError Size must be web or thumb
      * @apiError (client) ForbiddenError Access denied or document not visible
      * @apiError (client) NotFound File not found
+     * @apiError (client) RangeNotSatisfiable None of the requested ranges overlaps the file
      * @apiError (server) ServiceUnavailable Error reading the file
      * @apiPermission none
      * @apiVersion 1.5.0
      *
      * @param fileId File ID
+     * @param shareId Share ID
+     * @param size Size variation
+     * @param rangeHeader Range header
+     * @param ifRange If-Range header
+     * @param request Request used to evaluate the preconditions
      * @return Response
      */
     @GET
@@ -587,7 +604,10 @@ public class FileResource extends BaseResource {
     public Response data(
             @PathParam("id") final String fileId,
             @QueryParam("share") String shareId,
-            @QueryParam("size") String size) {
+            @QueryParam("size") String size,
+            @HeaderParam("Range") String rangeHeader,
+            @HeaderParam("If-Range") String ifRange,
+            @Context Request request) {
         authenticate();
 
         if (size != null && !Lists.newArrayList("web", "thumb", "content").contains(size)) {
@@ -599,22 +619,30 @@ public class FileResource extends BaseResource {
 
         // Get the stored file
         UserDao userDao = new UserDao();
-        java.nio.file.Path storedFile;
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        String storedKey;
+        java.nio.file.Path placeholderFile = null;
         String mimeType;
         boolean decrypt;
         if (size != null) {
             if (size.equals("content")) {
-                return Response.ok(Strings.nullToEmpty(file.getContent()))
+                return Response.ok(Strings.nullToEmpty(new FileDao().getContent(file.getId())))
                         .header(HttpHeaders.CONTENT_TYPE, "text/plain; charset=utf-8")
                         .build();
             }
 
-            storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_" + size);
+            storedKey = fileId + "_" + size;
             mimeType = MimeType.IMAGE_JPEG; // Thumbnails are JPEG
             decrypt = true; // Thumbnails are encrypted
-            if (!Files.exists(storedFile)) {
+            boolean exists;
+            try {
+                exists = storageBackend.exists(storedKey);
+            } catch (IOException e) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+            if (!exists) {
                 try {
-                    storedFile = Paths.get(getClass().getResource("/image/file-" + size + ".png").toURI());
+                    placeholderFile = Paths.get(getClass().getResource("/image/file-" + size + ".png").toURI());
                 } catch (URISyntaxException e) {
                     // Ignore
                 }
@@ -622,53 +650,162 @@ public class FileResource extends BaseResource {
                 decrypt = false;
             }
         } else {
-            storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
+            storedKey = fileId;
             mimeType = file.getMimeType();
             decrypt = true; // Original files are encrypted
         }
 
-        // Stream the output and decrypt it if necessary
-        StreamingOutput stream;
+        if (!decrypt) {
+            // Do not cache the temporary thumbnail
+            InputStream responseInputStream;
+            try {
+                responseInputStream = Files.newInputStream(placeholderFile);
+            } catch (IOException e) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+            return Response.ok(streamOf(responseInputStream))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFullName("data") + "\"")
+                    .header(HttpHeaders.CONTENT_TYPE, mimeType)
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store, must-revalidate")
+                    .header(HttpHeaders.EXPIRES, "0")
+                    .build();
+        }
 
-        // A file is always encrypted by the creator of it
-        User user = userDao.getById(file.getUserId());
+        // Stored files never change, a new version of a file is a new file
+        EntityTag entityTag = new EntityTag(fileId + "-" + file.getVersion() + (size == null ? "" : "-" + size));
+        Date lastModified = file.getCreateDate();
+        Response.ResponseBuilder builder = request.evaluatePreconditions(lastModified, entityTag);
+        if (builder != null) {
+            return cacheHeaders(builder, entityTag, lastModified).build();
+        }
 
-        // Write the decrypted file to the output
+        // The stored file is encrypted with AES/CTR, its size is the size of the original file
+        long length;
         try {
-            InputStream fileInputStream = Files.newInputStream(storedFile);
-            final InputStream responseInputStream = decrypt
-                    ? EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey())
-                    : fileInputStream;
+            StorageStat stat = storageBackend.stat(storedKey);
+            if (stat == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+            length = stat.getSize();
+        } catch (IOException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        }
 
-            stream = outputStream -> {
+        // Ranges are ignored if the client copy is not the current one
+        List<Range<Long>> rangeList = null;
+        if (ifRange == null || ifRange.equals(entityTag.toString())) {
+            rangeList = HttpUtil.parseRangeHeader(rangeHeader, length);
+        }
+
+        // A file is always encrypted by the creator of it
+        User user = userDao.getById(file.getUserId());
+        final String finalStoredKey = storedKey;
+        final String privateKey = user.getPrivateKey();
+        if (rangeList == null) {
+            // Send the whole file
+            InputStream responseInputStream;
+            try {
+                responseInputStream = EncryptionUtil.decryptInputStream(storedKey, privateKey, 0);
+            } catch (Exception e) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+            builder = Response.ok(streamOf(responseInputStream))
+                    .header(HttpHeaders.CONTENT_TYPE, mimeType)
+                    .header(HttpHeaders.CONTENT_LENGTH, length);
+        } else if (rangeList.isEmpty()) {
+            // None of the ranges overlaps the file
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + length)
+                    .build();
+        } else if (rangeList.size() == 1) {
+            // Send a single part of the file
+            Range<Long> range = rangeList.get(0);
+            InputStream responseInputStream;
+            try {
+                responseInputStream = ByteStreams.limit(EncryptionUtil.decryptInputStream(storedKey, privateKey,
+                        range.lowerEndpoint()), range.upperEndpoint() - range.lowerEndpoint() + 1);
+            } catch (Exception e) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+            builder = Response.status(Status.PARTIAL_CONTENT)
+                    .entity(streamOf(responseInputStream))
+                    .header(HttpHeaders.CONTENT_TYPE, mimeType)
+                    .header(HttpHeaders.CONTENT_LENGTH, range.upperEndpoint() - range.lowerEndpoint() + 1)
+                    .header("Content-Range", "bytes " + range.lowerEndpoint() + "-" + range.upperEndpoint() + "/" + length);
+        } else {
+            // Send each part of the file in a multipart response
+            final List<Range<Long>> finalRangeList = rangeList;
+            final String finalMimeType = mimeType;
+            final String boundary = UUID.randomUUID().toString().replace("-", "");
+            StreamingOutput stream = outputStream -> {
                 try {
-                    ByteStreams.copy(responseInputStream, outputStream);
+                    for (Range<Long> range : finalRangeList) {
+                        outputStream.write(("\r\n--" + boundary + "\r\n"
+                                + HttpHeaders.CONTENT_TYPE + ": " + finalMimeType + "\r\n"
+                                + "Content-Range: bytes " + range.lowerEndpoint() + "-" + range.upperEndpoint() + "/" + length + "\r\n"
+                                + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                        try (InputStream partInputStream = EncryptionUtil.decryptInputStream(finalStoredKey, privateKey, range.lowerEndpoint())) {
+                            ByteStreams.copy(ByteStreams.limit(partInputStream, range.upperEndpoint() - range.lowerEndpoint() + 1), outputStream);
+                        } catch (IOException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new WebApplicationException(e);
+                        }
+                    }
+                    outputStream.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
                 } finally {
                     try {
-                        responseInputStream.close();
                         outputStream.close();
                     } catch (IOException e) {
                         // Ignore
                     }
                 }
             };
-        } catch (Exception e) {
-            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            builder = Response.status(Status.PARTIAL_CONTENT)
+                    .entity(stream)
+                    .header(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
         }
 
-        Response.ResponseBuilder builder = Response.ok(stream)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFullName("data") + "\"")
-                .header(HttpHeaders.CONTENT_TYPE, mimeType);
-        if (decrypt) {
-            // Cache real files
-            builder.header(HttpHeaders.CACHE_CONTROL, "private")
-                    .header(HttpHeaders.EXPIRES, HttpUtil.buildExpiresHeader(3_600_000L * 24L * 365L));
-        } else {
-            // Do not cache the temporary thumbnail
-            builder.header(HttpHeaders.CACHE_CONTROL, "no-store, must-revalidate")
-                    .header(HttpHeaders.EXPIRES, "0");
-        }
-        return builder.build();
+        // Cache real files
+        builder.header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFullName("data") + "\"")
+                .header("Accept-Ranges", "bytes");
+        return cacheHeaders(builder, entityTag, lastModified).build();
+    }
+
+    /**
+     * Add the caching headers of a stored file.
+     *
+     * @param builder Response builder
+     * @param entityTag Entity tag of the file
+     * @param lastModified Last modification date of the file
+     * @return Response builder
+     */
+    private Response.ResponseBuilder cacheHeaders(Response.ResponseBuilder builder, EntityTag entityTag, Date lastModified) {
+        return builder.tag(entityTag)
+                .lastModified(lastModified)
+                .header(HttpHeaders.CACHE_CONTROL, "private")
+                .header(HttpHeaders.EXPIRES, HttpUtil.buildExpiresHeader(3_600_000L * 24L * 365L));
+    }
+
+    /**
+     * Stream an input stream to the response and close it.
+     *
+     * @param inputStream Input stream
+     * @return Streaming output
+     */
+    private StreamingOutput streamOf(InputStream inputStream) {
+        return outputStream -> {
+            try {
+                ByteStreams.copy(inputStream, outputStream);
+            } finally {
+                try {
+                    inputStream.close();
+                    outputStream.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        };
     }
 
     /**
@@ -741,32 +878,17 @@ public class FileResource extends BaseResource {
      * Sent the content of a list of files.
      */
     private Response sendZippedFiles(String zipFileName, List<File> fileList) {
-        final UserDao userDao = new UserDao();
+        // Files are encrypted by their creator, get each creator once
+        UserDao userDao = new UserDao();
+        Map<String, String> privateKeyMap = new HashMap<>();
+        for (File file : fileList) {
+            file.setPrivateKey(privateKeyMap.computeIfAbsent(file.getUserId(),
+                    userId -> userDao.getById(userId).getPrivateKey()));
+        }
 
         // Create the ZIP stream
         StreamingOutput stream = outputStream -> {
-            try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
-                // Add each file to the ZIP stream
-                int index = 0;
-                for (File file : fileList) {
-                    java.nio.file.Path storedfile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-                    InputStream fileInputStream = Files.newInputStream(storedfile);
-
-                    // Add the decrypted file to the ZIP stream
-                    // Files are encrypted by the creator of them
-                    User user = userDao.getById(file.getUserId());
-                    try (InputStream decryptedStream = EncryptionUtil.decryptInputStream(fileInputStream,
-                            user.getPrivateKey())) {
-                        ZipEntry zipEntry = new ZipEntry(index + "-" + file.getFullName(Integer.toString(index)));
-                        zipOutputStream.putNextEntry(zipEntry);
-                        ByteStreams.copy(decryptedStream, zipOutputStream);
-                        zipOutputStream.closeEntry();
-                    } catch (Exception e) {
-                        throw new WebApplicationException(e);
-                    }
-                    index++;
-                }
-            }
+            ZipUtil.zipFiles(fileList, outputStream);
             outputStream.close();
         };
 
@@ -927,10 +1049,9 @@ public class FileResource extends BaseResource {
 
         try {
             // Get the stored file
-            java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
             UserDao userDao = new UserDao();
             User user = userDao.getById(file.getUserId());
-            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
+            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(id, user.getPrivateKey());
             System.out.println("[Translate] Step 4: File decrypted, path = " + unencryptedFile);
 
             // Read file content (only extract PDF text)
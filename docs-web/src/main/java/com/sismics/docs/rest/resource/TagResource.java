@@ -4,16 +4,20 @@ import com.google.common.collect.Sets;
 import com.sismics.docs.core.constant.AclType;
 import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.AclDao;
+import com.sismics.docs.core.dao.DocumentDao;
 import com.sismics.docs.core.dao.TagDao;
 import com.sismics.docs.core.dao.criteria.TagCriteria;
 import com.sismics.docs.core.dao.dto.TagDto;
+import com.sismics.docs.core.event.DocumentUpdatedAsyncEvent;
 import com.sismics.docs.core.model.jpa.Acl;
+import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.Tag;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.util.AclUtil;
 import com.sismics.rest.util.ValidationUtil;
+import com.sismics.util.context.ThreadLocalContext;
 import org.apache.commons.lang3.StringUtils;
 
 import jakarta.json.Json;
@@ -334,9 +338,21 @@ public class TagResource extends BaseResource {
             throw new NotFoundException();
         }
 
+        // Get the tagged documents before their links to the tag are deleted
+        DocumentDao documentDao = new DocumentDao();
+        List<Document> documentList = documentDao.findByTagId(id);
+
         // Delete the tag
         TagDao tagDao = new TagDao();
         tagDao.delete(id, principal.getId());
+
+        // Raise a document updated event for each tagged document, their tags and read permissions changed
+        for (Document document : documentList) {
+            DocumentUpdatedAsyncEvent event = new DocumentUpdatedAsyncEvent();
+            event.setUserId(principal.getId());
+            event.setDocumentId(document.getId());
+            ThreadLocalContext.get().addAsyncEvent(event);
+        }
         
         // Always return OK
         JsonObjectBuilder response = Json.createObjectBuilder()
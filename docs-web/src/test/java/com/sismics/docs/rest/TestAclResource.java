@@ -450,4 +450,79 @@ public class TestAclResource extends BaseJerseyTest {
                         .param("tags", tag1Id)
                         .param("language", "eng")), JsonObject.class);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test the document list after deleting a shared tag.
+     */
+    @Test
+    public void testAclDeletedTag() {
+        // Login acltagdel1
+        clientUtil.createUser("acltagdel1");
+        String acltagdel1Token = clientUtil.login("acltagdel1");
+
+        // Login acltagdel2
+        clientUtil.createUser("acltagdel2");
+        String acltagdel2Token = clientUtil.login("acltagdel2");
+
+        // Create tag1 with acltagdel1
+        JsonObject json = target().path("/tag").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, acltagdel1Token)
+                .put(Entity.form(new Form()
+                        .param("name", "AclTagDel1")
+                        .param("color", "#ff0000")), JsonObject.class);
+        String tag1Id = json.getString("id");
+
+        // Create document1 with acltagdel1 tagged with tag1
+        json = target().path("/document").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, acltagdel1Token)
+                .put(Entity.form(new Form()
+                        .param("title", "My super document 1")
+                        .param("tags", tag1Id)
+                        .param("language", "eng")), JsonObject.class);
+        String document1Id = json.getString("id");
+
+        // Add an ACL READ for acltagdel2 with acltagdel1 on tag1
+        target().path("/acl").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, acltagdel1Token)
+                .put(Entity.form(new Form()
+                        .param("source", tag1Id)
+                        .param("perm", "READ")
+                        .param("target", "acltagdel2")
+                        .param("type", "USER")), JsonObject.class);
+
+        // acltagdel2 can see document1
+        json = target().path("/document/list")
+                .queryParam("sort_column", 3)
+                .queryParam("asc", true)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, acltagdel2Token)
+                .get(JsonObject.class);
+        JsonArray documents = json.getJsonArray("documents");
+        Assert.assertEquals(1, documents.size());
+        Assert.assertEquals(1, json.getJsonNumber("total").longValue());
+        Assert.assertEquals(document1Id, documents.getJsonObject(0).getString("id"));
+
+        // Delete tag1
+        target().path("/tag/" + tag1Id).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, acltagdel1Token)
+                .delete(JsonObject.class);
+
+        // acltagdel2 cannot see any document, the list total included
+        json = target().path("/document/list")
+                .queryParam("sort_column", 3)
+                .queryParam("asc", true)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, acltagdel2Token)
+                .get(JsonObject.class);
+        documents = json.getJsonArray("documents");
+        Assert.assertEquals(0, documents.size());
+        Assert.assertEquals(0, json.getJsonNumber("total").longValue());
+
+        // acltagdel1 still sees document1, without tag1
+        json = target().path("/document/list").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, acltagdel1Token)
+                .get(JsonObject.class);
+        Assert.assertEquals(1, json.getJsonNumber("total").longValue());
+        Assert.assertEquals(0, json.getJsonArray("documents").getJsonObject(0).getJsonArray("tags").size());
+    }
+}
@@ -1,12 +1,19 @@
 package com.sismics.docs.rest;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.io.Resources;
 import com.icegreen.greenmail.util.GreenMail;
 import com.icegreen.greenmail.util.GreenMailUtil;
 import com.icegreen.greenmail.util.ServerSetup;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.Config;
+import com.sismics.docs.core.util.StorageUtil;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
@@ -63,6 +70,23 @@ public class TestAppResource extends BaseJerseyTest {
         Assert.assertTrue(json.containsKey("global_storage_current"));
         Assert.assertTrue(json.getJsonNumber("active_user_count").longValue() > 0);
 
+        // Check the metrics
+        json = target().path("/app/metrics").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        JsonObject keyCache = json.getJsonObject("encryption_key_cache");
+        Assert.assertTrue(keyCache.getJsonNumber("hit_count").longValue() >= 0);
+        Assert.assertTrue(keyCache.getJsonNumber("miss_count").longValue() >= 0);
+        JsonObject indexing = json.getJsonObject("indexing");
+        Assert.assertTrue(indexing.getJsonNumber("operation_count").longValue() >= 0);
+        Assert.assertTrue(indexing.getJsonNumber("pending_count").longValue() >= 0);
+        JsonObject ocr = json.getJsonObject("ocr");
+        Assert.assertTrue(ocr.getInt("thread_count") >= 1);
+        Assert.assertTrue(ocr.getJsonNumber("page_count").longValue() >= 0);
+        JsonObject auditLog = json.getJsonObject("audit_log");
+        Assert.assertTrue(auditLog.getJsonNumber("written_count").longValue() >= 0);
+        Assert.assertNotNull(json.getJsonArray("event_pools"));
+
         // Rebuild Lucene index
         Response response = target().path("/app/batch/reindex").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
@@ -132,6 +156,138 @@ public class TestAppResource extends BaseJerseyTest {
         Assert.assertTrue(date3 >= date4);
     }
 
+    /**
+     * Test the database connection pool metrics.
+     */
+    @Test
+    public void testConnectionPoolMetrics() {
+        // Login admin
+        String adminToken = adminToken();
+
+        JsonObject json = target().path("/app/metrics").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        JsonObject connectionPool = json.getJsonObject("connection_pool");
+        Assert.assertEquals(10, connectionPool.getInt("max_size"));
+        Assert.assertTrue(connectionPool.getInt("active_count") >= 1);
+        Assert.assertTrue(connectionPool.getInt("idle_count") >= 0);
+        Assert.assertEquals(0, connectionPool.getInt("pending_count"));
+        Assert.assertTrue(connectionPool.getJsonNumber("acquire_count").longValue() > 0);
+        Assert.assertTrue(connectionPool.getJsonNumber("acquire_time").doubleValue() >= 0);
+        Assert.assertEquals(0, connectionPool.getJsonNumber("timeout_count").longValue());
+    }
+
+    /**
+     * Test the second level cache metrics.
+     */
+    @Test
+    public void testSecondLevelCacheMetrics() {
+        // Login admin
+        String adminToken = adminToken();
+
+        // Read the configuration twice, the second read is served by the second level cache
+        for (int i = 0; i < 2; i++) {
+            target().path("/app").request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                    .get(JsonObject.class);
+        }
+
+        JsonObject json = target().path("/app/metrics").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        JsonObject secondLevelCache = json.getJsonObject("second_level_cache");
+        Assert.assertTrue(secondLevelCache.getJsonNumber("hit_count").longValue() > 0);
+        Assert.assertTrue(secondLevelCache.getJsonNumber("put_count").longValue() > 0);
+        double hitRatio = secondLevelCache.getJsonNumber("hit_ratio").doubleValue();
+        Assert.assertTrue(hitRatio > 0 && hitRatio <= 1);
+        JsonObject configRegion = secondLevelCache.getJsonArray("regions").getValuesAs(JsonObject.class).stream()
+                .filter(region -> region.getString("name").equals(Config.class.getName()))
+                .findFirst().orElseThrow();
+        Assert.assertTrue(configRegion.getJsonNumber("hit_count").longValue() > 0);
+    }
+
+    /**
+     * Test the search index rebuild.
+     */
+    @Test
+    public void testReindex() {
+        // Login admin
+        String adminToken = adminToken();
+
+        // Create a document
+        clientUtil.createUser("reindex1");
+        String reindex1Token = clientUtil.login("reindex1");
+        JsonObject json = target().path("/document").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, reindex1Token)
+                .put(Entity.form(new Form()
+                        .param("title", "Rebuilt zeppelin")
+                        .param("language", "eng")), JsonObject.class);
+        String documentId = json.getString("id");
+
+        // Rebuild Lucene index
+        Response response = target().path("/app/batch/reindex").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()));
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+
+        // Check the rebuild progress
+        json = target().path("/app/batch/reindex").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("running"));
+        Assert.assertEquals("FILE", json.getString("phase"));
+        Assert.assertTrue(json.getJsonNumber("document_count").longValue() >= 1);
+        Assert.assertEquals(json.getJsonNumber("document_total").longValue(), json.getJsonNumber("document_count").longValue());
+
+        // The rebuilt index answers the searches
+        json = target().path("/document/list")
+                .queryParam("search", "zeppelin")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, reindex1Token)
+                .get(JsonObject.class);
+        JsonArray documents = json.getJsonArray("documents");
+        Assert.assertEquals(1, documents.size());
+        Assert.assertEquals(documentId, documents.getJsonObject(0).getString("id"));
+    }
+
+    /**
+     * Test the storage cleaning.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testCleanStorage() throws Exception {
+        // Login admin
+        String adminToken = adminToken();
+
+        // Store an old orphan file and a recent one
+        Path oldOrphanFile = StorageUtil.getNewStoredFile(UUID.randomUUID().toString());
+        Files.write(oldOrphanFile, new byte[] { 1 });
+        Files.setLastModifiedTime(oldOrphanFile, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)));
+        Path recentOrphanFile = StorageUtil.getNewStoredFile(UUID.randomUUID().toString());
+        Files.write(recentOrphanFile, new byte[] { 1 });
+
+        // Clean storage
+        Response response = target().path("/app/batch/clean_storage").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()));
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+
+        // Check the cleaning progress
+        JsonObject json = target().path("/app/batch/clean_storage").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("running"));
+        Assert.assertEquals("DATABASE", json.getString("phase"));
+        Assert.assertTrue(json.getJsonNumber("checked_file_count").longValue() >= 2);
+        Assert.assertTrue(json.getJsonNumber("deleted_file_count").longValue() >= 1);
+
+        // Only the old orphan file is deleted
+        Assert.assertFalse(Files.exists(oldOrphanFile));
+        Assert.assertTrue(Files.exists(recentOrphanFile));
+        Files.delete(recentOrphanFile);
+    }
+
     /**
      * Test the guest login.
      */
@@ -3,6 +3,7 @@ package com.sismics.docs.rest;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
 import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.StorageUtil;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
@@ -19,6 +20,9 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Date;
 
 /**
@@ -171,6 +175,21 @@ public class TestDocumentResource extends BaseJerseyTest {
         documents = json.getJsonArray("documents");
         Assert.assertEquals(2, documents.size());
 
+        // Paginate a fulltext search
+        json = target().path("/document/list")
+                .queryParam("search", "title")
+                .queryParam("sort_column", 3)
+                .queryParam("asc", true)
+                .queryParam("limit", 1)
+                .queryParam("offset", 1)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, document1Token)
+                .get(JsonObject.class);
+        documents = json.getJsonArray("documents");
+        Assert.assertEquals(2, json.getInt("total"));
+        Assert.assertEquals(1, documents.size());
+        Assert.assertEquals(document2Id, documents.getJsonObject(0).getString("id"));
+
         // Check highlights
         json = target().path("/document/list")
                 .queryParam("search", "full:uranium full:einstein")
@@ -418,9 +437,9 @@ public class TestDocumentResource extends BaseJerseyTest {
         Assert.assertEquals(Status.NOT_FOUND, Status.fromStatusCode(response.getStatus()));
 
         // Check that the associated files are deleted from FS
-        java.io.File storedFile = DirectoryUtil.getStorageDirectory().resolve(file1Id).toFile();
-        java.io.File webFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_web").toFile();
-        java.io.File thumbnailFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_thumb").toFile();
+        java.io.File storedFile = StorageUtil.getStoredFile(file1Id).toFile();
+        java.io.File webFile = StorageUtil.getStoredFile(file1Id + "_web").toFile();
+        java.io.File thumbnailFile = StorageUtil.getStoredFile(file1Id + "_thumb").toFile();
         Assert.assertFalse(storedFile.exists());
         Assert.assertFalse(webFile.exists());
         Assert.assertFalse(thumbnailFile.exists());
@@ -496,6 +515,54 @@ public class TestDocumentResource extends BaseJerseyTest {
         is = (InputStream) response.getEntity();
         byte[] pdfBytes = ByteStreams.toByteArray(is);
         Assert.assertTrue(pdfBytes.length > 0);
+
+        // Export it again, from the cache
+        response = target().path("/document/" + document1Id + "/pdf")
+                .queryParam("margin", "10")
+                .queryParam("metadata", "true")
+                .queryParam("fitimagetopage", "true")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentOdtToken)
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertArrayEquals(pdfBytes, ByteStreams.toByteArray((InputStream) response.getEntity()));
+
+        // The cached export is encrypted
+        int cachedCount = 0;
+        try (DirectoryStream<java.nio.file.Path> stream = Files.newDirectoryStream(DirectoryUtil.getPdfCacheDirectory(), document1Id + "_*")) {
+            for (java.nio.file.Path cachedFile : stream) {
+                byte[] cachedBytes = Files.readAllBytes(cachedFile);
+                Assert.assertEquals(pdfBytes.length, cachedBytes.length);
+                Assert.assertFalse(Arrays.equals(pdfBytes, cachedBytes));
+                cachedCount++;
+            }
+        }
+        Assert.assertEquals(1, cachedCount);
+
+        // Export it without the boolean options
+        response = target().path("/document/" + document1Id + "/pdf")
+                .queryParam("margin", "10")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentOdtToken)
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertTrue(ByteStreams.toByteArray((InputStream) response.getEntity()).length > 0);
+
+        // Update the document, the export is rendered again
+        target().path("/document/" + document1Id).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentOdtToken)
+                .post(Entity.form(new Form()
+                        .param("title", "Document with a new title")
+                        .param("language", "eng")), JsonObject.class);
+        response = target().path("/document/" + document1Id + "/pdf")
+                .queryParam("margin", "10")
+                .queryParam("metadata", "true")
+                .queryParam("fitimagetopage", "true")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentOdtToken)
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertFalse(Arrays.equals(pdfBytes, ByteStreams.toByteArray((InputStream) response.getEntity())));
     }
     
     /**
@@ -0,0 +1,142 @@
+package com.sismics.docs.rest;
+
+import com.google.common.base.Strings;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.model.jpa.FileContent;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.filter.TokenBasedSecurityFilter;
+import com.sismics.util.jpa.EMF;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Form;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of the file listings on documents with a large extracted content.
+ * The listings only need the files metadata, the content must never be loaded.
+ *
+ * @author agent
+ */
+public class TestFileListBenchmark extends BaseJerseyTest {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TestFileListBenchmark.class);
+
+    /**
+     * Number of documents.
+     */
+    private static final int DOCUMENT_COUNT = 5;
+
+    /**
+     * Number of files per document.
+     */
+    private static final int FILE_COUNT = 3;
+
+    /**
+     * Size of the extracted content of each file (in characters).
+     */
+    private static final int CONTENT_SIZE = 1024 * 1024;
+
+    /**
+     * Number of measured requests per endpoint.
+     */
+    private static final int ITERATION_COUNT = 20;
+
+    /**
+     * Benchmark the file listings.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testFileListBenchmark() throws Exception {
+        // Login bench1
+        clientUtil.createUser("bench1");
+        String bench1Token = clientUtil.login("bench1");
+
+        // Create documents with files, and give them a large OCR content
+        List<String> fileIdList = new ArrayList<>();
+        String documentId = null;
+        for (int i = 0; i < DOCUMENT_COUNT; i++) {
+            JsonObject json = target().path("/document").request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, bench1Token)
+                    .put(Entity.form(new Form()
+                            .param("title", "Benchmark document " + i)
+                            .param("language", "eng")), JsonObject.class);
+            documentId = json.getString("id");
+            for (int j = 0; j < FILE_COUNT; j++) {
+                fileIdList.add(clientUtil.addFileToDocument(FILE_DOCUMENT_TXT, bench1Token, documentId));
+            }
+        }
+        String content = Strings.repeat("Lorem ipsum dolor sit amet ", CONTENT_SIZE / 27);
+        TransactionUtil.handle(() -> {
+            FileDao fileDao = new FileDao();
+            for (String fileId : fileIdList) {
+                fileDao.updateContent(fileId, content);
+            }
+        });
+
+        // List the files of a document
+        final String lastDocumentId = documentId;
+        benchmark("GET /file/list", () -> {
+            JsonObject json = target().path("/file/list")
+                    .queryParam("id", lastDocumentId)
+                    .request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, bench1Token)
+                    .get(JsonObject.class);
+            Assert.assertEquals(FILE_COUNT, json.getJsonArray("files").size());
+        });
+
+        // List the documents with their files
+        benchmark("GET /document/list?files=true", () -> {
+            JsonObject json = target().path("/document/list")
+                    .queryParam("files", true)
+                    .request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, bench1Token)
+                    .get(JsonObject.class);
+            Assert.assertEquals(DOCUMENT_COUNT, json.getJsonArray("documents").size());
+        });
+
+        // The content is still available on its own
+        String fileContent = target().path("/file/" + fileIdList.get(0) + "/data")
+                .queryParam("size", "content")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, bench1Token)
+                .get(String.class);
+        Assert.assertEquals(content, fileContent);
+    }
+
+    /**
+     * Run a request repeatedly, check that no file content is loaded and log the mean time.
+     *
+     * @param name Endpoint name
+     * @param request Request to execute
+     */
+    private void benchmark(String name, Runnable request) {
+        // Warm up
+        request.run();
+
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        boolean statisticsEnabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < ITERATION_COUNT; i++) {
+            request.run();
+        }
+        long duration = System.nanoTime() - startTime;
+        long contentLoadCount = statistics.getEntityStatistics(FileContent.class.getName()).getLoadCount();
+        statistics.setStatisticsEnabled(statisticsEnabled);
+
+        log.info("{}: {} ms per request", name, duration / ITERATION_COUNT / 1_000_000.0);
+        Assert.assertEquals(name + " loaded the files content", 0, contentLoadCount);
+    }
+}
@@ -2,7 +2,7 @@ package com.sismics.docs.rest;
 
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
-import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.StorageUtil;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import com.sismics.util.mime.MimeType;
 import com.sismics.util.mime.MimeTypeUtil;
@@ -16,13 +16,17 @@ import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -58,7 +62,56 @@ public class TestFileResource extends BaseJerseyTest {
         InputStream is = (InputStream) response.getEntity();
         byte[] fileBytes = ByteStreams.toByteArray(is);
         Assert.assertTrue(fileBytes.length > 0);
-        
+        Assert.assertEquals("bytes", response.getHeaderString("Accept-Ranges"));
+        String etag = response.getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag);
+        Assert.assertNotNull(response.getHeaderString(HttpHeaders.LAST_MODIFIED));
+
+        // Get the file data again, not modified
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get();
+        Assert.assertEquals(Status.NOT_MODIFIED, Status.fromStatusCode(response.getStatus()));
+
+        // Get a part of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=100-1099")
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals("bytes 100-1099/" + fileBytes.length, response.getHeaderString("Content-Range"));
+        is = (InputStream) response.getEntity();
+        Assert.assertArrayEquals(Arrays.copyOfRange(fileBytes, 100, 1100), ByteStreams.toByteArray(is));
+
+        // Get the end of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=-10")
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        is = (InputStream) response.getEntity();
+        Assert.assertArrayEquals(Arrays.copyOfRange(fileBytes, fileBytes.length - 10, fileBytes.length), ByteStreams.toByteArray(is));
+
+        // Get multiple parts of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=0-9,50-59")
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        Assert.assertTrue(response.getHeaderString(HttpHeaders.CONTENT_TYPE).startsWith("multipart/byteranges"));
+        is = (InputStream) response.getEntity();
+        String multipart = new String(ByteStreams.toByteArray(is), StandardCharsets.ISO_8859_1);
+        Assert.assertTrue(multipart.contains("Content-Range: bytes 0-9/" + fileBytes.length));
+        Assert.assertTrue(multipart.contains("Content-Range: bytes 50-59/" + fileBytes.length));
+
+        // Get a part outside of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=" + fileBytes.length + "-")
+                .get();
+        Assert.assertEquals(Status.REQUESTED_RANGE_NOT_SATISFIABLE, Status.fromStatusCode(response.getStatus()));
+
         // Get the thumbnail data
         response = target().path("/file/" + file1Id + "/data")
                 .queryParam("size", "thumb")
@@ -90,7 +143,7 @@ public class TestFileResource extends BaseJerseyTest {
         Assert.assertTrue(fileBytes.length > 0);
         
         // Check that the files are not readable directly from FS
-        Path storedFile = DirectoryUtil.getStorageDirectory().resolve(file1Id);
+        Path storedFile = StorageUtil.getStoredFile(file1Id);
         Assert.assertEquals(MimeType.DEFAULT, MimeTypeUtil.guessMimeType(storedFile, null));
 
         // Get all files from a document
@@ -168,9 +221,9 @@ public class TestFileResource extends BaseJerseyTest {
         Assert.assertEquals(Status.NOT_FOUND, Status.fromStatusCode(response.getStatus()));
         
         // Check that files are deleted from FS
-        storedFile = DirectoryUtil.getStorageDirectory().resolve(file1Id);
-        Path webFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_web");
-        Path thumbnailFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_thumb");
+        storedFile = StorageUtil.getStoredFile(file1Id);
+        Path webFile = StorageUtil.getStoredFile(file1Id + "_web");
+        Path thumbnailFile = StorageUtil.getStoredFile(file1Id + "_thumb");
         Assert.assertFalse(Files.exists(storedFile));
         Assert.assertFalse(Files.exists(webFile));
         Assert.assertFalse(Files.exists(thumbnailFile));
@@ -312,6 +365,28 @@ public class TestFileResource extends BaseJerseyTest {
                         .param("files", file1Id)
                         .param("files", file2Id)));
         Assert.assertEquals(Status.FORBIDDEN, Status.fromStatusCode(response.getStatus()));
+
+        // Add a text file to the first document
+        clientUtil.addFileToDocument(FILE_DOCUMENT_TXT, file1Token, document1Id);
+
+        // The image is stored as is, the text is deflated
+        response = target().path("/file/zip")
+                .queryParam("id", document1Id)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        is = (InputStream) response.getEntity();
+        zipInputStream = new ZipInputStream(is);
+        ZipEntry zipEntry = zipInputStream.getNextEntry();
+        Assert.assertEquals("0-PIA00452.jpg", zipEntry.getName());
+        Assert.assertEquals(ZipEntry.STORED, zipEntry.getMethod());
+        Assert.assertEquals(FILE_PIA_00452_JPG_SIZE, ByteStreams.toByteArray(zipInputStream).length);
+        zipEntry = zipInputStream.getNextEntry();
+        Assert.assertEquals("1-document.txt", zipEntry.getName());
+        Assert.assertEquals(ZipEntry.DEFLATED, zipEntry.getMethod());
+        Assert.assertTrue(ByteStreams.toByteArray(zipInputStream).length > 0);
+        Assert.assertNull(zipInputStream.getNextEntry());
     }
 
     /**
@@ -0,0 +1,126 @@
+package com.sismics.docs.rest;
+
+import com.sismics.util.filter.TokenBasedSecurityFilter;
+import com.sismics.util.jpa.EMF;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Form;
+
+/**
+ * Regression test of the number of SQL statements executed by the main endpoints.
+ * A failure means an endpoint started issuing more queries (N+1 selects, entities
+ * loaded again after the persistence context is cleared, ...), lower the budget
+ * when an endpoint is optimized.
+ *
+ * @author agent
+ */
+public class TestSqlStatementCount extends BaseJerseyTest {
+    /**
+     * Test the number of SQL statements per endpoint.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testSqlStatementCount() throws Exception {
+        // Login sql1
+        clientUtil.createUser("sql1");
+        String sql1Token = clientUtil.login("sql1");
+
+        // Create a tag and 2 documents with files
+        JsonObject json = target().path("/tag").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .put(Entity.form(new Form()
+                        .param("name", "SqlTag")
+                        .param("color", "#ff0000")), JsonObject.class);
+        String tagId = json.getString("id");
+        json = target().path("/document").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .put(Entity.form(new Form()
+                        .param("title", "SQL document")
+                        .param("language", "eng")
+                        .param("tags", tagId)), JsonObject.class);
+        String documentId = json.getString("id");
+        String fileId = clientUtil.addFileToDocument(FILE_PIA_00452_JPG, sql1Token, documentId);
+        clientUtil.addFileToDocument(FILE_DOCUMENT_TXT, sql1Token, documentId);
+        json = target().path("/document").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .put(Entity.form(new Form()
+                        .param("title", "SQL document 2")
+                        .param("language", "eng")
+                        .param("tags", tagId)), JsonObject.class);
+        clientUtil.addFileToDocument(FILE_DOCUMENT_TXT, sql1Token, json.getString("id"));
+
+        // Get the document
+        assertStatementCount("GET /document/{id}", 11, () -> target().path("/document/" + documentId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .get(JsonObject.class));
+
+        // List the documents
+        assertStatementCount("GET /document/list", 4, () -> target().path("/document/list").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .get(JsonObject.class));
+
+        // List the documents with their files, the tags and files are fetched for the whole page
+        assertStatementCount("GET /document/list?files=true", 4, () -> target().path("/document/list")
+                .queryParam("files", true)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .get(JsonObject.class));
+
+        // List the files
+        assertStatementCount("GET /file/list", 2, () -> target().path("/file/list")
+                .queryParam("id", documentId)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .get(JsonObject.class));
+
+        // Get a thumbnail, the principal is cached
+        assertStatementCount("GET /file/{id}/data?size=thumb", 3, () -> target().path("/file/" + fileId + "/data")
+                .queryParam("size", "thumb")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .get()
+                .close());
+
+        // List the tags
+        assertStatementCount("GET /tag/list", 1, () -> target().path("/tag/list").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .get(JsonObject.class));
+
+        // Get the current user
+        assertStatementCount("GET /user", 3, () -> target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .get(JsonObject.class));
+
+        // Update the document
+        assertStatementCount("POST /document/{id}", 20, () -> target().path("/document/" + documentId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, sql1Token)
+                .post(Entity.form(new Form()
+                        .param("title", "SQL document updated")
+                        .param("language", "eng")
+                        .param("tags", tagId)), JsonObject.class));
+    }
+
+    /**
+     * Check that a request doesn't execute more SQL statements than its budget.
+     *
+     * @param name Endpoint name
+     * @param maxCount Maximum number of SQL statements
+     * @param request Request to execute
+     */
+    private void assertStatementCount(String name, long maxCount, Runnable request) {
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        boolean statisticsEnabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        request.run();
+        long count = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(statisticsEnabled);
+        Assert.assertTrue(name + " executed " + count + " SQL statements, expected at most " + maxCount, count <= maxCount);
+    }
+}